@@ -79,6 +79,7 @@ import org.sonar.server.debt.DebtRulesXMLImporter;
 import org.sonar.server.event.NewAlerts;
 import org.sonar.server.issue.IssueUpdater;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.issue.index.IssueFacetCache;
 import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.issue.index.IssueIndexer;
 import org.sonar.server.issue.notification.ChangesOnMyIssueNotificationDispatcher;
@@ -95,6 +96,7 @@ import org.sonar.server.metric.CoreCustomMetrics;
 import org.sonar.server.metric.DefaultMetricFinder;
 import org.sonar.server.notification.DefaultNotificationManager;
 import org.sonar.server.notification.NotificationCenter;
+import org.sonar.server.notification.NotificationDeliveryStats;
 import org.sonar.server.notification.NotificationService;
 import org.sonar.server.notification.email.AlertsEmailTemplate;
 import org.sonar.server.notification.email.EmailNotificationChannel;
@@ -239,6 +241,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       ActiveRuleIndex.class,
 
       // issues
+      IssueFacetCache.class,
       IssueIndex.class,
 
       // Classes kept for backward compatibility of plugins/libs (like sonar-license) that are directly calling classes from the core
@@ -569,6 +572,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       // Notifications
       EmailSettings.class,
       NotificationService.class,
+      NotificationDeliveryStats.class,
       NotificationCenter.class,
       DefaultNotificationManager.class,
 
@@ -120,6 +120,11 @@ public class CeUserSession implements UserSession {
     return notImplementedBooleanMethod();
   }
 
+  @Override
+  public Set<String> filterAuthorizedComponentUuids(String permission, Collection<String> componentUuids) {
+    return notImplemented();
+  }
+
   private static <T> T notImplemented() {
     throw new UnsupportedOperationException(UOE_MESSAGE);
   }
@@ -83,10 +83,10 @@ public class ComputeEngineContainerImplTest {
     assertThat(picoContainer.getComponentAdapters())
       .hasSize(
         CONTAINER_ITSELF
-          + 75 // level 4
-          + 7 // content of CeModule
-          + 7 // content of CeQueueModule
-          + 4 // content of ProjectAnalysisTaskModule
+          + 76 // level 4
+          + 9 // content of CeModule
+          + 9 // content of CeQueueModule
+          + 5 // content of ProjectAnalysisTaskModule
           + 4 // content of CeTaskProcessorModule
     );
     assertThat(picoContainer.getParent().getComponentAdapters()).hasSize(
@@ -99,9 +99,9 @@ public class ComputeEngineContainerImplTest {
     );
     assertThat(picoContainer.getParent().getParent().getParent().getComponentAdapters()).hasSize(
       COMPONENTS_IN_LEVEL_1_AT_CONSTRUCTION
-        + 23 // level 1
+        + 24 // level 1
         + 46 // content of DaoModule
-        + 1 // content of EsSearchModule
+        + 2 // content of EsSearchModule
         + 55 // content of CorePropertyDefinitions
         + 1 // content of CePropertyDefinitions
     );
@@ -31,6 +31,20 @@ public interface CEQueueStatus {
    */
   long addInProgress();
 
+  /**
+   * Adds the specified time to the queue waiting time counter and updates the longest waiting time if needed.
+   *
+   * @param waitingTime duration between the submission of a batch report and the start of its processing, in ms
+   *
+   * @return the new total of queue waiting time
+   *
+   * @see #getWaitingTime()
+   * @see #getMaxWaitingTime()
+   *
+   * @throws IllegalArgumentException if waitingTime is < 0
+   */
+  long addWaitingTime(long waitingTime);
+
   /**
    * Adds 1 to the count of batch reports which processing ended successfully and removes 1 from the count of batch
    * reports under processing. Adds the specified time to the processing time counter.
@@ -85,4 +99,14 @@ public interface CEQueueStatus {
    * Time spent processing batch reports since startup, in milliseconds.
    */
   long getProcessingTime();
+
+  /**
+   * Time batch reports processed since startup spent waiting in the queue, in milliseconds.
+   */
+  long getWaitingTime();
+
+  /**
+   * Longest time a batch report processed since startup spent waiting in the queue, in milliseconds.
+   */
+  long getMaxWaitingTime();
 }
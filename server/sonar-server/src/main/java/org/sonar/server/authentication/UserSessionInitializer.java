@@ -39,6 +39,7 @@ import org.sonar.api.server.ServerSide;
 import org.sonar.db.DbClient;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.UnauthorizedException;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.ThreadLocalUserSession;
 
 @ServerSide
@@ -65,10 +66,12 @@ public class UserSessionInitializer {
   private final JwtHttpHandler jwtHttpHandler;
   private final BasicAuthenticator basicAuthenticator;
   private final ThreadLocalUserSession userSession;
+  private final PermissionCache permissionCache;
 
   public UserSessionInitializer(DbClient dbClient, Settings settings, JwtHttpHandler jwtHttpHandler, BasicAuthenticator basicAuthenticator,
-                                ThreadLocalUserSession userSession) {
+                                ThreadLocalUserSession userSession, PermissionCache permissionCache) {
     this.dbClient = dbClient;
+    this.permissionCache = permissionCache;
     this.settings = settings;
     this.jwtHttpHandler = jwtHttpHandler;
     this.basicAuthenticator = basicAuthenticator;
@@ -97,12 +100,12 @@ public class UserSessionInitializer {
   private void setUserSession(HttpServletRequest request, HttpServletResponse response) {
     Optional<UserDto> user = authenticate(request, response);
     if (user.isPresent()) {
-      userSession.set(createForUser(dbClient, user.get()));
+      userSession.set(createForUser(dbClient, permissionCache, user.get()));
     } else {
       if (settings.getBoolean(CORE_FORCE_AUTHENTICATION_PROPERTY)) {
         throw new UnauthorizedException("User must be authenticated");
       }
-      userSession.set(createForAnonymous(dbClient));
+      userSession.set(createForAnonymous(dbClient, permissionCache));
     }
   }
 
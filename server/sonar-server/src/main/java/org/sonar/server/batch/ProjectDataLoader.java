@@ -19,13 +19,16 @@
  */
 package org.sonar.server.batch;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ServerSide;
@@ -34,6 +37,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.FilePathWithHashDto;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
@@ -63,15 +67,8 @@ public class ProjectDataLoader {
     DbSession session = dbClient.openSession(false);
     try {
       ProjectRepositories data = new ProjectRepositories();
-      ComponentDto module = checkFoundWithOptional(dbClient.componentDao().selectByKey(session, query.getModuleKey()),
-        "Project or module with key '%s' is not found", query.getModuleKey());
-      if (!isProjectOrModule(module)) {
-        throw new BadRequestException(format("Key '%s' belongs to a component which is not a Project", query.getModuleKey()));
-      }
-
-      boolean hasScanPerm = userSession.hasComponentUuidPermission(SCAN_EXECUTION, module.projectUuid());
-      boolean hasBrowsePerm = userSession.hasComponentUuidPermission(USER, module.projectUuid());
-      checkPermission(query.isIssuesMode(), hasScanPerm, hasBrowsePerm);
+      ComponentDto module = selectModule(session, query);
+      boolean hasScanPerm = checkPermission(query, module);
 
       ComponentDto project = getProject(module, session);
       if (!project.key().equals(module.key())) {
@@ -99,6 +96,53 @@ public class ProjectDataLoader {
     }
   }
 
+  /**
+   * Version of the data returned by {@link #load(ProjectDataQuery)}. Files are updated only when the project is analyzed,
+   * whereas modules and their settings can be updated at any time, so the version is built from the last analysis of
+   * the project, from its modules and from their settings.
+   */
+  public String version(ProjectDataQuery query) {
+    DbSession session = dbClient.openSession(false);
+    try {
+      ComponentDto module = selectModule(session, query);
+      boolean hasScanPerm = checkPermission(query, module);
+      String projectUuid = module.projectUuid();
+
+      List<String> versions = new ArrayList<>();
+      for (ComponentDto component : dbClient.componentDao().selectEnabledDescendantModules(session, projectUuid)) {
+        versions.add(format("module|%s|%s|%s|%s", component.getId(), component.uuid(), component.moduleUuid(), component.key()));
+      }
+      for (PropertyDto property : dbClient.propertiesDao().selectEnabledDescendantModuleProperties(projectUuid, session)) {
+        versions.add(format("property|%s|%s|%s", property.getResourceId(), property.getKey(), property.getValue()));
+      }
+      Collections.sort(versions);
+      versions.add(0, dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(session, projectUuid).map(SnapshotDto::getUuid).orElse(""));
+      versions.add(1, String.valueOf(hasScanPerm));
+      return DigestUtils.md5Hex(Joiner.on('\n').join(versions));
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private ComponentDto selectModule(DbSession session, ProjectDataQuery query) {
+    ComponentDto module = checkFoundWithOptional(dbClient.componentDao().selectByKey(session, query.getModuleKey()),
+      "Project or module with key '%s' is not found", query.getModuleKey());
+    if (!isProjectOrModule(module)) {
+      throw new BadRequestException(format("Key '%s' belongs to a component which is not a Project", query.getModuleKey()));
+    }
+    return module;
+  }
+
+  /**
+   * @return whether user has the permission to execute analysis
+   */
+  private boolean checkPermission(ProjectDataQuery query, ComponentDto module) {
+    boolean hasScanPerm = userSession.hasComponentUuidPermission(SCAN_EXECUTION, module.projectUuid());
+    boolean hasBrowsePerm = userSession.hasComponentUuidPermission(USER, module.projectUuid());
+    checkPermission(query.isIssuesMode(), hasScanPerm, hasBrowsePerm);
+    return hasScanPerm;
+  }
+
   private static boolean isProjectOrModule(ComponentDto module) {
     if (!Scopes.PROJECT.equals(module.scope())) {
       return false;
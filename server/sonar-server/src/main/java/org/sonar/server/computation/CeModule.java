@@ -28,6 +28,8 @@ import org.sonar.server.computation.configuration.CeConfigurationImpl;
 import org.sonar.server.computation.dbcleaner.IndexPurgeListener;
 import org.sonar.server.computation.dbcleaner.ProjectCleaner;
 import org.sonar.server.computation.monitoring.CeDatabaseMBeanImpl;
+import org.sonar.server.computation.monitoring.CeIndexingMBeanImpl;
+import org.sonar.server.computation.monitoring.CeNotificationsMBeanImpl;
 
 /**
  * Globally available components in CE
@@ -39,6 +41,8 @@ public class CeModule extends Module {
       CeConfigurationImpl.class,
       CeLogging.class,
       CeDatabaseMBeanImpl.class,
+      CeIndexingMBeanImpl.class,
+      CeNotificationsMBeanImpl.class,
       SystemInfoHttpServer.class,
       new ProcessStateSystemInfo("Compute Engine State"),
 
@@ -25,6 +25,8 @@ import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
 import org.sonar.server.computation.monitoring.CeTasksMBeanImpl;
 import org.sonar.server.computation.queue.CeQueueCleaner;
 import org.sonar.server.computation.queue.CeQueueInitializer;
+import org.sonar.server.computation.queue.CeTaskAdmissionController;
+import org.sonar.server.computation.queue.CeTaskAvailabilitySignal;
 import org.sonar.server.computation.queue.InternalCeQueueImpl;
 
 public class CeQueueModule extends Module {
@@ -33,6 +35,8 @@ public class CeQueueModule extends Module {
     add(
       // queue state
       InternalCeQueueImpl.class,
+      CeTaskAdmissionController.class,
+      CeTaskAvailabilitySignal.class,
 
       // queue monitoring
       CEQueueStatusImpl.class,
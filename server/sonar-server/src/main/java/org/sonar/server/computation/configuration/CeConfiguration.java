@@ -31,4 +31,18 @@ public interface CeConfiguration {
    * when previous one had nothing to do.
    */
   long getQueuePollingDelay();
+
+  /**
+   * The maximum delay in milliseconds before calling another {@link org.sonar.server.computation.taskprocessor.CeWorkerCallable}
+   * when the previous ones had nothing to do. The polling delay doubles, from {@link #getQueuePollingDelay()} up to
+   * this value, for each consecutive empty poll.
+   */
+  long getQueuePollingMaxDelay();
+
+  /**
+   * The maximum size in bytes of the reports of the tasks being processed concurrently, used to estimate the memory
+   * these tasks need. A task whose report would exceed this budget is started only once enough tasks have completed.
+   * {@code 0} means there is no limit.
+   */
+  long getMaxInProgressReportSize();
 }
@@ -30,11 +30,15 @@ import static java.lang.String.format;
 
 /**
  * Immutable implementation of {@link CeConfiguration} which takes value returned by
- * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY} and
- * always returns {@link #DEFAULT_QUEUE_POLLING_DELAY} when {@link CeConfiguration#getQueuePollingDelay()} is called.
+ * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY},
+ * value returned by {@link CeConfiguration#getMaxInProgressReportSize()} from property
+ * {@link CeConfigurationImpl#CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY} (in MB) and
+ * always returns {@link #DEFAULT_QUEUE_POLLING_DELAY} when {@link CeConfiguration#getQueuePollingDelay()} is called
+ * and {@link #DEFAULT_QUEUE_POLLING_MAX_DELAY} when {@link CeConfiguration#getQueuePollingMaxDelay()} is called.
  */
 public class CeConfigurationImpl implements CeConfiguration, Startable {
   public static final String CE_WORKERS_COUNT_PROPERTY = "sonar.ce.workerCount";
+  public static final String CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY = "sonar.ce.maxInProgressReportSizeInMb";
 
   private static final Logger LOG = Loggers.get(CeConfigurationImpl.class);
 
@@ -43,35 +47,49 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
   // 2 seconds
   @VisibleForTesting
   protected static final long DEFAULT_QUEUE_POLLING_DELAY = 2 * 1000L;
+  // 10 seconds
+  @VisibleForTesting
+  protected static final long DEFAULT_QUEUE_POLLING_MAX_DELAY = 10 * 1000L;
+  // no limit
+  @VisibleForTesting
+  protected static final long DEFAULT_MAX_IN_PROGRESS_REPORT_SIZE = 0L;
+  private static final long ONE_MB = 1024L * 1024L;
 
   private final int workerCount;
+  private final long maxInProgressReportSize;
 
   public CeConfigurationImpl(Settings settings) {
     String workerCountAsStr = settings.getString(CE_WORKERS_COUNT_PROPERTY);
     if (workerCountAsStr == null || workerCountAsStr.isEmpty()) {
       this.workerCount = DEFAULT_WORKER_COUNT;
     } else {
-      this.workerCount = parseStringValue(workerCountAsStr);
+      this.workerCount = parseStringValue(workerCountAsStr, CE_WORKERS_COUNT_PROPERTY);
+    }
+    String maxReportSizeAsStr = settings.getString(CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY);
+    if (maxReportSizeAsStr == null || maxReportSizeAsStr.isEmpty()) {
+      this.maxInProgressReportSize = DEFAULT_MAX_IN_PROGRESS_REPORT_SIZE;
+    } else {
+      this.maxInProgressReportSize = parseStringValue(maxReportSizeAsStr, CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY) * ONE_MB;
     }
   }
 
-  private static int parseStringValue(String workerCountAsStr) {
+  private static int parseStringValue(String valueAsStr, String propertyKey) {
     try {
-      int value = Integer.parseInt(workerCountAsStr);
+      int value = Integer.parseInt(valueAsStr);
       if (value < 1) {
-        throw parsingError(workerCountAsStr);
+        throw parsingError(valueAsStr, propertyKey);
       }
       return value;
     } catch (NumberFormatException e) {
-      throw parsingError(workerCountAsStr);
+      throw parsingError(valueAsStr, propertyKey);
     }
   }
 
-  private static MessageException parsingError(String workerCountAsStr) {
+  private static MessageException parsingError(String valueAsStr, String propertyKey) {
     return MessageException.of(format(
       "value '%s' of property %s is invalid. It must an integer strictly greater than 0.",
-      workerCountAsStr,
-      CE_WORKERS_COUNT_PROPERTY)
+      valueAsStr,
+      propertyKey)
       );
   }
 
@@ -80,6 +98,9 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
     if (this.workerCount > 1) {
       LOG.info("Compute Engine will use {} concurrent workers to process tasks", this.workerCount);
     }
+    if (this.maxInProgressReportSize > 0) {
+      LOG.info("Compute Engine will process concurrently tasks with reports up to {} MB in total", this.maxInProgressReportSize / ONE_MB);
+    }
   }
 
   @Override
@@ -96,4 +117,14 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
   public long getQueuePollingDelay() {
     return DEFAULT_QUEUE_POLLING_DELAY;
   }
+
+  @Override
+  public long getQueuePollingMaxDelay() {
+    return DEFAULT_QUEUE_POLLING_MAX_DELAY;
+  }
+
+  @Override
+  public long getMaxInProgressReportSize() {
+    return maxInProgressReportSize;
+  }
 }
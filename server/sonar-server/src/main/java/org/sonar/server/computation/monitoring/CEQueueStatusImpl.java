@@ -34,6 +34,8 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private final AtomicLong error = new AtomicLong(0);
   private final AtomicLong success = new AtomicLong(0);
   private final AtomicLong processingTime = new AtomicLong(0);
+  private final AtomicLong waitingTime = new AtomicLong(0);
+  private final AtomicLong maxWaitingTime = new AtomicLong(0);
 
   public CEQueueStatusImpl(DbClient dbClient) {
     this.dbClient = dbClient;
@@ -44,6 +46,16 @@ public class CEQueueStatusImpl implements CEQueueStatus {
     return inProgress.incrementAndGet();
   }
 
+  @Override
+  public long addWaitingTime(long waitingTimeInMs) {
+    checkArgument(waitingTimeInMs >= 0, "Waiting time can not be < 0");
+    long max = maxWaitingTime.get();
+    while (waitingTimeInMs > max && !maxWaitingTime.compareAndSet(max, waitingTimeInMs)) {
+      max = maxWaitingTime.get();
+    }
+    return waitingTime.addAndGet(waitingTimeInMs);
+  }
+
   @Override
   public long addError(long processingTimeInMs) {
     addProcessingTime(processingTimeInMs);
@@ -89,4 +101,14 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   public long getProcessingTime() {
     return processingTime.get();
   }
+
+  @Override
+  public long getWaitingTime() {
+    return waitingTime.get();
+  }
+
+  @Override
+  public long getMaxWaitingTime() {
+    return maxWaitingTime.get();
+  }
 }
@@ -0,0 +1,65 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+public interface CeIndexingMBean {
+
+  String OBJECT_NAME = "SonarQube:name=ComputeEngineIndexing";
+
+  /**
+   * Count of documents successfully indexed in Elasticsearch since startup.
+   */
+  long getIndexedDocs();
+
+  /**
+   * Size in bytes of the bulk requests sent to Elasticsearch since startup.
+   */
+  long getIndexedBytes();
+
+  /**
+   * Count of documents which indexing failed since startup.
+   */
+  long getFailedDocs();
+
+  /**
+   * Count of bulk requests rejected by Elasticsearch since startup.
+   */
+  long getRejectedRequests();
+
+  /**
+   * Count of documents read from database but not yet added to a bulk request.
+   */
+  long getQueueDepth();
+
+  /**
+   * Current maximum size in bytes of bulk requests, which adapts to the latency of Elasticsearch.
+   */
+  long getFlushByteSize();
+
+  /**
+   * Throughput of the last bulk indexing, in documents per second.
+   */
+  long getDocsPerSecond();
+
+  /**
+   * Throughput of the last bulk indexing, in bytes per second.
+   */
+  long getBytesPerSecond();
+}
@@ -0,0 +1,102 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
+import org.sonar.process.systeminfo.SystemInfoSection;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+import org.sonar.server.es.BulkIndexerStats;
+
+public class CeIndexingMBeanImpl implements CeIndexingMBean, Startable, SystemInfoSection {
+  private final BulkIndexerStats stats;
+
+  public CeIndexingMBeanImpl(BulkIndexerStats stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  /**
+   * Unregister, if needed
+   */
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  @Override
+  public long getIndexedDocs() {
+    return stats.getIndexedDocs();
+  }
+
+  @Override
+  public long getIndexedBytes() {
+    return stats.getIndexedBytes();
+  }
+
+  @Override
+  public long getFailedDocs() {
+    return stats.getFailedDocs();
+  }
+
+  @Override
+  public long getRejectedRequests() {
+    return stats.getRejectedRequests();
+  }
+
+  @Override
+  public long getQueueDepth() {
+    return stats.getQueueDepth();
+  }
+
+  @Override
+  public long getFlushByteSize() {
+    return stats.getFlushByteSize();
+  }
+
+  @Override
+  public long getDocsPerSecond() {
+    return stats.getDocsPerSecond();
+  }
+
+  @Override
+  public long getBytesPerSecond() {
+    return stats.getBytesPerSecond();
+  }
+
+  @Override
+  public ProtobufSystemInfo.Section toProtobuf() {
+    ProtobufSystemInfo.Section.Builder builder = ProtobufSystemInfo.Section.newBuilder();
+    builder.setName("Compute Engine Indexing");
+    builder.addAttributesBuilder().setKey("Indexed Docs").setLongValue(getIndexedDocs()).build();
+    builder.addAttributesBuilder().setKey("Indexed Bytes").setLongValue(getIndexedBytes()).build();
+    builder.addAttributesBuilder().setKey("Failed Docs").setLongValue(getFailedDocs()).build();
+    builder.addAttributesBuilder().setKey("Rejected Requests").setLongValue(getRejectedRequests()).build();
+    builder.addAttributesBuilder().setKey("Queue Depth").setLongValue(getQueueDepth()).build();
+    builder.addAttributesBuilder().setKey("Flush Size (bytes)").setLongValue(getFlushByteSize()).build();
+    builder.addAttributesBuilder().setKey("Docs per Second").setLongValue(getDocsPerSecond()).build();
+    builder.addAttributesBuilder().setKey("Bytes per Second").setLongValue(getBytesPerSecond()).build();
+    return builder.build();
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
+import org.sonar.process.systeminfo.SystemInfoSection;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+import org.sonar.server.notification.NotificationDeliveryStats;
+
+public class CeNotificationsMBeanImpl implements CeNotificationsMBean, Startable, SystemInfoSection {
+  private final NotificationDeliveryStats stats;
+
+  public CeNotificationsMBeanImpl(NotificationDeliveryStats stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  /**
+   * Unregister, if needed
+   */
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
+  }
+
+  @Override
+  public long getDelivered() {
+    return stats.getDelivered();
+  }
+
+  @Override
+  public long getFailed() {
+    return stats.getFailed();
+  }
+
+  @Override
+  public long getPendingDeliveries() {
+    return stats.getPendingDeliveries();
+  }
+
+  @Override
+  public ProtobufSystemInfo.Section toProtobuf() {
+    ProtobufSystemInfo.Section.Builder builder = ProtobufSystemInfo.Section.newBuilder();
+    builder.setName("Compute Engine Notifications");
+    builder.addAttributesBuilder().setKey("Delivered").setLongValue(getDelivered()).build();
+    builder.addAttributesBuilder().setKey("Failed").setLongValue(getFailed()).build();
+    builder.addAttributesBuilder().setKey("Pending Deliveries").setLongValue(getPendingDeliveries()).build();
+    stats.getDeliveredByChannel().forEach((channel, count) -> builder.addAttributesBuilder().setKey("Delivered by " + channel).setLongValue(count).build());
+    stats.getFailedByChannel().forEach((channel, count) -> builder.addAttributesBuilder().setKey("Failed by " + channel).setLongValue(count).build());
+    return builder.build();
+  }
+}
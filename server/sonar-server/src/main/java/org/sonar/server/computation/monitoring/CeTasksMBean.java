@@ -48,6 +48,31 @@ public interface CeTasksMBean {
    */
   long getProcessingTime();
 
+  /**
+   * Time batch reports processed since startup spent waiting in the queue, in milliseconds.
+   */
+  long getWaitingTime();
+
+  /**
+   * Longest time a batch report processed since startup spent waiting in the queue, in milliseconds.
+   */
+  long getMaxWaitingTime();
+
+  /**
+   * Count of tasks admitted for processing since startup.
+   */
+  long getAdmittedCount();
+
+  /**
+   * Count of times a pending task has been deferred because its report exceeded the available budget, since startup.
+   */
+  long getDeferredCount();
+
+  /**
+   * Size in bytes of the reports of the tasks under processing.
+   */
+  long getInProgressReportSize();
+
   /**
    * Configured number of Workers.
    */
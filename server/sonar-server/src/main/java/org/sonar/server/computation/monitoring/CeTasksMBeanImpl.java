@@ -25,14 +25,17 @@ import org.sonar.process.Jmx;
 import org.sonar.process.systeminfo.SystemInfoSection;
 import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
 import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.queue.CeTaskAdmissionController;
 
 public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSection {
   private final CEQueueStatus queueStatus;
   private final CeConfiguration ceConfiguration;
+  private final CeTaskAdmissionController admissionController;
 
-  public CeTasksMBeanImpl(CEQueueStatus queueStatus, CeConfiguration ceConfiguration) {
+  public CeTasksMBeanImpl(CEQueueStatus queueStatus, CeConfiguration ceConfiguration, CeTaskAdmissionController admissionController) {
     this.queueStatus = queueStatus;
     this.ceConfiguration = ceConfiguration;
+    this.admissionController = admissionController;
   }
 
   @Override
@@ -73,6 +76,31 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     return queueStatus.getProcessingTime();
   }
 
+  @Override
+  public long getWaitingTime() {
+    return queueStatus.getWaitingTime();
+  }
+
+  @Override
+  public long getMaxWaitingTime() {
+    return queueStatus.getMaxWaitingTime();
+  }
+
+  @Override
+  public long getAdmittedCount() {
+    return admissionController.getAdmittedCount();
+  }
+
+  @Override
+  public long getDeferredCount() {
+    return admissionController.getDeferredCount();
+  }
+
+  @Override
+  public long getInProgressReportSize() {
+    return admissionController.getInProgressReportSize();
+  }
+
   @Override
   public int getWorkerCount() {
     return ceConfiguration.getWorkerCount();
@@ -87,6 +115,11 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     builder.addAttributesBuilder().setKey("Processed With Error").setLongValue(getErrorCount()).build();
     builder.addAttributesBuilder().setKey("Processed With Success").setLongValue(getSuccessCount()).build();
     builder.addAttributesBuilder().setKey("Processing Time (ms)").setLongValue(getProcessingTime()).build();
+    builder.addAttributesBuilder().setKey("Waiting Time (ms)").setLongValue(getWaitingTime()).build();
+    builder.addAttributesBuilder().setKey("Max Waiting Time (ms)").setLongValue(getMaxWaitingTime()).build();
+    builder.addAttributesBuilder().setKey("Admitted").setLongValue(getAdmittedCount()).build();
+    builder.addAttributesBuilder().setKey("Deferred").setLongValue(getDeferredCount()).build();
+    builder.addAttributesBuilder().setKey("In Progress Report Size (bytes)").setLongValue(getInProgressReportSize()).build();
     builder.addAttributesBuilder().setKey("Worker Count").setLongValue(getWorkerCount()).build();
     return builder.build();
   }
@@ -0,0 +1,180 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.queue;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.report.ReportFiles;
+import org.sonar.server.computation.configuration.CeConfiguration;
+
+/**
+ * Decides which of the pending tasks eligible for peek can be started, based on the size of their report, so that the
+ * reports of the tasks in progress never exceed {@link CeConfiguration#getMaxInProgressReportSize()} in total.
+ * <p>
+ * A task is always admitted when no other task is in progress, whatever the size of its report, and so is a task
+ * which has no report. Smaller tasks are
+ * admitted ahead of a task which does not fit in the budget, until this task has been deferred
+ * {@link #MAX_DEFERRALS} times: no other task is then admitted before it, so that it is not starved by a continuous
+ * flow of smaller tasks.
+ * </p>
+ */
+@ComputeEngineSide
+public class CeTaskAdmissionController {
+  private static final Logger LOG = Loggers.get(CeTaskAdmissionController.class);
+
+  @VisibleForTesting
+  static final int MAX_DEFERRALS = 10;
+
+  private final CeConfiguration ceConfiguration;
+  private final ReportFiles reportFiles;
+
+  // state, guarded by this
+  private final Map<String, Long> reportSizeByInProgressTaskUuid = new HashMap<>();
+  private final Map<String, Integer> deferralsByTaskUuid = new HashMap<>();
+  private long inProgressReportSize = 0;
+  @CheckForNull
+  private String reservedTaskUuid;
+  private long admittedCount = 0;
+  private long deferredCount = 0;
+
+  public CeTaskAdmissionController(CeConfiguration ceConfiguration, ReportFiles reportFiles) {
+    this.ceConfiguration = ceConfiguration;
+    this.reportFiles = reportFiles;
+  }
+
+  /**
+   * Admits the first task, in the specified order, which fits in the budget of report size.
+   *
+   * @param candidateTaskUuids uuids of the tasks eligible for peek, oldest first
+   * @return the uuid of the admitted task, if any
+   */
+  public synchronized Optional<String> admit(List<String> candidateTaskUuids) {
+    deferralsByTaskUuid.keySet().retainAll(candidateTaskUuids);
+    if (reservedTaskUuid != null && !candidateTaskUuids.contains(reservedTaskUuid)) {
+      reservedTaskUuid = null;
+    }
+    for (String taskUuid : candidateTaskUuids) {
+      if (reservedTaskUuid != null && !reservedTaskUuid.equals(taskUuid)) {
+        continue;
+      }
+      long reportSize = estimateReportSize(taskUuid);
+      if (fits(reportSize)) {
+        admit(taskUuid, reportSize);
+        return Optional.of(taskUuid);
+      }
+      if (defer(taskUuid, reportSize)) {
+        return Optional.absent();
+      }
+    }
+    return Optional.absent();
+  }
+
+  private long estimateReportSize(String taskUuid) {
+    // length is 0 if the task has no report
+    return reportFiles.fileForUuid(taskUuid).length();
+  }
+
+  private boolean fits(long reportSize) {
+    long maxReportSize = ceConfiguration.getMaxInProgressReportSize();
+    return maxReportSize <= 0 || reportSize == 0 || inProgressReportSize == 0 || inProgressReportSize + reportSize <= maxReportSize;
+  }
+
+  private void admit(String taskUuid, long reportSize) {
+    reportSizeByInProgressTaskUuid.put(taskUuid, reportSize);
+    inProgressReportSize += reportSize;
+    deferralsByTaskUuid.remove(taskUuid);
+    if (taskUuid.equals(reservedTaskUuid)) {
+      reservedTaskUuid = null;
+    }
+  }
+
+  /**
+   * @return {@code true} if the task is now reserved, ie. no other task must be admitted before it
+   */
+  private boolean defer(String taskUuid, long reportSize) {
+    deferredCount++;
+    int deferrals = deferralsByTaskUuid.containsKey(taskUuid) ? deferralsByTaskUuid.get(taskUuid) + 1 : 1;
+    deferralsByTaskUuid.put(taskUuid, deferrals);
+    if (deferrals == 1) {
+      LOG.debug("Task {} deferred, its report of {} bytes exceeds the available budget", taskUuid, reportSize);
+    }
+    if (deferrals >= MAX_DEFERRALS) {
+      reservedTaskUuid = taskUuid;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records that the specified admitted task has actually been started. An admitted task which could not be started
+   * must be {@link #release(String) released} instead.
+   */
+  public synchronized void confirm(String taskUuid) {
+    if (reportSizeByInProgressTaskUuid.containsKey(taskUuid)) {
+      admittedCount++;
+    }
+  }
+
+  /**
+   * Releases the budget used by the specified task. Does nothing if the task has not been admitted.
+   */
+  public synchronized void release(String taskUuid) {
+    Long reportSize = reportSizeByInProgressTaskUuid.remove(taskUuid);
+    if (reportSize != null) {
+      inProgressReportSize -= reportSize;
+    }
+  }
+
+  public synchronized void releaseAll() {
+    reportSizeByInProgressTaskUuid.clear();
+    deferralsByTaskUuid.clear();
+    inProgressReportSize = 0;
+    reservedTaskUuid = null;
+  }
+
+  /**
+   * Size in bytes of the reports of the admitted tasks which are still in progress.
+   */
+  public synchronized long getInProgressReportSize() {
+    return inProgressReportSize;
+  }
+
+  /**
+   * Count of admitted tasks which have been started, since startup.
+   */
+  public synchronized long getAdmittedCount() {
+    return admittedCount;
+  }
+
+  /**
+   * Count of times a task eligible for peek has been deferred because its report did not fit in the budget, since
+   * startup.
+   */
+  public synchronized long getDeferredCount() {
+    return deferredCount;
+  }
+}
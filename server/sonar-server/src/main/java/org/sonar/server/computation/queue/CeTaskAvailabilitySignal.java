@@ -0,0 +1,47 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.queue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.sonar.api.ce.ComputeEngineSide;
+
+/**
+ * In-process signal raised when a task may have become available to the workers of the Compute Engine: a task has been
+ * submitted from the Compute Engine itself or a task in progress has been removed from the queue (which may allow
+ * tasks deferred by {@link CeTaskAdmissionController} to be admitted).
+ * <p>
+ * Tasks submitted by other processes (such as the Web Server) are not signaled and are detected by polling.
+ * </p>
+ */
+@ComputeEngineSide
+public class CeTaskAvailabilitySignal {
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+  public void addListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  public void signal() {
+    for (Runnable listener : listeners) {
+      listener.run();
+    }
+  }
+}
@@ -19,7 +19,10 @@
  */
 package org.sonar.server.computation.queue;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import org.sonar.api.ce.ComputeEngineSide;
@@ -29,6 +32,7 @@ import org.sonar.ce.queue.CeQueueImpl;
 import org.sonar.ce.queue.CeQueueListener;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.CeTaskResult;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -39,20 +43,44 @@ import static java.lang.String.format;
 
 @ComputeEngineSide
 public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue {
+  @VisibleForTesting
+  static final int MAX_PEEK_CANDIDATES = 20;
+  private static final int MAX_PEEK_ATTEMPTS = 5;
 
   private final System2 system2;
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
+  private final CeTaskAdmissionController admissionController;
+  private final CeTaskAvailabilitySignal availabilitySignal;
 
   // state
   private AtomicBoolean peekPaused = new AtomicBoolean(false);
 
   public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory,
-    CEQueueStatus queueStatus, CeQueueListener[] listeners) {
+    CEQueueStatus queueStatus, CeTaskAdmissionController admissionController, CeTaskAvailabilitySignal availabilitySignal,
+    CeQueueListener[] listeners) {
     super(dbClient, uuidFactory, listeners);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
+    this.admissionController = admissionController;
+    this.availabilitySignal = availabilitySignal;
+  }
+
+  @Override
+  public CeTask submit(CeTaskSubmit submission) {
+    CeTask task = super.submit(submission);
+    availabilitySignal.signal();
+    return task;
+  }
+
+  @Override
+  public List<CeTask> massSubmit(Collection<CeTaskSubmit> submissions) {
+    List<CeTask> tasks = super.massSubmit(submissions);
+    if (!tasks.isEmpty()) {
+      availabilitySignal.signal();
+    }
+    return tasks;
   }
 
   @Override
@@ -62,22 +90,66 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     }
     DbSession dbSession = dbClient.openSession(false);
     try {
-      Optional<CeQueueDto> dto = dbClient.ceQueueDao().peek(dbSession);
-      CeTask task = null;
-      if (dto.isPresent()) {
-        task = loadTask(dbSession, dto.get());
-        queueStatus.addInProgress();
+      Optional<CeQueueDto> dto = peekAdmittedTask(dbSession);
+      if (!dto.isPresent()) {
+        return Optional.absent();
       }
-      return Optional.fromNullable(task);
+      CeTask task = loadAdmittedTask(dbSession, dto.get());
+      queueStatus.addInProgress();
+      addWaitingTime(dto.get());
+      return Optional.of(task);
 
     } finally {
       dbClient.closeSession(dbSession);
     }
   }
 
+  private CeTask loadAdmittedTask(DbSession dbSession, CeQueueDto dto) {
+    try {
+      return loadTask(dbSession, dto);
+    } catch (RuntimeException e) {
+      admissionController.release(dto.getUuid());
+      throw e;
+    }
+  }
+
+  /**
+   * Candidates are selected again each time the admitted task can not be peeked, as another worker may have started
+   * a task of the same component in the meantime.
+   */
+  private Optional<CeQueueDto> peekAdmittedTask(DbSession dbSession) {
+    for (int attempt = 0; attempt < MAX_PEEK_ATTEMPTS; attempt++) {
+      List<String> candidateUuids = dbClient.ceQueueDao().selectEligibleForPeek(dbSession, MAX_PEEK_CANDIDATES);
+      if (candidateUuids.isEmpty()) {
+        return Optional.absent();
+      }
+      Optional<String> admittedUuid = admissionController.admit(candidateUuids);
+      if (!admittedUuid.isPresent()) {
+        return Optional.absent();
+      }
+      Optional<CeQueueDto> dto = dbClient.ceQueueDao().tryToPeek(dbSession, admittedUuid.get());
+      if (dto.isPresent()) {
+        admissionController.confirm(admittedUuid.get());
+        return dto;
+      }
+      // task has been peeked by another worker or canceled in the meantime
+      admissionController.release(admittedUuid.get());
+    }
+    return Optional.absent();
+  }
+
+  private void addWaitingTime(CeQueueDto dto) {
+    Long startedAt = dto.getStartedAt();
+    if (startedAt != null) {
+      queueStatus.addWaitingTime(Math.max(0L, startedAt - dto.getCreatedAt()));
+    }
+  }
+
   @Override
   public int clear() {
-    return cancelAll(true);
+    int count = cancelAll(true);
+    admissionController.releaseAll();
+    return count;
   }
 
   @Override
@@ -96,6 +168,8 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
 
     } finally {
       dbClient.closeSession(dbSession);
+      admissionController.release(task.getUuid());
+      availabilitySignal.signal();
     }
   }
 
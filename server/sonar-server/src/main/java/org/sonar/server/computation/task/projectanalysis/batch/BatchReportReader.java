@@ -36,6 +36,13 @@ public interface BatchReportReader {
   @CheckForNull
   ScannerReport.Changesets readChangesets(int componentRef);
 
+  /**
+   * Fingerprints of the line data of a file. Returns {@code null} if the file has no source or if
+   * the report was generated by a scanner which does not compute the fingerprints.
+   */
+  @CheckForNull
+  ScannerReport.LineDataHashes readLineDataHashes(int fileRef);
+
   ScannerReport.Component readComponent(int componentRef);
 
   CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef);
@@ -0,0 +1,34 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+/**
+ * A {@link TypeAwareVisitor} which declares that {@link #visitFile(Component)} and {@link #visitAny(Component)} can be
+ * called concurrently for different components of type {@link Component.Type#FILE}.
+ * <p>
+ * When {@link VisitorsCrawler} is given a {@link java.util.concurrent.ForkJoinPool}, the files of a directory are
+ * visited in parallel by such visitors. Components of any other type are still visited by a single thread, after all
+ * their children have been visited when the visitor is {@link ComponentVisitor.Order#POST_ORDER}, so that data
+ * computed on files can be aggregated on their parents without any further synchronization than the one required
+ * to record it.
+ * </p>
+ */
+public interface ThreadSafeFileVisitor extends TypeAwareVisitor {
+}
@@ -23,8 +23,15 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Loggers;
@@ -36,18 +43,35 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * This crawler make any number of {@link TypeAwareVisitor} or {@link PathAwareVisitor} defined in a list visit a component tree, component per component, in the order of the list
+ * <p>
+ * When a {@link ForkJoinPool} is provided, the files of a component are visited in parallel by the
+ * {@link ThreadSafeFileVisitor}s. Each file is still visited by the visitors in the order of the list: the list is
+ * split in consecutive groups of thread-safe and non thread-safe visitors, and each group visits all the files
+ * (concurrently or sequentially) before the next one starts. The parent component is visited once all the groups
+ * are done.
+ * </p>
  */
 public class VisitorsCrawler implements ComponentCrawler {
 
   private final Map<ComponentVisitor, VisitorDuration> visitorCumulativeDurations;
   private final List<VisitorWrapper> preOrderVisitorWrappers;
   private final List<VisitorWrapper> postOrderVisitorWrappers;
+  @CheckForNull
+  private final ForkJoinPool forkJoinPool;
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors) {
+    this(visitors, null);
+  }
+
+  /**
+   * @param forkJoinPool pool used to visit files in parallel, files are visited sequentially when {@code null}
+   */
+  public VisitorsCrawler(Iterable<ComponentVisitor> visitors, @Nullable ForkJoinPool forkJoinPool) {
     List<VisitorWrapper> visitorWrappers = from(visitors).transform(ToVisitorWrapper.INSTANCE).toList();
     this.preOrderVisitorWrappers = from(visitorWrappers).filter(MathPreOrderVisitor.INSTANCE).toList();
     this.postOrderVisitorWrappers = from(visitorWrappers).filter(MatchPostOrderVisitor.INSTANCE).toList();
     this.visitorCumulativeDurations = from(visitors).toMap(VisitorWrapperToInitialDuration.INSTANCE);
+    this.forkJoinPool = forkJoinPool;
   }
 
   public Map<ComponentVisitor, Long> getCumulativeDurations() {
@@ -56,6 +80,21 @@ public class VisitorsCrawler implements ComponentCrawler {
       );
   }
 
+  /**
+   * Ratio between the time spent by each {@link ThreadSafeFileVisitor} visiting files in parallel and the elapsed
+   * time of these visits. Visitors which did not visit any file in parallel are not included.
+   */
+  public Map<ComponentVisitor, Double> getParallelSpeedups() {
+    ImmutableMap.Builder<ComponentVisitor, Double> builder = ImmutableMap.builder();
+    for (Map.Entry<ComponentVisitor, VisitorDuration> entry : visitorCumulativeDurations.entrySet()) {
+      VisitorDuration duration = entry.getValue();
+      if (duration.getParallelElapsedNanos() > 0) {
+        builder.put(entry.getKey(), (double) duration.getParallelCumulativeNanos() / duration.getParallelElapsedNanos());
+      }
+    }
+    return builder.build();
+  }
+
   @Override
   public void visit(final Component component) {
     try {
@@ -96,8 +135,162 @@ public class VisitorsCrawler implements ComponentCrawler {
   }
 
   private void visitChildren(Component component) {
+    if (forkJoinPool == null) {
+      for (Component child : component.getChildren()) {
+        visit(child);
+      }
+      return;
+    }
+
+    List<Component> files = new ArrayList<>();
     for (Component child : component.getChildren()) {
-      visit(child);
+      if (child.getType() == Component.Type.FILE) {
+        files.add(child);
+      } else {
+        visitFiles(files);
+        files.clear();
+        visit(child);
+      }
+    }
+    visitFiles(files);
+  }
+
+  private void visitFiles(List<Component> files) {
+    List<VisitorWrapper> fileVisitorWrappers = from(concat(preOrderVisitorWrappers, postOrderVisitorWrappers))
+      .filter(MatchVisitorMaxDepth.forType(Component.Type.FILE))
+      .toList();
+    if (files.isEmpty() || !from(fileVisitorWrappers).anyMatch(MatchThreadSafeFileVisitor.INSTANCE)) {
+      for (Component file : files) {
+        visit(file);
+      }
+      return;
+    }
+
+    for (List<VisitorWrapper> group : splitByThreadSafety(fileVisitorWrappers)) {
+      if (MatchThreadSafeFileVisitor.INSTANCE.apply(group.get(0))) {
+        visitFilesInParallel(files, group);
+      } else {
+        visitFilesSequentially(files, group);
+      }
+    }
+  }
+
+  private static List<List<VisitorWrapper>> splitByThreadSafety(List<VisitorWrapper> visitorWrappers) {
+    List<List<VisitorWrapper>> groups = new ArrayList<>();
+    List<VisitorWrapper> group = new ArrayList<>();
+    for (VisitorWrapper visitorWrapper : visitorWrappers) {
+      if (!group.isEmpty() && MatchThreadSafeFileVisitor.INSTANCE.apply(group.get(0)) != MatchThreadSafeFileVisitor.INSTANCE.apply(visitorWrapper)) {
+        groups.add(group);
+        group = new ArrayList<>();
+      }
+      group.add(visitorWrapper);
+    }
+    groups.add(group);
+    return groups;
+  }
+
+  private void visitFilesSequentially(List<Component> files, List<VisitorWrapper> visitorWrappers) {
+    for (Component file : files) {
+      try {
+        for (VisitorWrapper visitorWrapper : visitorWrappers) {
+          visitorWrapper.beforeComponent(file);
+        }
+        for (VisitorWrapper visitorWrapper : visitorWrappers) {
+          visitNode(file, visitorWrapper);
+        }
+        for (VisitorWrapper visitorWrapper : visitorWrappers) {
+          visitorWrapper.afterComponent(file);
+        }
+      } catch (RuntimeException e) {
+        VisitException.rethrowOrWrap(e, "Visit of Component {key=%s,type=%s} failed", file.getKey(), file.getType());
+      }
+    }
+  }
+
+  private void visitFilesInParallel(List<Component> files, List<VisitorWrapper> visitorWrappers) {
+    ParallelFilesVisit filesVisit = new ParallelFilesVisit(files, visitorWrappers);
+    long start = System.nanoTime();
+    requireNonNull(forkJoinPool).invoke(filesVisit.new FilesVisitAction(0, files.size()));
+    long elapsed = System.nanoTime() - start;
+
+    RuntimeException failure = filesVisit.failure.get();
+    if (failure != null) {
+      throw failure;
+    }
+    filesVisit.recordDurations(elapsed);
+  }
+
+  /**
+   * Visit of a list of files by a group of {@link ThreadSafeFileVisitor}s, forked in halves until a single file
+   * remains.
+   */
+  private class ParallelFilesVisit {
+    private final List<Component> files;
+    private final List<VisitorWrapper> visitorWrappers;
+    private final AtomicLongArray nanosByVisitor;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private ParallelFilesVisit(List<Component> files, List<VisitorWrapper> visitorWrappers) {
+      this.files = files;
+      this.visitorWrappers = visitorWrappers;
+      this.nanosByVisitor = new AtomicLongArray(visitorWrappers.size());
+    }
+
+    private void visitFile(Component file) {
+      if (failure.get() != null) {
+        return;
+      }
+      try {
+        for (int i = 0; i < visitorWrappers.size(); i++) {
+          long start = System.nanoTime();
+          visitNode(file, visitorWrappers.get(i));
+          nanosByVisitor.addAndGet(i, System.nanoTime() - start);
+        }
+      } catch (RuntimeException e) {
+        try {
+          VisitException.rethrowOrWrap(e, "Visit of Component {key=%s,type=%s} failed", file.getKey(), file.getType());
+        } catch (RuntimeException wrapped) {
+          failure.compareAndSet(null, wrapped);
+        }
+      }
+    }
+
+    /**
+     * Elapsed time is shared between visitors of the group in proportion of the time they spent visiting files.
+     */
+    private void recordDurations(long elapsedNanos) {
+      long totalNanos = 0;
+      for (int i = 0; i < nanosByVisitor.length(); i++) {
+        totalNanos += nanosByVisitor.get(i);
+      }
+      if (totalNanos == 0) {
+        return;
+      }
+      for (int i = 0; i < visitorWrappers.size(); i++) {
+        long nanos = nanosByVisitor.get(i);
+        visitorCumulativeDurations.get(visitorWrappers.get(i).getWrappedVisitor())
+          .incrementParallel(nanos, (long) ((double) elapsedNanos * nanos / totalNanos));
+      }
+    }
+
+    private class FilesVisitAction extends RecursiveAction {
+      private final int from;
+      private final int to;
+
+      private FilesVisitAction(int from, int to) {
+        this.from = from;
+        this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+        if (to - from == 1) {
+          visitFile(files.get(from));
+        } else if (to - from > 1) {
+          int middle = (from + to) >>> 1;
+          invokeAll(new FilesVisitAction(from, middle), new FilesVisitAction(middle, to));
+        }
+      }
     }
   }
 
@@ -170,7 +363,11 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
 
     public static MatchVisitorMaxDepth forComponent(Component component) {
-      return INSTANCES.get(component.getType());
+      return forType(component.getType());
+    }
+
+    public static MatchVisitorMaxDepth forType(Component.Type type) {
+      return INSTANCES.get(type);
     }
 
     @Override
@@ -198,15 +395,39 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
   }
 
+  private enum MatchThreadSafeFileVisitor implements Predicate<VisitorWrapper> {
+    INSTANCE;
+
+    @Override
+    public boolean apply(@Nonnull VisitorWrapper visitorWrapper) {
+      return visitorWrapper.getWrappedVisitor() instanceof ThreadSafeFileVisitor;
+    }
+  }
+
   private static final class VisitorDuration {
-    private long duration = 0;
+    private final AtomicLong duration = new AtomicLong(0);
+    private final AtomicLong parallelCumulativeNanos = new AtomicLong(0);
+    private final AtomicLong parallelElapsedNanos = new AtomicLong(0);
 
     public void increment(long duration) {
-      this.duration += duration;
+      this.duration.addAndGet(duration);
+    }
+
+    public void incrementParallel(long cumulativeNanos, long elapsedNanos) {
+      this.parallelCumulativeNanos.addAndGet(cumulativeNanos);
+      this.parallelElapsedNanos.addAndGet(elapsedNanos);
     }
 
     public long getDuration() {
-      return duration;
+      return duration.get();
+    }
+
+    public long getParallelCumulativeNanos() {
+      return parallelCumulativeNanos.get();
+    }
+
+    public long getParallelElapsedNanos() {
+      return parallelElapsedNanos.get();
     }
   }
 
@@ -82,6 +82,7 @@ import org.sonar.server.computation.task.projectanalysis.measure.MeasureComputer
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureComputersVisitor;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureToMeasureDto;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryBudget;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricModule;
 import org.sonar.server.computation.task.projectanalysis.period.PeriodsHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.api.posttask.PostProjectAnalysisTasksExecutor;
@@ -138,6 +139,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
 
       // File System
       new ComputationTempFolderProvider(),
+      MemoryBudget.class,
 
       MetricModule.class,
 
@@ -0,0 +1,272 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.duplication.DuplicationUnitDto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * Immutable file of duplication units, sorted by hash and read through a memory mapping.
+ * <p>
+ * Layout of the file:
+ * <ul>
+ *   <li>entries of {@link #ENTRY_SIZE} bytes (hash, analysis index, component index, index in file, start line, end line),
+ *   sorted by unsigned hash</li>
+ *   <li>the dictionary of the analysis and component UUIDs referenced by the entries</li>
+ *   <li>a footer with the offset of the dictionary, the number of UUIDs, the number of entries and a magic number</li>
+ * </ul>
+ * Only the entries are mapped, the dictionary is loaded on heap. Lookups do not change the state of the mapping,
+ * so an instance can be queried by concurrent threads, including while it's being closed.
+ */
+final class CloneIndexFile implements Closeable {
+
+  static final int ENTRY_SIZE = 8 + 5 * 4;
+  static final int MAX_ENTRIES = Integer.MAX_VALUE / ENTRY_SIZE;
+
+  private static final int MAGIC = 0x434c4e49;
+  private static final int FOOTER_SIZE = 8 + 4 + 4 + 4;
+  private static final Logger LOGGER = Loggers.get(CloneIndexFile.class);
+
+  private final File file;
+  // null when closed
+  @CheckForNull
+  private volatile ByteBuffer entries;
+  private final int entryCount;
+  private final String[] uuids;
+
+  private CloneIndexFile(File file, ByteBuffer entries, int entryCount, String[] uuids) {
+    this.file = file;
+    this.entries = entries;
+    this.entryCount = entryCount;
+    this.uuids = uuids;
+  }
+
+  static CloneIndexFile open(File file) {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      long length = raf.length();
+      checkState(length >= FOOTER_SIZE, "Clone index file is truncated: %s", file.getAbsolutePath());
+      raf.seek(length - FOOTER_SIZE);
+      long dictionaryOffset = raf.readLong();
+      int uuidCount = raf.readInt();
+      int entryCount = raf.readInt();
+      checkState(raf.readInt() == MAGIC && dictionaryOffset == (long) entryCount * ENTRY_SIZE,
+        "Clone index file is corrupted: %s", file.getAbsolutePath());
+
+      FileChannel channel = raf.getChannel();
+      ByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, dictionaryOffset);
+      String[] uuids = new String[uuidCount];
+      channel.position(dictionaryOffset);
+      DataInputStream dictionary = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      for (int i = 0; i < uuidCount; i++) {
+        uuids[i] = dictionary.readUTF();
+      }
+      return new CloneIndexFile(file, entries, entryCount, uuids);
+    } catch (IOException e) {
+      throw new IllegalStateException(format("Fail to open clone index file %s", file.getAbsolutePath()), e);
+    }
+  }
+
+  int size() {
+    return entryCount;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Sends to {@code consumer} the units of every hash of {@code sortedHashes}, which must be sorted by unsigned value.
+   * The file is traversed once: each hash is searched only after the position of the previous one.
+   *
+   * @return false if the file is closed, in which case no units are sent
+   */
+  boolean lookup(long[] sortedHashes, Consumer<DuplicationUnitDto> consumer) {
+    ByteBuffer buffer = entries;
+    if (buffer == null) {
+      return false;
+    }
+    int from = 0;
+    for (long hash : sortedHashes) {
+      int index = lowerBound(buffer, hash, from);
+      while (index < entryCount && hashAt(buffer, index) == hash) {
+        consumer.accept(unitAt(buffer, index, hash));
+        index++;
+      }
+      from = index;
+      if (from == entryCount) {
+        break;
+      }
+    }
+    return true;
+  }
+
+  private int lowerBound(ByteBuffer buffer, long hash, int from) {
+    int low = from;
+    int high = entryCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Long.compareUnsigned(hashAt(buffer, mid), hash) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static long hashAt(ByteBuffer buffer, int index) {
+    return buffer.getLong(index * ENTRY_SIZE);
+  }
+
+  private DuplicationUnitDto unitAt(ByteBuffer buffer, int index, long hash) {
+    int offset = index * ENTRY_SIZE + 8;
+    return new DuplicationUnitDto()
+      .setHash(CrossProjectCloneIndex.toHex(hash))
+      .setAnalysisUuid(uuids[buffer.getInt(offset)])
+      .setComponentUuid(uuids[buffer.getInt(offset + 4)])
+      .setIndexInFile(buffer.getInt(offset + 8))
+      .setStartLine(buffer.getInt(offset + 12))
+      .setEndLine(buffer.getInt(offset + 16));
+  }
+
+  /**
+   * Drops the reference to the mapping, which is then released by the garbage collector once the lookups in progress
+   * are finished, and deletes the file. Deletion can fail while the file is still mapped on some platforms, in which
+   * case the file is deleted when the JVM exits.
+   */
+  @Override
+  public void close() {
+    entries = null;
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      LOGGER.warn(format("Fail to delete clone index file %s", file.getAbsolutePath()), e);
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * Writes a {@link CloneIndexFile}. Units must be added by ascending unsigned hash.
+   */
+  static final class Writer implements Closeable {
+    private final File file;
+    private final DataOutputStream output;
+    private final Map<String, Integer> uuidIndexes = new HashMap<>();
+    private final List<String> uuids = new ArrayList<>();
+    private int entryCount = 0;
+    private long lastHash = 0L;
+
+    Writer(File file) {
+      this.file = file;
+      try {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to create clone index file %s", file.getAbsolutePath()), e);
+      }
+    }
+
+    void add(long hash, String analysisUuid, String componentUuid, int indexInFile, int startLine, int endLine) {
+      checkArgument(entryCount == 0 || Long.compareUnsigned(lastHash, hash) <= 0, "Units must be added by ascending hash");
+      checkState(entryCount < MAX_ENTRIES, "Clone index file can not contain more than %s units", MAX_ENTRIES);
+      try {
+        output.writeLong(hash);
+        output.writeInt(uuidIndex(analysisUuid));
+        output.writeInt(uuidIndex(componentUuid));
+        output.writeInt(indexInFile);
+        output.writeInt(startLine);
+        output.writeInt(endLine);
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to write clone index file %s", file.getAbsolutePath()), e);
+      }
+      lastHash = hash;
+      entryCount++;
+    }
+
+    int size() {
+      return entryCount;
+    }
+
+    File getFile() {
+      return file;
+    }
+
+    private int uuidIndex(String uuid) {
+      Integer index = uuidIndexes.get(uuid);
+      if (index == null) {
+        index = uuids.size();
+        uuidIndexes.put(uuid, index);
+        uuids.add(uuid);
+      }
+      return index;
+    }
+
+    CloneIndexFile finish() {
+      try {
+        for (String uuid : uuids) {
+          output.writeUTF(uuid);
+        }
+        output.writeLong((long) entryCount * ENTRY_SIZE);
+        output.writeInt(uuids.size());
+        output.writeInt(entryCount);
+        output.writeInt(MAGIC);
+        output.close();
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to write clone index file %s", file.getAbsolutePath()), e);
+      }
+      return open(file);
+    }
+
+    /**
+     * Closes the file without finishing it. Has no effect if {@link #finish()} has been called.
+     */
+    @Override
+    public void close() {
+      try {
+        output.close();
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to close clone index file %s", file.getAbsolutePath()), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,469 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.picocontainer.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.FileUtils;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.duplication.DuplicationUnitDto;
+import org.sonar.duplications.index.DataUtils;
+import org.sonar.process.ProcessProperties;
+
+import static java.lang.String.format;
+
+/**
+ * Index of the duplication units of the last analyses of all projects, shared by the tasks of the Compute Engine.
+ * <p>
+ * Units are stored, per language, in {@link CloneIndexFile}s sorted by hash, so that the candidates of all the blocks
+ * of a project are found in a single pass instead of one query on table DUPLICATIONS_INDEX per file.
+ * The index of a language is loaded from database on first use, then the units persisted by each analysis are appended
+ * as a new file. When there are too many files, the index of the language is dropped and loaded again from database
+ * on next use, which also gets rid of the units of analyses which are not the last ones anymore.
+ * <p>
+ * As the index can be stale, the analyses and files of the units it returns are checked against database: units are
+ * only kept if their analysis is the last one of its project and their file is enabled. Hashes which are not 16
+ * lowercase hexadecimal characters (ie. not generated by the scanner's CPD engine) are looked up in database.
+ */
+@ComputeEngineSide
+public class CrossProjectCloneIndex implements Startable {
+
+  public static final String ENABLED_PROPERTY = "sonar.ce.duplications.cloneIndex";
+
+  static final int MAX_FILES_PER_LANGUAGE = 16;
+
+  private static final Logger LOGGER = Loggers.get(CrossProjectCloneIndex.class);
+  private static final Pattern INDEXABLE_HASH = Pattern.compile("[0-9a-f]{16}");
+
+  private final Settings settings;
+  private final DbClient dbClient;
+  private final ConcurrentMap<String, LanguageIndex> indexesByLanguage = new ConcurrentHashMap<>();
+  private final AtomicInteger fileCounter = new AtomicInteger();
+  private boolean enabled;
+  private File dir;
+
+  public CrossProjectCloneIndex(Settings settings, DbClient dbClient) {
+    this.settings = settings;
+    this.dbClient = dbClient;
+  }
+
+  @Override
+  public void start() {
+    this.enabled = !settings.hasKey(ENABLED_PROPERTY) || settings.getBoolean(ENABLED_PROPERTY);
+    this.dir = new File(settings.getString(ProcessProperties.PATH_DATA), "ce/clone_index");
+    if (enabled) {
+      try {
+        FileUtils.deleteQuietly(dir);
+        org.apache.commons.io.FileUtils.forceMkdir(dir);
+      } catch (Exception e) {
+        throw new IllegalStateException(format("Fail to create directory %s", dir.getAbsolutePath()), e);
+      }
+    }
+  }
+
+  @Override
+  public void stop() {
+    for (LanguageIndex index : indexesByLanguage.values()) {
+      index.reset();
+    }
+    indexesByLanguage.clear();
+    if (dir != null) {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  /**
+   * Units of the last analyses of other projects which have one of the given {@code hashes}, grouped by hash.
+   * Units of analysis {@code excludedAnalysisUuid} are ignored. Component keys of the returned units are set.
+   */
+  public ListMultimap<String, DuplicationUnitDto> selectCandidates(DbSession dbSession, @Nullable String excludedAnalysisUuid, String language,
+    Collection<String> hashes) {
+    Set<String> distinctHashes = new LinkedHashSet<>(hashes);
+    List<String> notIndexedHashes = new ArrayList<>();
+    long[] indexedHashes = new long[distinctHashes.size()];
+    int indexedHashCount = 0;
+    LanguageIndex index = enabled ? indexOf(dbSession, language) : null;
+    for (String hash : distinctHashes) {
+      if (index != null && isIndexable(hash)) {
+        indexedHashes[indexedHashCount] = Long.parseUnsignedLong(hash, 16);
+        indexedHashCount++;
+      } else {
+        notIndexedHashes.add(hash);
+      }
+    }
+
+    ListMultimap<String, DuplicationUnitDto> candidates = ArrayListMultimap.create();
+    if (indexedHashCount > 0) {
+      long[] sortedHashes = Arrays.copyOf(indexedHashes, indexedHashCount);
+      sortUnsigned(sortedHashes);
+      List<DuplicationUnitDto> units = index.lookup(sortedHashes);
+      if (units == null) {
+        // index has been reset in the meantime
+        for (long hash : sortedHashes) {
+          notIndexedHashes.add(toHex(hash));
+        }
+      } else {
+        addLiveUnits(dbSession, excludedAnalysisUuid, language, units, candidates);
+      }
+    }
+    if (!notIndexedHashes.isEmpty()) {
+      for (DuplicationUnitDto unit : dbClient.duplicationDao().selectCandidates(dbSession, excludedAnalysisUuid, language, notIndexedHashes)) {
+        candidates.put(unit.getHash(), unit);
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * Returns an appender of the units of analysis {@code analysisUuid}. {@link Appender#commit()} must be called
+   * once the units are committed in table DUPLICATIONS_INDEX.
+   */
+  public Appender newAppender(String analysisUuid) {
+    return new Appender(analysisUuid);
+  }
+
+  @CheckForNull
+  private LanguageIndex indexOf(DbSession dbSession, String language) {
+    LanguageIndex index = indexesByLanguage.computeIfAbsent(language, LanguageIndex::new);
+    return index.ensureLoaded(dbSession) ? index : null;
+  }
+
+  private void addLiveUnits(DbSession dbSession, @Nullable String excludedAnalysisUuid, String language, List<DuplicationUnitDto> units,
+    ListMultimap<String, DuplicationUnitDto> candidates) {
+    if (units.isEmpty()) {
+      return;
+    }
+    Set<String> analysisUuids = new HashSet<>();
+    Set<String> componentUuids = new HashSet<>();
+    for (DuplicationUnitDto unit : units) {
+      analysisUuids.add(unit.getAnalysisUuid());
+      componentUuids.add(unit.getComponentUuid());
+    }
+    Set<String> lastAnalysisUuids = new HashSet<>();
+    for (SnapshotDto analysis : dbClient.snapshotDao().selectByUuids(dbSession, analysisUuids)) {
+      if (Boolean.TRUE.equals(analysis.getLast()) && !analysis.getUuid().equals(excludedAnalysisUuid)) {
+        lastAnalysisUuids.add(analysis.getUuid());
+      }
+    }
+    Map<String, String> keysByComponentUuid = new HashMap<>();
+    for (ComponentDto component : dbClient.componentDao().selectByUuids(dbSession, componentUuids)) {
+      if (component.isEnabled() && language.equals(component.language())) {
+        keysByComponentUuid.put(component.uuid(), component.getKey());
+      }
+    }
+
+    // the same unit can be both loaded from database and appended by the analysis which persisted it
+    Set<String> addedUnits = new HashSet<>();
+    for (DuplicationUnitDto unit : units) {
+      String componentKey = keysByComponentUuid.get(unit.getComponentUuid());
+      if (componentKey != null && lastAnalysisUuids.contains(unit.getAnalysisUuid())
+        && addedUnits.add(unit.getHash() + ':' + unit.getAnalysisUuid() + ':' + unit.getComponentUuid() + ':' + unit.getIndexInFile())) {
+        candidates.put(unit.getHash(), unit.setComponentKey(componentKey));
+      }
+    }
+  }
+
+  private File newFile(String language) {
+    return new File(dir, format("%s-%d.idx", language.replaceAll("[^a-zA-Z0-9]", "_"), fileCounter.incrementAndGet()));
+  }
+
+  static boolean isIndexable(String hash) {
+    return INDEXABLE_HASH.matcher(hash).matches();
+  }
+
+  static String toHex(long hash) {
+    return Strings.padStart(Long.toHexString(hash), 16, '0');
+  }
+
+  private static void sortUnsigned(long[] hashes) {
+    DataUtils.sort(new DataUtils.Sortable() {
+      @Override
+      public int size() {
+        return hashes.length;
+      }
+
+      @Override
+      public void swap(int i, int j) {
+        long tmp = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = tmp;
+      }
+
+      @Override
+      public boolean isLess(int i, int j) {
+        return Long.compareUnsigned(hashes[i], hashes[j]) < 0;
+      }
+    });
+  }
+
+  private final class LanguageIndex {
+    private final String language;
+    private volatile List<CloneIndexFile> files = new ArrayList<>();
+    private boolean loaded = false;
+
+    private LanguageIndex(String language) {
+      this.language = language;
+    }
+
+    /**
+     * A failure only drops the files being written: loading is tried again on next call.
+     *
+     * @return false if the index can not be used, in which case candidates must be loaded from database
+     */
+    private synchronized boolean ensureLoaded(DbSession dbSession) {
+      if (!loaded) {
+        long start = System.currentTimeMillis();
+        FilesLoader loader = new FilesLoader(this);
+        try {
+          dbClient.duplicationDao().selectUnitsOfLastAnalyses(dbSession, language, loader);
+          this.files = loader.finish();
+          this.loaded = true;
+          LOGGER.debug("Clone index of language {} loaded with {} units in {} ms", language, loader.count, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+          loader.abort();
+          LOGGER.warn(format("Fail to load clone index of language %s, candidates will be loaded from database", language), e);
+        }
+      }
+      return loaded;
+    }
+
+    /**
+     * @return null if a file has been closed by a concurrent reset of the index
+     */
+    @CheckForNull
+    private List<DuplicationUnitDto> lookup(long[] sortedHashes) {
+      List<DuplicationUnitDto> units = new ArrayList<>();
+      for (CloneIndexFile file : files) {
+        if (!file.lookup(sortedHashes, units::add)) {
+          return null;
+        }
+      }
+      return units;
+    }
+
+    private synchronized void append(CloneIndexFile file) {
+      if (!loaded) {
+        // units have been committed, they will be loaded from database
+        file.close();
+        return;
+      }
+      List<CloneIndexFile> newFiles = new ArrayList<>(files);
+      newFiles.add(file);
+      this.files = newFiles;
+      if (newFiles.size() > MAX_FILES_PER_LANGUAGE) {
+        reset();
+      }
+    }
+
+    private synchronized boolean isLoaded() {
+      return loaded;
+    }
+
+    private synchronized void reset() {
+      for (CloneIndexFile file : files) {
+        file.close();
+      }
+      this.files = new ArrayList<>();
+      this.loaded = false;
+    }
+  }
+
+  /**
+   * Writes the units streamed from database, which are sorted by hash, to as many files as needed.
+   */
+  private final class FilesLoader implements ResultHandler {
+    private final LanguageIndex index;
+    private final List<CloneIndexFile> files = new ArrayList<>();
+    private CloneIndexFile.Writer writer;
+    private int count = 0;
+
+    private FilesLoader(LanguageIndex index) {
+      this.index = index;
+    }
+
+    @Override
+    public void handleResult(ResultContext context) {
+      DuplicationUnitDto unit = (DuplicationUnitDto) context.getResultObject();
+      if (!isIndexable(unit.getHash())) {
+        return;
+      }
+      if (writer == null) {
+        writer = new CloneIndexFile.Writer(newFile(index.language));
+      }
+      writer.add(Long.parseUnsignedLong(unit.getHash(), 16), unit.getAnalysisUuid(), unit.getComponentUuid(),
+        unit.getIndexInFile(), unit.getStartLine(), unit.getEndLine());
+      count++;
+      if (writer.size() == CloneIndexFile.MAX_ENTRIES) {
+        files.add(writer.finish());
+        writer = null;
+      }
+    }
+
+    private List<CloneIndexFile> finish() {
+      if (writer != null) {
+        files.add(writer.finish());
+        writer = null;
+      }
+      return files;
+    }
+
+    private void abort() {
+      if (writer != null) {
+        writer.close();
+        FileUtils.deleteQuietly(writer.getFile());
+      }
+      for (CloneIndexFile file : files) {
+        file.close();
+      }
+    }
+  }
+
+  /**
+   * Buffers the units persisted by an analysis, for the languages which index is loaded.
+   */
+  public class Appender {
+    private final String analysisUuid;
+    private final Map<String, Units> unitsByLanguage = new HashMap<>();
+
+    private Appender(String analysisUuid) {
+      this.analysisUuid = analysisUuid;
+    }
+
+    public Appender add(@Nullable String language, String componentUuid, String hash, int indexInFile, int startLine, int endLine) {
+      if (!enabled || language == null || !isIndexable(hash)) {
+        return this;
+      }
+      LanguageIndex index = indexesByLanguage.get(language);
+      if (index != null && index.isLoaded()) {
+        unitsByLanguage.computeIfAbsent(language, l -> new Units())
+          .add(Long.parseUnsignedLong(hash, 16), componentUuid, indexInFile, startLine, endLine);
+      }
+      return this;
+    }
+
+    public void commit() {
+      for (Map.Entry<String, Units> entry : unitsByLanguage.entrySet()) {
+        LanguageIndex index = indexesByLanguage.get(entry.getKey());
+        if (index != null) {
+          append(index, entry.getValue());
+        }
+      }
+      unitsByLanguage.clear();
+    }
+
+    private void append(LanguageIndex index, Units units) {
+      File file = newFile(index.language);
+      try {
+        index.append(units.write(file, analysisUuid));
+      } catch (RuntimeException e) {
+        // units have been committed, they are loaded from database on next use of the index
+        FileUtils.deleteQuietly(file);
+        index.reset();
+        LOGGER.warn(format("Fail to append units to clone index of language %s, index will be loaded again from database", index.language), e);
+      }
+    }
+  }
+
+  private static final class Units implements DataUtils.Sortable {
+    private long[] hashes = new long[64];
+    private String[] componentUuids = new String[64];
+    private int[] values = new int[64 * 3];
+    private int size = 0;
+
+    private void add(long hash, String componentUuid, int indexInFile, int startLine, int endLine) {
+      if (size == hashes.length) {
+        hashes = Arrays.copyOf(hashes, size * 2);
+        componentUuids = Arrays.copyOf(componentUuids, size * 2);
+        values = Arrays.copyOf(values, size * 2 * 3);
+      }
+      hashes[size] = hash;
+      componentUuids[size] = componentUuid;
+      values[size * 3] = indexInFile;
+      values[size * 3 + 1] = startLine;
+      values[size * 3 + 2] = endLine;
+      size++;
+    }
+
+    private CloneIndexFile write(File file, String analysisUuid) {
+      DataUtils.sort(this);
+      CloneIndexFile.Writer writer = new CloneIndexFile.Writer(file);
+      try {
+        for (int i = 0; i < size; i++) {
+          writer.add(hashes[i], analysisUuid, componentUuids[i], values[i * 3], values[i * 3 + 1], values[i * 3 + 2]);
+        }
+        return writer.finish();
+      } finally {
+        writer.close();
+      }
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      long hash = hashes[i];
+      hashes[i] = hashes[j];
+      hashes[j] = hash;
+      String componentUuid = componentUuids[i];
+      componentUuids[i] = componentUuids[j];
+      componentUuids[j] = componentUuid;
+      for (int k = 0; k < 3; k++) {
+        int value = values[i * 3 + k];
+        values[i * 3 + k] = values[j * 3 + k];
+        values[j * 3 + k] = value;
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return Long.compareUnsigned(hashes[i], hashes[j]) < 0;
+    }
+  }
+}
@@ -43,6 +43,10 @@ public class DetailedTextBlock extends TextBlock {
     this.id = id;
   }
 
+  int getId() {
+    return id;
+  }
+
   @Override
   public boolean equals(@Nullable Object o) {
     if (this == o) {
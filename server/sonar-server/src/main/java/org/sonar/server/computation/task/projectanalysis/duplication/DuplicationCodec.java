@@ -0,0 +1,131 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.util.cache.Codec;
+
+/**
+ * Encodes the duplications of a file when they are spilled to disk by {@link DuplicationRepositoryImpl}.
+ * Files of {@link InProjectDuplicate}s are encoded by key and loaded from the {@link TreeRootHolder}.
+ */
+class DuplicationCodec implements Codec<DuplicationCodec.FileDuplication> {
+  private static final byte INNER = 0;
+  private static final byte IN_PROJECT = 1;
+  private static final byte CROSS_PROJECT = 2;
+
+  private final TreeRootHolder treeRootHolder;
+
+  DuplicationCodec(TreeRootHolder treeRootHolder) {
+    this.treeRootHolder = treeRootHolder;
+  }
+
+  @Override
+  public void write(FileDuplication object, DataOutput output) throws IOException {
+    output.writeUTF(object.fileKey);
+    Duplication duplication = object.duplication;
+    writeTextBlock(duplication.getOriginal(), output);
+    output.writeInt(duplication.getDuplicates().size());
+    for (Duplicate duplicate : duplication.getDuplicates()) {
+      if (duplicate instanceof InnerDuplicate) {
+        output.writeByte(INNER);
+      } else if (duplicate instanceof InProjectDuplicate) {
+        output.writeByte(IN_PROJECT);
+        output.writeUTF(((InProjectDuplicate) duplicate).getFile().getKey());
+      } else if (duplicate instanceof CrossProjectDuplicate) {
+        output.writeByte(CROSS_PROJECT);
+        output.writeUTF(((CrossProjectDuplicate) duplicate).getFileKey());
+      } else {
+        throw new IllegalArgumentException("Unsupported type of Duplicate " + duplicate.getClass().getName());
+      }
+      writeTextBlock(duplicate.getTextBlock(), output);
+    }
+  }
+
+  @Override
+  public FileDuplication read(DataInput input) throws IOException {
+    String fileKey = input.readUTF();
+    TextBlock original = readTextBlock(input);
+    int duplicateCount = input.readInt();
+    List<Duplicate> duplicates = new ArrayList<>(duplicateCount);
+    for (int i = 0; i < duplicateCount; i++) {
+      byte type = input.readByte();
+      switch (type) {
+        case INNER:
+          duplicates.add(new InnerDuplicate(readTextBlock(input)));
+          break;
+        case IN_PROJECT:
+          String otherFileKey = input.readUTF();
+          duplicates.add(new InProjectDuplicate(treeRootHolder.getComponentByKey(otherFileKey), readTextBlock(input)));
+          break;
+        case CROSS_PROJECT:
+          String crossProjectFileKey = input.readUTF();
+          duplicates.add(new CrossProjectDuplicate(crossProjectFileKey, readTextBlock(input)));
+          break;
+        default:
+          throw new IllegalStateException("Unsupported type of Duplicate " + type);
+      }
+    }
+    return new FileDuplication(fileKey, new Duplication(original, duplicates));
+  }
+
+  private static void writeTextBlock(TextBlock textBlock, DataOutput output) throws IOException {
+    // identifier of DetailedTextBlock is part of equality, it must be kept
+    boolean detailed = textBlock instanceof DetailedTextBlock;
+    output.writeBoolean(detailed);
+    if (detailed) {
+      output.writeInt(((DetailedTextBlock) textBlock).getId());
+    }
+    output.writeInt(textBlock.getStart());
+    output.writeInt(textBlock.getEnd());
+  }
+
+  private static TextBlock readTextBlock(DataInput input) throws IOException {
+    if (input.readBoolean()) {
+      int id = input.readInt();
+      return new DetailedTextBlock(id, input.readInt(), input.readInt());
+    }
+    int start = input.readInt();
+    return new TextBlock(start, input.readInt());
+  }
+
+  static final class FileDuplication {
+    private final String fileKey;
+    private final Duplication duplication;
+
+    FileDuplication(String fileKey, Duplication duplication) {
+      this.fileKey = fileKey;
+      this.duplication = duplication;
+    }
+
+    String getFileKey() {
+      return fileKey;
+    }
+
+    Duplication getDuplication() {
+      return duplication;
+    }
+  }
+}
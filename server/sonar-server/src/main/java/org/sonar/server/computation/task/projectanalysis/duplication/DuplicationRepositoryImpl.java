@@ -19,11 +19,23 @@
  */
 package org.sonar.server.computation.task.projectanalysis.duplication;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationCodec.FileDuplication;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryAccount;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryBudget;
+import org.sonar.server.computation.task.projectanalysis.memory.Spillable;
+import org.sonar.server.util.cache.IndexedDiskCache;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -31,15 +43,46 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * In-memory implementation of {@link DuplicationRepository}.
+ * <p>
+ * When the {@link MemoryBudget} of the task is exceeded, the duplications of the least recently used files are
+ * spilled to a file of the temp folder of the task. They are loaded back when they are requested again.
+ * </p>
  */
-public class DuplicationRepositoryImpl implements DuplicationRepository {
-  private Multimap<String, Duplication> duplications = HashMultimap.create();
+public class DuplicationRepositoryImpl implements DuplicationRepository, Spillable {
+  private static final long DUPLICATION_BYTES = 96L;
+  private static final long DUPLICATE_BYTES = 64L;
+
+  @CheckForNull
+  private final TreeRootHolder treeRootHolder;
+  @CheckForNull
+  private final TempFolder tempFolder;
+  private final MemoryAccount memoryAccount;
+  // access-ordered, so that the least recently used files are spilled first
+  private final Map<String, Set<Duplication>> duplications = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<String> spilledFileKeys = new HashSet<>();
+  @CheckForNull
+  private IndexedDiskCache<FileDuplication> spillCache;
+
+  /**
+   * Duplications are never spilled
+   */
+  public DuplicationRepositoryImpl() {
+    this.treeRootHolder = null;
+    this.tempFolder = null;
+    this.memoryAccount = MemoryBudget.unlimited().newAccount("duplications");
+  }
+
+  public DuplicationRepositoryImpl(TreeRootHolder treeRootHolder, TempFolder tempFolder, MemoryBudget memoryBudget) {
+    this.treeRootHolder = treeRootHolder;
+    this.tempFolder = tempFolder;
+    this.memoryAccount = memoryBudget.newAccount("duplications", this);
+  }
 
   @Override
   public Iterable<Duplication> getDuplications(Component file) {
     checkFileComponentArgument(file);
 
-    Collection<Duplication> res = this.duplications.asMap().get(file.getKey());
+    Set<Duplication> res = load(file.getKey());
     if (res == null) {
       return Collections.emptyList();
     }
@@ -51,7 +94,78 @@ public class DuplicationRepositoryImpl implements DuplicationRepository {
     checkFileComponentArgument(file);
     checkNotNull(duplication, "duplication can not be null");
 
-    duplications.put(file.getKey(), duplication);
+    Set<Duplication> fileDuplications = load(file.getKey());
+    if (fileDuplications == null) {
+      fileDuplications = new HashSet<>();
+      duplications.put(file.getKey(), fileDuplications);
+    }
+    if (fileDuplications.add(duplication)) {
+      memoryAccount.allocate(footprint(duplication));
+    }
+  }
+
+  @CheckForNull
+  private Set<Duplication> load(String fileKey) {
+    if (spilledFileKeys.remove(fileKey)) {
+      Set<Duplication> fileDuplications = new HashSet<>();
+      try (CloseableIterator<FileDuplication> spilled = spillCache().traverse(fileKey)) {
+        while (spilled.hasNext()) {
+          fileDuplications.add(spilled.next().getDuplication());
+        }
+      }
+      // duplications will be written again if they are spilled again
+      spillCache().drop(fileKey);
+      duplications.put(fileKey, fileDuplications);
+      memoryAccount.allocate(footprint(fileDuplications));
+      return fileDuplications;
+    }
+    return duplications.get(fileKey);
+  }
+
+  @Override
+  public long spill(long bytesToRelease) {
+    if (treeRootHolder == null || tempFolder == null) {
+      return 0L;
+    }
+    long released = 0L;
+    // the most recently used file, which is usually the one being processed, is never spilled
+    int spillableFiles = duplications.size() - 1;
+    Iterator<Map.Entry<String, Set<Duplication>>> entries = duplications.entrySet().iterator();
+    try (IndexedDiskCache<FileDuplication>.DiskAppender appender = spillCache().newAppender()) {
+      while (released < bytesToRelease && spillableFiles > 0) {
+        Map.Entry<String, Set<Duplication>> entry = entries.next();
+        for (Duplication duplication : entry.getValue()) {
+          appender.append(new FileDuplication(entry.getKey(), duplication));
+        }
+        released += footprint(entry.getValue());
+        spilledFileKeys.add(entry.getKey());
+        entries.remove();
+        spillableFiles--;
+      }
+    }
+    return released;
+  }
+
+  private IndexedDiskCache<FileDuplication> spillCache() {
+    if (spillCache == null) {
+      requireNonNull(tempFolder, "Duplications can not be spilled without temp folder");
+      requireNonNull(treeRootHolder, "Duplications can not be spilled without tree root holder");
+      spillCache = new IndexedDiskCache<>(tempFolder.newFile("duplications", ".dat"), new DuplicationCodec(treeRootHolder), FileDuplication::getFileKey,
+        System2.INSTANCE);
+    }
+    return spillCache;
+  }
+
+  private static long footprint(Set<Duplication> fileDuplications) {
+    long footprint = 0L;
+    for (Duplication duplication : fileDuplications) {
+      footprint += footprint(duplication);
+    }
+    return footprint;
+  }
+
+  private static long footprint(Duplication duplication) {
+    return DUPLICATION_BYTES + duplication.getDuplicates().size() * DUPLICATE_BYTES;
   }
 
   private static void checkFileComponentArgument(Component file) {
@@ -25,14 +25,21 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.concurrent.Immutable;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -62,6 +69,10 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 
 public class FileMoveDetectionStep implements ComputationStep {
   protected static final int MIN_REQUIRED_SCORE = 85;
+  /**
+   * Number of threads computing the similarity of files. Defaults to the number of processors.
+   */
+  public static final String THREADS_PROPERTY = "sonar.ce.fileMoveDetection.threads";
   private static final Logger LOG = Loggers.get(FileMoveDetectionStep.class);
   private static final List<String> FILE_QUALIFIERS = asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
   private static final List<String> SORT_FIELDS = singletonList("name");
@@ -73,15 +84,18 @@ public class FileMoveDetectionStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final FileSimilarity fileSimilarity;
   private final MutableMovedFilesRepository movedFilesRepository;
+  private final Settings settings;
 
   public FileMoveDetectionStep(AnalysisMetadataHolder analysisMetadataHolder, TreeRootHolder rootHolder, DbClient dbClient,
-    SourceLinesRepository sourceLinesRepository, FileSimilarity fileSimilarity, MutableMovedFilesRepository movedFilesRepository) {
+    SourceLinesRepository sourceLinesRepository, FileSimilarity fileSimilarity, MutableMovedFilesRepository movedFilesRepository,
+    Settings settings) {
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.rootHolder = rootHolder;
     this.dbClient = dbClient;
     this.sourceLinesRepository = sourceLinesRepository;
     this.fileSimilarity = fileSimilarity;
     this.movedFilesRepository = movedFilesRepository;
+    this.settings = settings;
   }
 
   @Override
@@ -198,33 +212,66 @@ public class FileMoveDetectionStep implements ComputationStep {
     return builder.build();
   }
 
+  /**
+   * Only the pairs of files given by {@link LineHashesIndex} are scored. Files of DB are read one by one, and scored
+   * against the added files by a pool of threads while the next ones are read.
+   */
   private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
-    int maxScore = 0;
-
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
-      for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
-        }
-
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
+    List<String> reportFileKeys = new ArrayList<>(reportFileSourcesByKey.keySet());
+    List<File> reportFiles = new ArrayList<>(reportFileSourcesByKey.values());
+    LineHashesIndex lineHashesIndex = new LineHashesIndex(reportFiles, MIN_REQUIRED_SCORE);
+
+    List<String> scoredDbFileKeys = new ArrayList<>(dbFileKeys.size());
+    List<Future<List<ScoreMatrix.Score>>> rows = new ArrayList<>(dbFileKeys.size());
+    ExecutorService executorService = createExecutorService();
+    try {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        for (String removedFileKey : dbFileKeys) {
+          File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
+          if (fileInDb == null) {
+            continue;
           }
-          reportFileIndex++;
+          int dbFileIndex = scoredDbFileKeys.size();
+          scoredDbFileKeys.add(removedFileKey);
+          rows.add(executorService.submit(() -> scoreRow(lineHashesIndex, dbFileIndex, fileInDb, reportFiles)));
         }
-        dbFileIndex++;
       }
+
+      List<ScoreMatrix.Score> scores = new ArrayList<>();
+      for (Future<List<ScoreMatrix.Score>> row : rows) {
+        scores.addAll(row.get());
+      }
+      LOG.debug("{} pairs of files scored out of {}", scores.size(), (long) scoredDbFileKeys.size() * reportFileKeys.size());
+      return new ScoreMatrix(scoredDbFileKeys, reportFileKeys, scores);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while detecting file moves", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to score similarity of files", e.getCause());
+    } finally {
+      executorService.shutdownNow();
     }
+  }
+
+  private List<ScoreMatrix.Score> scoreRow(LineHashesIndex lineHashesIndex, int dbFileIndex, File fileInDb, List<File> reportFiles) {
+    int[] candidates = lineHashesIndex.candidates(fileInDb.getLineHashes());
+    List<ScoreMatrix.Score> row = new ArrayList<>(candidates.length);
+    for (int reportFileIndex : candidates) {
+      int score = fileSimilarity.score(fileInDb, reportFiles.get(reportFileIndex), MIN_REQUIRED_SCORE);
+      row.add(new ScoreMatrix.Score(dbFileIndex, reportFileIndex, score));
+    }
+    return row;
+  }
 
-    return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
+  private ExecutorService createExecutorService() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    if (threads == 1) {
+      return MoreExecutors.newDirectExecutorService();
+    }
+    return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("FileMoveDetection-%d").setDaemon(true).build());
   }
 
   @CheckForNull
@@ -238,7 +285,7 @@ public class FileMoveDetectionStep implements ComputationStep {
 
   private static void printIfDebug(ScoreMatrix scoreMatrix) {
     if (LOG.isDebugEnabled()) {
-      LOG.debug("ScoreMatrix:\n" + scoreMatrix.toCsv(';'));
+      LOG.debug("Scores of candidate pairs of files:\n" + scoreMatrix.toCsv(';'));
     }
   }
 
@@ -42,4 +42,14 @@ public class FileSimilarityImpl implements FileSimilarity {
     }
     return score;
   }
+
+  @Override
+  public int score(File file1, File file2, int minScore) {
+    List<String> lineHashes1 = file1.getLineHashes();
+    List<String> lineHashes2 = file2.getLineHashes();
+    if (lineHashes1 != null && lineHashes2 != null) {
+      return sourceSimilarity.score(lineHashes1, lineHashes2, minScore);
+    }
+    return 0;
+  }
 }
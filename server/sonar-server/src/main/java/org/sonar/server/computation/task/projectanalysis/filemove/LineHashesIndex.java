@@ -0,0 +1,222 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Index of the line hashes of the files added in the report, which finds the added files that may be similar enough to
+ * a removed file.
+ * <p>
+ * Edit distance between two lists of line hashes can not be lower than the size of the biggest list minus the number
+ * of line hashes they have in common (counting duplicates). Pairs of files whose score would be lower than the min
+ * score even with this distance can not match, so they are not candidates. This pruning is exact: it never discards
+ * a pair which {@link SourceSimilarityImpl} scores higher than or equal to the min score.
+ * <p>
+ * Line hashes are interned into ints. Posting lists give, for each line hash, the added files containing it and the
+ * number of occurrences. Line hashes contained by too many added files (closing braces, empty lines, ...) have no
+ * posting list, only their total count per file is kept. Their contribution to the common lines is over-estimated by
+ * the lower of these counts, which keeps pruning exact.
+ * <p>
+ * This class is thread-safe once created: {@link #candidates(List)} can be called concurrently.
+ */
+final class LineHashesIndex {
+
+  /**
+   * A line hash is frequent if it is contained by more than this ratio of the added files...
+   */
+  private static final int FREQUENT_LINE_RATIO = 20;
+  /**
+   * ...and by more than this number of files
+   */
+  private static final int FREQUENT_LINE_MIN_FILES = 100;
+
+  private final int minScore;
+  private final int fileCount;
+  private final Map<String, Integer> idsByLineHash = new HashMap<>();
+  /**
+   * Number of lines of each added file, -1 if line hashes are unknown
+   */
+  private final int[] sizes;
+  /**
+   * Number of frequent lines of each added file
+   */
+  private final int[] frequentLines;
+  private final boolean[] frequentIds;
+  /**
+   * For each line hash id, pairs of (index of added file, number of occurrences) in a single array
+   */
+  private final int[][] postings;
+
+  LineHashesIndex(List<FileSimilarity.File> addedFiles, int minScore) {
+    this.minScore = minScore;
+    this.fileCount = addedFiles.size();
+    this.sizes = new int[fileCount];
+    this.frequentLines = new int[fileCount];
+
+    // occurrences of ids in each added file, sorted by id
+    int[][] idsPerFile = new int[fileCount][];
+    int[][] countsPerFile = new int[fileCount][];
+    int[] documentFrequencies = new int[64];
+    for (int fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+      List<String> lineHashes = addedFiles.get(fileIndex).getLineHashes();
+      if (lineHashes == null) {
+        sizes[fileIndex] = -1;
+        idsPerFile[fileIndex] = new int[0];
+        countsPerFile[fileIndex] = new int[0];
+        continue;
+      }
+      sizes[fileIndex] = lineHashes.size();
+      int[] ids = new int[lineHashes.size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = intern(lineHashes.get(i));
+      }
+      groupIds(ids, idsPerFile, countsPerFile, fileIndex);
+      for (int id : idsPerFile[fileIndex]) {
+        if (id >= documentFrequencies.length) {
+          documentFrequencies = Arrays.copyOf(documentFrequencies, max(documentFrequencies.length * 2, id + 1));
+        }
+        documentFrequencies[id]++;
+      }
+    }
+
+    int maxPostings = max(FREQUENT_LINE_MIN_FILES, fileCount / FREQUENT_LINE_RATIO);
+    int idCount = idsByLineHash.size();
+    this.frequentIds = new boolean[idCount];
+    this.postings = new int[idCount][];
+    int[] postingSizes = new int[idCount];
+    for (int id = 0; id < idCount; id++) {
+      frequentIds[id] = documentFrequencies[id] > maxPostings;
+      postings[id] = frequentIds[id] ? null : new int[2 * documentFrequencies[id]];
+    }
+    for (int fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+      int[] ids = idsPerFile[fileIndex];
+      int[] counts = countsPerFile[fileIndex];
+      for (int i = 0; i < ids.length; i++) {
+        int id = ids[i];
+        if (frequentIds[id]) {
+          frequentLines[fileIndex] += counts[i];
+        } else {
+          postings[id][postingSizes[id]] = fileIndex;
+          postings[id][postingSizes[id] + 1] = counts[i];
+          postingSizes[id] += 2;
+        }
+      }
+    }
+  }
+
+  private int intern(String lineHash) {
+    Integer id = idsByLineHash.get(lineHash);
+    if (id == null) {
+      id = idsByLineHash.size();
+      idsByLineHash.put(lineHash, id);
+    }
+    return id;
+  }
+
+  @CheckForNull
+  private Integer idOf(String lineHash) {
+    return idsByLineHash.get(lineHash);
+  }
+
+  private static void groupIds(int[] ids, int[][] idsPerFile, int[][] countsPerFile, int fileIndex) {
+    int[] sorted = ids.clone();
+    Arrays.sort(sorted);
+    int distinct = 0;
+    int[] distinctIds = new int[sorted.length];
+    int[] counts = new int[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        distinctIds[distinct] = sorted[i];
+        distinct++;
+      }
+      counts[distinct - 1]++;
+    }
+    idsPerFile[fileIndex] = Arrays.copyOf(distinctIds, distinct);
+    countsPerFile[fileIndex] = Arrays.copyOf(counts, distinct);
+  }
+
+  /**
+   * Indexes, in ascending order, of the added files which may have a score higher than or equal to the min score with
+   * a file having the specified line hashes.
+   */
+  int[] candidates(@Nullable List<String> lineHashes) {
+    if (lineHashes == null || lineHashes.isEmpty()) {
+      return new int[0];
+    }
+    int size = lineHashes.size();
+
+    // number of occurrences of each id, the other file having unknown ids only
+    Map<Integer, Integer> countsById = new HashMap<>();
+    int frequentLineCount = 0;
+    for (String lineHash : lineHashes) {
+      Integer id = idOf(lineHash);
+      if (id == null) {
+        continue;
+      }
+      if (frequentIds[id]) {
+        frequentLineCount++;
+      } else {
+        countsById.merge(id, 1, Integer::sum);
+      }
+    }
+
+    int[] commonLines = new int[fileCount];
+    boolean[] touched = new boolean[fileCount];
+    for (Map.Entry<Integer, Integer> entry : countsById.entrySet()) {
+      int[] posting = postings[entry.getKey()];
+      int count = entry.getValue();
+      for (int i = 0; i < posting.length; i += 2) {
+        commonLines[posting[i]] += min(count, posting[i + 1]);
+        touched[posting[i]] = true;
+      }
+    }
+
+    // added files with no line in common except frequent ones can match only if frequent lines are enough
+    boolean allFiles = SourceSimilarityImpl.score(size - frequentLineCount, size) >= minScore;
+    int[] res = new int[fileCount];
+    int candidateCount = 0;
+    for (int fileIndex = 0; fileIndex < fileCount; fileIndex++) {
+      if ((allFiles || touched[fileIndex]) && mayMatch(size, frequentLineCount, fileIndex, commonLines[fileIndex])) {
+        res[candidateCount] = fileIndex;
+        candidateCount++;
+      }
+    }
+    return Arrays.copyOf(res, candidateCount);
+  }
+
+  private boolean mayMatch(int size, int frequentLineCount, int fileIndex, int commonRareLines) {
+    int otherSize = sizes[fileIndex];
+    if (otherSize <= 0) {
+      return false;
+    }
+    int maxSize = max(size, otherSize);
+    int maxCommonLines = commonRareLines + min(frequentLineCount, frequentLines[fileIndex]);
+    return SourceSimilarityImpl.score(maxSize - maxCommonLines, maxSize) >= minScore;
+  }
+}
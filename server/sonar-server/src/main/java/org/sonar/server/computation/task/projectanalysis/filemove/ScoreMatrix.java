@@ -19,56 +19,45 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
 
+/**
+ * Sparse matrix of the scores of pairs of removed and added files. Only the pairs which were scored are stored, the
+ * other ones are known to have a score lower than {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE}.
+ */
 final class ScoreMatrix {
-  private final Set<String> dbFileKeys;
-  private final Map<String, FileSimilarity.File> reportFileSourcesByKey;
-  private final int[][] scores;
+  private final List<String> dbFileKeys;
+  private final List<String> reportFileKeys;
+  private final List<Score> scores;
   private final int maxScore;
 
-  public ScoreMatrix(Set<String> dbFileKeys, Map<String, FileSimilarity.File> reportFileSourcesByKey, int[][] scores, int maxScore) {
+  /**
+   * @param scores visited in this order by {@link #accept(ScoreMatrixVisitor)}
+   */
+  public ScoreMatrix(List<String> dbFileKeys, List<String> reportFileKeys, List<Score> scores) {
     this.dbFileKeys = dbFileKeys;
-    this.reportFileSourcesByKey = reportFileSourcesByKey;
+    this.reportFileKeys = reportFileKeys;
     this.scores = scores;
-    this.maxScore = maxScore;
+    int max = 0;
+    for (Score score : scores) {
+      max = Math.max(max, score.score);
+    }
+    this.maxScore = max;
   }
 
   public void accept(ScoreMatrixVisitor visitor) {
-    int dbFileIndex = 0;
-    for (String dbFileKey : dbFileKeys) {
-      int reportFileIndex = 0;
-      for (Map.Entry<String, FileSimilarity.File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-        int score = scores[dbFileIndex][reportFileIndex];
-        visitor.visit(dbFileKey, reportFileSourceAndKey.getKey(), score);
-        reportFileIndex++;
-      }
-      dbFileIndex++;
+    for (Score score : scores) {
+      visitor.visit(dbFileKeys.get(score.dbFileIndex), reportFileKeys.get(score.reportFileIndex), score.score);
     }
   }
 
   public String toCsv(char separator) {
     StringBuilder res = new StringBuilder();
-    // first row: empty column, then one column for each report file (its key)
-    res.append(separator);
-    for (Map.Entry<String, FileSimilarity.File> reportEntry : reportFileSourcesByKey.entrySet()) {
-      res.append(reportEntry.getKey()).append(separator);
-    }
-    // rows with data: column with db file (its key), then one column for each value
-    accept(new ScoreMatrixVisitor() {
-      private String previousDbFileKey = null;
-
-      @Override
-      public void visit(String dbFileKey, String reportFileKey, int score) {
-        if (!Objects.equals(previousDbFileKey, dbFileKey)) {
-          res.append('\n').append(dbFileKey).append(separator);
-          previousDbFileKey = dbFileKey;
-        }
-        res.append(score).append(separator);
-      }
-    });
+    // one row for each scored pair: db file (its key), report file (its key), then score
+    accept((dbFileKey, reportFileKey, score) -> res.append(dbFileKey).append(separator)
+      .append(reportFileKey).append(separator)
+      .append(score).append('\n'));
     return res.toString();
   }
 
@@ -80,4 +69,21 @@ final class ScoreMatrix {
   public int getMaxScore() {
     return maxScore;
   }
+
+  public int getSize() {
+    return scores.size();
+  }
+
+  @Immutable
+  static final class Score {
+    private final int dbFileIndex;
+    private final int reportFileIndex;
+    private final int score;
+
+    Score(int dbFileIndex, int reportFileIndex, int score) {
+      this.dbFileIndex = dbFileIndex;
+      this.reportFileIndex = reportFileIndex;
+      this.score = score;
+    }
+  }
 }
@@ -28,4 +28,10 @@ public interface SourceSimilarity {
    * Range: between 0 and 100
    */
   <T extends Object> int score(List<T> left, List<T> right);
+
+  /**
+   * Same as {@link #score(List, List)} when the score is greater than or equal to {@code minScore}. Otherwise, returns
+   * a value lower than {@code minScore}, which may not be the actual score.
+   */
+  <T extends Object> int score(List<T> left, List<T> right, int minScore);
 }
@@ -32,7 +32,43 @@ public class SourceSimilarityImpl implements SourceSimilarity {
   @Override
   public <T extends Object> int score(List<T> left, List<T> right) {
     int distance = levenshteinDistance(left, right);
-    return (int) (100 * (1.0 - ((double) distance) / (max(left.size(), right.size()))));
+    return score(distance, max(left.size(), right.size()));
+  }
+
+  @Override
+  public <T extends Object> int score(List<T> left, List<T> right, int minScore) {
+    int size = max(left.size(), right.size());
+    if (size == 0) {
+      return score(left, right);
+    }
+    int maxDistance = maxDistance(size, minScore);
+    if (maxDistance < 0) {
+      return score(size, size);
+    }
+    return score(levenshteinDistance(left, right, maxDistance), size);
+  }
+
+  /**
+   * Score of two lists with the specified edit distance, the biggest list having {@code size} elements
+   */
+  static int score(int distance, int size) {
+    return (int) (100 * (1.0 - ((double) distance) / size));
+  }
+
+  /**
+   * Highest edit distance between two lists, the biggest having {@code size} elements, which gives a score greater than
+   * or equal to {@code minScore}. Returns -1 if there is none.
+   */
+  static int maxDistance(int size, int minScore) {
+    int distance = (int) Math.ceil(size * (100 - minScore) / 100.0);
+    // adjust to the rounding of score
+    while (distance >= 0 && score(distance, size) < minScore) {
+      distance--;
+    }
+    while (distance < size && score(distance + 1, size) >= minScore) {
+      distance++;
+    }
+    return distance;
   }
 
   // TODO verify https://commons.apache.org/sandbox/commons-text/jacoco/org.apache.commons.text.similarity/LevenshteinDistance.java.html
@@ -79,4 +115,52 @@ public class SourceSimilarityImpl implements SourceSimilarity {
     // the distance is the cost for transforming all letters in both strings
     return cost[len0 - 1];
   }
+
+  /**
+   * Same as {@link #levenshteinDistance(List, List)} when the distance is lower than or equal to {@code maxDistance}.
+   * Otherwise, returns {@code maxDistance + 1}. Only the cells of the diagonal band of width {@code 2 * maxDistance + 1}
+   * are computed, and computation stops as soon as a whole row exceeds {@code maxDistance}.
+   */
+  <T extends Object> int levenshteinDistance(List<T> left, List<T> right, int maxDistance) {
+    int len0 = left.size() + 1;
+    int len1 = right.size() + 1;
+    int outOfBand = maxDistance + 1;
+    if (Math.abs(len0 - len1) > maxDistance) {
+      return outOfBand;
+    }
+
+    int[] cost = new int[len0];
+    int[] newcost = new int[len0];
+    for (int i = 0; i < len0; i++) {
+      cost[i] = min(i, outOfBand);
+    }
+
+    for (int j = 1; j < len1; j++) {
+      int from = max(1, j - maxDistance);
+      int to = min(len0 - 1, j + maxDistance);
+      newcost[from - 1] = from == 1 ? min(j, outOfBand) : outOfBand;
+      int rowMin = newcost[from - 1];
+      T rightElement = right.get(j - 1);
+      for (int i = from; i <= to; i++) {
+        int match = left.get(i - 1).equals(rightElement) ? 0 : 1;
+        int costReplace = cost[i - 1] + match;
+        int costInsert = cost[i] + 1;
+        int costDelete = newcost[i - 1] + 1;
+        newcost[i] = min(min(min(costInsert, costDelete), costReplace), outOfBand);
+        rowMin = min(rowMin, newcost[i]);
+      }
+      if (rowMin > maxDistance) {
+        return outOfBand;
+      }
+      // cell right after the band is read by the next row
+      if (to + 1 < len0) {
+        newcost[to + 1] = outOfBand;
+      }
+
+      int[] swap = cost;
+      cost = newcost;
+      newcost = swap;
+    }
+    return cost[len0 - 1];
+  }
 }
@@ -23,12 +23,19 @@ import java.util.List;
 import javax.annotation.CheckForNull;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryAccount;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryBudget;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 public class ComponentIssuesRepositoryImpl implements MutableComponentIssuesRepository {
+  private static final long ISSUE_BYTES = 512L;
+
+  // only the issues of the current component are held, they are accounted but never spilled
+  private final MemoryAccount memoryAccount;
+  private long accountedBytes = 0L;
 
   @CheckForNull
   private List<DefaultIssue> issues;
@@ -36,10 +43,21 @@ public class ComponentIssuesRepositoryImpl implements MutableComponentIssuesRepo
   @CheckForNull
   private Component component;
 
+  public ComponentIssuesRepositoryImpl() {
+    this(MemoryBudget.unlimited());
+  }
+
+  public ComponentIssuesRepositoryImpl(MemoryBudget memoryBudget) {
+    this.memoryAccount = memoryBudget.newAccount("component issues");
+  }
+
   @Override
   public void setIssues(Component component, List<DefaultIssue> issues) {
     this.issues = requireNonNull(issues, "issues cannot be null");
     this.component = requireNonNull(component, "component cannot be null");
+    memoryAccount.release(accountedBytes);
+    accountedBytes = issues.size() * ISSUE_BYTES;
+    memoryAccount.allocate(accountedBytes);
   }
 
   @Override
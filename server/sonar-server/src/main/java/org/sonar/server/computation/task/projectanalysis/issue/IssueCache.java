@@ -24,20 +24,23 @@ import java.io.IOException;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.core.issue.DefaultIssue;
-import org.sonar.server.util.cache.DiskCache;
+import org.sonar.server.util.cache.IndexedDiskCache;
 
 /**
  * Cache of all the issues involved in the analysis. Their state is as it will be
  * persisted in database (after issue tracking, auto-assignment, ...)
+ * <p/>
+ * Issues are partitioned by component UUID, so that the issues of a single component can be
+ * read with {@link #traverse(String)}.
  */
-public class IssueCache extends DiskCache<DefaultIssue> {
+public class IssueCache extends IndexedDiskCache<DefaultIssue> {
 
   // this constructor is used by picocontainer
   public IssueCache(TempFolder tempFolder, System2 system2) throws IOException {
-    super(tempFolder.newFile("issues", ".dat"), system2);
+    this(tempFolder.newFile("issues", ".dat"), system2);
   }
 
   public IssueCache(File file, System2 system2) {
-    super(file, system2);
+    super(file, new DefaultIssueCodec(), DefaultIssue::componentUuid, system2);
   }
 }
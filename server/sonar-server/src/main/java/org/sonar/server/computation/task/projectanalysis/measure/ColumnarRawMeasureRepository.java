@@ -0,0 +1,263 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import javax.annotation.CheckForNull;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures and stores numeric values in one primitive
+ * column per metric, indexed by a dense, positive, index of the component (typically its report ref).
+ * <p>
+ * Only measures holding nothing but a numeric value (no developer, data, description, QualityGate status nor
+ * variations) are stored in columns. Other measures are stored as objects, as done by {@link MapBasedRawMeasureRepository}.
+ * As a consequence, measures returned by this repository are equal but not always the same instances as the added ones.
+ * </p>
+ *
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ColumnarRawMeasureRepository implements RawMeasureRepository {
+  private static final int INITIAL_COLUMN_CAPACITY = 64;
+
+  private final ToIntFunction<Component> componentToIndex;
+  private final Map<String, NumericColumn> columnsByMetricKey = new LinkedHashMap<>();
+  private final Map<Integer, Map<MeasureKey, Measure>> objectMeasures = new HashMap<>();
+
+  public ColumnarRawMeasureRepository(ToIntFunction<Component> componentToIndex) {
+    this.componentToIndex = requireNonNull(componentToIndex);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(indexOf(component), new MeasureKey(metric.getKey(), null)));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(indexOf(component), new MeasureKey(metric.getKey(), measure.getDeveloper())) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(indexOf(component), new MeasureKey(metric.getKey(), measure.getDeveloper())) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    int index = indexOf(component);
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    NumericColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column != null && column.contains(index)) {
+      builder.add(column.get(index));
+    }
+    Map<MeasureKey, Measure> measures = objectMeasures.get(index);
+    if (measures != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measures.entrySet()) {
+        if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+          builder.add(entry.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int index = indexOf(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (Map.Entry<String, NumericColumn> entry : columnsByMetricKey.entrySet()) {
+      if (entry.getValue().contains(index)) {
+        builder.put(entry.getKey(), entry.getValue().get(index));
+      }
+    }
+    Map<MeasureKey, Measure> measures = objectMeasures.get(index);
+    if (measures != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measures.entrySet()) {
+        builder.put(entry.getKey().getMetricKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int index = indexOf(component);
+    MeasureKey key = new MeasureKey(metric.getKey(), measure.getDeveloper());
+    if (overridePolicy == OverridePolicy.DO_NOT_OVERRIDE && find(index, key) != null) {
+      return;
+    }
+    remove(index, key);
+    NumericColumn column = columnsByMetricKey.get(metric.getKey());
+    if (isNumericOnly(measure) && (column == null || column.valueType == measure.getValueType())) {
+      if (column == null) {
+        column = new NumericColumn(measure.getValueType());
+        columnsByMetricKey.put(metric.getKey(), column);
+      }
+      column.set(index, measure.getNumericValue());
+    } else {
+      Map<MeasureKey, Measure> measures = objectMeasures.get(index);
+      if (measures == null) {
+        measures = new HashMap<>();
+        objectMeasures.put(index, measures);
+      }
+      measures.put(key, measure);
+    }
+  }
+
+  private int indexOf(Component component) {
+    int index = componentToIndex.applyAsInt(component);
+    checkArgument(index >= 0, "Index of component %s must be positive (got %s)", component.getKey(), index);
+    return index;
+  }
+
+  @CheckForNull
+  private Measure find(int index, MeasureKey key) {
+    if (key.getDeveloper() == null) {
+      NumericColumn column = columnsByMetricKey.get(key.getMetricKey());
+      if (column != null && column.contains(index)) {
+        return column.get(index);
+      }
+    }
+    Map<MeasureKey, Measure> measures = objectMeasures.get(index);
+    return measures == null ? null : measures.get(key);
+  }
+
+  private void remove(int index, MeasureKey key) {
+    if (key.getDeveloper() == null) {
+      NumericColumn column = columnsByMetricKey.get(key.getMetricKey());
+      if (column != null) {
+        column.clear(index);
+      }
+    }
+    Map<MeasureKey, Measure> measures = objectMeasures.get(index);
+    if (measures != null) {
+      measures.remove(key);
+    }
+  }
+
+  private static boolean isNumericOnly(Measure measure) {
+    switch (measure.getValueType()) {
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case DOUBLE:
+        return measure.getDeveloper() == null
+          && measure.getData() == null
+          && measure.getDescription() == null
+          && !measure.hasQualityGateStatus()
+          && !measure.hasVariations();
+      default:
+        return false;
+    }
+  }
+
+  private static final class NumericColumn {
+    private final Measure.ValueType valueType;
+    private final BitSet present = new BitSet();
+    private double[] values = new double[INITIAL_COLUMN_CAPACITY];
+
+    private NumericColumn(Measure.ValueType valueType) {
+      this.valueType = valueType;
+    }
+
+    boolean contains(int index) {
+      return present.get(index);
+    }
+
+    Measure get(int index) {
+      return Measure.createNumeric(valueType, values[index]);
+    }
+
+    void set(int index, double value) {
+      if (index >= values.length) {
+        values = Arrays.copyOf(values, Math.max(index + 1, values.length + (values.length >> 1)));
+      }
+      values[index] = value;
+      present.set(index);
+    }
+
+    void clear(int index) {
+      present.clear(index);
+    }
+  }
+}
@@ -103,6 +103,26 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Creates a measure of a numeric {@link ValueType} from a value which has already been scaled, without developer,
+   * data, description, QualityGate status nor variations.
+   *
+   * @see ColumnarRawMeasureRepository
+   */
+  static Measure createNumeric(ValueType valueType, double value) {
+    checkArgument(valueType == ValueType.BOOLEAN || valueType == ValueType.INT || valueType == ValueType.LONG || valueType == ValueType.DOUBLE,
+      "ValueType %s is not numeric", valueType);
+    return new Measure(valueType, null, value, null, null, null, null, null);
+  }
+
+  /**
+   * The value of a measure of a numeric {@link ValueType}, as stored in this Measure.
+   */
+  double getNumericValue() {
+    checkState(value != null, "Measure of ValueType %s has no numeric value", valueType);
+    return value;
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private String description;
@@ -23,6 +23,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
 import java.util.HashSet;
 import java.util.Set;
+import org.sonar.api.config.Settings;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -32,6 +33,8 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryAccount;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryBudget;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricValidator;
@@ -39,18 +42,51 @@ import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricVali
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
 
+/**
+ * Raw measures are read and written under the lock of this repository, as they can be added concurrently by
+ * {@link org.sonar.server.computation.task.projectanalysis.component.ThreadSafeFileVisitor}s visiting files in
+ * parallel.
+ */
 public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+  /**
+   * When {@code true}, raw numeric measures are stored in primitive columns (see {@link ColumnarRawMeasureRepository})
+   * instead of one {@link Measure} object per value.
+   */
+  public static final String COLUMNAR_STORE_PROPERTY = "sonar.ce.measures.columnarStore";
+
+  private static final long MEASURE_BYTES = 96L;
+
+  private final RawMeasureRepository delegate;
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
   private final MetricRepository metricRepository;
   private final ReportMetricValidator reportMetricValidator;
+  // raw measures are needed until the end of the task, they are accounted but never spilled
+  private final MemoryAccount memoryAccount;
 
   private MeasureDtoToMeasure underTest = new MeasureDtoToMeasure();
   private final Set<Integer> loadedComponents = new HashSet<>();
 
   public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator) {
+    this(dbClient, reportReader, metricRepository, reportMetricValidator, new MapBasedRawMeasureRepository<>(toReportRef()), MemoryBudget.unlimited());
+  }
+
+  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator,
+    Settings settings) {
+    this(dbClient, reportReader, metricRepository, reportMetricValidator, createDelegate(settings), MemoryBudget.unlimited());
+  }
+
+  // this constructor is used by picocontainer
+  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator,
+    Settings settings, MemoryBudget memoryBudget) {
+    this(dbClient, reportReader, metricRepository, reportMetricValidator, createDelegate(settings), memoryBudget);
+  }
+
+  private MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator,
+    RawMeasureRepository delegate, MemoryBudget memoryBudget) {
+    this.memoryAccount = memoryBudget.newAccount("measures");
+    this.delegate = delegate;
     this.dbClient = dbClient;
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
@@ -58,6 +94,13 @@ public class MeasureRepositoryImpl implements MeasureRepository {
     this.metricRepository = metricRepository;
   }
 
+  private static RawMeasureRepository createDelegate(Settings settings) {
+    if (settings.getBoolean(COLUMNAR_STORE_PROPERTY)) {
+      return new ColumnarRawMeasureRepository(component -> component.getReportAttributes().getRef());
+    }
+    return new MapBasedRawMeasureRepository<>(toReportRef());
+  }
+
   @Override
   public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
     // fail fast
@@ -75,7 +118,7 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   @Override
-  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+  public synchronized Optional<Measure> getRawMeasure(Component component, Metric metric) {
     Optional<Measure> local = delegate.getRawMeasure(component, metric);
     if (local.isPresent()) {
       return local;
@@ -87,23 +130,24 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   @Override
-  public void add(Component component, Metric metric, Measure measure) {
+  public synchronized void add(Component component, Metric metric, Measure measure) {
     delegate.add(component, metric, measure);
+    memoryAccount.allocate(footprint(measure));
   }
 
   @Override
-  public void update(Component component, Metric metric, Measure measure) {
+  public synchronized void update(Component component, Metric metric, Measure measure) {
     delegate.update(component, metric, measure);
   }
 
   @Override
-  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+  public synchronized Set<Measure> getRawMeasures(Component component, Metric metric) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component, metric);
   }
 
   @Override
-  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+  public synchronized SetMultimap<String, Measure> getRawMeasures(Component component) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component);
   }
@@ -119,11 +163,18 @@ public class MeasureRepositoryImpl implements MeasureRepository {
         String metricKey = batchMeasure.getMetricKey();
         if (reportMetricValidator.validate(metricKey)) {
           Metric metric = metricRepository.getByKey(metricKey);
-          delegate.add(component, metric, batchMeasureToMeasure.toMeasure(batchMeasure, metric).get(), OverridePolicy.DO_NOT_OVERRIDE);
+          Measure measure = batchMeasureToMeasure.toMeasure(batchMeasure, metric).get();
+          delegate.add(component, metric, measure, OverridePolicy.DO_NOT_OVERRIDE);
+          memoryAccount.allocate(footprint(measure));
         }
       }
     }
     loadedComponents.add(component.getReportAttributes().getRef());
   }
 
+  private static long footprint(Measure measure) {
+    String data = measure.getData();
+    return data == null ? MEASURE_BYTES : (MEASURE_BYTES + 2L * data.length());
+  }
+
 }
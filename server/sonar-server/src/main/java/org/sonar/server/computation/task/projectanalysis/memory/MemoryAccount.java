@@ -0,0 +1,126 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.memory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Estimated heap footprint of a repository, accounted in a {@link MemoryBudget}. Created by
+ * {@link MemoryBudget#newAccount(String, Spillable)}.
+ * <p>
+ * Footprints are estimations: repositories declare the approximate size of the data they retain and release,
+ * they don't measure the heap.
+ * </p>
+ */
+public final class MemoryAccount {
+
+  private final MemoryBudget budget;
+  private final String name;
+  @CheckForNull
+  private final Spillable spillable;
+
+  // guarded by budget
+  private long usedBytes = 0L;
+  private long peakBytes = 0L;
+  private int spillCount = 0;
+  private long spilledBytes = 0L;
+
+  MemoryAccount(MemoryBudget budget, String name, @Nullable Spillable spillable) {
+    this.budget = budget;
+    this.name = name;
+    this.spillable = spillable;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isSpillable() {
+    return spillable != null;
+  }
+
+  /**
+   * Declares that {@code bytes} more bytes are retained. This may trigger a spill of this account or of other ones.
+   */
+  public void allocate(long bytes) {
+    checkArgument(bytes >= 0, "Number of bytes must be positive, got %s", bytes);
+    budget.allocate(this, bytes);
+  }
+
+  /**
+   * Declares that {@code bytes} bytes are not retained anymore
+   */
+  public void release(long bytes) {
+    checkArgument(bytes >= 0, "Number of bytes must be positive, got %s", bytes);
+    budget.release(this, bytes);
+  }
+
+  public long getUsedBytes() {
+    synchronized (budget) {
+      return usedBytes;
+    }
+  }
+
+  public long getPeakBytes() {
+    synchronized (budget) {
+      return peakBytes;
+    }
+  }
+
+  public int getSpillCount() {
+    synchronized (budget) {
+      return spillCount;
+    }
+  }
+
+  public long getSpilledBytes() {
+    synchronized (budget) {
+      return spilledBytes;
+    }
+  }
+
+  void onAllocate(long bytes) {
+    usedBytes += bytes;
+    peakBytes = Math.max(peakBytes, usedBytes);
+  }
+
+  void onRelease(long bytes) {
+    // estimations of released data may be greater than estimations of allocated data
+    usedBytes = Math.max(0L, usedBytes - bytes);
+  }
+
+  /**
+   * @return the number of released bytes
+   */
+  long spill(long bytesToRelease) {
+    if (spillable == null) {
+      return 0L;
+    }
+    long released = Math.min(spillable.spill(bytesToRelease), usedBytes);
+    if (released > 0L) {
+      spillCount++;
+      spilledBytes += released;
+    }
+    return released;
+  }
+}
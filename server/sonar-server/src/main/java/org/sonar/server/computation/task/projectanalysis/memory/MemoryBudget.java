@@ -0,0 +1,186 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
+
+/**
+ * Memory budget of a Compute Engine task. Repositories declare the estimated footprint of the data they retain
+ * through their {@link MemoryAccount}. When the sum of the footprints exceeds the budget, the {@link Spillable}
+ * accounts are asked, largest first, to release memory until the total is back under {@link #LOW_WATERMARK} of
+ * the budget, so that exceeding the budget does not trigger a spill on each following allocation.
+ * <p>
+ * The budget is set in MB by the property {@link #BUDGET_PROPERTY}. It defaults to half of the max heap.
+ * Usage and spills are logged when the task ends.
+ * </p>
+ */
+public class MemoryBudget implements Startable {
+
+  public static final String BUDGET_PROPERTY = "sonar.ce.task.memoryBudgetMb";
+  static final double LOW_WATERMARK = 0.75d;
+
+  private static final Logger LOGGER = Loggers.get(MemoryBudget.class);
+  private static final long MB = 1024L * 1024L;
+
+  private final long budgetBytes;
+  private final List<MemoryAccount> accounts = new ArrayList<>();
+  private long usedBytes = 0L;
+  private long peakBytes = 0L;
+  private int spillCount = 0;
+  private boolean spilling = false;
+  private boolean exceededWarningLogged = false;
+
+  public MemoryBudget(Settings settings) {
+    this(budgetOf(settings));
+  }
+
+  MemoryBudget(long budgetBytes) {
+    checkArgument(budgetBytes > 0, "Memory budget must be strictly positive, got %s", budgetBytes);
+    this.budgetBytes = budgetBytes;
+  }
+
+  /**
+   * Budget which is never exceeded. Used by the repositories which are not created with a budget.
+   */
+  public static MemoryBudget unlimited() {
+    return new MemoryBudget(Long.MAX_VALUE);
+  }
+
+  private static long budgetOf(Settings settings) {
+    int budgetMb = settings.getInt(BUDGET_PROPERTY);
+    if (budgetMb > 0) {
+      return budgetMb * MB;
+    }
+    return Runtime.getRuntime().maxMemory() / 2;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  /**
+   * Synchronized, as memory can still be allocated or released by the threads visiting files in parallel, and the
+   * accounts are updated under the same lock
+   */
+  @Override
+  public synchronized void stop() {
+    if (usedBytes == 0L && peakBytes == 0L) {
+      return;
+    }
+    LOGGER.info("Memory budget | budget={} | peak={} | spills={}", toDisplaySize(budgetBytes), toDisplaySize(peakBytes), getSpillCount());
+    for (MemoryAccount account : getAccounts()) {
+      if (account.getPeakBytes() > 0L) {
+        LOGGER.info("  {} | peak={} | spills={} | spilled={}", account.getName(), toDisplaySize(account.getPeakBytes()), account.getSpillCount(),
+          toDisplaySize(account.getSpilledBytes()));
+      }
+    }
+  }
+
+  private static String toDisplaySize(long bytes) {
+    return bytes == Long.MAX_VALUE ? "unlimited" : byteCountToDisplaySize(bytes);
+  }
+
+  public synchronized MemoryAccount newAccount(String name) {
+    return newAccount(name, null);
+  }
+
+  public synchronized MemoryAccount newAccount(String name, @Nullable Spillable spillable) {
+    MemoryAccount account = new MemoryAccount(this, name, spillable);
+    accounts.add(account);
+    return account;
+  }
+
+  public long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  public synchronized long getPeakBytes() {
+    return peakBytes;
+  }
+
+  public synchronized int getSpillCount() {
+    return spillCount;
+  }
+
+  public synchronized List<MemoryAccount> getAccounts() {
+    return Collections.unmodifiableList(new ArrayList<>(accounts));
+  }
+
+  synchronized void allocate(MemoryAccount account, long bytes) {
+    account.onAllocate(bytes);
+    usedBytes += bytes;
+    peakBytes = Math.max(peakBytes, usedBytes);
+    if (usedBytes > budgetBytes && !spilling) {
+      spill();
+    }
+  }
+
+  synchronized void release(MemoryAccount account, long bytes) {
+    long released = Math.min(bytes, account.getUsedBytes());
+    account.onRelease(released);
+    usedBytes -= released;
+  }
+
+  private void spill() {
+    spilling = true;
+    try {
+      long target = (long) (budgetBytes * LOW_WATERMARK);
+      List<MemoryAccount> spillables = accounts.stream()
+        .filter(MemoryAccount::isSpillable)
+        .sorted(comparing(MemoryAccount::getUsedBytes).reversed())
+        .collect(toList());
+      for (MemoryAccount account : spillables) {
+        if (usedBytes <= target) {
+          break;
+        }
+        long released = account.spill(usedBytes - target);
+        if (released > 0L) {
+          spillCount++;
+          release(account, released);
+          LOGGER.debug("Spilled {} of {}", toDisplaySize(released), account.getName());
+        }
+      }
+      if (usedBytes > budgetBytes && !exceededWarningLogged) {
+        exceededWarningLogged = true;
+        LOGGER.warn("Memory budget of {} is exceeded by data which can not be spilled ({}). Set property {} to increase it.",
+          toDisplaySize(budgetBytes), toDisplaySize(usedBytes), BUDGET_PROPERTY);
+      }
+    } finally {
+      spilling = false;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.memory;
+
+/**
+ * A repository able to release part of its data when the {@link MemoryBudget} of the task is exceeded, either
+ * by writing it to disk or by dropping data which can be loaded again.
+ */
+@FunctionalInterface
+public interface Spillable {
+
+  /**
+   * Releases, if possible, at least {@code bytesToRelease} bytes, coldest data first. Implementations must not
+   * update their {@link MemoryAccount} for the released data, it is done by the caller.
+   *
+   * @return the estimated number of bytes actually released, which may be lower or greater than requested
+   */
+  long spill(long bytesToRelease);
+
+}
@@ -20,7 +20,9 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
-import java.util.HashMap;
+import com.google.common.collect.Iterables;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -31,11 +33,21 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryAccount;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryBudget;
+import org.sonar.server.computation.task.projectanalysis.memory.Spillable;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 
 import static java.util.Objects.requireNonNull;
 
-public class ScmInfoRepositoryImpl implements ScmInfoRepository {
+/**
+ * When the {@link MemoryBudget} of the task is exceeded, the least recently used {@link ScmInfo} are evicted from the
+ * cache. They are read again from the report or from the database when they are requested again.
+ * <p>
+ * This repository is thread-safe, as files can be visited in parallel by
+ * {@link org.sonar.server.computation.task.projectanalysis.component.ThreadSafeFileVisitor}s.
+ */
+public class ScmInfoRepositoryImpl implements ScmInfoRepository, Spillable {
 
   private static final Logger LOGGER = Loggers.get(ScmInfoRepositoryImpl.class);
 
@@ -44,13 +56,24 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
   private final DbClient dbClient;
   private final SourceHashRepository sourceHashRepository;
 
-  private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  private static final long SCM_INFO_BYTES = 64L;
+  private static final long CHANGESET_BYTES = 24L;
+
+  private final MemoryAccount memoryAccount;
+  // access-ordered, so that the least recently used files are evicted first
+  private final Map<Component, ScmInfo> scmInfoCache = new LinkedHashMap<>(16, 0.75f, true);
 
   public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+    this(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, MemoryBudget.unlimited());
+  }
+
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository,
+    MemoryBudget memoryBudget) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.dbClient = dbClient;
     this.sourceHashRepository = sourceHashRepository;
+    this.memoryAccount = memoryBudget.newAccount("scm", this);
   }
 
   @Override
@@ -63,16 +86,50 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     if (component.getType() != Component.Type.FILE) {
       return Optional.absent();
     }
-    ScmInfo scmInfo = scmInfoCache.get(component);
+    ScmInfo scmInfo;
+    synchronized (scmInfoCache) {
+      scmInfo = scmInfoCache.get(component);
+    }
     if (scmInfo != null) {
       return optionalOf(scmInfo);
     }
 
+    // loaded outside of the lock, so that files are read from the report and from the database concurrently
     scmInfo = getScmInfoForComponent(component);
-    scmInfoCache.put(component, scmInfo);
+    ScmInfo previous;
+    synchronized (scmInfoCache) {
+      previous = scmInfoCache.put(component, scmInfo);
+    }
+    // allocating may spill this repository, which locks the cache, so it is not done while holding it
+    if (previous == null) {
+      memoryAccount.allocate(footprint(scmInfo));
+    }
     return optionalOf(scmInfo);
   }
 
+  @Override
+  public long spill(long bytesToRelease) {
+    synchronized (scmInfoCache) {
+      long released = 0L;
+      // the most recently used file, which is usually the one being processed, is never evicted
+      int evictableFiles = scmInfoCache.size() - 1;
+      Iterator<ScmInfo> cachedScmInfos = scmInfoCache.values().iterator();
+      while (released < bytesToRelease && evictableFiles > 0) {
+        released += footprint(cachedScmInfos.next());
+        cachedScmInfos.remove();
+        evictableFiles--;
+      }
+      return released;
+    }
+  }
+
+  private static long footprint(ScmInfo scmInfo) {
+    if (scmInfo == NoScmInfo.INSTANCE) {
+      return 0L;
+    }
+    return SCM_INFO_BYTES + Iterables.size(scmInfo.getAllChangesets()) * CHANGESET_BYTES;
+  }
+
   private static Optional<ScmInfo> optionalOf(ScmInfo scmInfo) {
     if (scmInfo == NoScmInfo.INSTANCE) {
       return Optional.absent();
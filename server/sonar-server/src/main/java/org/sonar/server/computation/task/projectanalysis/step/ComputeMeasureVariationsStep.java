@@ -22,14 +22,23 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.PastMeasureDto;
@@ -59,15 +68,26 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  * Set variations on all numeric measures found in the repository.
  * This step MUST be executed after all steps that create some measures
  * <p/>
+ * By default, past measures of all the components are streamed from database in a single query ordered by component
+ * (see {@link #BULK_LOADING_PROPERTY}). When bulk loading is disabled, past measures are loaded with one query per
+ * component and per analysis.
+ * <p/>
  * Note that measures on developer are not handle yet.
  */
 public class ComputeMeasureVariationsStep implements ComputationStep {
 
+  public static final String BULK_LOADING_PROPERTY = "sonar.ce.measures.variations.bulkLoading";
+
+  private static final Logger LOGGER = Loggers.get(ComputeMeasureVariationsStep.class);
+  // measures on files are currently purged, so past measures are not available on files
+  private static final CrawlerDepthLimit VISITED_DEPTH = CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW);
+
   private final DbClient dbClient;
   private final TreeRootHolder treeRootHolder;
   private final PeriodsHolder periodsHolder;
   private final MetricRepository metricRepository;
   private final MeasureRepository measureRepository;
+  private final boolean bulkLoading;
 
   private final Function<PastMeasureDto, MeasureKey> pastMeasureToMeasureKey = new Function<PastMeasureDto, MeasureKey>() {
     @Nullable
@@ -79,12 +99,13 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
   };
 
   public ComputeMeasureVariationsStep(DbClient dbClient, TreeRootHolder treeRootHolder, PeriodsHolder periodsHolder, MetricRepository metricRepository,
-    MeasureRepository measureRepository) {
+    MeasureRepository measureRepository, Settings settings) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.periodsHolder = periodsHolder;
     this.metricRepository = metricRepository;
     this.measureRepository = measureRepository;
+    this.bulkLoading = !settings.hasKey(BULK_LOADING_PROPERTY) || settings.getBoolean(BULK_LOADING_PROPERTY);
   }
 
   @Override
@@ -92,41 +113,136 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     DbSession dbSession = dbClient.openSession(false);
     try {
       List<Metric> metrics = from(metricRepository.getAll()).filter(NumericMetric.INSTANCE).toList();
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
-        .visit(treeRootHolder.getRoot());
+      VariationsComputer variationsComputer = new VariationsComputer(metrics);
+      if (bulkLoading) {
+        computeWithBulkLoading(dbSession, variationsComputer);
+      } else {
+        new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, variationsComputer))
+          .visit(treeRootHolder.getRoot());
+      }
     } finally {
       dbClient.closeSession(dbSession);
     }
   }
 
+  private void computeWithBulkLoading(DbSession session, VariationsComputer variationsComputer) {
+    ComponentsCollector componentsCollector = new ComponentsCollector();
+    new DepthTraversalTypeAwareCrawler(componentsCollector).visit(treeRootHolder.getRoot());
+    Map<String, Component> remainingComponentsByUuid = componentsCollector.componentsByUuid;
+
+    Set<String> analysisUuids = new HashSet<>();
+    for (Period period : periodsHolder.getPeriods()) {
+      analysisUuids.add(period.getAnalysisUuid());
+    }
+    PastMeasuresHandler pastMeasuresHandler = new PastMeasuresHandler(remainingComponentsByUuid, variationsComputer);
+    dbClient.measureDao().selectPastMeasuresOfNonFileComponents(session, analysisUuids, variationsComputer.metricIds, pastMeasuresHandler);
+    pastMeasuresHandler.flush();
+
+    // components without any past measure, for instance the ones added since the analyses of the periods
+    for (Component component : remainingComponentsByUuid.values()) {
+      variationsComputer.compute(component, ImmutableListMultimap.<String, PastMeasureDto>of());
+    }
+    LOGGER.debug("{} past measures loaded for {} components", pastMeasuresHandler.rowCount, pastMeasuresHandler.componentCount);
+  }
+
   private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
-    private final Set<Integer> metricIds;
-    private final List<Metric> metrics;
+    private final VariationsComputer variationsComputer;
 
-    VariationMeasuresVisitor(DbSession session, List<Metric> metrics) {
-      // measures on files are currently purged, so past measures are not available on files
-      super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
+    VariationMeasuresVisitor(DbSession session, VariationsComputer variationsComputer) {
+      super(VISITED_DEPTH, PRE_ORDER);
       this.session = session;
-      this.metricIds = from(metrics).transform(MetricDtoToMetricId.INSTANCE).toSet();
-      this.metrics = metrics;
+      this.variationsComputer = variationsComputer;
     }
 
     @Override
     public void visitAny(Component component) {
-      MeasuresWithVariationRepository measuresWithVariationRepository = computeMeasuresWithVariations(component);
-      processMeasuresWithVariation(component, measuresWithVariationRepository);
+      ListMultimap<String, PastMeasureDto> pastMeasuresByAnalysisUuid = ArrayListMultimap.create();
+      for (Period period : periodsHolder.getPeriods()) {
+        String analysisUuid = period.getAnalysisUuid();
+        if (!pastMeasuresByAnalysisUuid.containsKey(analysisUuid)) {
+          pastMeasuresByAnalysisUuid.putAll(analysisUuid, dbClient.measureDao()
+            .selectPastMeasures(session, component.getUuid(), analysisUuid, variationsComputer.metricIds));
+        }
+      }
+      variationsComputer.compute(component, pastMeasuresByAnalysisUuid);
+    }
+  }
+
+  /**
+   * Collects, by UUID, the components on which variations are computed.
+   */
+  private static class ComponentsCollector extends TypeAwareVisitorAdapter {
+    private final Map<String, Component> componentsByUuid = new HashMap<>();
+
+    ComponentsCollector() {
+      super(VISITED_DEPTH, PRE_ORDER);
     }
 
-    private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
+    @Override
+    public void visitAny(Component component) {
+      componentsByUuid.put(component.getUuid(), component);
+    }
+  }
+
+  /**
+   * Receives the past measures ordered by component and computes the variations of a component as soon as all its
+   * past measures have been received. Components are removed from {@code remainingComponentsByUuid} once processed.
+   */
+  private static class PastMeasuresHandler implements ResultHandler {
+    private final Map<String, Component> remainingComponentsByUuid;
+    private final VariationsComputer variationsComputer;
+    private final ListMultimap<String, PastMeasureDto> pastMeasuresByAnalysisUuid = ArrayListMultimap.create();
+    private String currentComponentUuid = null;
+    private int componentCount = 0;
+    private long rowCount = 0;
+
+    PastMeasuresHandler(Map<String, Component> remainingComponentsByUuid, VariationsComputer variationsComputer) {
+      this.remainingComponentsByUuid = remainingComponentsByUuid;
+      this.variationsComputer = variationsComputer;
+    }
+
+    @Override
+    public void handleResult(ResultContext context) {
+      PastMeasureDto pastMeasure = (PastMeasureDto) context.getResultObject();
+      rowCount++;
+      if (!pastMeasure.getComponentUuid().equals(currentComponentUuid)) {
+        flush();
+        currentComponentUuid = pastMeasure.getComponentUuid();
+      }
+      pastMeasuresByAnalysisUuid.put(pastMeasure.getAnalysisUuid(), pastMeasure);
+    }
+
+    void flush() {
+      if (currentComponentUuid != null) {
+        // past measures of components which are not in the tree (removed components, for instance) are ignored
+        Component component = remainingComponentsByUuid.remove(currentComponentUuid);
+        if (component != null) {
+          variationsComputer.compute(component, pastMeasuresByAnalysisUuid);
+          componentCount++;
+        }
+        pastMeasuresByAnalysisUuid.clear();
+        currentComponentUuid = null;
+      }
+    }
+  }
+
+  private class VariationsComputer {
+    private final Set<Integer> metricIds;
+    private final List<Metric> metrics;
+
+    VariationsComputer(List<Metric> metrics) {
+      this.metricIds = from(metrics).transform(MetricDtoToMetricId.INSTANCE).toSet();
+      this.metrics = metrics;
+    }
+
+    void compute(Component component, ListMultimap<String, PastMeasureDto> pastMeasuresByAnalysisUuid) {
       MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
       for (Period period : periodsHolder.getPeriods()) {
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectPastMeasures(session, component.getUuid(), period.getAnalysisUuid(), metricIds);
-        setVariationMeasures(component, pastMeasures, period.getIndex(), measuresWithVariationRepository);
+        setVariationMeasures(component, pastMeasuresByAnalysisUuid.get(period.getAnalysisUuid()), period.getIndex(), measuresWithVariationRepository);
       }
-      return measuresWithVariationRepository;
+      processMeasuresWithVariation(component, measuresWithVariationRepository);
     }
 
     private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, int period, MeasuresWithVariationRepository measuresWithVariationRepository) {
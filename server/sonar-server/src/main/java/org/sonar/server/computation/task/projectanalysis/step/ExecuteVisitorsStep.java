@@ -20,7 +20,11 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.CheckForNull;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
@@ -29,15 +33,23 @@ import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawl
 import org.sonar.server.computation.task.step.ComputationStep;
 
 public class ExecuteVisitorsStep implements ComputationStep {
+  /**
+   * Number of threads used to visit files with the visitors implementing
+   * {@link org.sonar.server.computation.task.projectanalysis.component.ThreadSafeFileVisitor}. Files are visited
+   * by a single thread when 1, which is the default.
+   */
+  public static final String FILE_VISIT_PARALLELISM_PROPERTY = "sonar.ce.visitors.fileParallelism";
 
   private static final Logger LOGGER = Loggers.get(ExecuteVisitorsStep.class);
 
   private final TreeRootHolder treeRootHolder;
   private final List<ComponentVisitor> visitors;
+  private final Settings settings;
 
-  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors) {
+  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors, Settings settings) {
     this.treeRootHolder = treeRootHolder;
     this.visitors = visitors;
+    this.settings = settings;
   }
 
   @Override
@@ -47,16 +59,39 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors);
-    visitorsCrawler.visit(treeRootHolder.getRoot());
-    logVisitorExecutionDurations(visitors, visitorsCrawler);
+    ForkJoinPool forkJoinPool = createForkJoinPool();
+    try {
+      VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, forkJoinPool);
+      visitorsCrawler.visit(treeRootHolder.getRoot());
+      logVisitorExecutionDurations(visitors, visitorsCrawler);
+    } finally {
+      if (forkJoinPool != null) {
+        forkJoinPool.shutdown();
+      }
+    }
+  }
+
+  @CheckForNull
+  private ForkJoinPool createForkJoinPool() {
+    int parallelism = settings.getInt(FILE_VISIT_PARALLELISM_PROPERTY);
+    if (parallelism <= 1) {
+      return null;
+    }
+    return new ForkJoinPool(parallelism);
   }
 
   private static void logVisitorExecutionDurations(List<ComponentVisitor> visitors, VisitorsCrawler visitorsCrawler) {
     LOGGER.info("  Execution time for each component visitor:");
     Map<ComponentVisitor, Long> cumulativeDurations = visitorsCrawler.getCumulativeDurations();
+    Map<ComponentVisitor, Double> parallelSpeedups = visitorsCrawler.getParallelSpeedups();
     for (ComponentVisitor visitor : visitors) {
-      LOGGER.info("  - {} | time={}ms", visitor.getClass().getSimpleName(), cumulativeDurations.get(visitor));
+      Double speedup = parallelSpeedups.get(visitor);
+      if (speedup == null) {
+        LOGGER.info("  - {} | time={}ms", visitor.getClass().getSimpleName(), cumulativeDurations.get(visitor));
+      } else {
+        LOGGER.info("  - {} | time={}ms | parallel speedup={}", visitor.getClass().getSimpleName(), cumulativeDurations.get(visitor),
+          String.format(Locale.ENGLISH, "%.2f", speedup));
+      }
     }
   }
 }
@@ -20,8 +20,15 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -38,6 +45,7 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectCloneIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
@@ -50,6 +58,8 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 /**
  * Feed the duplications repository from the cross project duplication blocks computed with duplications blocks of the analysis report.
  *
+ * Candidates are loaded from {@link CrossProjectCloneIndex} once per language, for the hashes of all the files.
+ *
  * Blocks can be empty if :
  * - The file is excluded from the analysis using {@link org.sonar.api.CoreProperties#CPD_EXCLUSIONS}
  * - On Java, if the number of statements of the file is too small, nothing will be sent.
@@ -64,22 +74,29 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
   private final DbClient dbClient;
+  private final CrossProjectCloneIndex cloneIndex;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient, CrossProjectCloneIndex cloneIndex) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
     this.dbClient = dbClient;
+    this.cloneIndex = cloneIndex;
   }
 
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      HashesCollector hashesCollector = new HashesCollector();
+      new DepthTraversalTypeAwareCrawler(hashesCollector).visit(treeRootHolder.getRoot());
+      Map<String, ListMultimap<String, DuplicationUnitDto>> candidatesByLanguage = selectCandidates(hashesCollector.hashesByLanguage);
+      if (!candidatesByLanguage.isEmpty()) {
+        new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor(candidatesByLanguage)).visit(treeRootHolder.getRoot());
+      }
     }
   }
 
@@ -88,22 +105,78 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
     return "Compute cross project duplications";
   }
 
-  private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+  private Map<String, ListMultimap<String, DuplicationUnitDto>> selectCandidates(Map<String, Set<String>> hashesByLanguage) {
+    Map<String, ListMultimap<String, DuplicationUnitDto>> candidatesByLanguage = new HashMap<>();
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      Analysis projectAnalysis = analysisMetadataHolder.getBaseProjectSnapshot();
+      String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
+      for (Map.Entry<String, Set<String>> entry : hashesByLanguage.entrySet()) {
+        ListMultimap<String, DuplicationUnitDto> candidates = cloneIndex.selectCandidates(dbSession, analysisUuid, entry.getKey(), entry.getValue());
+        LOGGER.debug("Found {} cross project duplication candidates for {} hashes of language {}", candidates.size(), entry.getValue().size(), entry.getKey());
+        if (!candidates.isEmpty()) {
+          candidatesByLanguage.put(entry.getKey(), candidates);
+        }
+      }
+      return candidatesByLanguage;
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+  }
+
+  private List<CpdTextBlock> readCpdTextBlocks(Component file) {
+    return newArrayList(reportReader.readCpdTextBlocks(file.getReportAttributes().getRef()));
+  }
+
+  /**
+   * Hashes of the blocks of all the files, grouped by language, so that candidates are loaded once per language
+   */
+  private class HashesCollector extends TypeAwareVisitorAdapter {
+    private final Map<String, Set<String>> hashesByLanguage = new HashMap<>();
 
-    private CrossProjectDuplicationVisitor() {
+    private HashesCollector() {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
     }
 
     @Override
     public void visitFile(Component file) {
-      List<CpdTextBlock> cpdTextBlocks = newArrayList(reportReader.readCpdTextBlocks(file.getReportAttributes().getRef()));
-      LOGGER.trace("Found {} cpd blocks on file {}", cpdTextBlocks.size(), file.getKey());
-      if (cpdTextBlocks.isEmpty()) {
+      String language = file.getFileAttributes().getLanguageKey();
+      if (language == null) {
+        // candidates are selected on language, no file can match
         return;
       }
+      List<CpdTextBlock> cpdTextBlocks = readCpdTextBlocks(file);
+      LOGGER.trace("Found {} cpd blocks on file {}", cpdTextBlocks.size(), file.getKey());
+      if (!cpdTextBlocks.isEmpty()) {
+        Set<String> hashes = hashesByLanguage.computeIfAbsent(language, l -> new HashSet<>());
+        for (CpdTextBlock cpdTextBlock : cpdTextBlocks) {
+          hashes.add(cpdTextBlock.getHash());
+        }
+      }
+    }
+  }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
+  private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    private final Map<String, ListMultimap<String, DuplicationUnitDto>> candidatesByLanguage;
+
+    private CrossProjectDuplicationVisitor(Map<String, ListMultimap<String, DuplicationUnitDto>> candidatesByLanguage) {
+      super(CrawlerDepthLimit.FILE, PRE_ORDER);
+      this.candidatesByLanguage = candidatesByLanguage;
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      String language = file.getFileAttributes().getLanguageKey();
+      ListMultimap<String, DuplicationUnitDto> candidates = language == null ? null : candidatesByLanguage.get(language);
+      if (candidates == null) {
+        return;
+      }
+      List<CpdTextBlock> cpdTextBlocks = readCpdTextBlocks(file);
+      Set<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).copyInto(new LinkedHashSet<>());
+      List<DuplicationUnitDto> dtos = new ArrayList<>();
+      for (String hash : hashes) {
+        dtos.addAll(candidates.get(hash));
+      }
       if (dtos.isEmpty()) {
         return;
       }
@@ -114,17 +187,6 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
 
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
-
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      DbSession dbSession = dbClient.openSession(false);
-      try {
-        Analysis projectAnalysis = analysisMetadataHolder.getBaseProjectSnapshot();
-        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
-      } finally {
-        dbClient.closeSession(dbSession);
-      }
-    }
   }
 
   private enum CpdTextBlockToHash implements Function<CpdTextBlock, String> {
@@ -31,13 +31,14 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectCloneIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
- * Persist cross project duplications text blocks into DUPLICATIONS_INDEX table
+ * Persist cross project duplications text blocks into DUPLICATIONS_INDEX table, then append them to {@link CrossProjectCloneIndex}
  */
 public class PersistCrossProjectDuplicationIndexStep implements ComputationStep {
 
@@ -46,15 +47,17 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final BatchReportReader reportReader;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectCloneIndex cloneIndex;
 
   public PersistCrossProjectDuplicationIndexStep(CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder, DbClient dbClient,
     TreeRootHolder treeRootHolder, AnalysisMetadataHolder analysisMetadataHolder,
-    BatchReportReader reportReader) {
+    BatchReportReader reportReader, CrossProjectCloneIndex cloneIndex) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.reportReader = reportReader;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.cloneIndex = cloneIndex;
   }
 
   @Override
@@ -66,8 +69,10 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
     DbSession session = dbClient.openSession(true);
     try {
       Component project = treeRootHolder.getRoot();
-      new DepthTraversalTypeAwareCrawler(new DuplicationVisitor(session, analysisMetadataHolder.getUuid())).visit(project);
+      CrossProjectCloneIndex.Appender cloneIndexAppender = cloneIndex.newAppender(analysisMetadataHolder.getUuid());
+      new DepthTraversalTypeAwareCrawler(new DuplicationVisitor(session, analysisMetadataHolder.getUuid(), cloneIndexAppender)).visit(project);
       session.commit();
+      cloneIndexAppender.commit();
     } finally {
       dbClient.closeSession(session);
     }
@@ -77,11 +82,13 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
 
     private final DbSession session;
     private final String analysisUuid;
+    private final CrossProjectCloneIndex.Appender cloneIndexAppender;
 
-    private DuplicationVisitor(DbSession session, String analysisUuid) {
+    private DuplicationVisitor(DbSession session, String analysisUuid, CrossProjectCloneIndex.Appender cloneIndexAppender) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
       this.analysisUuid = analysisUuid;
+      this.cloneIndexAppender = cloneIndexAppender;
     }
 
     @Override
@@ -91,6 +98,7 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
 
     private void visitComponent(Component component) {
       int indexInFile = 0;
+      String language = component.getFileAttributes().getLanguageKey();
       CloseableIterator<ScannerReport.CpdTextBlock> blocks = reportReader.readCpdTextBlocks(component.getReportAttributes().getRef());
       try {
         while (blocks.hasNext()) {
@@ -104,6 +112,7 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
               .setIndexInFile(indexInFile)
               .setAnalysisUuid(analysisUuid)
               .setComponentUuid(component.getUuid()));
+          cloneIndexAppender.add(language, component.getUuid(), block.getHash(), indexInFile, block.getStartLine(), block.getEndLine());
           indexInFile++;
         }
       } finally {
@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,8 @@ import org.apache.commons.lang.ObjectUtils;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -46,7 +49,10 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
 import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
+import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
@@ -61,10 +67,19 @@ import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepos
 import org.sonar.server.computation.task.projectanalysis.source.SymbolsLineReader;
 import org.sonar.server.computation.task.step.ComputationStep;
 
+import static com.google.common.collect.FluentIterable.from;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 public class PersistFileSourcesStep implements ComputationStep {
 
+  private static final Logger LOGGER = Loggers.get(PersistFileSourcesStep.class);
+
+  /**
+   * Must be incremented when the way {@link DbFileSources.Data} is built changes, so that
+   * the sources of all files are rebuilt.
+   */
+  private static final int INPUT_HASH_VERSION = 1;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -89,8 +104,10 @@ public class PersistFileSourcesStep implements ComputationStep {
     // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
     DbSession session = dbClient.openSession(false);
     try {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(session))
+      FileSourceVisitor visitor = new FileSourceVisitor(session);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      LOGGER.info("  Files | skipped={} | unchanged={} | written={}", visitor.skippedFiles, visitor.unchangedFiles, visitor.writtenFiles);
     } finally {
       MyBatis.closeQuietly(session);
     }
@@ -102,6 +119,11 @@ public class PersistFileSourcesStep implements ComputationStep {
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    // files which data is not computed, because input data did not change since previous analysis
+    private int skippedFiles = 0;
+    // files which data is computed but is the same as in previous analysis
+    private int unchangedFiles = 0;
+    private int writtenFiles = 0;
 
     private FileSourceVisitor(DbSession session) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
@@ -124,13 +146,20 @@ public class PersistFileSourcesStep implements ComputationStep {
     @Override
     public void visitFile(Component file) {
       int fileRef = file.getReportAttributes().getRef();
+      String inputHash = computeInputHash(file);
+      FileSourceDto previousDto = previousFileSourcesByUuid.get(file.getUuid());
+      if (inputHash != null && previousDto != null && inputHash.equals(previousDto.getInputHash())) {
+        skippedFiles++;
+        return;
+      }
+
       ScannerReport.Component component = reportReader.readComponent(fileRef);
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
       LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange(), inputHash);
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       } finally {
@@ -139,7 +168,32 @@ public class PersistFileSourcesStep implements ComputationStep {
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    /**
+     * Hash of all the data used to build {@link DbFileSources.Data}, or {@code null} if the scanner
+     * did not provide the fingerprints of the file. Duplications are computed by Compute Engine, possibly
+     * from other projects, so they are not covered by the fingerprints of the scanner.
+     */
+    @CheckForNull
+    private String computeInputHash(Component file) {
+      ScannerReport.LineDataHashes hashes = reportReader.readLineDataHashes(file.getReportAttributes().getRef());
+      if (hashes == null) {
+        return null;
+      }
+      StringBuilder sb = new StringBuilder()
+        .append(INPUT_HASH_VERSION).append('|')
+        .append(hashes.getSource()).append('|')
+        .append(hashes.getCoverages()).append('|')
+        .append(hashes.getSyntaxHighlightings()).append('|')
+        .append(hashes.getSymbols()).append('|')
+        .append(hashes.getChangesets()).append('|');
+      for (TextBlock textBlock : duplicatedTextBlocks(duplicationRepository.getDuplications(file))) {
+        sb.append(textBlock.getStart()).append('-').append(textBlock.getEnd()).append(',');
+      }
+      return DigestUtils.md5Hex(sb.toString());
+    }
+
+    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange,
+      @Nullable String inputHash) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
@@ -159,25 +213,32 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setLineHashes(lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(computeRevision(latestChange))
+          .setInputHash(inputHash);
         dbClient.fileSourceDao().insert(session, dto);
         session.commit();
+        writtenFiles++;
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
         boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
         boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
         String revision = computeRevision(latestChange);
         boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+        boolean inputHashUpdated = !ObjectUtils.equals(inputHash, previousDto.getInputHash());
+        if (binaryDataUpdated || srcHashUpdated || revisionUpdated || inputHashUpdated) {
           previousDto
             .setBinaryData(data)
             .setDataHash(dataHash)
             .setSrcHash(srcHash)
             .setLineHashes(lineHashes)
             .setRevision(revision)
+            .setInputHash(inputHash)
             .setUpdatedAt(system2.now());
           dbClient.fileSourceDao().update(previousDto);
           session.commit();
+          writtenFiles++;
+        } else {
+          unchangedFiles++;
         }
       }
     }
@@ -191,6 +252,21 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  /**
+   * Text blocks of the file which are used by {@link org.sonar.server.computation.task.projectanalysis.source.DuplicationLineReader}, in natural order
+   */
+  private static List<TextBlock> duplicatedTextBlocks(Iterable<Duplication> duplications) {
+    List<TextBlock> textBlocks = new ArrayList<>();
+    for (Duplication duplication : duplications) {
+      textBlocks.add(duplication.getOriginal());
+      for (InnerDuplicate duplicate : from(duplication.getDuplicates()).filter(InnerDuplicate.class)) {
+        textBlocks.add(duplicate.getTextBlock());
+      }
+    }
+    Collections.sort(textBlocks);
+    return textBlocks;
+  }
+
   private static class LineReaders {
     private final List<LineReader> readers = new ArrayList<>();
     private final List<CloseableIterator<?>> closeables = new ArrayList<>();
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -31,8 +32,8 @@ import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.queue.CeTaskAvailabilitySignal;
 
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
@@ -40,17 +41,22 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final CeWorkerCallable workerRunnable;
+  private final CeTaskAvailabilitySignal availabilitySignal;
 
   private final long delayBetweenTasks;
+  private final long maxDelayBetweenTasks;
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
-    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable,
+    CeTaskAvailabilitySignal availabilitySignal) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
+    this.availabilitySignal = availabilitySignal;
 
     this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
+    this.maxDelayBetweenTasks = Math.max(delayBetweenTasks, ceConfiguration.getQueuePollingMaxDelay());
     this.timeUnit = MILLISECONDS;
 
     int workerCount = ceConfiguration.getWorkerCount();
@@ -68,8 +74,19 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
   @Override
   public void startScheduling() {
     for (ChainingCallback chainingCallback : chainingCallbacks) {
-      ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
-      addCallback(future, chainingCallback, executorService);
+      chainingCallback.start();
+    }
+    availabilitySignal.addListener(this::wakeUpIdleWorker);
+  }
+
+  /**
+   * Polls the queue right away with one of the workers waiting for their next poll, if any.
+   */
+  private void wakeUpIdleWorker() {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (chainingCallback.wakeUp()) {
+        return;
+      }
     }
   }
 
@@ -82,20 +99,31 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   private class ChainingCallback implements FutureCallback<Boolean> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
+    // state, guarded by this
     @CheckForNull
     private ListenableFuture<Boolean> workerFuture;
+    private boolean delayed = false;
+    private long idleDelay = 0;
+
+    public synchronized void start() {
+      chainWithDelay(delayBetweenTasks);
+    }
 
     @Override
-    public void onSuccess(@Nullable Boolean result) {
+    public synchronized void onSuccess(@Nullable Boolean result) {
       if (result != null && result) {
         chainWithoutDelay();
       } else {
-        chainWithDelay();
+        chainWithDelay(nextIdleDelay());
       }
     }
 
     @Override
-    public void onFailure(Throwable t) {
+    public synchronized void onFailure(Throwable t) {
+      if (t instanceof CancellationException) {
+        // future canceled by wakeUp() or stop() which take care of chaining
+        return;
+      }
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
@@ -103,16 +131,27 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
+    /**
+     * Delay doubles for each consecutive poll which found nothing to do, up to {@link #maxDelayBetweenTasks}.
+     */
+    private long nextIdleDelay() {
+      idleDelay = idleDelay == 0 ? delayBetweenTasks : Math.min(idleDelay * 2, maxDelayBetweenTasks);
+      return idleDelay;
+    }
+
     private void chainWithoutDelay() {
+      idleDelay = 0;
+      delayed = false;
       if (keepRunning()) {
         workerFuture = executorService.submit(workerRunnable);
       }
       addCallback();
     }
 
-    private void chainWithDelay() {
+    private void chainWithDelay(long delay) {
+      delayed = true;
       if (keepRunning()) {
-        workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+        workerFuture = executorService.schedule(workerRunnable, delay, timeUnit);
       }
       addCallback();
     }
@@ -123,14 +162,27 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
+    /**
+     * @return {@code true} if the pending delayed poll has been replaced by an immediate one
+     */
+    public synchronized boolean wakeUp() {
+      if (!keepRunning() || !delayed || workerFuture == null || !workerFuture.cancel(false)) {
+        return false;
+      }
+      chainWithoutDelay();
+      return true;
+    }
+
     private boolean keepRunning() {
       return keepRunning.get();
     }
 
     public void stop() {
       this.keepRunning.set(false);
-      if (workerFuture != null) {
-        workerFuture.cancel(false);
+      synchronized (this) {
+        if (workerFuture != null) {
+          workerFuture.cancel(false);
+        }
       }
     }
   }
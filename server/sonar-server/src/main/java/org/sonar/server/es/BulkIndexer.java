@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -39,6 +40,8 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -55,19 +58,25 @@ import static java.lang.String.format;
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>size of bulk requests can optionally adapt to the latency of Elasticsearch and to rejected executions</li>
  * </ul>
  */
 public class BulkIndexer implements Startable {
 
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
+  private static final long SLOW_BULK_MS = 2_000L;
+  private static final long FAST_BULK_MS = 500L;
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
 
   private final EsClient client;
   private final String indexName;
   private boolean large = false;
-  private long flushByteSize = FLUSH_BYTE_SIZE;
+  private volatile long flushByteSize = FLUSH_BYTE_SIZE;
+  private boolean adaptiveFlushSize = false;
+  private long minFlushByteSize = FLUSH_BYTE_SIZE / 4;
+  private long maxFlushByteSize = FLUSH_BYTE_SIZE * 8;
   private boolean disableRefresh = false;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
@@ -75,6 +84,9 @@ public class BulkIndexer implements Startable {
   private final int concurrentRequests;
   private final Semaphore semaphore;
   private final ProgressLogger progress;
+  private final AtomicLong sentBytes = new AtomicLong(0L);
+  private BulkIndexerStats stats = new BulkIndexerStats();
+  private long startedAt;
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
@@ -98,6 +110,24 @@ public class BulkIndexer implements Startable {
 
   public BulkIndexer setFlushByteSize(long flushByteSize) {
     this.flushByteSize = flushByteSize;
+    this.minFlushByteSize = Math.max(1L, flushByteSize / 4);
+    this.maxFlushByteSize = flushByteSize * 8;
+    return this;
+  }
+
+  /**
+   * When enabled, the flush size set by {@link #setFlushByteSize(long)} is only the initial size of bulk requests.
+   * It is halved when Elasticsearch rejects executions, decreased when bulk requests are slow and increased
+   * when they are fast, in the range [initial size / 4, initial size * 8].
+   */
+  public BulkIndexer setAdaptiveFlushSize(boolean b) {
+    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
+    this.adaptiveFlushSize = b;
+    return this;
+  }
+
+  public BulkIndexer setStats(BulkIndexerStats stats) {
+    this.stats = stats;
     return this;
   }
 
@@ -132,8 +162,11 @@ public class BulkIndexer implements Startable {
 
       updateSettings(bulkSettings);
     }
+    stats.onFlushByteSize(flushByteSize);
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    sentBytes.set(0L);
+    startedAt = System.currentTimeMillis();
     progress.start();
   }
 
@@ -204,6 +237,7 @@ public class BulkIndexer implements Startable {
       throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
     }
     progress.stop();
+    stats.onSessionCompleted(counter.get(), sentBytes.get(), System.currentTimeMillis() - startedAt);
 
     if (!disableRefresh) {
       client.prepareRefresh(indexName).get();
@@ -229,32 +263,77 @@ public class BulkIndexer implements Startable {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
     semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    req.execute(new BulkResponseActionListener(req, req.request().estimatedSizeInBytes(), System.currentTimeMillis()));
+  }
+
+  long getFlushByteSize() {
+    return flushByteSize;
+  }
+
+  private synchronized void adaptFlushByteSize(long durationMs, boolean rejected) {
+    if (!adaptiveFlushSize) {
+      return;
+    }
+    long size = flushByteSize;
+    if (rejected) {
+      size /= 2;
+    } else if (durationMs > SLOW_BULK_MS) {
+      size -= size / 4;
+    } else if (durationMs < FAST_BULK_MS) {
+      size += size / 4;
+    }
+    flushByteSize = Math.min(maxFlushByteSize, Math.max(minFlushByteSize, size));
+    stats.onFlushByteSize(flushByteSize);
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final long bytes;
+    private final long sentAt;
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(BulkRequestBuilder req, long bytes, long sentAt) {
       this.req = req;
+      this.bytes = bytes;
+      this.sentAt = sentAt;
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
+      try {
+        counter.addAndGet(response.getItems().length);
+        sentBytes.addAndGet(bytes);
 
-      for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+        int failures = 0;
+        boolean rejected = false;
+        for (BulkItemResponse item : response.getItems()) {
+          if (item.isFailed()) {
+            failures++;
+            rejected |= item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS;
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          }
+        }
+        stats.onBulkResponse(response.getItems().length, failures, bytes);
+        if (rejected) {
+          stats.onRejectedRequest();
         }
+        adaptFlushByteSize(System.currentTimeMillis() - sentAt, rejected);
+      } finally {
+        // release only when stats are up-to-date, as stop() waits for all the permits
+        semaphore.release();
       }
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      try {
+        LOGGER.error("Fail to execute bulk index request: " + req, e);
+        if (ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException) {
+          stats.onRejectedRequest();
+          adaptFlushByteSize(System.currentTimeMillis() - sentAt, true);
+        }
+      } finally {
+        semaphore.release();
+      }
     }
   }
 }
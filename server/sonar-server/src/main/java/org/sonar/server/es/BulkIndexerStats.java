@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Counters of the bulk requests sent by the {@link BulkIndexer}s of the process. Values are
+ * exposed through the monitoring MBeans.
+ */
+@ServerSide
+@ComputeEngineSide
+public class BulkIndexerStats {
+
+  private final AtomicLong indexedDocs = new AtomicLong(0L);
+  private final AtomicLong indexedBytes = new AtomicLong(0L);
+  private final AtomicLong failedDocs = new AtomicLong(0L);
+  private final AtomicLong rejectedRequests = new AtomicLong(0L);
+  private final AtomicLong queueDepth = new AtomicLong(0L);
+  private volatile long flushByteSize = 0L;
+  private volatile long docsPerSecond = 0L;
+  private volatile long bytesPerSecond = 0L;
+
+  void onBulkResponse(int docs, int failures, long bytes) {
+    indexedDocs.addAndGet(docs - failures);
+    failedDocs.addAndGet(failures);
+    indexedBytes.addAndGet(bytes);
+  }
+
+  void onRejectedRequest() {
+    rejectedRequests.incrementAndGet();
+  }
+
+  void onFlushByteSize(long bytes) {
+    this.flushByteSize = bytes;
+  }
+
+  /**
+   * Throughput of the last completed bulk indexing session
+   */
+  void onSessionCompleted(long docs, long bytes, long durationMs) {
+    checkArgument(durationMs >= 0, "Duration can not be < 0");
+    long duration = Math.max(1L, durationMs);
+    this.docsPerSecond = docs * 1000L / duration;
+    this.bytesPerSecond = bytes * 1000L / duration;
+  }
+
+  /**
+   * Documents built by {@link IndexingPipeline}s but not yet added to a bulk request
+   */
+  void addQueued(long delta) {
+    queueDepth.addAndGet(delta);
+  }
+
+  public long getIndexedDocs() {
+    return indexedDocs.get();
+  }
+
+  public long getIndexedBytes() {
+    return indexedBytes.get();
+  }
+
+  public long getFailedDocs() {
+    return failedDocs.get();
+  }
+
+  public long getRejectedRequests() {
+    return rejectedRequests.get();
+  }
+
+  public long getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  public long getFlushByteSize() {
+    return flushByteSize;
+  }
+
+  public long getDocsPerSecond() {
+    return docsPerSecond;
+  }
+
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+}
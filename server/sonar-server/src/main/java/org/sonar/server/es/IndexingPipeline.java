@@ -0,0 +1,164 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.elasticsearch.action.ActionRequest;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Sends documents to a {@link BulkIndexer} through a pipeline :
+ * <ul>
+ *   <li>a dedicated thread reads documents from the source iterator, generally a database result set</li>
+ *   <li>a pool of workers converts chunks of documents to index requests, which serializes the documents</li>
+ *   <li>the calling thread adds the requests to the bulk indexer, in the order of the source iterator</li>
+ * </ul>
+ * The number of chunks being converted or waiting to be sent is bounded, so reading the source is
+ * blocked as long as the bulk indexer is itself blocked by the pending bulk requests.
+ */
+public class IndexingPipeline<D> {
+
+  private static final int CHUNK_SIZE = 100;
+  private static final Future<List<ActionRequest>> END_OF_DOCUMENTS = CompletableFuture.completedFuture(Collections.emptyList());
+
+  private final String name;
+  private final BulkIndexerStats stats;
+  private final Function<D, ActionRequest> requestBuilder;
+  private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+  public IndexingPipeline(String name, BulkIndexerStats stats, Function<D, ActionRequest> requestBuilder) {
+    this.name = name;
+    this.stats = stats;
+    this.requestBuilder = requestBuilder;
+  }
+
+  public IndexingPipeline<D> setWorkers(int i) {
+    checkArgument(i > 0, "Number of workers must be strictly positive");
+    this.workers = i;
+    return this;
+  }
+
+  /**
+   * Adds the requests of all the documents to the bulk indexer, which must be started. The iterator
+   * is consumed by another thread, but is not closed.
+   */
+  public void run(Iterator<D> docs, BulkIndexer bulk) {
+    BlockingQueue<Future<List<ActionRequest>>> chunks = new ArrayBlockingQueue<>(workers * 4);
+    AtomicLong queued = new AtomicLong(0L);
+    ExecutorService readerExecutor = Executors.newSingleThreadExecutor(newThreadFactory(name + "-reader"));
+    ExecutorService workerExecutor = Executors.newFixedThreadPool(workers, newThreadFactory(name + "-worker-%d"));
+    try {
+      Future<?> reader = readerExecutor.submit(() -> read(docs, workerExecutor, chunks, queued));
+      send(chunks, queued, bulk);
+      reader.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(String.format("Fail to index documents of %s", name), e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      readerExecutor.shutdownNow();
+      workerExecutor.shutdownNow();
+      awaitTermination(readerExecutor);
+      stats.addQueued(-queued.getAndSet(0L));
+    }
+  }
+
+  private void read(Iterator<D> docs, ExecutorService workerExecutor, BlockingQueue<Future<List<ActionRequest>>> chunks, AtomicLong queued) {
+    boolean completed = false;
+    try {
+      List<D> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (docs.hasNext()) {
+        chunk.add(docs.next());
+        if (chunk.size() == CHUNK_SIZE) {
+          submit(chunk, workerExecutor, chunks, queued);
+          chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+      }
+      if (!chunk.isEmpty()) {
+        submit(chunk, workerExecutor, chunks, queued);
+      }
+      chunks.put(END_OF_DOCUMENTS);
+      completed = true;
+    } catch (InterruptedException e) {
+      // sending thread failed and stopped consuming the chunks
+      Thread.currentThread().interrupt();
+    } finally {
+      if (!completed) {
+        // make sending thread stop waiting for chunks, whatever the failure, including errors like OutOfMemoryError.
+        // Failure is propagated by the future of the reader.
+        chunks.clear();
+        chunks.offer(END_OF_DOCUMENTS);
+      }
+    }
+  }
+
+  private void submit(List<D> chunk, ExecutorService workerExecutor, BlockingQueue<Future<List<ActionRequest>>> chunks, AtomicLong queued)
+    throws InterruptedException {
+    queued.addAndGet(chunk.size());
+    stats.addQueued(chunk.size());
+    chunks.put(workerExecutor.submit(() -> chunk.stream().map(requestBuilder).collect(toList())));
+  }
+
+  private void send(BlockingQueue<Future<List<ActionRequest>>> chunks, AtomicLong queued, BulkIndexer bulk) throws InterruptedException, ExecutionException {
+    while (true) {
+      Future<List<ActionRequest>> chunk = chunks.take();
+      if (chunk == END_OF_DOCUMENTS) {
+        return;
+      }
+      List<ActionRequest> requests = chunk.get();
+      for (ActionRequest request : requests) {
+        bulk.add(request);
+      }
+      queued.addAndGet(-requests.size());
+      stats.addQueued(-requests.size());
+    }
+  }
+
+  private static void awaitTermination(ExecutorService executor) {
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static ThreadFactory newThreadFactory(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.server.issue;
 
 import java.util.List;
+import java.util.function.BiPredicate;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.server.ServerSide;
 import org.sonar.db.DbClient;
@@ -55,6 +56,15 @@ public class ActionService {
   }
 
   public List<String> listAvailableActions(Issue issue) {
+    return listAvailableActions(issue, userSession::hasComponentUuidPermission);
+  }
+
+  /**
+   * Same as {@link #listAvailableActions(Issue)}, when the project permissions of the user are already loaded.
+   *
+   * @param hasProjectPermission tests the permission of the user on a project uuid
+   */
+  public List<String> listAvailableActions(Issue issue, BiPredicate<String, String> hasProjectPermission) {
     List<String> availableActions = newArrayList();
     String login = userSession.getLogin();
     if (login != null) {
@@ -67,7 +77,7 @@ public class ActionService {
           availableActions.add("assign_to_me");
         }
         String projectUuid = issue.projectUuid();
-        if (projectUuid != null && userSession.hasComponentUuidPermission(ISSUE_ADMIN, projectUuid)) {
+        if (projectUuid != null && hasProjectPermission.test(ISSUE_ADMIN, projectUuid)) {
           availableActions.add("set_severity");
         }
       }
@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiPredicate;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.issue.Issue;
@@ -107,6 +108,15 @@ public class IssueService {
    * No security check is done since it should already have been done to get the issue
    */
   public List<Transition> listTransitions(@Nullable Issue issue) {
+    return listTransitions(issue, userSession::hasComponentUuidPermission);
+  }
+
+  /**
+   * Same as {@link #listTransitions(Issue)}, when the project permissions of the user are already loaded.
+   *
+   * @param hasProjectPermission tests the permission of the user on a project uuid
+   */
+  public List<Transition> listTransitions(@Nullable Issue issue, BiPredicate<String, String> hasProjectPermission) {
     if (issue == null) {
       return Collections.emptyList();
     }
@@ -115,7 +125,7 @@ public class IssueService {
     for (Transition transition : outTransitions) {
       String projectUuid = issue.projectUuid();
       if (userSession.isLoggedIn() && StringUtils.isBlank(transition.requiredProjectPermission()) ||
-        (projectUuid != null && userSession.hasComponentUuidPermission(transition.requiredProjectPermission(), projectUuid))) {
+        (projectUuid != null && hasProjectPermission.test(transition.requiredProjectPermission(), projectUuid))) {
         allowedTransitions.add(transition);
       }
     }
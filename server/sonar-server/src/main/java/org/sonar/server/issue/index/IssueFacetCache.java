@@ -0,0 +1,371 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import org.elasticsearch.action.admin.indices.stats.CommonStats;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.server.es.EsClient;
+import org.sonar.server.issue.IssueQuery;
+import org.sonar.server.view.index.ViewIndexDefinition;
+
+/**
+ * Short-lived cache of the facets computed by {@link IssueIndex#search(IssueQuery, org.sonar.server.es.SearchOptions)}.
+ * <p>
+ * Each facet is cached separately, so that requests asking for different combinations of facets on the same
+ * query share the facets they have in common. Facets are identified by their name, by the normalized query (values
+ * of the filters are sorted, sort and pagination are ignored), by the groups and login of the user, and by the
+ * generation of the indices "issues" and "views".
+ * </p>
+ * <p>
+ * The generation is given by the number of refreshes and of documents of these indices, as reported by Elasticsearch.
+ * Changes become visible to searches only when an index is refreshed, so the generation changes each time
+ * {@link IssueIndexer}, {@link IssueAuthorizationIndexer} or the indexers of views make changes searchable, including
+ * when they run in the Compute Engine. Entries of previous generations are then dropped.
+ * </p>
+ * <p>
+ * Entries also expire after a short delay, as the facet on creation dates depends on the current date
+ * when the query has no upper bound.
+ * </p>
+ */
+@Properties({
+  @Property(
+    key = IssueFacetCache.PROPERTY_MAX_ENTRIES,
+    defaultValue = "" + IssueFacetCache.DEFAULT_MAX_ENTRIES,
+    name = "Maximum number of issue facets kept in memory, 0 to disable the cache",
+    project = false,
+    global = false),
+  @Property(
+    key = IssueFacetCache.PROPERTY_TTL_IN_SECONDS,
+    defaultValue = "" + IssueFacetCache.DEFAULT_TTL_IN_SECONDS,
+    name = "Delay, in seconds, after which issue facets kept in memory are computed again",
+    project = false,
+    global = false)
+})
+@ServerSide
+@ComputeEngineSide
+public class IssueFacetCache {
+
+  public static final String PROPERTY_MAX_ENTRIES = "sonar.issues.facetCache.maxEntries";
+  public static final String PROPERTY_TTL_IN_SECONDS = "sonar.issues.facetCache.ttlInSeconds";
+  static final int DEFAULT_MAX_ENTRIES = 2000;
+  static final int DEFAULT_TTL_IN_SECONDS = 60;
+
+  private final EsClient esClient;
+  private final boolean enabled;
+  private final Cache<String, Optional<LinkedHashMap<String, Long>>> cache;
+  private final AtomicReference<String> lastGeneration = new AtomicReference<>();
+  private final Map<String, FacetStats> statsByFacet = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong(0L);
+  private final AtomicLong misses = new AtomicLong(0L);
+  private final AtomicLong invalidations = new AtomicLong(0L);
+
+  public IssueFacetCache(EsClient esClient, Settings settings) {
+    this(esClient,
+      settings.hasKey(PROPERTY_MAX_ENTRIES) ? settings.getInt(PROPERTY_MAX_ENTRIES) : DEFAULT_MAX_ENTRIES,
+      settings.hasKey(PROPERTY_TTL_IN_SECONDS) ? settings.getInt(PROPERTY_TTL_IN_SECONDS) : DEFAULT_TTL_IN_SECONDS);
+  }
+
+  IssueFacetCache(EsClient esClient, int maxEntries, int ttlInSeconds) {
+    this.esClient = esClient;
+    this.enabled = maxEntries > 0 && ttlInSeconds > 0;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(Math.max(0, maxEntries))
+      .expireAfterWrite(Math.max(0, ttlInSeconds), TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Looks up the given facets of the query. Facets which are not returned by {@link Lookup#getCachedFacets()}
+   * must be computed and given to {@link Lookup#put(Map, long)}.
+   *
+   * @param login login of the user, which some facets depend on
+   */
+  Lookup lookup(IssueQuery query, @Nullable String login, Collection<String> facetNames) {
+    if (!enabled || facetNames.isEmpty()) {
+      return new Lookup(null, facetNames);
+    }
+    String keyPrefix = generation() + '\n' + queryKey(query, login);
+    return new Lookup(keyPrefix, facetNames);
+  }
+
+  /**
+   * Number of refreshes and of documents of the indices read by issue searches. Cache is cleared when it changes.
+   */
+  private String generation() {
+    CommonStats stats = esClient.prepareStats(IssueIndexDefinition.INDEX, ViewIndexDefinition.INDEX)
+      .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+      .clear()
+      .setRefresh(true)
+      .setDocs(true)
+      .get()
+      .getTotal();
+    long refreshes = stats.getRefresh() == null ? 0L : stats.getRefresh().getTotal();
+    long docs = stats.getDocs() == null ? 0L : stats.getDocs().getCount();
+    String generation = refreshes + ":" + docs;
+    String previous = lastGeneration.getAndSet(generation);
+    if (previous != null && !previous.equals(generation)) {
+      invalidations.incrementAndGet();
+      cache.invalidateAll();
+    }
+    return generation;
+  }
+
+  static String queryKey(IssueQuery query, @Nullable String login) {
+    StringBuilder key = new StringBuilder();
+    append(key, login);
+    append(key, query.userLogin());
+    append(key, query.userGroups());
+    append(key, String.valueOf(query.checkAuthorization()));
+    append(key, query.facetMode());
+    append(key, query.issueKeys());
+    append(key, query.severities());
+    append(key, query.statuses());
+    append(key, query.resolutions());
+    append(key, query.componentUuids());
+    append(key, query.moduleUuids());
+    append(key, query.moduleRootUuids());
+    append(key, query.projectUuids());
+    append(key, query.directories());
+    append(key, query.fileUuids());
+    append(key, query.viewUuids());
+    append(key, query.rules());
+    append(key, query.assignees());
+    append(key, query.authors());
+    append(key, query.languages());
+    append(key, query.tags());
+    append(key, query.types());
+    append(key, query.onComponentOnly());
+    append(key, query.assigned());
+    append(key, query.resolved());
+    append(key, query.createdAfter());
+    append(key, query.createdAt());
+    append(key, query.createdBefore());
+    return key.toString();
+  }
+
+  private static void append(StringBuilder key, @Nullable Collection<?> values) {
+    if (values == null) {
+      append(key, (String) null);
+      return;
+    }
+    List<String> sorted = new ArrayList<>(values.size());
+    for (Object value : values) {
+      sorted.add(String.valueOf(value));
+    }
+    Collections.sort(sorted);
+    key.append(sorted.size()).append('[');
+    for (String value : sorted) {
+      append(key, value);
+    }
+    key.append(']');
+  }
+
+  private static void append(StringBuilder key, @Nullable Boolean value) {
+    append(key, value == null ? null : value.toString());
+  }
+
+  private static void append(StringBuilder key, @Nullable Date value) {
+    append(key, value == null ? null : String.valueOf(value.getTime()));
+  }
+
+  /**
+   * Values are prefixed by their length, so that two different queries can not have the same key
+   */
+  private static void append(StringBuilder key, @Nullable String value) {
+    if (value == null) {
+      key.append("-1:");
+    } else {
+      key.append(value.length()).append(':').append(value);
+    }
+  }
+
+  private FacetStats statsOf(String facetName) {
+    return statsByFacet.computeIfAbsent(facetName, k -> new FacetStats());
+  }
+
+  /**
+   * Facets served from memory
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Facets which had to be computed by Elasticsearch
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Ratio, between 0 and 1, of the facets which were not computed
+   */
+  public double getHitRatio() {
+    long total = getHits() + getMisses();
+    return total == 0L ? 0d : ((double) getHits() / total);
+  }
+
+  /**
+   * Number of times the cache was cleared because indices changed
+   */
+  public long getInvalidations() {
+    return invalidations.get();
+  }
+
+  public long getEvictions() {
+    return cache.stats().evictionCount();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Statistics of each facet, by facet name
+   */
+  public Map<String, FacetStats> getStatsByFacet() {
+    return Collections.unmodifiableMap(statsByFacet);
+  }
+
+  /**
+   * Facets of a search, either read from cache or to be computed
+   */
+  final class Lookup {
+    @Nullable
+    private final String keyPrefix;
+    private final Map<String, Optional<LinkedHashMap<String, Long>>> cachedFacets = new LinkedHashMap<>();
+    private final List<String> missingFacets = new ArrayList<>();
+
+    private Lookup(@Nullable String keyPrefix, Collection<String> facetNames) {
+      this.keyPrefix = keyPrefix;
+      for (String facetName : facetNames) {
+        Optional<LinkedHashMap<String, Long>> facet = keyPrefix == null ? null : cache.getIfPresent(key(facetName));
+        if (facet == null) {
+          missingFacets.add(facetName);
+          if (keyPrefix != null) {
+            misses.incrementAndGet();
+            statsOf(facetName).misses.incrementAndGet();
+          }
+        } else {
+          cachedFacets.put(facetName, facet);
+          hits.incrementAndGet();
+          statsOf(facetName).hits.incrementAndGet();
+        }
+      }
+    }
+
+    private String key(String facetName) {
+      return keyPrefix + '\n' + facetName;
+    }
+
+    /**
+     * Facets which must be computed
+     */
+    List<String> getMissingFacets() {
+      return missingFacets;
+    }
+
+    /**
+     * Copy of the cached facets, as they can be modified by callers. Facets which were computed but
+     * have no buckets are absent.
+     */
+    Map<String, LinkedHashMap<String, Long>> getCachedFacets() {
+      Map<String, LinkedHashMap<String, Long>> result = new LinkedHashMap<>();
+      cachedFacets.forEach((name, facet) -> facet.ifPresent(buckets -> result.put(name, new LinkedHashMap<>(buckets))));
+      return result;
+    }
+
+    /**
+     * Keeps the missing facets once computed. The duration of the computation is shared by all the facets
+     * computed by the same search.
+     *
+     * @param computedFacets facets returned by the search, by name
+     * @param durationInMs duration of the search
+     */
+    void put(Map<String, LinkedHashMap<String, Long>> computedFacets, long durationInMs) {
+      for (String facetName : missingFacets) {
+        if (keyPrefix != null) {
+          statsOf(facetName).addDuration(durationInMs);
+          LinkedHashMap<String, Long> facet = computedFacets.get(facetName);
+          cache.put(key(facetName), Optional.ofNullable(facet == null ? null : new LinkedHashMap<>(facet)));
+        }
+      }
+    }
+  }
+
+  public static final class FacetStats {
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong computations = new AtomicLong(0L);
+    private final AtomicLong totalDurationInMs = new AtomicLong(0L);
+    private final AtomicLong maxDurationInMs = new AtomicLong(0L);
+
+    private void addDuration(long durationInMs) {
+      computations.incrementAndGet();
+      totalDurationInMs.addAndGet(durationInMs);
+      maxDurationInMs.accumulateAndGet(durationInMs, Math::max);
+    }
+
+    public long getHits() {
+      return hits.get();
+    }
+
+    public long getMisses() {
+      return misses.get();
+    }
+
+    /**
+     * Average duration, in milliseconds, of the searches which computed the facet
+     */
+    public long getMeanDurationInMs() {
+      long count = computations.get();
+      return count == 0L ? 0L : (totalDurationInMs.get() / count);
+    }
+
+    /**
+     * Longest duration, in milliseconds, of the searches which computed the facet
+     */
+    public long getMaxDurationInMs() {
+      return maxDurationInMs.get();
+    }
+  }
+}
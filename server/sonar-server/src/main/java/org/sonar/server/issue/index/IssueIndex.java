@@ -25,11 +25,13 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -71,6 +73,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.server.es.BaseIndex;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
+import org.sonar.server.es.Facets;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.es.SearchResult;
 import org.sonar.server.es.Sorting;
@@ -159,15 +162,38 @@ public class IssueIndex extends BaseIndex {
     }
   };
 
+  /**
+   * Facets in the order of their aggregations
+   */
+  private static final List<String> FACETS_ORDER = ImmutableList.of(
+    SEVERITIES,
+    STATUSES,
+    PROJECT_UUIDS,
+    MODULE_UUIDS,
+    DIRECTORIES,
+    FILE_UUIDS,
+    LANGUAGES,
+    RULES,
+    AUTHORS,
+    TAGS,
+    TYPES,
+    RESOLUTIONS,
+    ASSIGNEES,
+    FACET_ASSIGNED_TO_ME,
+    CREATED_AT,
+    FACET_MODE_EFFORT);
+
   private final Sorting sorting;
   private final System2 system;
   private final UserSession userSession;
+  private final IssueFacetCache facetCache;
 
-  public IssueIndex(EsClient client, System2 system, UserSession userSession) {
+  public IssueIndex(EsClient client, System2 system, UserSession userSession, IssueFacetCache facetCache) {
     super(client);
 
     this.system = system;
     this.userSession = userSession;
+    this.facetCache = facetCache;
     this.sorting = new Sorting();
     this.sorting.add(IssueQuery.SORT_BY_ASSIGNEE, IssueIndexDefinition.FIELD_ISSUE_ASSIGNEE);
     this.sorting.add(IssueQuery.SORT_BY_STATUS, IssueIndexDefinition.FIELD_ISSUE_STATUS);
@@ -233,8 +259,41 @@ public class IssueIndex extends BaseIndex {
       requestBuilder.setQuery(esQuery);
     }
 
-    configureStickyFacets(query, options, filters, esQuery, requestBuilder);
-    return new SearchResult<>(requestBuilder.get(), DOC_CONVERTER);
+    IssueFacetCache.Lookup facets = facetCache.lookup(query, userSession.getLogin(), requestedFacets(query, options));
+    long start = system.now();
+    configureStickyFacets(query, facets.getMissingFacets(), filters, esQuery, requestBuilder);
+    SearchResponse response = requestBuilder.get();
+    Facets computedFacets = new Facets(response);
+    facets.put(computedFacets.getAll(), system.now() - start);
+    return new SearchResult<>(response, DOC_CONVERTER, mergeFacets(facets.getCachedFacets(), computedFacets));
+  }
+
+  private static List<String> requestedFacets(IssueQuery query, SearchOptions options) {
+    List<String> facets = new ArrayList<>(options.getFacets());
+    if (hasQueryEffortFacet(query)) {
+      facets.add(FACET_MODE_EFFORT);
+    }
+    return facets;
+  }
+
+  /**
+   * Facets read from cache and facets computed by the search, in the order of the aggregations
+   */
+  private static Facets mergeFacets(Map<String, LinkedHashMap<String, Long>> cachedFacets, Facets computedFacets) {
+    if (cachedFacets.isEmpty()) {
+      return computedFacets;
+    }
+    Map<String, LinkedHashMap<String, Long>> all = new HashMap<>(computedFacets.getAll());
+    all.putAll(cachedFacets);
+    LinkedHashMap<String, LinkedHashMap<String, Long>> ordered = new LinkedHashMap<>();
+    for (String facetName : FACETS_ORDER) {
+      LinkedHashMap<String, Long> facet = all.remove(facetName);
+      if (facet != null) {
+        ordered.put(facetName, facet);
+      }
+    }
+    ordered.putAll(all);
+    return new Facets(ordered);
   }
 
   private void configureSorting(IssueQuery query, SearchRequestBuilder esRequest) {
@@ -376,49 +435,49 @@ public class IssueIndex extends BaseIndex {
       "Start bound cannot be larger or equal to end bound");
   }
 
-  private void configureStickyFacets(IssueQuery query, SearchOptions options, Map<String, QueryBuilder> filters, QueryBuilder esQuery, SearchRequestBuilder esSearch) {
-    if (!options.getFacets().isEmpty()) {
+  private void configureStickyFacets(IssueQuery query, Collection<String> facets, Map<String, QueryBuilder> filters, QueryBuilder esQuery, SearchRequestBuilder esSearch) {
+    if (!facets.isEmpty()) {
       StickyFacetBuilder stickyFacetBuilder = newStickyFacetBuilder(query, filters, esQuery);
       // Execute Term aggregations
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         SEVERITIES, IssueIndexDefinition.FIELD_ISSUE_SEVERITY);
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         STATUSES, IssueIndexDefinition.FIELD_ISSUE_STATUS);
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         PROJECT_UUIDS, IssueIndexDefinition.FIELD_ISSUE_PROJECT_UUID, query.projectUuids().toArray());
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         MODULE_UUIDS, IssueIndexDefinition.FIELD_ISSUE_MODULE_UUID, query.moduleUuids().toArray());
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         DIRECTORIES, IssueIndexDefinition.FIELD_ISSUE_DIRECTORY_PATH, query.directories().toArray());
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         FILE_UUIDS, IssueIndexDefinition.FIELD_ISSUE_COMPONENT_UUID, query.fileUuids().toArray());
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         LANGUAGES, IssueIndexDefinition.FIELD_ISSUE_LANGUAGE, query.languages().toArray());
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         RULES, IssueIndexDefinition.FIELD_ISSUE_RULE_KEY, query.rules().toArray());
 
-      addSimpleStickyFacetIfNeeded(options, stickyFacetBuilder, esSearch,
+      addSimpleStickyFacetIfNeeded(facets, stickyFacetBuilder, esSearch,
         AUTHORS, IssueIndexDefinition.FIELD_ISSUE_AUTHOR_LOGIN, query.authors().toArray());
 
-      if (options.getFacets().contains(TAGS)) {
+      if (facets.contains(TAGS)) {
         esSearch.addAggregation(stickyFacetBuilder.buildStickyFacet(IssueIndexDefinition.FIELD_ISSUE_TAGS, TAGS, query.tags().toArray()));
       }
-      if (options.getFacets().contains(TYPES)) {
+      if (facets.contains(TYPES)) {
         esSearch.addAggregation(stickyFacetBuilder.buildStickyFacet(IssueIndexDefinition.FIELD_ISSUE_TYPE, TYPES, query.types().toArray()));
       }
-      if (options.getFacets().contains(RESOLUTIONS)) {
+      if (facets.contains(RESOLUTIONS)) {
         esSearch.addAggregation(createResolutionFacet(query, filters, esQuery));
       }
-      if (options.getFacets().contains(ASSIGNEES)) {
+      if (facets.contains(ASSIGNEES)) {
         esSearch.addAggregation(createAssigneesFacet(query, filters, esQuery));
       }
-      addAssignedToMeFacetIfNeeded(esSearch, options, query, filters, esQuery);
-      if (options.getFacets().contains(CREATED_AT)) {
+      addAssignedToMeFacetIfNeeded(esSearch, facets, query, filters, esQuery);
+      if (facets.contains(CREATED_AT)) {
         getCreatedAtFacet(query, filters, esQuery).ifPresent(esSearch::addAggregation);
       }
     }
 
-    if (hasQueryEffortFacet(query)) {
+    if (facets.contains(FACET_MODE_EFFORT)) {
       esSearch.addAggregation(EFFORT_AGGREGATION);
     }
   }
@@ -430,9 +489,9 @@ public class IssueIndex extends BaseIndex {
     return new StickyFacetBuilder(esQuery, filters);
   }
 
-  private static void addSimpleStickyFacetIfNeeded(SearchOptions options, StickyFacetBuilder stickyFacetBuilder, SearchRequestBuilder esSearch,
+  private static void addSimpleStickyFacetIfNeeded(Collection<String> facets, StickyFacetBuilder stickyFacetBuilder, SearchRequestBuilder esSearch,
     String facetName, String fieldName, Object... selectedValues) {
-    if (options.getFacets().contains(facetName)) {
+    if (facets.contains(facetName)) {
       esSearch.addAggregation(stickyFacetBuilder.buildStickyFacet(fieldName, facetName, DEFAULT_FACET_SIZE, selectedValues));
     }
   }
@@ -547,10 +606,11 @@ public class IssueIndex extends BaseIndex {
     return values.stream().map(Pattern::quote).collect(Collectors.toArrayList(values.size()));
   }
 
-  private void addAssignedToMeFacetIfNeeded(SearchRequestBuilder builder, SearchOptions options, IssueQuery query, Map<String, QueryBuilder> filters, QueryBuilder queryBuilder) {
+  private void addAssignedToMeFacetIfNeeded(SearchRequestBuilder builder, Collection<String> facets, IssueQuery query, Map<String, QueryBuilder> filters,
+    QueryBuilder queryBuilder) {
     String login = userSession.getLogin();
 
-    if (!options.getFacets().contains(FACET_ASSIGNED_TO_ME) || StringUtils.isEmpty(login)) {
+    if (!facets.contains(FACET_ASSIGNED_TO_ME) || StringUtils.isEmpty(login)) {
       return;
     }
 
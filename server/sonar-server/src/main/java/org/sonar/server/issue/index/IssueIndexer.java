@@ -21,6 +21,7 @@ package org.sonar.server.issue.index;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexRequest;
@@ -29,8 +30,10 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
+import org.sonar.server.es.BulkIndexerStats;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
+import org.sonar.server.es.IndexingPipeline;
 
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
@@ -46,10 +49,12 @@ public class IssueIndexer extends BaseIndexer {
   private static final int MAX_BATCH_SIZE = 1000;
 
   private final DbClient dbClient;
+  private final BulkIndexerStats bulkIndexerStats;
 
-  public IssueIndexer(DbClient dbClient, EsClient esClient) {
+  public IssueIndexer(DbClient dbClient, EsClient esClient, BulkIndexerStats bulkIndexerStats) {
     super(esClient, 300, INDEX, TYPE_ISSUE, FIELD_ISSUE_TECHNICAL_UPDATED_AT);
     this.dbClient = dbClient;
+    this.bulkIndexerStats = bulkIndexerStats;
   }
 
   @Override
@@ -83,21 +88,21 @@ public class IssueIndexer extends BaseIndexer {
 
   private long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     bulk.start();
-    long maxDate = 0L;
-    while (issues.hasNext()) {
-      IssueDoc issue = issues.next();
-      bulk.add(newIndexRequest(issue));
-
+    AtomicLong maxDate = new AtomicLong(0L);
+    // issues are read from db, converted to requests and sent to Elasticsearch by different threads
+    new IndexingPipeline<IssueDoc>(getClass().getSimpleName(), bulkIndexerStats, issue -> {
       // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
-      maxDate = Math.max(maxDate, issue.getTechnicalUpdateDate().getTime());
-    }
+      maxDate.accumulateAndGet(issue.getTechnicalUpdateDate().getTime(), Math::max);
+      return newIndexRequest(issue);
+    }).run(issues, bulk);
     bulk.stop();
-    return maxDate;
+    return maxDate.get();
   }
 
   public void deleteProject(String uuid) {
     BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
     bulk.setDisableRefresh(false);
+    bulk.setStats(bulkIndexerStats);
     bulk.start();
     SearchRequestBuilder search = esClient.prepareSearch(INDEX)
       .setTypes(TYPE_ISSUE, TYPE_AUTHORIZATION)
@@ -132,6 +137,8 @@ public class IssueIndexer extends BaseIndexer {
   private BulkIndexer createBulkIndexer(boolean large) {
     BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
     bulk.setLarge(large);
+    bulk.setAdaptiveFlushSize(true);
+    bulk.setStats(bulkIndexerStats);
     return bulk;
   }
 
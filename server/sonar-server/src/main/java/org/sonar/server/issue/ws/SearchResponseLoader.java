@@ -23,10 +23,12 @@ import com.google.common.collect.MultimapBuilder;
 import com.google.common.collect.SetMultimap;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiPredicate;
 import javax.annotation.Nullable;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.core.issue.DefaultIssue;
@@ -40,6 +42,7 @@ import org.sonar.server.es.Facets;
 import org.sonar.server.issue.ActionService;
 import org.sonar.server.issue.IssueCommentService;
 import org.sonar.server.issue.IssueService;
+import org.sonar.server.user.UserSession;
 import org.sonarqube.ws.client.issue.IssueFilterParameters;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -54,12 +57,14 @@ import static org.sonar.server.issue.ws.SearchAdditionalField.USERS;
  */
 public class SearchResponseLoader {
 
+  private final UserSession userSession;
   private final DbClient dbClient;
   private final IssueService issueService;
   private final ActionService actionService;
   private final IssueCommentService commentService;
 
-  public SearchResponseLoader(DbClient dbClient, IssueService issueService, ActionService actionService, IssueCommentService commentService) {
+  public SearchResponseLoader(UserSession userSession, DbClient dbClient, IssueService issueService, ActionService actionService, IssueCommentService commentService) {
+    this.userSession = userSession;
     this.dbClient = dbClient;
     this.issueService = issueService;
     this.actionService = actionService;
@@ -128,15 +133,20 @@ public class SearchResponseLoader {
 
   private void loadActionsAndTransitions(Collector collector, SearchResponseData result) {
     if (collector.contains(ACTIONS) || collector.contains(TRANSITIONS)) {
+      // permissions are loaded once for all the projects of the issues, instead of once per issue
+      Map<String, Set<String>> authorizedProjectUuidsByPermission = new HashMap<>();
+      BiPredicate<String, String> hasProjectPermission = (permission, projectUuid) -> authorizedProjectUuidsByPermission
+        .computeIfAbsent(permission, p -> userSession.filterAuthorizedComponentUuids(p, collector.getProjectUuids()))
+        .contains(projectUuid);
       for (IssueDto dto : result.getIssues()) {
         // so that IssueDto can be used.
         if (collector.contains(ACTIONS)) {
-          result.addActions(dto.getKey(), actionService.listAvailableActions(dto.toDefaultIssue()));
+          result.addActions(dto.getKey(), actionService.listAvailableActions(dto.toDefaultIssue(), hasProjectPermission));
         }
         if (collector.contains(TRANSITIONS)) {
           // TODO workflow and action engines must not depend on org.sonar.api.issue.Issue but on a generic interface
           DefaultIssue issue = dto.toDefaultIssue();
-          result.addTransitions(issue.key(), issueService.listTransitions(issue));
+          result.addTransitions(issue.key(), issueService.listTransitions(issue, hasProjectPermission));
         }
       }
     }
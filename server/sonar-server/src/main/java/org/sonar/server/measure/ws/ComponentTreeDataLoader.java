@@ -48,6 +48,7 @@ import org.sonar.api.web.UserRole;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTreeMeasureSort;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
@@ -109,19 +110,25 @@ public class ComponentTreeDataLoader {
           .build();
       }
       Long developerId = searchDeveloperId(dbSession, wsRequest);
+      List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
+      List<WsMeasures.Period> periods = snapshotToWsPeriods(baseSnapshot.get());
 
-      ComponentTreeQuery dbQuery = toComponentTreeQuery(wsRequest, baseComponent);
+      ComponentTreeQuery dbQuery = toComponentTreeQuery(wsRequest, baseComponent, metrics, periods, developerId);
       ComponentDtosAndTotal componentDtosAndTotal = searchComponents(dbSession, dbQuery, wsRequest);
       List<ComponentDto> components = componentDtosAndTotal.componentDtos;
-      List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      List<WsMeasures.Period> periods = snapshotToWsPeriods(baseSnapshot.get());
       Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, components, metrics,
         periods, developerId);
 
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-      int componentCount = computeComponentCount(componentDtosAndTotal.total, components, componentWithMeasuresOnly(wsRequest));
-      components = paginateComponents(components, wsRequest);
+      int componentCount;
+      if (dbQuery.getMeasureSort() == null) {
+        components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
+        components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+        componentCount = computeComponentCount(componentDtosAndTotal.total, components, componentWithMeasuresOnly(wsRequest));
+        components = paginateComponents(components, wsRequest);
+      } else {
+        // components are already filtered, sorted and paginated by the database
+        componentCount = componentDtosAndTotal.total;
+      }
       Map<String, ComponentDto> referenceComponentsById = searchReferenceComponentsById(dbSession, components);
 
       return ComponentTreeData.builder()
@@ -320,7 +327,8 @@ public class ComponentTreeDataLoader {
     return new ArrayList<>(qualifiersIntersection);
   }
 
-  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent) {
+  private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent, List<MetricDto> metrics,
+    List<WsMeasures.Period> periods, @Nullable Long developerId) {
     List<String> childrenQualifiers = childrenQualifiers(wsRequest, baseComponent.qualifier());
 
     List<String> sortsWithoutMetricSort = newArrayList(Iterables.filter(wsRequest.getSort(), IsNotMetricSort.INSTANCE));
@@ -339,8 +347,11 @@ public class ComponentTreeDataLoader {
     if (childrenQualifiers != null) {
       dbQuery.setQualifiers(childrenQualifiers);
     }
-    // load all components if we must sort by metric value
-    if (isSortByMetric(wsRequest)) {
+    ComponentTreeMeasureSort measureSort = toMeasureSort(wsRequest, metrics, periods, developerId);
+    if (measureSort != null) {
+      dbQuery.setMeasureSort(measureSort);
+    } else if (isSortByMetric(wsRequest)) {
+      // load all components if we must sort by metric value in memory
       dbQuery.setPage(1);
       dbQuery.setPageSize(Integer.MAX_VALUE);
     }
@@ -348,6 +359,49 @@ public class ComponentTreeDataLoader {
     return dbQuery.build();
   }
 
+  /**
+   * Sorts on numerical measures are done by the database, so that only the requested page of components is loaded.
+   * Sorts on textual and level measures, or when the metric is not the primary sort, are done in memory.
+   */
+  @CheckForNull
+  private static ComponentTreeMeasureSort toMeasureSort(ComponentTreeWsRequest wsRequest, List<MetricDto> metrics, List<WsMeasures.Period> periods,
+    @Nullable Long developerId) {
+    List<String> sorts = requireNonNull(wsRequest.getSort());
+    String primarySort = sorts.get(0);
+    boolean isPeriodSort = METRIC_PERIOD_SORT.equals(primarySort);
+    if (!METRIC_SORT.equals(primarySort) && !isPeriodSort) {
+      return null;
+    }
+    if ((sorts.contains(METRIC_SORT) && sorts.contains(METRIC_PERIOD_SORT)) || (isPeriodSort && wsRequest.getMetricPeriodSort() == null)) {
+      return null;
+    }
+    Optional<MetricDto> metric = from(metrics).firstMatch(new MatchMetricKey(wsRequest.getMetricSort()));
+    if (!metric.isPresent() || !ComponentTreeSort.isNumerical(metric.get())) {
+      return null;
+    }
+
+    Integer variationIndex = isPeriodSort ? wsRequest.getMetricPeriodSort() : null;
+    return ComponentTreeMeasureSort.builder()
+      .setMetricId(metric.get().getId())
+      .setVariationIndex(variationIndex)
+      .setPersonId(developerId)
+      .setBestValue(bestValueOfFiles(metric.get(), periods, variationIndex), QUALIFIERS_ELIGIBLE_FOR_BEST_VALUE)
+      .setWithMeasuresOnly(componentWithMeasuresOnly(wsRequest))
+      .build();
+  }
+
+  /**
+   * Value given by {@link #addBestValuesToMeasures(Table, List, List, List)} to the files which have no measure
+   */
+  @CheckForNull
+  private static Double bestValueOfFiles(MetricDto metric, List<WsMeasures.Period> periods, @Nullable Integer variationIndex) {
+    if (!MetricDtoFunctions.isOptimizedForBestValue().apply(metric)) {
+      return null;
+    }
+    MeasureDto bestValue = new MetricDtoToMetricDtoWithBestValue(periods).apply(metric).getBestValue();
+    return variationIndex == null ? bestValue.getValue() : bestValue.getVariation(variationIndex);
+  }
+
   private void checkPermissions(ComponentDto baseComponent) {
     String projectUuid = firstNonNull(baseComponent.projectUuid(), baseComponent.uuid());
     if (!userSession.hasComponentUuidPermission(UserRole.ADMIN, projectUuid) &&
@@ -66,6 +66,10 @@ class ComponentTreeSort {
     // static method only
   }
 
+  static boolean isNumerical(MetricDto metric) {
+    return NUMERIC_VALUE_TYPES.contains(ValueType.valueOf(metric.getValueType()));
+  }
+
   static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
     Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
     List<String> sortParameters = wsRequest.getSort();
@@ -0,0 +1,65 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import java.util.List;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.notifications.NotificationChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implemented by the {@link NotificationChannel}s which deliver many notifications at once more efficiently than one
+ * by one, for example by reusing a connection. {@link NotificationService} then calls {@link #deliver(List)} instead of
+ * {@link NotificationChannel#deliver(Notification, String)}.
+ */
+public interface BatchNotificationChannel {
+
+  /**
+   * Implementations must not throw exceptions for the failure of a single delivery.
+   *
+   * @return the number of deliveries which did not fail. Deliveries which are skipped, for example because the user
+   * has no email, are not failures.
+   */
+  int deliver(List<Delivery> deliveries);
+
+  final class Delivery {
+    private final Notification notification;
+    private final String userLogin;
+
+    public Delivery(Notification notification, String userLogin) {
+      this.notification = requireNonNull(notification, "notification can't be null");
+      this.userLogin = requireNonNull(userLogin, "user login can't be null");
+    }
+
+    public Notification getNotification() {
+      return notification;
+    }
+
+    public String getUserLogin() {
+      return userLogin;
+    }
+
+    @Override
+    public String toString() {
+      return "Delivery{notification=" + notification + ", userLogin='" + userLogin + "'}";
+    }
+  }
+}
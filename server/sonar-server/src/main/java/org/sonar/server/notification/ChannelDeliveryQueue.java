@@ -0,0 +1,196 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import com.google.common.util.concurrent.RateLimiter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import org.sonar.api.notifications.NotificationChannel;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.notification.BatchNotificationChannel.Delivery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Deliveries of a {@link NotificationChannel} which are waiting to be delivered by a dedicated thread. The thread
+ * delivers up to {@code batchSize} deliveries at once, with at most {@code maxPerSecond} deliveries per second.
+ * The queue is bounded: threads which dispatch notifications wait when the channel is late.
+ * The callback given with a delivery is called once the channel has attempted to deliver it, whether it succeeded or
+ * not. It is not called for the deliveries which are dropped on stop.
+ */
+class ChannelDeliveryQueue {
+
+  private static final Logger LOG = Loggers.get(ChannelDeliveryQueue.class);
+  private static final long POLL_TIMEOUT_MS = 100L;
+
+  private final NotificationChannel channel;
+  private final NotificationDeliveryStats stats;
+  private final int batchSize;
+  @CheckForNull
+  private final RateLimiter rateLimiter;
+  private final BlockingQueue<QueuedDelivery> queue;
+  @CheckForNull
+  private Thread worker;
+  private volatile boolean stopping = false;
+
+  ChannelDeliveryQueue(NotificationChannel channel, NotificationDeliveryStats stats, int batchSize, double maxPerSecond, int capacity) {
+    checkArgument(batchSize > 0, "Batch size must be positive (got %s)", batchSize);
+    this.channel = channel;
+    this.stats = stats;
+    this.batchSize = batchSize;
+    this.rateLimiter = maxPerSecond > 0 ? RateLimiter.create(maxPerSecond) : null;
+    this.queue = new LinkedBlockingQueue<>(capacity);
+  }
+
+  synchronized void start(String threadName) {
+    if (worker == null) {
+      worker = new Thread(this::deliverQueue, threadName);
+      worker.setDaemon(true);
+      worker.start();
+    }
+  }
+
+  /**
+   * Waits until there's room in the queue
+   */
+  void enqueue(Delivery delivery, Runnable onDelivered) throws InterruptedException {
+    stats.addPending(1L);
+    try {
+      queue.put(new QueuedDelivery(delivery, onDelivered));
+    } catch (InterruptedException e) {
+      stats.addPending(-1L);
+      throw e;
+    }
+  }
+
+  /**
+   * Delivers the deliveries which are still queued, waiting for at most {@code timeoutMs} milliseconds.
+   *
+   * @return the number of deliveries which are dropped
+   */
+  int stop(long timeoutMs) throws InterruptedException {
+    stopping = true;
+    Thread thread;
+    synchronized (this) {
+      thread = worker;
+    }
+    if (thread != null) {
+      thread.join(timeoutMs);
+      thread.interrupt();
+    }
+    List<QueuedDelivery> dropped = new ArrayList<>();
+    queue.drainTo(dropped);
+    stats.addPending(-dropped.size());
+    return dropped.size();
+  }
+
+  private void deliverQueue() {
+    try {
+      while (!stopping || !queue.isEmpty()) {
+        QueuedDelivery first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          List<QueuedDelivery> batch = new ArrayList<>(batchSize);
+          batch.add(first);
+          queue.drainTo(batch, batchSize - 1);
+          deliverQueued(batch);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void deliverQueued(List<QueuedDelivery> batch) {
+    List<Delivery> deliveries = new ArrayList<>(batch.size());
+    for (QueuedDelivery queued : batch) {
+      deliveries.add(queued.delivery);
+    }
+    try {
+      deliver(deliveries);
+    } finally {
+      stats.addPending(-batch.size());
+    }
+    for (QueuedDelivery queued : batch) {
+      queued.onDelivered.run();
+    }
+  }
+
+  /**
+   * Delivers in the current thread
+   */
+  void deliver(List<Delivery> deliveries) {
+    if (rateLimiter != null) {
+      rateLimiter.acquire(deliveries.size());
+    }
+    int delivered;
+    if (channel instanceof BatchNotificationChannel) {
+      delivered = deliverBatch((BatchNotificationChannel) channel, deliveries);
+    } else {
+      delivered = 0;
+      for (Delivery delivery : deliveries) {
+        if (deliver(delivery)) {
+          delivered++;
+        }
+      }
+    }
+    stats.onDelivered(channel.getKey(), delivered, deliveries.size() - delivered);
+  }
+
+  private static int deliverBatch(BatchNotificationChannel batchChannel, List<Delivery> deliveries) {
+    try {
+      return batchChannel.deliver(deliveries);
+    } catch (Exception e) {
+      // catch all exceptions in order to deliver next batches
+      LOG.warn("Unable to deliver " + deliveries.size() + " notifications via " + batchChannel, e);
+      return 0;
+    }
+  }
+
+  private boolean deliver(Delivery delivery) {
+    try {
+      channel.deliver(delivery.getNotification(), delivery.getUserLogin());
+      return true;
+    } catch (Exception e) {
+      // catch all exceptions in order to deliver via other channels
+      LOG.warn("Unable to deliver notification " + delivery.getNotification() + " for user " + delivery.getUserLogin() + " via " + channel, e);
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return channel.getKey();
+  }
+
+  private static class QueuedDelivery {
+    private final Delivery delivery;
+    private final Runnable onDelivered;
+
+    QueuedDelivery(Delivery delivery, Runnable onDelivered) {
+      this.delivery = delivery;
+      this.onDelivered = onDelivered;
+    }
+  }
+}
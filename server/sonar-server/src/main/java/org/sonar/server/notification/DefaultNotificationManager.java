@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.InvalidClassException;
 import java.util.Arrays;
 import java.util.List;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
@@ -97,13 +98,30 @@ public class DefaultNotificationManager implements NotificationManager {
     }
     notificationQueueDao.delete(notificationDtos);
 
-    return convertToNotification(notificationDtos);
+    return toNotification(notificationDtos.get(0));
   }
 
-  private Notification convertToNotification(List<NotificationQueueDto> notifications) {
+  /**
+   * The oldest notifications of the queue. Contrary to {@link #getFromQueue()}, they are not removed from
+   * the queue: see {@link #removeFromQueue(List)}.
+   */
+  public List<NotificationQueueDto> selectOldestFromQueue(int count) {
+    return notificationQueueDao.selectOldest(count);
+  }
+
+  public void removeFromQueue(List<NotificationQueueDto> dtos) {
+    if (!dtos.isEmpty()) {
+      notificationQueueDao.delete(dtos);
+    }
+  }
+
+  /**
+   * @return null if the notification has been queued by a previous version of SonarQube and can't be read anymore
+   */
+  @CheckForNull
+  public Notification toNotification(NotificationQueueDto dto) {
     try {
-      // If batchSize is increased then we should return a list instead of a single element
-      return notifications.get(0).toNotification();
+      return dto.toNotification();
     } catch (InvalidClassException e) {
       // SONAR-4739
       if (!alreadyLoggedDeserializationIssue) {
@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+
+/**
+ * Counters of the notifications delivered by {@link NotificationService}. Values are
+ * exposed through the monitoring MBeans.
+ */
+@ServerSide
+@ComputeEngineSide
+public class NotificationDeliveryStats {
+
+  private final AtomicLong pendingDeliveries = new AtomicLong(0L);
+  private final ConcurrentMap<String, AtomicLong> deliveredByChannel = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> failedByChannel = new ConcurrentHashMap<>();
+  private volatile long queueLagMs = 0L;
+
+  void onDelivered(String channelKey, int delivered, int failed) {
+    deliveredByChannel.computeIfAbsent(channelKey, k -> new AtomicLong(0L)).addAndGet(delivered);
+    failedByChannel.computeIfAbsent(channelKey, k -> new AtomicLong(0L)).addAndGet(failed);
+  }
+
+  void addPending(long delta) {
+    pendingDeliveries.addAndGet(delta);
+  }
+
+  void onQueueLag(long lagMs) {
+    this.queueLagMs = lagMs;
+  }
+
+  public long getDelivered() {
+    return sum(deliveredByChannel);
+  }
+
+  public long getFailed() {
+    return sum(failedByChannel);
+  }
+
+  /**
+   * Deliveries which are dispatched to a channel but are not delivered yet
+   */
+  public long getPendingDeliveries() {
+    return pendingDeliveries.get();
+  }
+
+  /**
+   * Upper bound of the time spent in the database queue by the last notification read from it, in milliseconds.
+   * It is the time elapsed since the queue was last seen empty, as the queue does not store the date of notifications.
+   */
+  public long getQueueLagMs() {
+    return queueLagMs;
+  }
+
+  public Map<String, Long> getDeliveredByChannel() {
+    return toMap(deliveredByChannel);
+  }
+
+  public Map<String, Long> getFailedByChannel() {
+    return toMap(failedByChannel);
+  }
+
+  private static long sum(Map<String, AtomicLong> counters) {
+    long sum = 0L;
+    for (AtomicLong counter : counters.values()) {
+      sum += counter.get();
+    }
+    return sum;
+  }
+
+  private static Map<String, Long> toMap(Map<String, AtomicLong> counters) {
+    Map<String, Long> result = new TreeMap<>();
+    counters.forEach((key, counter) -> result.put(key, counter.get()));
+    return result;
+  }
+}
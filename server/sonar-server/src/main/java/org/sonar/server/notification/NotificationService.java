@@ -27,12 +27,23 @@ import com.google.common.collect.SetMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.Properties;
@@ -45,6 +56,7 @@ import org.sonar.api.server.ServerSide;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
+import org.sonar.db.notification.NotificationQueueDto;
 
 @Properties({
   @Property(
@@ -58,48 +70,114 @@ import org.sonar.db.DbClient;
     defaultValue = "600",
     name = "Delay before reporting notification status, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_DISPATCH_THREADS,
+    defaultValue = "" + NotificationService.DEFAULT_DISPATCH_THREADS,
+    name = "Number of threads dispatching notifications to recipients",
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_BATCH_SIZE,
+    defaultValue = "" + NotificationService.DEFAULT_BATCH_SIZE,
+    name = "Maximum number of notifications delivered at once by a channel",
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_MAX_PER_SECOND,
+    defaultValue = "0",
+    name = "Maximum number of notifications delivered per second by each channel, 0 for no limit",
+    project = false,
     global = false)
 })
 @ServerSide
 @ComputeEngineSide
 public class NotificationService implements Startable {
   private static final String THREAD_NAME_PREFIX = "sq-notification-service-";
+  private static final String DISPATCH_THREAD_NAME_PREFIX = "sq-notification-dispatch-";
+  private static final String CHANNEL_THREAD_NAME_PREFIX = "sq-notification-channel-";
 
   private static final Logger LOG = Loggers.get(NotificationService.class);
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  public static final String PROPERTY_DISPATCH_THREADS = "sonar.notifications.dispatchThreads";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  /**
+   * Can be overridden for a channel by {@code sonar.notifications.<channel key>.maxPerSecond}
+   */
+  public static final String PROPERTY_MAX_PER_SECOND = "sonar.notifications.maxPerSecond";
+  static final int DEFAULT_DISPATCH_THREADS = 2;
+  static final int DEFAULT_BATCH_SIZE = 50;
+  private static final int DISPATCH_QUEUE_CAPACITY = 1_000;
+  private static final int CHANNEL_QUEUE_CAPACITY = 10_000;
+  // number of notifications of the database queue which are delivered before being removed from the queue
+  private static final int QUEUE_BATCH_SIZE = 100;
+  private static final long QUEUE_DELIVERY_POLL_MS = 100L;
+  private static final long STOP_TIMEOUT_MS = 5_000L;
+  private static final Runnable NO_CALLBACK = () -> {
+  };
 
+  private final Settings settings;
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
   private final DefaultNotificationManager manager;
   private final List<NotificationDispatcher> dispatchers;
   private final DbClient dbClient;
+  private final NotificationDeliveryStats stats;
+  private final Map<NotificationChannel, ChannelDeliveryQueue> channelQueues = new ConcurrentHashMap<>();
 
   private ScheduledExecutorService executorService;
-  private boolean stopping = false;
+  // one single-thread executor per lane, notifications of a given type are always dispatched by the same lane
+  @CheckForNull
+  private volatile List<DispatchLane> dispatchLanes;
+  private volatile boolean started = false;
+  private volatile boolean stopping = false;
+  // -1 until the first round of processing of the queue
+  private long queueEmptySince = -1L;
   private final boolean disabled;
 
   public NotificationService(Settings settings, DefaultNotificationManager manager, DbClient dbClient,
-    NotificationDispatcher[] dispatchers) {
+    NotificationDispatcher[] dispatchers, NotificationDeliveryStats stats) {
+    this.settings = settings;
     this.disabled = "ComputeEngineSettings".equals(settings.getClass().getSimpleName());
     this.delayInSeconds = settings.getLong(PROPERTY_DELAY);
     this.delayBeforeReportingStatusInSeconds = settings.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS);
     this.manager = manager;
     this.dbClient = dbClient;
     this.dispatchers = ImmutableList.copyOf(dispatchers);
+    this.stats = stats;
   }
 
   /**
-   * Default constructor when no dispatchers.
+   * Constructor when no dispatchers.
    */
+  public NotificationService(Settings settings, DefaultNotificationManager manager, DbClient dbClient, NotificationDeliveryStats stats) {
+    this(settings, manager, dbClient, new NotificationDispatcher[0], stats);
+  }
+
+  public NotificationService(Settings settings, DefaultNotificationManager manager, DbClient dbClient,
+    NotificationDispatcher[] dispatchers) {
+    this(settings, manager, dbClient, dispatchers, new NotificationDeliveryStats());
+  }
+
   public NotificationService(Settings settings, DefaultNotificationManager manager, DbClient dbClient) {
     this(settings, manager, dbClient, new NotificationDispatcher[0]);
   }
 
+  /**
+   * On the web server, starts the delivery threads and the processing of the database queue. Notifications are then
+   * delivered asynchronously: {@link #deliver(Notification)} only waits when the delivery queues are full. They are
+   * removed from the database queue only once delivered, so the notifications which are still being delivered when
+   * the server stops are delivered again after restart.
+   * <p>
+   * On the Compute Engine, notifications are still delivered by the calling thread, so that they are sent before
+   * the task which delivers them ends, and are not lost when the Compute Engine stops.
+   */
   @Override
   public void start() {
     if (!disabled) {
+      startDelivery();
       executorService =
           Executors.newSingleThreadScheduledExecutor(
               new ThreadFactoryBuilder()
@@ -120,6 +198,24 @@ public class NotificationService implements Startable {
     }
   }
 
+  private void startDelivery() {
+    int dispatchThreads = settings.getInt(PROPERTY_DISPATCH_THREADS);
+    if (dispatchThreads <= 0) {
+      dispatchThreads = DEFAULT_DISPATCH_THREADS;
+    }
+    ThreadFactory dispatchThreadFactory = new ThreadFactoryBuilder()
+      .setNameFormat(DISPATCH_THREAD_NAME_PREFIX + "%d")
+      .setDaemon(true)
+      .build();
+    List<DispatchLane> lanes = new ArrayList<>();
+    for (int i = 0; i < dispatchThreads; i++) {
+      lanes.add(new DispatchLane(dispatchThreadFactory, DISPATCH_QUEUE_CAPACITY));
+    }
+    this.dispatchLanes = lanes;
+    this.started = true;
+    channelQueues.forEach((channel, queue) -> queue.start(CHANNEL_THREAD_NAME_PREFIX + channel.getKey()));
+  }
+
   @Override
   public void stop() {
     if (!disabled) {
@@ -132,29 +228,123 @@ public class NotificationService implements Startable {
       }
       LOG.info("Notification service stopped");
     }
+    stopDelivery();
+  }
+
+  private void stopDelivery() {
+    long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MS;
+    try {
+      List<DispatchLane> lanes = dispatchLanes;
+      // notifications delivered from now on are delivered by the calling thread
+      dispatchLanes = null;
+      if (lanes != null) {
+        for (DispatchLane lane : lanes) {
+          lane.shutdown();
+        }
+        for (DispatchLane lane : lanes) {
+          lane.awaitTermination(Math.max(0L, deadline - System.currentTimeMillis()));
+        }
+      }
+      int dropped = 0;
+      for (ChannelDeliveryQueue queue : channelQueues.values()) {
+        dropped += queue.stop(Math.max(1L, deadline - System.currentTimeMillis()));
+      }
+      if (dropped > 0) {
+        LOG.warn("{} notifications could not be delivered before stop", dropped);
+      }
+    } catch (InterruptedException e) {
+      LOG.error("Error during stop of notification delivery", e);
+      Thread.currentThread().interrupt();
+    }
   }
 
   @VisibleForTesting
   synchronized void processQueue() {
     long start = now();
     long lastLog = start;
+    long now = start;
     long notifSentCount = 0;
+    if (queueEmptySince < 0L) {
+      queueEmptySince = start;
+    }
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      deliver(notifToSend);
-      notifSentCount++;
-      if (stopping) {
+    List<NotificationQueueDto> queuedNotifs = manager.selectOldestFromQueue(QUEUE_BATCH_SIZE);
+    while (!queuedNotifs.isEmpty()) {
+      stats.onQueueLag(now - queueEmptySince);
+      notifSentCount += deliverAndRemoveFromQueue(queuedNotifs);
+      if (stopping || Thread.currentThread().isInterrupted()) {
         break;
       }
-      long now = now();
+      now = now();
       if (now - lastLog > delayBeforeReportingStatusInSeconds * 1000) {
         long remainingNotifCount = manager.count();
         lastLog = now;
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      queuedNotifs = manager.selectOldestFromQueue(QUEUE_BATCH_SIZE);
+    }
+    if (!stopping) {
+      queueEmptySince = now;
+      stats.onQueueLag(0L);
+    }
+  }
+
+  /**
+   * Removes the notifications from the database queue once they are delivered. The database queue is not read
+   * again before, so the notifications waiting in memory are never more than {@link #QUEUE_BATCH_SIZE}.
+   *
+   * @return the number of notifications removed from the queue
+   */
+  private int deliverAndRemoveFromQueue(List<NotificationQueueDto> queuedNotifs) {
+    List<NotificationQueueDto> delivered = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch pending = new CountDownLatch(queuedNotifs.size());
+    for (NotificationQueueDto queuedNotif : queuedNotifs) {
+      Runnable onDelivered = () -> {
+        delivered.add(queuedNotif);
+        pending.countDown();
+      };
+      Notification notification = readFromQueue(queuedNotif);
+      if (notification == null) {
+        onDelivered.run();
+      } else {
+        // the notification is left in the queue when its delivery is abandoned
+        deliver(notification, onDelivered, pending::countDown);
+      }
+    }
+    awaitDelivery(pending);
+    List<NotificationQueueDto> toRemove;
+    synchronized (delivered) {
+      toRemove = new ArrayList<>(delivered);
+    }
+    manager.removeFromQueue(toRemove);
+    return toRemove.size();
+  }
+
+  @CheckForNull
+  private Notification readFromQueue(NotificationQueueDto queuedNotif) {
+    try {
+      return manager.toNotification(queuedNotif);
+    } catch (RuntimeException e) {
+      // the notification would never be readable, it's removed from the queue
+      LOG.error("Unable to read notification " + queuedNotif.getId() + " of the queue, it is ignored", e);
+      return null;
+    }
+  }
+
+  /**
+   * Stops waiting as soon as the service is stopping. The notifications which are not delivered yet are left in the
+   * database queue.
+   */
+  private void awaitDelivery(CountDownLatch pending) {
+    try {
+      while (!pending.await(QUEUE_DELIVERY_POLL_MS, TimeUnit.MILLISECONDS)) {
+        if (stopping) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -169,7 +359,42 @@ public class NotificationService implements Startable {
     return System.currentTimeMillis();
   }
 
+  /**
+   * Delivers the notification to the recipients returned by the dispatchers. When the service is started on the web
+   * server, the notification is dispatched and delivered by other threads, otherwise it is delivered before this
+   * method returns.
+   */
   public void deliver(Notification notification) {
+    deliver(notification, NO_CALLBACK, NO_CALLBACK);
+  }
+
+  /**
+   * @param onDelivered called once the notification has been delivered to all its recipients. Not called if the
+   * service stops before.
+   * @param onAbandoned called instead of {@code onDelivered} when the thread enqueuing the notification is
+   * interrupted, so that some of its recipients may never receive it
+   */
+  private void deliver(Notification notification, Runnable onDelivered, Runnable onAbandoned) {
+    List<DispatchLane> lanes = dispatchLanes;
+    if (lanes != null) {
+      DispatchLane lane = lanes.get(Math.floorMod(String.valueOf(notification.getType()).hashCode(), lanes.size()));
+      try {
+        lane.submit(() -> dispatch(notification, true, onDelivered, onAbandoned));
+        return;
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted while delivering notification " + notification, e);
+        Thread.currentThread().interrupt();
+        onAbandoned.run();
+        return;
+      } catch (RejectedExecutionException e) {
+        // the lane has been stopped in the meantime
+        LOG.debug("Notification {} is delivered by the calling thread", notification);
+      }
+    }
+    dispatch(notification, false, onDelivered, onAbandoned);
+  }
+
+  private void dispatch(Notification notification, boolean async, Runnable onDelivered, Runnable onAbandoned) {
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
       NotificationDispatcher.Context context = new ContextImpl(recipients);
@@ -180,23 +405,79 @@ public class NotificationService implements Startable {
         LOG.warn(String.format("Unable to dispatch notification %s using %s", notification, dispatcher), e);
       }
     }
-    dispatch(notification, recipients);
+    if (async) {
+      enqueue(notification, recipients, onDelivered, onAbandoned);
+    } else {
+      deliverNow(notification, recipients);
+      onDelivered.run();
+    }
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+  private void enqueue(Notification notification, SetMultimap<String, NotificationChannel> recipients, Runnable onDelivered,
+    Runnable onAbandoned) {
+    // one for each delivery, plus one released once all the deliveries are enqueued
+    AtomicInteger pendingDeliveries = new AtomicInteger(1);
+    AtomicBoolean abandoned = new AtomicBoolean(false);
+    Runnable onDeliveryDone = () -> {
+      if (pendingDeliveries.decrementAndGet() == 0) {
+        (abandoned.get() ? onAbandoned : onDelivered).run();
+      }
+    };
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
       String username = entry.getKey();
       Collection<NotificationChannel> userChannels = entry.getValue();
       LOG.debug("For user {} via {}", username, userChannels);
       for (NotificationChannel channel : userChannels) {
         try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+          pendingDeliveries.incrementAndGet();
+          channelQueue(channel).enqueue(new BatchNotificationChannel.Delivery(notification, username), onDeliveryDone);
+        } catch (InterruptedException e) {
+          LOG.warn("Interrupted while delivering notification " + notification + " for user " + username + " via " + channel, e);
+          Thread.currentThread().interrupt();
+          // releases the delivery which could not be enqueued, then the one held until all the deliveries are enqueued
+          abandoned.set(true);
+          pendingDeliveries.decrementAndGet();
+          onDeliveryDone.run();
+          return;
         }
       }
     }
+    onDeliveryDone.run();
+  }
+
+  private void deliverNow(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+    for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
+      String username = entry.getKey();
+      Collection<NotificationChannel> userChannels = entry.getValue();
+      LOG.debug("For user {} via {}", username, userChannels);
+      for (NotificationChannel channel : userChannels) {
+        channelQueue(channel).deliver(Collections.singletonList(new BatchNotificationChannel.Delivery(notification, username)));
+      }
+    }
+  }
+
+  private ChannelDeliveryQueue channelQueue(NotificationChannel channel) {
+    return channelQueues.computeIfAbsent(channel, c -> {
+      ChannelDeliveryQueue queue = new ChannelDeliveryQueue(c, stats, batchSize(), maxPerSecond(c), CHANNEL_QUEUE_CAPACITY);
+      if (started) {
+        queue.start(CHANNEL_THREAD_NAME_PREFIX + c.getKey());
+      }
+      return queue;
+    });
+  }
+
+  private int batchSize() {
+    int batchSize = settings.getInt(PROPERTY_BATCH_SIZE);
+    return batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+  }
+
+  private double maxPerSecond(NotificationChannel channel) {
+    Double channelMaxPerSecond = settings.getDouble("sonar.notifications." + channel.getKey() + ".maxPerSecond");
+    if (channelMaxPerSecond != null) {
+      return channelMaxPerSecond;
+    }
+    Double maxPerSecond = settings.getDouble(PROPERTY_MAX_PER_SECOND);
+    return maxPerSecond == null ? 0d : maxPerSecond;
   }
 
   @VisibleForTesting
@@ -238,4 +519,45 @@ public class NotificationService implements Startable {
       }
     }
   }
+
+  /**
+   * Single thread which dispatches notifications in the order of submission. Submission waits when
+   * {@code capacity} notifications are already waiting to be dispatched.
+   */
+  private static class DispatchLane {
+    private final ThreadPoolExecutor executor;
+    private final Semaphore capacity;
+
+    DispatchLane(ThreadFactory threadFactory, int capacity) {
+      this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+      this.capacity = new Semaphore(capacity);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the lane is stopped
+     */
+    void submit(Runnable task) throws InterruptedException {
+      capacity.acquire();
+      try {
+        executor.execute(() -> {
+          try {
+            task.run();
+          } finally {
+            capacity.release();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        capacity.release();
+        throw e;
+      }
+    }
+
+    void shutdown() {
+      executor.shutdown();
+    }
+
+    void awaitTermination(long timeoutMs) throws InterruptedException {
+      executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+  }
 }
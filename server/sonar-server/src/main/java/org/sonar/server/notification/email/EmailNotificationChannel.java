@@ -21,6 +21,16 @@ package org.sonar.server.notification.email;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.SimpleEmail;
@@ -34,6 +44,7 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
 import org.sonar.plugins.emailnotifications.api.EmailTemplate;
+import org.sonar.server.notification.BatchNotificationChannel;
 
 /**
  * References:
@@ -45,7 +56,7 @@ import org.sonar.plugins.emailnotifications.api.EmailTemplate;
  *
  * @since 2.10
  */
-public class EmailNotificationChannel extends NotificationChannel {
+public class EmailNotificationChannel extends NotificationChannel implements BatchNotificationChannel {
 
   private static final Logger LOG = Loggers.get(EmailNotificationChannel.class);
 
@@ -106,6 +117,36 @@ public class EmailNotificationChannel extends NotificationChannel {
     }
   }
 
+  /**
+   * Sends the emails through a single SMTP connection
+   */
+  @Override
+  public int deliver(List<Delivery> deliveries) {
+    List<EmailMessage> emailMessages = new ArrayList<>(deliveries.size());
+    Map<String, User> usersByLogin = new HashMap<>();
+    for (Delivery delivery : deliveries) {
+      User user = usersByLogin.computeIfAbsent(delivery.getUserLogin(), userFinder::findByLogin);
+      if (user == null || StringUtils.isBlank(user.email())) {
+        LOG.debug("User does not exist or has no email: {}", delivery.getUserLogin());
+        continue;
+      }
+      EmailMessage emailMessage = format(delivery.getNotification());
+      if (emailMessage != null) {
+        emailMessage.setTo(user.email());
+        emailMessages.add(emailMessage);
+      }
+    }
+    if (emailMessages.isEmpty()) {
+      return deliveries.size();
+    }
+    if (StringUtils.isBlank(configuration.getSmtpHost())) {
+      LOG.debug("SMTP host was not configured - email will not be sent");
+      return deliveries.size();
+    }
+    return deliveries.size() - send(emailMessages);
+  }
+
+  @CheckForNull
   private EmailMessage format(Notification notification) {
     for (EmailTemplate template : templates) {
       EmailMessage email = template.format(notification);
@@ -139,52 +180,108 @@ public class EmailNotificationChannel extends NotificationChannel {
 
     try {
       LOG.debug("Sending email: {}", emailMessage);
-      String host = null;
-      try {
-        host = new URL(configuration.getServerBaseURL()).getHost();
-      } catch (MalformedURLException e) {
-        // ignore
-      }
+      newEmail(emailMessage).send();
+    } finally {
+      Thread.currentThread().setContextClassLoader(classloader);
+    }
+  }
+
+  /**
+   * @return the number of emails which could not be sent
+   */
+  private int send(List<EmailMessage> emailMessages) {
+    // Trick to correctly initialize javax.mail library
+    ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
-      SimpleEmail email = new SimpleEmail();
-      if (StringUtils.isNotBlank(host)) {
-        /*
-         * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
-         * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
-         */
-        if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
-          String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
-          email.addHeader(IN_REPLY_TO_HEADER, messageId);
-          email.addHeader(REFERENCES_HEADER, messageId);
+    Transport transport = null;
+    try {
+      Session session = newEmail(emailMessages.get(0)).getMailSession();
+      transport = session.getTransport();
+      transport.connect();
+      int failures = 0;
+      for (EmailMessage emailMessage : emailMessages) {
+        if (!send(emailMessage, session, transport)) {
+          failures++;
         }
-        // Set headers for proper filtering
-        email.addHeader(LIST_ID_HEADER, "SonarQube <sonar." + host + ">");
-        email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
-      }
-      // Set general information
-      email.setCharset("UTF-8");
-      String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : (emailMessage.getFrom() + " (SonarQube)");
-      email.setFrom(configuration.getFrom(), from);
-      email.addTo(emailMessage.getTo(), " ");
-      String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
-        + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
-      email.setSubject(subject);
-      email.setMsg(emailMessage.getMessage());
-      // Send
-      email.setHostName(configuration.getSmtpHost());
-      configureSecureConnection(email);
-      if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
-        email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
       }
-      email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
-      email.setSocketTimeout(SOCKET_TIMEOUT);
-      email.send();
-
+      return failures;
+    } catch (EmailException | MessagingException e) {
+      LOG.error("Unable to send " + emailMessages.size() + " emails", e);
+      return emailMessages.size();
     } finally {
+      closeQuietly(transport);
       Thread.currentThread().setContextClassLoader(classloader);
     }
   }
 
+  private boolean send(EmailMessage emailMessage, Session session, Transport transport) {
+    try {
+      LOG.debug("Sending email: {}", emailMessage);
+      SimpleEmail email = newEmail(emailMessage);
+      email.setMailSession(session);
+      email.buildMimeMessage();
+      MimeMessage mimeMessage = email.getMimeMessage();
+      transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+      return true;
+    } catch (EmailException | MessagingException e) {
+      LOG.error("Unable to send email", e);
+      return false;
+    }
+  }
+
+  private static void closeQuietly(@Nullable Transport transport) {
+    if (transport != null) {
+      try {
+        transport.close();
+      } catch (MessagingException e) {
+        LOG.debug("Fail to close SMTP connection", e);
+      }
+    }
+  }
+
+  private SimpleEmail newEmail(EmailMessage emailMessage) throws EmailException {
+    String host = null;
+    try {
+      host = new URL(configuration.getServerBaseURL()).getHost();
+    } catch (MalformedURLException e) {
+      // ignore
+    }
+
+    SimpleEmail email = new SimpleEmail();
+    if (StringUtils.isNotBlank(host)) {
+      /*
+       * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
+       * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
+       */
+      if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
+        String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
+        email.addHeader(IN_REPLY_TO_HEADER, messageId);
+        email.addHeader(REFERENCES_HEADER, messageId);
+      }
+      // Set headers for proper filtering
+      email.addHeader(LIST_ID_HEADER, "SonarQube <sonar." + host + ">");
+      email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
+    }
+    // Set general information
+    email.setCharset("UTF-8");
+    String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : (emailMessage.getFrom() + " (SonarQube)");
+    email.setFrom(configuration.getFrom(), from);
+    email.addTo(emailMessage.getTo(), " ");
+    String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
+      + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
+    email.setSubject(subject);
+    email.setMsg(emailMessage.getMessage());
+    email.setHostName(configuration.getSmtpHost());
+    configureSecureConnection(email);
+    if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
+      email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
+    }
+    email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
+    email.setSocketTimeout(SOCKET_TIMEOUT);
+    return email;
+  }
+
   private void configureSecureConnection(SimpleEmail email) {
     if (StringUtils.equalsIgnoreCase(configuration.getSecureConnection(), "ssl")) {
       email.setSSLOnConnect(true);
@@ -32,6 +32,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.UserSession;
 
 import static org.sonar.api.security.DefaultGroups.isAnyone;
@@ -53,14 +54,16 @@ public class PermissionUpdater {
   private final IssueAuthorizationIndexer issueAuthorizationIndexer;
   private final UserSession userSession;
   private final ComponentFinder componentFinder;
+  private final PermissionCache permissionCache;
 
   public PermissionUpdater(DbClient dbClient, PermissionRepository permissionRepository,
-    IssueAuthorizationIndexer issueAuthorizationIndexer, UserSession userSession, ComponentFinder componentFinder) {
+    IssueAuthorizationIndexer issueAuthorizationIndexer, UserSession userSession, ComponentFinder componentFinder, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.permissionRepository = permissionRepository;
     this.issueAuthorizationIndexer = issueAuthorizationIndexer;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
+    this.permissionCache = permissionCache;
   }
 
   public static List<String> globalPermissions() {
@@ -96,12 +99,22 @@ public class PermissionUpdater {
     }
     if (changed) {
       session.commit();
+      invalidatePermissionCache(change);
       if (change.componentKey() != null) {
         indexProjectPermissions();
       }
     }
   }
 
+  private void invalidatePermissionCache(PermissionChange change) {
+    String userLogin = change.userLogin();
+    if (userLogin != null) {
+      permissionCache.invalidate(userLogin);
+    } else {
+      permissionCache.invalidateAll();
+    }
+  }
+
   private boolean applyChangeOnGroup(DbSession session, Operation operation, PermissionChange permissionChange) {
     Long componentId = getComponentId(session, permissionChange.componentKey());
     checkProjectAdminUserByComponentKey(userSession, permissionChange.componentKey());
@@ -0,0 +1,102 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.sonar.server.issue.index.IssueFacetCache;
+
+/**
+ * Cache of the facets of issue searches, with the durations of the searches which computed each facet
+ */
+public class IssueFacetCacheMonitor extends BaseMonitorMBean implements IssueFacetCacheMonitorMBean {
+
+  private final IssueFacetCache cache;
+
+  public IssueFacetCacheMonitor(IssueFacetCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public String name() {
+    return "Issue Facets Cache";
+  }
+
+  @Override
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  @Override
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  @Override
+  public long getHitRatio() {
+    return Math.round(100d * cache.getHitRatio());
+  }
+
+  @Override
+  public long getInvalidations() {
+    return cache.getInvalidations();
+  }
+
+  @Override
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+
+  @Override
+  public long getEntries() {
+    return cache.size();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Hits", getHits());
+    attributes.put("Misses", getMisses());
+    attributes.put("Hit Ratio (%)", getHitRatio());
+    attributes.put("Invalidations", getInvalidations());
+    attributes.put("Evictions", getEvictions());
+    attributes.put("Entries", getEntries());
+    attributes.put("Facets", facetAttributes());
+    return attributes;
+  }
+
+  /**
+   * map of {facet name -> facet attributes}
+   */
+  private Map<String, LinkedHashMap<String, Object>> facetAttributes() {
+    Map<String, LinkedHashMap<String, Object>> facets = new TreeMap<>();
+    for (Map.Entry<String, IssueFacetCache.FacetStats> entry : cache.getStatsByFacet().entrySet()) {
+      IssueFacetCache.FacetStats stats = entry.getValue();
+      LinkedHashMap<String, Object> facetAttributes = new LinkedHashMap<>();
+      facetAttributes.put("Hits", stats.getHits());
+      facetAttributes.put("Misses", stats.getMisses());
+      facetAttributes.put("Mean Computation Time (ms)", stats.getMeanDurationInMs());
+      facetAttributes.put("Max Computation Time (ms)", stats.getMaxDurationInMs());
+      facets.put(entry.getKey(), facetAttributes);
+    }
+    return facets;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+public interface IssueFacetCacheMonitorMBean {
+
+  /**
+   * Count of issue facets served from memory since startup.
+   */
+  long getHits();
+
+  /**
+   * Count of issue facets computed by Elasticsearch since startup.
+   */
+  long getMisses();
+
+  /**
+   * Ratio, in percents, of the issue facets which were not computed.
+   */
+  long getHitRatio();
+
+  /**
+   * Count of times the cache was cleared because indices changed.
+   */
+  long getInvalidations();
+
+  /**
+   * Count of issue facets evicted from memory since startup.
+   */
+  long getEvictions();
+
+  /**
+   * Count of issue facets kept in memory.
+   */
+  long getEntries();
+}
@@ -0,0 +1,73 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.notification.NotificationDeliveryStats;
+
+/**
+ * Delivery of notifications by the web server
+ */
+public class NotificationMonitor extends BaseMonitorMBean implements NotificationMonitorMBean {
+
+  private final NotificationDeliveryStats stats;
+
+  public NotificationMonitor(NotificationDeliveryStats stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public String name() {
+    return "Notifications";
+  }
+
+  @Override
+  public long getDelivered() {
+    return stats.getDelivered();
+  }
+
+  @Override
+  public long getFailed() {
+    return stats.getFailed();
+  }
+
+  @Override
+  public long getPendingDeliveries() {
+    return stats.getPendingDeliveries();
+  }
+
+  @Override
+  public long getQueueLagMs() {
+    return stats.getQueueLagMs();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Delivered", getDelivered());
+    attributes.put("Failed", getFailed());
+    attributes.put("Pending Deliveries", getPendingDeliveries());
+    attributes.put("Queue Lag (ms)", getQueueLagMs());
+    stats.getDeliveredByChannel().forEach((channel, count) -> attributes.put("Delivered by " + channel, count));
+    stats.getFailedByChannel().forEach((channel, count) -> attributes.put("Failed by " + channel, count));
+    return attributes;
+  }
+}
@@ -40,6 +40,7 @@ import org.sonar.server.authentication.IdentityProviderRepository;
 import org.sonar.server.platform.ServerId;
 import org.sonar.server.platform.ServerIdLoader;
 import org.sonar.server.platform.ServerLogging;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.SecurityRealmFactory;
 
 import static com.google.common.collect.FluentIterable.from;
@@ -56,16 +57,18 @@ public class SonarQubeMonitor extends BaseMonitorMBean implements SonarQubeMonit
   private final Server server;
   private final ServerLogging serverLogging;
   private final ServerIdLoader serverIdLoader;
+  private final PermissionCache permissionCache;
 
   public SonarQubeMonitor(Settings settings, SecurityRealmFactory securityRealmFactory,
     IdentityProviderRepository identityProviderRepository, Server server, ServerLogging serverLogging,
-    ServerIdLoader serverIdLoader) {
+    ServerIdLoader serverIdLoader, PermissionCache permissionCache) {
     this.settings = settings;
     this.securityRealmFactory = securityRealmFactory;
     this.identityProviderRepository = identityProviderRepository;
     this.server = server;
     this.serverLogging = serverLogging;
     this.serverIdLoader = serverIdLoader;
+    this.permissionCache = permissionCache;
   }
 
   @Override
@@ -83,6 +86,16 @@ public class SonarQubeMonitor extends BaseMonitorMBean implements SonarQubeMonit
     return serverLogging.getRootLoggerLevel().name();
   }
 
+  @Override
+  public long getPermissionCacheHits() {
+    return permissionCache.getHits();
+  }
+
+  @Override
+  public long getPermissionCacheMisses() {
+    return permissionCache.getMisses();
+  }
+
   @CheckForNull
   private String getExternalUserAuthentication() {
     SecurityRealm realm = securityRealmFactory.getRealm();
@@ -146,6 +159,11 @@ public class SonarQubeMonitor extends BaseMonitorMBean implements SonarQubeMonit
     attributes.put("Temp Dir", settings.getString(ProcessProperties.PATH_TEMP));
     attributes.put("Logs Dir", settings.getString(ProcessProperties.PATH_LOGS));
     attributes.put("Logs Level", getLogLevel());
+    attributes.put("Permission Cache Enabled", permissionCache.isEnabled());
+    attributes.put("Permission Cache Size", permissionCache.size());
+    attributes.put("Permission Cache Hits", getPermissionCacheHits());
+    attributes.put("Permission Cache Misses", getPermissionCacheMisses());
+    attributes.put("Permission Cache Evictions", permissionCache.getEvictions());
     return attributes;
   }
 
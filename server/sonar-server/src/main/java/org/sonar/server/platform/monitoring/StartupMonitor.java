@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.base.Joiner;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.startup.StartupTimeline;
+import org.sonar.server.startup.StartupTimeline.TaskExecution;
+
+/**
+ * Timeline of the last execution of startup tasks
+ */
+public class StartupMonitor implements Monitor {
+  private final StartupTimeline timeline;
+
+  public StartupMonitor(StartupTimeline timeline) {
+    this.timeline = timeline;
+  }
+
+  @Override
+  public String name() {
+    return "Startup";
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    if (!timeline.isRecorded()) {
+      return attributes;
+    }
+    attributes.put("Threads", timeline.getThreads());
+    attributes.put("Duration (ms)", timeline.getDurationMs());
+    attributes.put("Critical Path", Joiner.on(" -> ").join(timeline.getCriticalPath()));
+    LinkedHashMap<String, Object> tasks = new LinkedHashMap<>();
+    for (TaskExecution task : timeline.getTasks()) {
+      LinkedHashMap<String, Object> taskAttributes = new LinkedHashMap<>();
+      taskAttributes.put("Thread", task.getThread());
+      taskAttributes.put("Start (ms)", task.getStartOffsetMs());
+      taskAttributes.put("Duration (ms)", task.getDurationMs());
+      tasks.put(task.getName(), taskAttributes);
+    }
+    attributes.put("Tasks", tasks);
+    return attributes;
+  }
+}
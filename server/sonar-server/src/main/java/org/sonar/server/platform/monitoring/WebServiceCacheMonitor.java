@@ -0,0 +1,89 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.ws.WsResponseCache;
+
+/**
+ * Cache of the responses of web services
+ */
+public class WebServiceCacheMonitor extends BaseMonitorMBean implements WebServiceCacheMonitorMBean {
+
+  private final WsResponseCache cache;
+
+  public WebServiceCacheMonitor(WsResponseCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public String name() {
+    return "Web Services Cache";
+  }
+
+  @Override
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  @Override
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  @Override
+  public long getNotModified() {
+    return cache.getNotModified();
+  }
+
+  @Override
+  public long getHitRatio() {
+    return Math.round(100d * cache.getHitRatio());
+  }
+
+  @Override
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+
+  @Override
+  public long getEntries() {
+    return cache.size();
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return cache.getSizeInBytes();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Hits", getHits());
+    attributes.put("Misses", getMisses());
+    attributes.put("Not Modified", getNotModified());
+    attributes.put("Hit Ratio (%)", getHitRatio());
+    attributes.put("Evictions", getEvictions());
+    attributes.put("Entries", getEntries());
+    attributes.put("Size (bytes)", getSizeInBytes());
+    return attributes;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+public interface WebServiceCacheMonitorMBean {
+
+  /**
+   * Count of responses of web services served from memory since startup.
+   */
+  long getHits();
+
+  /**
+   * Count of cacheable responses of web services which had to be built since startup.
+   */
+  long getMisses();
+
+  /**
+   * Count of 304 Not Modified responses since startup.
+   */
+  long getNotModified();
+
+  /**
+   * Ratio, in percents, of the cacheable responses which were not built.
+   */
+  long getHitRatio();
+
+  /**
+   * Count of responses evicted from memory since startup.
+   */
+  long getEvictions();
+
+  /**
+   * Count of responses kept in memory.
+   */
+  long getEntries();
+
+  /**
+   * Size of the responses kept in memory, in bytes.
+   */
+  long getSizeInBytes();
+}
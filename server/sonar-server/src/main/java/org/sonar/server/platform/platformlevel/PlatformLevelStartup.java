@@ -39,6 +39,8 @@ import org.sonar.server.startup.RegisterPermissionTemplates;
 import org.sonar.server.startup.RegisterServletFilters;
 import org.sonar.server.startup.RenameDeprecatedPropertyKeys;
 import org.sonar.server.startup.RenameIssueWidgets;
+import org.sonar.server.startup.StartupTaskExecutor;
+import org.sonar.server.startup.StartupTaskGraph;
 import org.sonar.server.user.DoPrivileged;
 import org.sonar.server.user.ThreadLocalUserSession;
 
@@ -52,32 +54,45 @@ public class PlatformLevelStartup extends PlatformLevel {
     add(
       CheckDatabaseCollationDuringMigration.class,
       IndexerStartupTask.class,
-      RegisterMetrics.class,
-      RegisterQualityGates.class,
-      RegisterRules.class,
-      RegisterQualityProfiles.class,
-      GeneratePluginIndex.class,
-      RegisterNewMeasureFilters.class,
-      RegisterDashboards.class,
-      RegisterPermissionTemplates.class,
-      RenameDeprecatedPropertyKeys.class,
-      LogServerId.class,
-      RegisterServletFilters.class,
-      RegisterIssueFilters.class,
-      RenameIssueWidgets.class,
       ServerLifecycleNotifier.class,
-      DisplayLogOnDeprecatedProjects.class,
-      ClearRulesOverloadedDebt.class,
-      FeedUsersLocalStartupTask.class
+      startupTaskGraph(),
+      StartupTaskExecutor.class
     );
   }
 
+  /**
+   * Startup tasks which are not related by a dependency are executed concurrently
+   */
+  private static StartupTaskGraph startupTaskGraph() {
+    return StartupTaskGraph.builder()
+      .add(RegisterMetrics.class)
+      .add(RegisterQualityGates.class, RegisterMetrics.class)
+      .add(RegisterRules.class)
+      .add(RegisterQualityProfiles.class, RegisterRules.class)
+      .add(GeneratePluginIndex.class)
+      .add(RegisterNewMeasureFilters.class)
+      .add(RegisterIssueFilters.class)
+      .add(RegisterDashboards.class, RegisterNewMeasureFilters.class, RegisterIssueFilters.class)
+      .add(RegisterPermissionTemplates.class)
+      .add(RenameDeprecatedPropertyKeys.class)
+      .add(LogServerId.class)
+      .add(RegisterServletFilters.class)
+      .add(RenameIssueWidgets.class, RegisterDashboards.class)
+      .add(DisplayLogOnDeprecatedProjects.class)
+      // rules are indexed once registered
+      .add(ClearRulesOverloadedDebt.class, RegisterRules.class)
+      // settings are updated by the registration of the default permission template
+      .add(FeedUsersLocalStartupTask.class, RegisterPermissionTemplates.class)
+      .build();
+  }
+
   @Override
   public PlatformLevel start() {
     DoPrivileged.execute(new DoPrivileged.Task(getComponentByType(ThreadLocalUserSession.class)) {
       @Override
       protected void doPrivileged() {
         PlatformLevelStartup.super.start();
+        getComponentByType(StartupTaskExecutor.class).execute();
         getComponentByType(IndexerStartupTask.class).execute();
         getComponentByType(ServerLifecycleNotifier.class).notifyStart();
         getComponentByType(ProcessCommandWrapper.class).notifyOperational();
@@ -25,6 +25,7 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.profiles.ProfileExporter;
 import org.sonar.api.resources.Language;
@@ -43,8 +44,10 @@ import org.sonarqube.ws.MediaTypes;
 import org.sonar.server.qualityprofile.QProfileBackuper;
 import org.sonar.server.qualityprofile.QProfileExporters;
 import org.sonar.server.qualityprofile.QProfileFactory;
+import org.sonar.server.rule.index.RuleIndex;
+import org.sonar.server.ws.CacheableRequestHandler;
 
-public class ExportAction implements QProfileWsAction {
+public class ExportAction implements QProfileWsAction, CacheableRequestHandler {
 
   private static final String PARAM_PROFILE_NAME = "name";
   private static final String PARAM_LANGUAGE = "language";
@@ -60,12 +63,16 @@ public class ExportAction implements QProfileWsAction {
 
   private final Languages languages;
 
-  public ExportAction(DbClient dbClient, QProfileFactory profileFactory, QProfileBackuper backuper, QProfileExporters exporters, Languages languages) {
+  private final RuleIndex ruleIndex;
+
+  public ExportAction(DbClient dbClient, QProfileFactory profileFactory, QProfileBackuper backuper, QProfileExporters exporters, Languages languages,
+    RuleIndex ruleIndex) {
     this.dbClient = dbClient;
     this.profileFactory = profileFactory;
     this.backuper = backuper;
     this.exporters = exporters;
     this.languages = languages;
+    this.ruleIndex = ruleIndex;
   }
 
   @Override
@@ -115,17 +122,7 @@ public class ExportAction implements QProfileWsAction {
     Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
 
     try {
-      QualityProfileDto profile;
-      if (name == null) {
-        profile = profileFactory.getDefault(dbSession, language);
-      } else {
-        profile = profileFactory.getByNameAndLanguage(dbSession, name, language);
-      }
-      if (profile == null) {
-        throw new NotFoundException(String.format("Could not find profile with name '%s' for language '%s'", name, language));
-      }
-
-      String profileKey = profile.getKey();
+      String profileKey = selectProfile(dbSession, name, language).getKey();
       if (format == null) {
         stream.setMediaType(MediaTypes.XML);
         backuper.backup(profileKey, writer);
@@ -139,4 +136,35 @@ public class ExportAction implements QProfileWsAction {
       dbSession.close();
     }
   }
+
+  /**
+   * The date of the last change of the rules of profile has a precision of one second, so the version also
+   * depends on the indexed active rules of profile.
+   */
+  @Override
+  public String responseVersion(Request request) {
+    String name = request.param(PARAM_PROFILE_NAME);
+    String language = request.mandatoryParam(PARAM_LANGUAGE);
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      QualityProfileDto profile = selectProfile(dbSession, name, language);
+      return profile.getKey() + "|" + profile.getName() + "|" + profile.getParentKee() + "|" + profile.getRulesUpdatedAt() + "|"
+        + ruleIndex.activeRulesDataVersion(profile.getKey());
+    } finally {
+      dbSession.close();
+    }
+  }
+
+  private QualityProfileDto selectProfile(DbSession dbSession, @Nullable String name, String language) {
+    QualityProfileDto profile;
+    if (name == null) {
+      profile = profileFactory.getDefault(dbSession, language);
+    } else {
+      profile = profileFactory.getByNameAndLanguage(dbSession, name, language);
+    }
+    if (profile == null) {
+      throw new NotFoundException(String.format("Could not find profile with name '%s' for language '%s'", name, language));
+    }
+    return profile;
+  }
 }
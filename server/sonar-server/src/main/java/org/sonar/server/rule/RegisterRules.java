@@ -28,13 +28,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
+import org.sonar.api.SonarRuntime;
 import org.sonar.api.resources.Languages;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
@@ -47,6 +51,7 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.loadedtemplate.LoadedTemplateDto;
 import org.sonar.db.qualityprofile.ActiveRuleDto;
 import org.sonar.db.qualityprofile.ActiveRuleParamDto;
 import org.sonar.db.rule.RuleDto;
@@ -62,11 +67,15 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.intersection;
 
 /**
- * Register rules at server startup
+ * Register rules at server startup.
+ * <p/>
+ * A fingerprint of the definitions of each repository is persisted (see {@link RuleRepositoryFingerprint}). Repositories
+ * whose fingerprint did not change since the previous startup are not merged again.
  */
 public class RegisterRules implements Startable {
 
   private static final Logger LOG = Loggers.get(RegisterRules.class);
+  private static final char FINGERPRINT_SEPARATOR = ':';
 
   private final RuleDefinitionsLoader defLoader;
   private final RuleActivator ruleActivator;
@@ -75,9 +84,10 @@ public class RegisterRules implements Startable {
   private final ActiveRuleIndexer activeRuleIndexer;
   private final Languages languages;
   private final System2 system2;
+  private final SonarRuntime sonarRuntime;
 
   public RegisterRules(RuleDefinitionsLoader defLoader, RuleActivator ruleActivator, DbClient dbClient, RuleIndexer ruleIndexer,
-    ActiveRuleIndexer activeRuleIndexer, Languages languages, System2 system2) {
+    ActiveRuleIndexer activeRuleIndexer, Languages languages, System2 system2, SonarRuntime sonarRuntime) {
     this.defLoader = defLoader;
     this.ruleActivator = ruleActivator;
     this.dbClient = dbClient;
@@ -85,6 +95,7 @@ public class RegisterRules implements Startable {
     this.activeRuleIndexer = activeRuleIndexer;
     this.languages = languages;
     this.system2 = system2;
+    this.sonarRuntime = sonarRuntime;
   }
 
   @Override
@@ -92,29 +103,69 @@ public class RegisterRules implements Startable {
     Profiler profiler = Profiler.create(LOG).startInfo("Register rules");
     DbSession session = dbClient.openSession(false);
     try {
-      Map<RuleKey, RuleDto> allRules = loadRules(session);
-
+      Profiler phaseProfiler = Profiler.create(LOG).start();
       RulesDefinition.Context context = defLoader.load();
-      for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
-        if (languages.get(repoDef.language()) != null) {
-          for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
-            registerRule(ruleDef, allRules, session);
-          }
-          session.commit();
-        }
+      Map<String, List<RulesDefinition.ExtendedRepository>> repositoriesByKey = getRepositoriesByKey(context);
+      Map<String, String> fingerprints = computeFingerprints(repositoriesByKey);
+      Map<String, LoadedTemplateDto> persistedFingerprints = loadFingerprints(session);
+      Set<String> unchangedRepositoryKeys = fingerprints.entrySet().stream()
+        .filter(entry -> persistedFingerprints.containsKey(entry.getKey())
+          && persistedFingerprints.get(entry.getKey()).getKey().equals(toTemplateKey(entry.getKey(), entry.getValue())))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+      phaseProfiler
+        .addContext("repositories", repositoriesByKey.size())
+        .addContext("unchanged", unchangedRepositoryKeys.size())
+        .stopInfo("Load rule definitions");
+
+      List<ActiveRuleChange> changes = Collections.emptyList();
+      if (unchangedRepositoryKeys.size() == fingerprints.size() && fingerprints.keySet().containsAll(persistedFingerprints.keySet())) {
+        LOG.info("Rule repositories are up-to-date");
+      } else {
+        changes = registerChangedRepositories(session, context, repositoriesByKey, unchangedRepositoryKeys);
+        persistFingerprints(session, fingerprints, persistedFingerprints);
+        session.commit();
       }
-      List<RuleDto> activeRules = processRemainingDbRules(allRules.values(), session);
-      List<ActiveRuleChange> changes = removeActiveRulesOnStillExistingRepositories(session, activeRules, context);
-      session.commit();
+
+      phaseProfiler.start();
       ruleIndexer.setEnabled(true).index();
       activeRuleIndexer.setEnabled(true);
       activeRuleIndexer.index(changes);
+      phaseProfiler.stopInfo("Index rules");
       profiler.stopDebug();
     } finally {
       session.close();
     }
   }
 
+  private List<ActiveRuleChange> registerChangedRepositories(DbSession session, RulesDefinition.Context context,
+    Map<String, List<RulesDefinition.ExtendedRepository>> repositoriesByKey, Set<String> unchangedRepositoryKeys) {
+    Profiler phaseProfiler = Profiler.create(LOG).start();
+    Map<RuleKey, RuleDto> allRules = loadRules(session, unchangedRepositoryKeys);
+    phaseProfiler.addContext("rules", allRules.size()).stopInfo("Load rules from database");
+
+    phaseProfiler.start();
+    int mergedRepositories = 0;
+    for (Map.Entry<String, List<RulesDefinition.ExtendedRepository>> entry : repositoriesByKey.entrySet()) {
+      if (!unchangedRepositoryKeys.contains(entry.getKey())) {
+        for (RulesDefinition.ExtendedRepository repoDef : entry.getValue()) {
+          for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
+            registerRule(ruleDef, allRules, session);
+          }
+        }
+        session.commit();
+        mergedRepositories++;
+      }
+    }
+    phaseProfiler.addContext("repositories", mergedRepositories).stopInfo("Merge rule definitions");
+
+    phaseProfiler.start();
+    List<RuleDto> removedRules = processRemainingDbRules(allRules.values(), session);
+    List<ActiveRuleChange> changes = removeActiveRulesOnStillExistingRepositories(session, removedRules, context);
+    phaseProfiler.addContext("removedRules", removedRules.size()).stopInfo("Remove rules");
+    return changes;
+  }
+
   @Override
   public void stop() {
     // nothing
@@ -145,14 +196,75 @@ public class RegisterRules implements Startable {
     mergeParams(ruleDef, rule, session);
   }
 
-  private Map<RuleKey, RuleDto> loadRules(DbSession session) {
+  /**
+   * Rules of the unchanged repositories are not loaded, so they are neither merged nor considered as removed
+   */
+  private Map<RuleKey, RuleDto> loadRules(DbSession session, Set<String> excludedRepositoryKeys) {
     Map<RuleKey, RuleDto> rules = new HashMap<>();
     for (RuleDto rule : dbClient.ruleDao().selectAll(session)) {
-      rules.put(rule.getKey(), rule);
+      if (!excludedRepositoryKeys.contains(rule.getRepositoryKey())) {
+        rules.put(rule.getKey(), rule);
+      }
     }
     return rules;
   }
 
+  /**
+   * Repositories and their extensions, grouped by repository key. Repositories of languages which are
+   * not installed are ignored.
+   */
+  private Map<String, List<RulesDefinition.ExtendedRepository>> getRepositoriesByKey(RulesDefinition.Context context) {
+    Map<String, List<RulesDefinition.ExtendedRepository>> repositoriesByKey = new LinkedHashMap<>();
+    for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
+      if (languages.get(repoDef.language()) != null) {
+        repositoriesByKey.computeIfAbsent(repoDef.key(), k -> new ArrayList<>()).add(repoDef);
+      }
+    }
+    return repositoriesByKey;
+  }
+
+  private Map<String, String> computeFingerprints(Map<String, List<RulesDefinition.ExtendedRepository>> repositoriesByKey) {
+    String version = sonarRuntime.getApiVersion().toString();
+    Map<String, String> fingerprints = new HashMap<>();
+    for (Map.Entry<String, List<RulesDefinition.ExtendedRepository>> entry : repositoriesByKey.entrySet()) {
+      fingerprints.put(entry.getKey(), RuleRepositoryFingerprint.compute(version, entry.getValue()));
+    }
+    return fingerprints;
+  }
+
+  private Map<String, LoadedTemplateDto> loadFingerprints(DbSession session) {
+    Map<String, LoadedTemplateDto> fingerprintsByRepositoryKey = new HashMap<>();
+    for (LoadedTemplateDto dto : dbClient.loadedTemplateDao().selectByType(session, LoadedTemplateDto.RULE_REPOSITORY_TYPE)) {
+      String templateKey = dto.getKey();
+      fingerprintsByRepositoryKey.put(templateKey.substring(0, templateKey.lastIndexOf(FINGERPRINT_SEPARATOR)), dto);
+    }
+    return fingerprintsByRepositoryKey;
+  }
+
+  /**
+   * Fingerprints are persisted once the rules are merged and the removed rules are disabled, so that
+   * repositories are registered again if the server stops in the meantime.
+   */
+  private void persistFingerprints(DbSession session, Map<String, String> fingerprints, Map<String, LoadedTemplateDto> persistedFingerprints) {
+    for (Map.Entry<String, LoadedTemplateDto> persisted : persistedFingerprints.entrySet()) {
+      String fingerprint = fingerprints.get(persisted.getKey());
+      if (fingerprint == null || !persisted.getValue().getKey().equals(toTemplateKey(persisted.getKey(), fingerprint))) {
+        dbClient.loadedTemplateDao().delete(session, LoadedTemplateDto.RULE_REPOSITORY_TYPE, persisted.getValue().getKey());
+      }
+    }
+    for (Map.Entry<String, String> fingerprint : fingerprints.entrySet()) {
+      String templateKey = toTemplateKey(fingerprint.getKey(), fingerprint.getValue());
+      LoadedTemplateDto persisted = persistedFingerprints.get(fingerprint.getKey());
+      if (persisted == null || !persisted.getKey().equals(templateKey)) {
+        dbClient.loadedTemplateDao().insert(new LoadedTemplateDto(templateKey, LoadedTemplateDto.RULE_REPOSITORY_TYPE), session);
+      }
+    }
+  }
+
+  private static String toTemplateKey(String repositoryKey, String fingerprint) {
+    return repositoryKey + FINGERPRINT_SEPARATOR + fingerprint;
+  }
+
   private List<RulesDefinition.ExtendedRepository> getRepositories(RulesDefinition.Context context) {
     List<RulesDefinition.ExtendedRepository> repositories = new ArrayList<>();
     for (RulesDefinition.Repository repoDef : context.repositories()) {
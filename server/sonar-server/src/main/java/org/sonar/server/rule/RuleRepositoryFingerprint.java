@@ -0,0 +1,110 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.rule;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+import org.sonar.api.server.debt.DebtRemediationFunction;
+import org.sonar.api.server.rule.RulesDefinition;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Hash of all the attributes of the rules of a repository that are persisted by {@link RegisterRules}.
+ * Two definitions of a repository have the same fingerprint if and only if registering
+ * them gives the same rules in database.
+ */
+final class RuleRepositoryFingerprint {
+
+  private static final byte SEPARATOR = 0;
+  private static final byte NULL_VALUE = 1;
+
+  private RuleRepositoryFingerprint() {
+    // only static methods
+  }
+
+  /**
+   * @param version version of the format of the persisted rules, for example the version of SonarQube
+   * @param repositories the definition of a repository, then its extensions, all sharing the same key
+   */
+  static String compute(String version, Collection<? extends RulesDefinition.ExtendedRepository> repositories) {
+    Hasher hasher = Hashing.sha1().newHasher();
+    put(hasher, version);
+    for (RulesDefinition.ExtendedRepository repository : repositories) {
+      put(hasher, repository.key());
+      put(hasher, repository.language());
+      List<RulesDefinition.Rule> rules = new ArrayList<>(repository.rules());
+      rules.sort(Comparator.comparing(RulesDefinition.Rule::key));
+      for (RulesDefinition.Rule rule : rules) {
+        putRule(hasher, rule);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putRule(Hasher hasher, RulesDefinition.Rule rule) {
+    put(hasher, rule.key());
+    put(hasher, rule.name());
+    put(hasher, rule.htmlDescription());
+    put(hasher, rule.markdownDescription());
+    put(hasher, rule.internalKey());
+    put(hasher, rule.severity());
+    put(hasher, String.valueOf(rule.template()));
+    put(hasher, rule.status().name());
+    put(hasher, rule.type().name());
+    put(hasher, rule.gapDescription());
+    DebtRemediationFunction function = rule.debtRemediationFunction();
+    if (function == null) {
+      put(hasher, null);
+    } else {
+      put(hasher, function.type().name());
+      put(hasher, function.gapMultiplier());
+      put(hasher, function.baseEffort());
+    }
+    for (String tag : new TreeSet<>(rule.tags())) {
+      put(hasher, tag);
+    }
+    hasher.putByte(SEPARATOR);
+    List<RulesDefinition.Param> params = new ArrayList<>(rule.params());
+    params.sort(Comparator.comparing(RulesDefinition.Param::key));
+    for (RulesDefinition.Param param : params) {
+      put(hasher, param.key());
+      put(hasher, param.description());
+      put(hasher, param.defaultValue());
+      put(hasher, param.type().toString());
+    }
+    hasher.putByte(SEPARATOR);
+  }
+
+  private static void put(Hasher hasher, @Nullable String value) {
+    if (value == null) {
+      hasher.putByte(NULL_VALUE);
+    } else {
+      hasher.putString(value, UTF_8);
+    }
+    hasher.putByte(SEPARATOR);
+  }
+}
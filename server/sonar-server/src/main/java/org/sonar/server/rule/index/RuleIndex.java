@@ -50,6 +50,7 @@ import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
@@ -71,6 +72,7 @@ import static org.sonar.server.es.EsUtils.scrollIds;
 import static org.sonar.server.rule.index.RuleIndexDefinition.FIELD_ACTIVE_RULE_INHERITANCE;
 import static org.sonar.server.rule.index.RuleIndexDefinition.FIELD_ACTIVE_RULE_PROFILE_KEY;
 import static org.sonar.server.rule.index.RuleIndexDefinition.FIELD_ACTIVE_RULE_SEVERITY;
+import static org.sonar.server.rule.index.RuleIndexDefinition.FIELD_ACTIVE_RULE_UPDATED_AT;
 import static org.sonar.server.rule.index.RuleIndexDefinition.FIELD_RULE_ALL_TAGS;
 import static org.sonar.server.rule.index.RuleIndexDefinition.FIELD_RULE_CREATED_AT;
 import static org.sonar.server.rule.index.RuleIndexDefinition.FIELD_RULE_HTML_DESCRIPTION;
@@ -496,6 +498,39 @@ public class RuleIndex extends BaseIndex {
     return tags;
   }
 
+  /**
+   * Version of the indexed rules and active rules. It changes each time a rule or an active rule is indexed
+   * or removed from index.
+   */
+  public String dataVersion() {
+    return dataVersion(TYPE_RULE, QueryBuilders.matchAllQuery(), FIELD_RULE_UPDATED_AT) + "-"
+      + dataVersion(TYPE_ACTIVE_RULE, QueryBuilders.matchAllQuery(), FIELD_ACTIVE_RULE_UPDATED_AT);
+  }
+
+  /**
+   * Version of the indexed active rules of a quality profile. It changes each time one of these active rules
+   * is indexed or removed from index.
+   */
+  public String activeRulesDataVersion(String profileKey) {
+    return dataVersion(TYPE_ACTIVE_RULE, QueryBuilders.termQuery(FIELD_ACTIVE_RULE_PROFILE_KEY, profileKey), FIELD_ACTIVE_RULE_UPDATED_AT);
+  }
+
+  /**
+   * Number of documents and most recent update date. Documents are updated with the current date, so that
+   * the date changes when a document is added or updated, and the number changes when a document is removed.
+   */
+  private String dataVersion(String type, QueryBuilder query, String updatedAtField) {
+    SearchResponse response = getClient()
+      .prepareSearch(INDEX)
+      .setTypes(type)
+      .setQuery(query)
+      .setSize(0)
+      .addAggregation(AggregationBuilders.max(updatedAtField).field(updatedAtField))
+      .get();
+    Max max = response.getAggregations().get(updatedAtField);
+    return response.getHits().getTotalHits() + ":" + (long) max.getValue();
+  }
+
   private enum ToRuleKey implements Function<String, RuleKey> {
     INSTANCE;
 
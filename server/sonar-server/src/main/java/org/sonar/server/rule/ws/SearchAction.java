@@ -39,6 +39,7 @@ import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
 import org.sonar.api.rule.Severity;
@@ -49,6 +50,7 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.api.server.ws.WebService.Param;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.qualityprofile.QualityProfileDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleParamDto;
 import org.sonar.server.es.Facets;
@@ -58,6 +60,7 @@ import org.sonar.server.qualityprofile.ActiveRule;
 import org.sonar.server.rule.index.RuleIndex;
 import org.sonar.server.rule.index.RuleIndexDefinition;
 import org.sonar.server.rule.index.RuleQuery;
+import org.sonar.server.ws.CacheableRequestHandler;
 import org.sonarqube.ws.Common;
 import org.sonarqube.ws.Rules.SearchResponse;
 import org.sonarqube.ws.client.rule.SearchWsRequest;
@@ -92,7 +95,7 @@ import static org.sonarqube.ws.client.rule.RulesWsParameters.PARAM_TYPES;
 /**
  * @since 4.4
  */
-public class SearchAction implements RulesWsAction {
+public class SearchAction implements RulesWsAction, CacheableRequestHandler {
   public static final String ACTION = "search";
 
   private static final Collection<String> DEFAULT_FACETS = ImmutableSet.of(PARAM_LANGUAGES, PARAM_REPOSITORIES, "tags");
@@ -157,6 +160,29 @@ public class SearchAction implements RulesWsAction {
     }
   }
 
+  /**
+   * Rules and active rules are read from index. Names and parents of the quality profiles of active rules
+   * are read from database.
+   */
+  @Override
+  public String responseVersion(Request request) {
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      StringBuilder version = new StringBuilder(ruleIndex.dataVersion());
+      List<QualityProfileDto> profiles = new ArrayList<>(dbClient.qualityProfileDao().selectAll(dbSession));
+      profiles.sort((p1, p2) -> p1.getKey().compareTo(p2.getKey()));
+      for (QualityProfileDto profile : profiles) {
+        version.append('|').append(profile.getKey())
+          .append('|').append(profile.getName())
+          .append('|').append(profile.getLanguage())
+          .append('|').append(profile.getParentKee());
+      }
+      return DigestUtils.md5Hex(version.toString());
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+  }
+
   private SearchResponse buildResponse(DbSession dbSession, SearchWsRequest request, SearchOptions context, SearchResult result, RuleQuery query) {
     SearchResponse.Builder responseBuilder = SearchResponse.newBuilder();
     writeStatistics(responseBuilder, result, context);
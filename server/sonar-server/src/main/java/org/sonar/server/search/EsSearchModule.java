@@ -20,11 +20,14 @@
 package org.sonar.server.search;
 
 import org.sonar.core.platform.Module;
+import org.sonar.server.es.BulkIndexerStats;
 import org.sonar.server.es.EsClient;
 
 public class EsSearchModule extends Module {
   @Override
   protected void configureModule() {
-    add(EsClient.class);
+    add(
+      EsClient.class,
+      BulkIndexerStats.class);
   }
 }
@@ -0,0 +1,238 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.startup;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.core.platform.ComponentContainer;
+import org.sonar.db.Database;
+import org.sonar.db.dialect.H2;
+import org.sonar.server.startup.StartupTimeline.TaskExecution;
+import org.sonar.server.user.DoPrivileged;
+import org.sonar.server.user.ThreadLocalUserSession;
+
+import static java.lang.String.format;
+
+/**
+ * Executes the tasks of {@link StartupTaskGraph} on a bounded pool of threads. A task is started as soon
+ * as all its dependencies are done. Tasks are not managed by the pico lifecycle: they are instantiated
+ * in a dedicated child container, which is never started.
+ * <p>
+ * H2 locks whole tables during transactions, so tasks are executed one after the other when the embedded database is used.
+ * </p>
+ */
+@Properties({
+  @Property(
+    key = StartupTaskExecutor.PROPERTY_THREADS,
+    defaultValue = "" + StartupTaskExecutor.DEFAULT_THREADS,
+    name = "Number of threads executing the startup tasks",
+    project = false,
+    global = false)
+})
+@ServerSide
+public class StartupTaskExecutor {
+
+  public static final String PROPERTY_THREADS = "sonar.web.startupTasks.threads";
+  static final int DEFAULT_THREADS = 4;
+
+  private static final Logger LOG = Loggers.get(StartupTaskExecutor.class);
+
+  private final ComponentContainer container;
+  private final StartupTaskGraph graph;
+  private final StartupTimeline timeline;
+  private final ThreadLocalUserSession userSession;
+  private final Database database;
+  private final Settings settings;
+  private final System2 system2;
+
+  public StartupTaskExecutor(ComponentContainer container, StartupTaskGraph graph, StartupTimeline timeline, ThreadLocalUserSession userSession,
+    Database database, Settings settings, System2 system2) {
+    this.container = container;
+    this.graph = graph;
+    this.timeline = timeline;
+    this.userSession = userSession;
+    this.database = database;
+    this.settings = settings;
+    this.system2 = system2;
+  }
+
+  public void execute() {
+    int threads = threads();
+    Profiler profiler = Profiler.create(LOG).startInfo("Execute startup tasks");
+    ComponentContainer tasksContainer = container.createChild();
+    try {
+      tasksContainer.add(graph.tasks().toArray());
+      // pico is not thread-safe, so all the tasks are instantiated before being executed
+      Map<Class<?>, Object> tasks = new LinkedHashMap<>();
+      for (Class<?> taskClass : graph.tasks()) {
+        tasks.put(taskClass, tasksContainer.getComponentByType(taskClass));
+      }
+      long startedAt = system2.now();
+      Execution execution = new Execution(tasks, startedAt);
+      execution.run(threads);
+      long durationMs = system2.now() - startedAt;
+
+      for (Object task : Lists.reverse(new ArrayList<>(tasks.values()))) {
+        invoke(task, "stop");
+      }
+      recordTimeline(execution, threads, durationMs);
+      profiler.addContext("threads", threads);
+      profiler.stopInfo();
+    } finally {
+      container.removeChild(tasksContainer);
+    }
+  }
+
+  private int threads() {
+    int threads = Math.max(1, settings.hasKey(PROPERTY_THREADS) ? settings.getInt(PROPERTY_THREADS) : DEFAULT_THREADS);
+    if (threads > 1 && H2.ID.equals(database.getDialect().getId())) {
+      LOG.info("Startup tasks are executed sequentially on H2 database");
+      return 1;
+    }
+    return threads;
+  }
+
+  private void recordTimeline(Execution execution, int threads, long durationMs) {
+    List<TaskExecution> taskExecutions = new ArrayList<>(execution.executions);
+    taskExecutions.sort(Comparator.comparingLong(TaskExecution::getStartOffsetMs));
+    for (TaskExecution taskExecution : taskExecutions) {
+      LOG.debug("Startup task {} | thread={} | start={}ms | time={}ms",
+        taskExecution.getName(), taskExecution.getThread(), taskExecution.getStartOffsetMs(), taskExecution.getDurationMs());
+    }
+
+    List<String> criticalPath = new ArrayList<>();
+    List<String> criticalPathLabels = new ArrayList<>();
+    for (Class<?> task : graph.criticalPath(execution.durationsByTask)) {
+      criticalPath.add(task.getSimpleName());
+      criticalPathLabels.add(format("%s (%dms)", task.getSimpleName(), execution.durationsByTask.get(task)));
+    }
+    LOG.info("Startup tasks critical path: {}", Joiner.on(" -> ").join(criticalPathLabels));
+    timeline.record(threads, durationMs, taskExecutions, criticalPath);
+  }
+
+  private class Execution {
+    private final Map<Class<?>, Object> tasks;
+    private final long startedAt;
+    private final Map<Class<?>, Long> durationsByTask = new ConcurrentHashMap<>();
+    private final List<TaskExecution> executions = new ArrayList<>();
+
+    private Execution(Map<Class<?>, Object> tasks, long startedAt) {
+      this.tasks = tasks;
+      this.startedAt = startedAt;
+    }
+
+    void run(int threads) {
+      ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setNameFormat("startup-task-%d")
+        .setDaemon(true)
+        .build());
+      CompletionService<Class<?>> completionService = new ExecutorCompletionService<>(executorService);
+      Set<Class<?>> pending = new LinkedHashSet<>(tasks.keySet());
+      Set<Class<?>> done = new HashSet<>();
+      int running = 0;
+      try {
+        while (!pending.isEmpty() || running > 0) {
+          // dependencies are declared before dependent tasks, so at least one task is ready when none is running
+          for (Iterator<Class<?>> it = pending.iterator(); it.hasNext();) {
+            Class<?> taskClass = it.next();
+            if (done.containsAll(graph.dependenciesOf(taskClass))) {
+              it.remove();
+              completionService.submit(() -> runTask(taskClass));
+              running++;
+            }
+          }
+          done.add(completionService.take().get());
+          running--;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while executing startup tasks", e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException("Fail to execute startup tasks", e.getCause());
+      } finally {
+        executorService.shutdownNow();
+      }
+    }
+
+    private Class<?> runTask(Class<?> taskClass) {
+      long start = system2.now();
+      DoPrivileged.execute(new DoPrivileged.Task(userSession) {
+        @Override
+        protected void doPrivileged() {
+          invoke(tasks.get(taskClass), "start");
+        }
+      });
+      long durationMs = system2.now() - start;
+      durationsByTask.put(taskClass, durationMs);
+      synchronized (executions) {
+        executions.add(new TaskExecution(taskClass.getSimpleName(), Thread.currentThread().getName(), start - startedAt, durationMs));
+      }
+      return taskClass;
+    }
+  }
+
+  /**
+   * Same convention as the pico lifecycle of {@link ComponentContainer}: the method is optional.
+   */
+  private static void invoke(Object task, String methodName) {
+    Method method;
+    try {
+      method = task.getClass().getMethod(methodName);
+    } catch (NoSuchMethodException e) {
+      return;
+    }
+    try {
+      method.invoke(task);
+    } catch (InvocationTargetException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException(format("Fail to %s startup task %s", methodName, task.getClass().getName()), e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(format("Fail to %s startup task %s", methodName, task.getClass().getName()), e);
+    }
+  }
+}
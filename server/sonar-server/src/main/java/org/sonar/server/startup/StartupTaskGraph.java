@@ -0,0 +1,124 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.startup;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.sonar.api.server.ServerSide;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Startup tasks and the tasks they must wait for. Tasks which do not depend on each other are
+ * executed concurrently by {@link StartupTaskExecutor}.
+ * <p>
+ * A task is a component with a {@code start()} method. A dependency must be declared as soon as two tasks
+ * write the same data, or when a task reads data written by another one.
+ * </p>
+ */
+@ServerSide
+public class StartupTaskGraph {
+
+  private final Map<Class<?>, Set<Class<?>>> dependenciesByTask;
+
+  private StartupTaskGraph(Map<Class<?>, Set<Class<?>>> dependenciesByTask) {
+    this.dependenciesByTask = Collections.unmodifiableMap(dependenciesByTask);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Tasks in declaration order. As dependencies must be declared before the tasks which depend on them,
+   * this is also a topological order.
+   */
+  public Set<Class<?>> tasks() {
+    return dependenciesByTask.keySet();
+  }
+
+  public Set<Class<?>> dependenciesOf(Class<?> task) {
+    Set<Class<?>> dependencies = dependenciesByTask.get(task);
+    checkArgument(dependencies != null, "Startup task %s is not declared", task.getName());
+    return dependencies;
+  }
+
+  /**
+   * The chain of dependent tasks with the longest cumulated duration. Whatever the number of threads,
+   * the startup tasks can not be executed faster than this path.
+   */
+  public List<Class<?>> criticalPath(Map<Class<?>, Long> durationsByTask) {
+    Map<Class<?>, Long> finishByTask = new HashMap<>();
+    Map<Class<?>, Class<?>> predecessorByTask = new HashMap<>();
+    Class<?> last = null;
+    for (Class<?> task : tasks()) {
+      long start = 0L;
+      for (Class<?> dependency : dependenciesOf(task)) {
+        long dependencyFinish = finishByTask.get(dependency);
+        if (!predecessorByTask.containsKey(task) || dependencyFinish > start) {
+          start = dependencyFinish;
+          predecessorByTask.put(task, dependency);
+        }
+      }
+      Long duration = durationsByTask.get(task);
+      long finish = start + (duration == null ? 0L : duration);
+      finishByTask.put(task, finish);
+      if (last == null || finish > finishByTask.get(last)) {
+        last = task;
+      }
+    }
+
+    List<Class<?>> path = new ArrayList<>();
+    for (Class<?> task = last; task != null; task = predecessorByTask.get(task)) {
+      path.add(task);
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  public static class Builder {
+    private final Map<Class<?>, Set<Class<?>>> dependenciesByTask = new LinkedHashMap<>();
+
+    private Builder() {
+      // use StartupTaskGraph#builder()
+    }
+
+    public Builder add(Class<?> task, Class<?>... dependencies) {
+      checkArgument(!dependenciesByTask.containsKey(task), "Startup task %s is declared twice", task.getName());
+      for (Class<?> dependency : dependencies) {
+        checkArgument(dependenciesByTask.containsKey(dependency),
+          format("Startup task %s must be declared before %s, which depends on it", dependency.getName(), task.getName()));
+      }
+      dependenciesByTask.put(task, ImmutableSet.copyOf(dependencies));
+      return this;
+    }
+
+    public StartupTaskGraph build() {
+      return new StartupTaskGraph(new LinkedHashMap<>(dependenciesByTask));
+    }
+  }
+}
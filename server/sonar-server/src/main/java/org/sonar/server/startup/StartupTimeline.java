@@ -0,0 +1,119 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.startup;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.server.ServerSide;
+
+/**
+ * Timeline of the last execution of startup tasks by {@link StartupTaskExecutor}. It's kept
+ * after startup in order to be displayed by api/system/info.
+ */
+@ServerSide
+public class StartupTimeline {
+
+  private volatile Execution execution = null;
+
+  public void record(int threads, long durationMs, List<TaskExecution> tasks, List<String> criticalPath) {
+    this.execution = new Execution(threads, durationMs, tasks, criticalPath);
+  }
+
+  public boolean isRecorded() {
+    return execution != null;
+  }
+
+  public int getThreads() {
+    Execution e = execution;
+    return e == null ? 0 : e.threads;
+  }
+
+  public long getDurationMs() {
+    Execution e = execution;
+    return e == null ? 0L : e.durationMs;
+  }
+
+  /**
+   * Executed tasks, sorted by start date
+   */
+  public List<TaskExecution> getTasks() {
+    Execution e = execution;
+    return e == null ? Collections.emptyList() : e.tasks;
+  }
+
+  /**
+   * Names of the tasks of the critical path, in execution order
+   */
+  public List<String> getCriticalPath() {
+    Execution e = execution;
+    return e == null ? Collections.emptyList() : e.criticalPath;
+  }
+
+  @Immutable
+  private static class Execution {
+    private final int threads;
+    private final long durationMs;
+    private final List<TaskExecution> tasks;
+    private final List<String> criticalPath;
+
+    private Execution(int threads, long durationMs, List<TaskExecution> tasks, List<String> criticalPath) {
+      this.threads = threads;
+      this.durationMs = durationMs;
+      this.tasks = ImmutableList.copyOf(tasks);
+      this.criticalPath = ImmutableList.copyOf(criticalPath);
+    }
+  }
+
+  @Immutable
+  public static class TaskExecution {
+    private final String name;
+    private final String thread;
+    private final long startOffsetMs;
+    private final long durationMs;
+
+    public TaskExecution(String name, String thread, long startOffsetMs, long durationMs) {
+      this.name = name;
+      this.thread = thread;
+      this.startOffsetMs = startOffsetMs;
+      this.durationMs = durationMs;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getThread() {
+      return thread;
+    }
+
+    /**
+     * Delay between the start of the whole execution and the start of the task
+     */
+    public long getStartOffsetMs() {
+      return startOffsetMs;
+    }
+
+    public long getDurationMs() {
+      return durationMs;
+    }
+  }
+}
@@ -185,6 +185,17 @@ public abstract class AbstractUserSession<T extends AbstractUserSession> impleme
     return this;
   }
 
+  @Override
+  public Set<String> filterAuthorizedComponentUuids(String permission, Collection<String> componentUuids) {
+    Set<String> authorizedComponentUuids = Sets.newHashSet();
+    for (String componentUuid : componentUuids) {
+      if (hasComponentUuidPermission(permission, componentUuid)) {
+        authorizedComponentUuids.add(componentUuid);
+      }
+    }
+    return authorizedComponentUuids;
+  }
+
   public static ForbiddenException insufficientPrivilegesException() {
     return INSUFFICIENT_PRIVILEGES_EXCEPTION;
   }
@@ -0,0 +1,199 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.System2;
+
+/**
+ * Server-wide cache of the authorization data loaded by {@link ServerUserSession}: global permissions,
+ * groups and authorized root projects of each user. Entries are evicted in least-recently-used order
+ * when the cache is full, and expire after a short delay so that permissions updated outside of the
+ * web server (Compute Engine, Ruby on Rails) are eventually seen.
+ * <p>
+ * Entries are per user. As a permission given to a group may concern any user, changes on groups
+ * invalidate the whole cache.
+ * </p>
+ */
+@Properties({
+  @Property(
+    key = PermissionCache.PROPERTY_MAX_USERS,
+    defaultValue = "" + PermissionCache.DEFAULT_MAX_USERS,
+    name = "Maximum number of users whose permissions are cached, 0 to disable the cache",
+    project = false,
+    global = false),
+  @Property(
+    key = PermissionCache.PROPERTY_TTL_SECONDS,
+    defaultValue = "" + PermissionCache.DEFAULT_TTL_SECONDS,
+    name = "Time to live of cached permissions, in seconds",
+    project = false,
+    global = false)
+})
+@ServerSide
+public class PermissionCache {
+
+  public static final String PROPERTY_MAX_USERS = "sonar.web.permissionCache.maxUsers";
+  public static final String PROPERTY_TTL_SECONDS = "sonar.web.permissionCache.ttlSeconds";
+  static final int DEFAULT_MAX_USERS = 1000;
+  static final int DEFAULT_TTL_SECONDS = 60;
+
+  private static final String ANONYMOUS_KEY = "";
+  private static final String GLOBAL_PERMISSIONS = "global";
+  private static final String GROUPS = "groups";
+  private static final String PROJECT_KEYS_PREFIX = "projectKeys.";
+  private static final String PROJECT_UUIDS_PREFIX = "projectUuids.";
+
+  private final System2 system2;
+  private final int maxUsers;
+  private final long ttlMs;
+  private final Map<String, Entry> entriesByLogin;
+
+  private final AtomicLong hits = new AtomicLong(0L);
+  private final AtomicLong misses = new AtomicLong(0L);
+  private final AtomicLong evictions = new AtomicLong(0L);
+
+  public PermissionCache(Settings settings, System2 system2) {
+    this(intSetting(settings, PROPERTY_MAX_USERS, DEFAULT_MAX_USERS), 1000L * intSetting(settings, PROPERTY_TTL_SECONDS, DEFAULT_TTL_SECONDS), system2);
+  }
+
+  PermissionCache(int maxUsers, long ttlMs, System2 system2) {
+    this.system2 = system2;
+    this.maxUsers = maxUsers;
+    this.ttlMs = ttlMs;
+    this.entriesByLogin = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > PermissionCache.this.maxUsers) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Cache which always loads data, used when no cache is provided to {@link ServerUserSession}
+   */
+  public static PermissionCache disabled() {
+    return new PermissionCache(0, 0L, System2.INSTANCE);
+  }
+
+  private static int intSetting(Settings settings, String key, int defaultValue) {
+    return settings.hasKey(key) ? settings.getInt(key) : defaultValue;
+  }
+
+  public boolean isEnabled() {
+    return maxUsers > 0 && ttlMs > 0L;
+  }
+
+  Collection<String> globalPermissions(@Nullable String login, Supplier<Collection<String>> loader) {
+    return get(login, GLOBAL_PERMISSIONS, loader);
+  }
+
+  Collection<String> groups(@Nullable String login, Supplier<Collection<String>> loader) {
+    return get(login, GROUPS, loader);
+  }
+
+  Collection<String> authorizedProjectKeys(@Nullable String login, String permission, Supplier<Collection<String>> loader) {
+    return get(login, PROJECT_KEYS_PREFIX + permission, loader);
+  }
+
+  Collection<String> authorizedProjectUuids(@Nullable String login, String permission, Supplier<Collection<String>> loader) {
+    return get(login, PROJECT_UUIDS_PREFIX + permission, loader);
+  }
+
+  private Collection<String> get(@Nullable String login, String dataKey, Supplier<Collection<String>> loader) {
+    if (!isEnabled()) {
+      return loader.get();
+    }
+    // data loaded concurrently to an invalidation is put in an entry which is no longer referenced by the cache
+    Entry entry = entry(login == null ? ANONYMOUS_KEY : login);
+    Collection<String> data = entry.dataByKey.get(dataKey);
+    if (data != null) {
+      hits.incrementAndGet();
+      return data;
+    }
+    misses.incrementAndGet();
+    data = loader.get();
+    entry.dataByKey.put(dataKey, data);
+    return data;
+  }
+
+  private synchronized Entry entry(String key) {
+    long now = system2.now();
+    Entry entry = entriesByLogin.get(key);
+    if (entry == null || now - entry.createdAt >= ttlMs) {
+      entry = new Entry(now);
+      entriesByLogin.put(key, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Drops the data of the given user, for example when their permissions or groups are updated
+   */
+  public synchronized void invalidate(String login) {
+    entriesByLogin.remove(login);
+  }
+
+  /**
+   * Drops the data of all users, for example when the permissions of a group are updated
+   */
+  public synchronized void invalidateAll() {
+    entriesByLogin.clear();
+  }
+
+  public synchronized int size() {
+    return entriesByLogin.size();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  private static final class Entry {
+    private final long createdAt;
+    private final ConcurrentMap<String, Collection<String>> dataByKey = new ConcurrentHashMap<>();
+
+    private Entry(long createdAt) {
+      this.createdAt = createdAt;
+    }
+  }
+}
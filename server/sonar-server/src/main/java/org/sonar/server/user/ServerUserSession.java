@@ -22,6 +22,8 @@ package org.sonar.server.user;
 import static com.google.common.collect.Maps.newHashMap;
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -32,6 +34,7 @@ import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ResourceDao;
 import org.sonar.db.component.ResourceDto;
 import org.sonar.db.user.AuthorizationDao;
@@ -45,12 +48,14 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession> {
   private Map<String, String> projectKeyByComponentKey = newHashMap();
 
   private final DbClient dbClient;
+  private final PermissionCache permissionCache;
   private final AuthorizationDao authorizationDao;
   private final ResourceDao resourceDao;
 
-  private ServerUserSession(DbClient dbClient, @Nullable UserDto userDto) {
+  private ServerUserSession(DbClient dbClient, PermissionCache permissionCache, @Nullable UserDto userDto) {
     super(ServerUserSession.class);
     this.dbClient = dbClient;
+    this.permissionCache = permissionCache;
     this.authorizationDao = dbClient.authorizationDao();
     this.resourceDao = dbClient.resourceDao();
     this.globalPermissions = null;
@@ -58,23 +63,31 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession> {
       this.setLogin(userDto.getLogin());
       this.setName(userDto.getName());
       this.setUserId(userDto.getId().intValue());
-      this.userGroups.addAll(getUserGroups(userDto.getLogin()));
+      this.userGroups.addAll(permissionCache.groups(userDto.getLogin(), () -> getUserGroups(userDto.getLogin())));
     }
   }
 
   public static ServerUserSession createForUser(DbClient dbClient, UserDto userDto){
+    return createForUser(dbClient, PermissionCache.disabled(), userDto);
+  }
+
+  public static ServerUserSession createForUser(DbClient dbClient, PermissionCache permissionCache, UserDto userDto){
     requireNonNull(userDto, "UserDto must not be null");
-    return new ServerUserSession(dbClient, userDto);
+    return new ServerUserSession(dbClient, permissionCache, userDto);
   }
 
   public static ServerUserSession createForAnonymous(DbClient dbClient){
-    return new ServerUserSession(dbClient, null);
+    return createForAnonymous(dbClient, PermissionCache.disabled());
+  }
+
+  public static ServerUserSession createForAnonymous(DbClient dbClient, PermissionCache permissionCache){
+    return new ServerUserSession(dbClient, permissionCache, null);
   }
 
   private Set<String> getUserGroups(String userLogin) {
     DbSession dbSession = dbClient.openSession(false);
     try {
-      return new HashSet<>(dbClient.groupDao().selectByUserLogin(dbSession, userLogin).stream().map(GroupDto::getName).collect(Collectors.toSet()));
+      return ImmutableSet.copyOf(dbClient.groupDao().selectByUserLogin(dbSession, userLogin).stream().map(GroupDto::getName).collect(Collectors.toSet()));
     } finally {
       dbClient.closeSession(dbSession);
     }
@@ -83,7 +96,7 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession> {
   @Override
   public List<String> globalPermissions() {
     if (globalPermissions == null) {
-      List<String> permissionKeys = authorizationDao.selectGlobalPermissions(login);
+      Collection<String> permissionKeys = permissionCache.globalPermissions(login, () -> ImmutableList.copyOf(authorizationDao.selectGlobalPermissions(login)));
       globalPermissions = new ArrayList<>();
       for (String permissionKey : permissionKeys) {
         globalPermissions.add(permissionKey);
@@ -94,7 +107,8 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession> {
 
   private boolean hasProjectPermission(String permission, String projectKey) {
     if (!projectPermissionsCheckedByKey.contains(permission)) {
-      Collection<String> projectKeys = authorizationDao.selectAuthorizedRootProjectsKeys(userId, permission);
+      Collection<String> projectKeys = permissionCache.authorizedProjectKeys(login, permission,
+        () -> ImmutableSet.copyOf(authorizationDao.selectAuthorizedRootProjectsKeys(userId, permission)));
       for (String key : projectKeys) {
         projectKeyByPermission.put(permission, key);
       }
@@ -105,11 +119,16 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession> {
 
   // To keep private
   private boolean hasProjectPermissionByUuid(String permission, String projectUuid) {
+    return authorizedProjectUuids(permission).contains(projectUuid);
+  }
+
+  private Set<String> authorizedProjectUuids(String permission) {
     if (!projectPermissionsCheckedByUuid.contains(permission)) {
-      Collection<String> projectUuids = authorizationDao.selectAuthorizedRootProjectsUuids(userId, permission);
+      Collection<String> projectUuids = permissionCache.authorizedProjectUuids(login, permission,
+        () -> ImmutableSet.copyOf(authorizationDao.selectAuthorizedRootProjectsUuids(userId, permission)));
       addProjectPermission(permission, projectUuids);
     }
-    return projectUuidByPermission.get(permission).contains(projectUuid);
+    return projectUuidByPermission.get(permission);
   }
 
   private void addProjectPermission(String permission, Collection<String> authorizedProjectUuids) {
@@ -163,4 +182,36 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession> {
     return false;
   }
 
+  @Override
+  public Set<String> filterAuthorizedComponentUuids(String permission, Collection<String> componentUuids) {
+    if (hasPermission(permission)) {
+      return new HashSet<>(componentUuids);
+    }
+    Set<String> authorizedProjectUuids = authorizedProjectUuids(permission);
+    Set<String> authorizedComponentUuids = new HashSet<>();
+    List<String> unknownComponentUuids = new ArrayList<>();
+    for (String componentUuid : componentUuids) {
+      String projectUuid = projectUuidByComponentUuid.get(componentUuid);
+      if (projectUuid == null) {
+        unknownComponentUuids.add(componentUuid);
+      } else if (authorizedProjectUuids.contains(projectUuid)) {
+        authorizedComponentUuids.add(componentUuid);
+      }
+    }
+    if (!unknownComponentUuids.isEmpty()) {
+      DbSession dbSession = dbClient.openSession(false);
+      try {
+        for (ComponentDto component : dbClient.componentDao().selectByUuids(dbSession, unknownComponentUuids)) {
+          if (authorizedProjectUuids.contains(component.projectUuid())) {
+            projectUuidByComponentUuid.put(component.uuid(), component.projectUuid());
+            authorizedComponentUuids.add(component.uuid());
+          }
+        }
+      } finally {
+        dbClient.closeSession(dbSession);
+      }
+    }
+    return authorizedComponentUuids;
+  }
+
 }
@@ -140,4 +140,9 @@ public class ThreadLocalUserSession implements UserSession {
   public boolean hasComponentUuidPermission(String permission, String componentUuid) {
     return get().hasComponentUuidPermission(permission, componentUuid);
   }
+
+  @Override
+  public Set<String> filterAuthorizedComponentUuids(String permission, Collection<String> componentUuids) {
+    return get().filterAuthorizedComponentUuids(permission, componentUuids);
+  }
 }
@@ -109,4 +109,12 @@ public interface UserSession {
    * If the component doesn't exist, return false
    */
   boolean hasComponentUuidPermission(String permission, String componentUuid);
+
+  /**
+   * Bulk version of {@link #hasComponentUuidPermission(String, String)}: keeps the components
+   * on which the user has the given project permission.
+   *
+   * Components which don't exist are not returned.
+   */
+  Set<String> filterAuthorizedComponentUuids(String permission, Collection<String> componentUuids);
 }
@@ -0,0 +1,362 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.CloseableIterator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Append-only disk storage of objects encoded with a {@link Codec}. Objects are grouped in
+ * deflate-compressed blocks, each block containing objects of a single partition (for example
+ * the component an issue belongs to). The offsets of the blocks of each partition are kept
+ * in memory so that a partition can be read without traversing the whole file.
+ * <p/>
+ * Layout of a block: number of objects (int), raw length (int), compressed length (int), compressed bytes.
+ * <p/>
+ * Only one {@link DiskAppender} must be opened at a time.
+ */
+public class IndexedDiskCache<O> {
+
+  static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+  private static final int BLOCK_HEADER_SIZE = 3 * 4;
+
+  private final File file;
+  private final Codec<O> codec;
+  private final Function<O, String> partitioner;
+  private final System2 system2;
+  private final int blockSize;
+  private final Map<String, List<Long>> blockOffsetsByPartition = new LinkedHashMap<>();
+  private long size = 0L;
+
+  public IndexedDiskCache(File file, Codec<O> codec, Function<O, String> partitioner, System2 system2) {
+    this(file, codec, partitioner, system2, DEFAULT_BLOCK_SIZE);
+  }
+
+  IndexedDiskCache(File file, Codec<O> codec, Function<O, String> partitioner, System2 system2, int blockSize) {
+    checkArgument(blockSize > 0, "Block size must be positive (got %s)", blockSize);
+    this.file = file;
+    this.codec = codec;
+    this.partitioner = partitioner;
+    this.system2 = system2;
+    this.blockSize = blockSize;
+    FileOutputStream output = null;
+    boolean threw = true;
+    try {
+      // truncates the file, if it already exists
+      output = new FileOutputStream(file);
+      threw = false;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    } finally {
+      if (threw) {
+        // do not hide initial exception
+        IOUtils.closeQuietly(output);
+      } else {
+        // raise an exception if can't close
+        system2.close(output);
+      }
+    }
+  }
+
+  public DiskAppender newAppender() {
+    return new DiskAppender();
+  }
+
+  /**
+   * Number of objects appended so far
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * The partitions which contain at least one object, in order of first insertion
+   */
+  public Set<String> partitions() {
+    return Collections.unmodifiableSet(blockOffsetsByPartition.keySet());
+  }
+
+  /**
+   * Forgets the objects of a partition, which are not returned anymore by {@link #traverse(String)}. Disk space is
+   * not reclaimed: objects are still counted by {@link #size()} and returned by {@link #traverse()}.
+   */
+  public void drop(String partition) {
+    blockOffsetsByPartition.remove(partition);
+  }
+
+  /**
+   * Reads all the objects, in order of insertion
+   */
+  public CloseableIterator<O> traverse() {
+    try {
+      return new SequentialIterator();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  /**
+   * Reads only the objects of the specified partition, in order of insertion. Blocks of other
+   * partitions are neither read nor decoded.
+   */
+  public CloseableIterator<O> traverse(@Nullable String partition) {
+    List<Long> offsets = blockOffsetsByPartition.get(partition);
+    if (offsets == null) {
+      return CloseableIterator.emptyCloseableIterator();
+    }
+    try {
+      return new PartitionIterator(new ArrayList<>(offsets));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  public class DiskAppender implements AutoCloseable {
+    private final DataOutputStream output;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final ByteArrayOutputStream rawBlock = new ByteArrayOutputStream(blockSize);
+    private final DataOutputStream rawBlockOutput = new DataOutputStream(rawBlock);
+    private final ByteArrayOutputStream compressedBlock = new ByteArrayOutputStream(blockSize);
+    private final byte[] deflateBuffer = new byte[8 * 1024];
+    private long offset;
+    private String currentPartition = null;
+    private int recordCount = 0;
+
+    private DiskAppender() {
+      try {
+        this.offset = file.length();
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    public DiskAppender append(O object) {
+      String partition = partitioner.apply(object);
+      if (recordCount > 0 && (!Objects.equals(partition, currentPartition) || rawBlock.size() >= blockSize)) {
+        flushBlock();
+      }
+      currentPartition = partition;
+      try {
+        codec.write(object, rawBlockOutput);
+        recordCount++;
+        return this;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+    }
+
+    private void flushBlock() {
+      byte[] raw = rawBlock.toByteArray();
+      deflater.reset();
+      deflater.setInput(raw);
+      deflater.finish();
+      compressedBlock.reset();
+      while (!deflater.finished()) {
+        int length = deflater.deflate(deflateBuffer);
+        compressedBlock.write(deflateBuffer, 0, length);
+      }
+      try {
+        output.writeInt(recordCount);
+        output.writeInt(raw.length);
+        output.writeInt(compressedBlock.size());
+        compressedBlock.writeTo(output);
+        // block must be readable as soon as it is referenced by the index
+        output.flush();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+      blockOffsetsByPartition.computeIfAbsent(currentPartition, p -> new ArrayList<>()).add(offset);
+      offset += BLOCK_HEADER_SIZE + compressedBlock.size();
+      size += recordCount;
+      rawBlock.reset();
+      recordCount = 0;
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (recordCount > 0) {
+          flushBlock();
+        }
+      } finally {
+        deflater.end();
+        system2.close(output);
+      }
+    }
+  }
+
+  private abstract class BlockIterator extends CloseableIterator<O> {
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+    private DataInputStream block = null;
+    private int remainingRecords = 0;
+
+    /**
+     * Input positioned on the header of the next block to be read, or {@code null}
+     * if all blocks have been read.
+     */
+    @CheckForNull
+    protected abstract DataInput nextBlock() throws IOException;
+
+    @Override
+    @CheckForNull
+    protected O doNext() {
+      try {
+        while (remainingRecords == 0) {
+          DataInput input = nextBlock();
+          if (input == null) {
+            return null;
+          }
+          readBlock(input);
+        }
+        remainingRecords--;
+        return codec.read(block);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    private void readBlock(DataInput input) throws IOException {
+      int recordCount = input.readInt();
+      int rawLength = input.readInt();
+      int compressedLength = input.readInt();
+      if (compressed.length < compressedLength) {
+        compressed = new byte[compressedLength];
+      }
+      input.readFully(compressed, 0, compressedLength);
+      byte[] raw = new byte[rawLength];
+      inflater.reset();
+      inflater.setInput(compressed, 0, compressedLength);
+      try {
+        int inflated = 0;
+        while (inflated < rawLength) {
+          int length = inflater.inflate(raw, inflated, rawLength - inflated);
+          if (length == 0 && (inflater.finished() || inflater.needsInput())) {
+            throw new IllegalStateException("Corrupted block in file " + file);
+          }
+          inflated += length;
+        }
+      } catch (DataFormatException e) {
+        throw new IllegalStateException("Corrupted block in file " + file, e);
+      }
+      block = new DataInputStream(new ByteArrayInputStream(raw));
+      remainingRecords = recordCount;
+      blockRead(compressedLength);
+    }
+
+    protected void blockRead(int compressedLength) {
+      // nothing to do by default
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+      inflater.end();
+    }
+  }
+
+  private class SequentialIterator extends BlockIterator {
+    private final DataInputStream input;
+    // only the blocks already flushed when the iterator is created are read
+    private final long length;
+    private long position = 0L;
+
+    private SequentialIterator() throws IOException {
+      this.length = file.length();
+      this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    @Override
+    protected DataInput nextBlock() {
+      return position < length ? input : null;
+    }
+
+    @Override
+    protected void blockRead(int compressedLength) {
+      position += BLOCK_HEADER_SIZE + compressedLength;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+      try {
+        super.doClose();
+      } finally {
+        IOUtils.closeQuietly(input);
+      }
+    }
+  }
+
+  private class PartitionIterator extends BlockIterator {
+    private final RandomAccessFile input;
+    private final Iterator<Long> offsets;
+
+    private PartitionIterator(List<Long> offsets) throws IOException {
+      this.input = new RandomAccessFile(file, "r");
+      this.offsets = offsets.iterator();
+    }
+
+    @Override
+    protected DataInput nextBlock() throws IOException {
+      if (!offsets.hasNext()) {
+        return null;
+      }
+      input.seek(offsets.next());
+      return input;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+      try {
+        super.doClose();
+      } finally {
+        IOUtils.closeQuietly(input);
+      }
+    }
+  }
+}
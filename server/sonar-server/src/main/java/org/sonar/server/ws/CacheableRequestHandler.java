@@ -0,0 +1,47 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import javax.annotation.CheckForNull;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.RequestHandler;
+
+/**
+ * Handler of a GET action which response only depends on the parameters of the request, on the user and on a version
+ * of the data it is built from. Such responses are served by {@link WsResponseCache}: they are kept in memory and
+ * clients can revalidate them with the HTTP header If-None-Match.
+ *
+ * @since 6.1
+ */
+public interface CacheableRequestHandler extends RequestHandler {
+
+  /**
+   * Version of the data the response is built from, for example the date of the last analysis of a project or the date
+   * of the last change of a quality profile. It must change each time the response of the request could change.
+   * <p>
+   * This method is called on each request, even when the response is not built again, so it must check the permissions
+   * required by the action.
+   *
+   * @return the version, or {@code null} if the response must not be cached
+   */
+  @CheckForNull
+  String responseVersion(Request request);
+
+}
@@ -109,6 +109,11 @@ public class ServletRequest extends ValidatingRequest {
     return url.toString();
   }
 
+  @CheckForNull
+  public String getHeader(String name) {
+    return source.getHeader(name);
+  }
+
   @CheckForNull
   private String acceptedContentTypeInResponse() {
     return source.getHeader(HttpHeaders.ACCEPT);
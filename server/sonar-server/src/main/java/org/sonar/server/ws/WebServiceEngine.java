@@ -31,6 +31,7 @@ import org.sonar.api.i18n.I18n;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.server.ws.LocalConnector;
 import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.RequestHandler;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.server.ws.internal.ValidatingRequest;
@@ -64,9 +65,11 @@ public class WebServiceEngine implements LocalConnector, Startable {
   private final WebService.Context context;
   private final I18n i18n;
   private final UserSession userSession;
+  private final WsResponseCache responseCache;
 
-  public WebServiceEngine(WebService[] webServices, I18n i18n, UserSession userSession) {
+  public WebServiceEngine(WebService[] webServices, I18n i18n, UserSession userSession, WsResponseCache responseCache) {
     this.userSession = userSession;
+    this.responseCache = responseCache;
     context = new WebService.Context();
     for (WebService webService : webServices) {
       webService.define(context);
@@ -106,7 +109,12 @@ public class WebServiceEngine implements LocalConnector, Startable {
       }
       checkActionExtension(actionExtractor.getExtension());
       verifyRequest(action, request);
-      action.handler().handle(request, response);
+      RequestHandler handler = action.handler();
+      if (handler instanceof CacheableRequestHandler) {
+        responseCache.execute(action, (CacheableRequestHandler) handler, request, response);
+      } else {
+        handler.handle(request, response);
+      }
     } catch (IllegalArgumentException e) {
       sendErrors(response, 400, new Errors().add(Message.of(e.getMessage())));
     } catch (BadRequestException e) {
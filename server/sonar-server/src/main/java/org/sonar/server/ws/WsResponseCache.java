@@ -0,0 +1,322 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import com.google.common.net.HttpHeaders;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.core.util.Uuids;
+import org.sonar.server.user.UserSession;
+
+/**
+ * Conditional GET and in-memory cache of the responses of the actions implementing {@link CacheableRequestHandler}.
+ * <p>
+ * Responses are identified by the action, the media type, the login of the user and the values of the parameters
+ * declared by the action. The HTTP header ETag is computed from this key and from the version returned by the action,
+ * so that clients sending it back in the header If-None-Match get a 304 Not Modified response as long as the version
+ * does not change. Other requests are served from memory if the version is unchanged, otherwise the response is built
+ * and kept in cache. Cached responses are also kept compressed with gzip, so they are not compressed again for each
+ * client.
+ * </p>
+ * <p>
+ * ETags also depend on the instance of web server, as responses may change when the server is restarted, for example
+ * when plugins are updated.
+ * </p>
+ */
+@Properties({
+  @Property(
+    key = WsResponseCache.PROPERTY_MAX_SIZE_IN_MB,
+    defaultValue = "" + WsResponseCache.DEFAULT_MAX_SIZE_IN_MB,
+    name = "Maximum size, in megabytes, of the web service responses kept in memory, 0 to disable the cache",
+    project = false,
+    global = false)
+})
+@ServerSide
+public class WsResponseCache {
+
+  public static final String PROPERTY_MAX_SIZE_IN_MB = "sonar.web.wsCache.maxSizeInMb";
+  static final int DEFAULT_MAX_SIZE_IN_MB = 32;
+
+  /**
+   * Responses bigger than this ratio of the max size are not cached, as the max size is shared between
+   * the segments of the cache.
+   */
+  private static final int MAX_ENTRY_RATIO = 8;
+  /**
+   * Same threshold as the compression of responses by Tomcat
+   */
+  private static final int MIN_COMPRESSED_SIZE = 1024;
+  private static final String GZIP = "gzip";
+  private static final String CACHE_CONTROL = "private, no-cache";
+
+  private final UserSession userSession;
+  private final String instanceId = Uuids.create();
+  private final long maxEntrySize;
+  private final Cache<String, CachedResponse> cache;
+
+  private final AtomicLong hits = new AtomicLong(0L);
+  private final AtomicLong misses = new AtomicLong(0L);
+  private final AtomicLong notModified = new AtomicLong(0L);
+  private final AtomicLong sizeInBytes = new AtomicLong(0L);
+
+  public WsResponseCache(Settings settings, UserSession userSession) {
+    this(1024L * 1024L * (settings.hasKey(PROPERTY_MAX_SIZE_IN_MB) ? settings.getInt(PROPERTY_MAX_SIZE_IN_MB) : DEFAULT_MAX_SIZE_IN_MB), userSession);
+  }
+
+  WsResponseCache(long maxSizeInBytes, UserSession userSession) {
+    this.userSession = userSession;
+    this.maxEntrySize = Math.max(0L, maxSizeInBytes) / MAX_ENTRY_RATIO;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(Math.max(0L, maxSizeInBytes))
+      .weigher((Weigher<String, CachedResponse>) (key, response) -> response.weight())
+      .removalListener((RemovalListener<String, CachedResponse>) notification -> sizeInBytes.addAndGet(-notification.getValue().weight()))
+      .recordStats()
+      .build();
+  }
+
+  void execute(WebService.Action action, CacheableRequestHandler handler, Request request, Response response) throws Exception {
+    String version = "GET".equals(request.method()) ? handler.responseVersion(request) : null;
+    if (version == null) {
+      handler.handle(request, response);
+      return;
+    }
+
+    String key = cacheKey(action, request);
+    String etag = '"' + DigestUtils.md5Hex(instanceId + '\n' + key + '\n' + version) + '"';
+    if (matches(etag, header(request, HttpHeaders.IF_NONE_MATCH))) {
+      notModified.incrementAndGet();
+      response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+      response.setHeader(HttpHeaders.ETAG, etag);
+      response.stream().setStatus(HttpURLConnection.HTTP_NOT_MODIFIED);
+      return;
+    }
+
+    CachedResponse cached = cache.getIfPresent(key);
+    if (cached != null && cached.etag.equals(etag)) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+      cached = build(handler, request, etag);
+      if (cached.status == HttpURLConnection.HTTP_OK && cached.weight() <= maxEntrySize) {
+        sizeInBytes.addAndGet(cached.weight());
+        cache.put(key, cached);
+      }
+    }
+    write(cached, request, response);
+  }
+
+  private String cacheKey(WebService.Action action, Request request) {
+    StringBuilder key = new StringBuilder();
+    append(key, action.path());
+    append(key, request.getMediaType());
+    append(key, userSession.getLogin());
+    for (WebService.Param param : action.params()) {
+      append(key, param.key());
+      append(key, paramValue(param, request));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Parameters with possible values may have multiple values, which are validated one by one
+   */
+  @CheckForNull
+  private static String paramValue(WebService.Param param, Request request) {
+    if (param.possibleValues() == null) {
+      return request.param(param.key());
+    }
+    List<String> values = request.paramAsStrings(param.key());
+    return values == null ? null : Joiner.on(',').join(values);
+  }
+
+  /**
+   * Values are prefixed by their length, so that two different requests can not have the same key
+   */
+  private static void append(StringBuilder key, @Nullable String value) {
+    if (value == null) {
+      key.append("-1:");
+    } else {
+      key.append(value.length()).append(':').append(value);
+    }
+  }
+
+  @CheckForNull
+  private static String header(Request request, String name) {
+    if (request instanceof ServletRequest) {
+      return ((ServletRequest) request).getHeader(name);
+    }
+    return null;
+  }
+
+  private static boolean matches(String etag, @Nullable String ifNoneMatch) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String value : ifNoneMatch.split(",")) {
+      String trimmed = value.trim();
+      if ("*".equals(trimmed) || etag.equals(trimmed) || ("W/" + etag).equals(trimmed)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static CachedResponse build(CacheableRequestHandler handler, Request request, String etag) throws Exception {
+    DefaultLocalResponse buffer = new DefaultLocalResponse();
+    handler.handle(request, buffer);
+    byte[] bytes = buffer.getFlushedOutput();
+    Map<String, String> headers = new LinkedHashMap<>();
+    for (String name : buffer.getHeaderNames()) {
+      headers.put(name, buffer.getHeader(name));
+    }
+    byte[] compressedBytes = bytes.length >= MIN_COMPRESSED_SIZE ? gzip(bytes) : null;
+    return new CachedResponse(etag, buffer.getStatus(), buffer.getMediaType(), headers, bytes, compressedBytes);
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compress response", e);
+    }
+    return output.toByteArray();
+  }
+
+  private static void write(CachedResponse cached, Request request, Response response) throws IOException {
+    Response.Stream stream = response.stream();
+    stream.setStatus(cached.status);
+    if (cached.mediaType != null) {
+      stream.setMediaType(cached.mediaType);
+    }
+    cached.headers.forEach(response::setHeader);
+    if (cached.status == HttpURLConnection.HTTP_OK) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+      response.setHeader(HttpHeaders.ETAG, cached.etag);
+    }
+    byte[] bytes = cached.bytes;
+    if (cached.compressedBytes != null) {
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (acceptsGzip(request)) {
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        bytes = cached.compressedBytes;
+      }
+    }
+    if (bytes.length > 0) {
+      OutputStream output = stream.output();
+      output.write(bytes);
+      output.flush();
+    }
+  }
+
+  private static boolean acceptsGzip(Request request) {
+    String acceptEncoding = header(request, HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ENGLISH).contains(GZIP);
+  }
+
+  /**
+   * Responses served from memory
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Responses which had to be built
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Responses which were not sent again because the client already had them
+   */
+  public long getNotModified() {
+    return notModified.get();
+  }
+
+  /**
+   * Ratio, between 0 and 1, of the responses which were not built
+   */
+  public double getHitRatio() {
+    long served = getHits() + getNotModified();
+    long total = served + getMisses();
+    return total == 0L ? 0d : ((double) served / total);
+  }
+
+  public long getEvictions() {
+    return cache.stats().evictionCount();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public long getSizeInBytes() {
+    return sizeInBytes.get();
+  }
+
+  private static final class CachedResponse {
+    private final String etag;
+    private final int status;
+    @Nullable
+    private final String mediaType;
+    private final Map<String, String> headers;
+    private final byte[] bytes;
+    @Nullable
+    private final byte[] compressedBytes;
+
+    private CachedResponse(String etag, int status, @Nullable String mediaType, Map<String, String> headers, byte[] bytes, @Nullable byte[] compressedBytes) {
+      this.etag = etag;
+      this.status = status;
+      this.mediaType = mediaType;
+      this.headers = headers;
+      this.bytes = bytes;
+      this.compressedBytes = compressedBytes;
+    }
+
+    private int weight() {
+      return bytes.length + (compressedBytes == null ? 0 : compressedBytes.length);
+    }
+  }
+}
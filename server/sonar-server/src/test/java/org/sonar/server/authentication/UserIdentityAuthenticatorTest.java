@@ -23,6 +23,7 @@ import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import java.util.Collections;
 import java.util.HashSet;
@@ -47,6 +48,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.db.user.UserTesting;
 import org.sonar.server.user.NewUserNotifier;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.UserUpdater;
 import org.sonar.server.user.index.UserIndexer;
 
@@ -92,7 +94,9 @@ public class UserIdentityAuthenticatorTest {
     mock(UserIndexer.class),
     system2);
 
-  UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(dbClient, userUpdater);
+  PermissionCache permissionCache = mock(PermissionCache.class);
+
+  UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(dbClient, userUpdater, permissionCache);
 
   @Before
   public void setUp() throws Exception {
@@ -203,6 +207,7 @@ public class UserIdentityAuthenticatorTest {
 
     Set<String> userGroups = new HashSet<>(dbClient.groupMembershipDao().selectGroupsByLogins(dbSession, singletonList(USER_LOGIN)).get(USER_LOGIN));
     assertThat(userGroups).containsOnly("group1", "group2");
+    verify(permissionCache).invalidate(USER_LOGIN);
   }
 
   @Test
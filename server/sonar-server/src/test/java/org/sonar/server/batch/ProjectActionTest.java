@@ -22,6 +22,7 @@ package org.sonar.server.batch;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.server.ws.internal.SimpleGetRequest;
 import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
 import org.sonar.server.ws.TestResponse;
@@ -68,6 +69,20 @@ public class ProjectActionTest {
     assertThat(queryArgumentCaptor.getValue().isIssuesMode()).isFalse();
   }
 
+  @Test
+  public void response_version_is_loaded_for_the_same_query() {
+    ArgumentCaptor<ProjectDataQuery> queryArgumentCaptor = ArgumentCaptor.forClass(ProjectDataQuery.class);
+    when(projectDataLoader.version(queryArgumentCaptor.capture())).thenReturn("version");
+
+    String version = new ProjectAction(projectDataLoader).responseVersion(new SimpleGetRequest()
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setParam("issues_mode", "true"));
+
+    assertThat(version).isEqualTo("version");
+    assertThat(queryArgumentCaptor.getValue().getModuleKey()).isEqualTo("org.codehaus.sonar:sonar");
+    assertThat(queryArgumentCaptor.getValue().isIssuesMode()).isTrue();
+  }
+
   /**
    * SONAR-7084
    */
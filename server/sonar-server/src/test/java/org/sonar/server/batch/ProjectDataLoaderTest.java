@@ -30,14 +30,22 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDbTester;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.property.PropertyDto;
 import org.sonar.server.exceptions.BadRequestException;
+import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.user.UserSession;
 
 import static java.lang.String.format;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.core.permission.GlobalPermissions.SCAN_EXECUTION;
+import static org.sonar.db.component.SnapshotTesting.newAnalysis;
 
 public class ProjectDataLoaderTest {
   @Rule
@@ -48,7 +56,8 @@ public class ProjectDataLoaderTest {
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession dbSession = dbTester.getSession();
 
-  private ProjectDataLoader underTest = new ProjectDataLoader(dbClient, mock(UserSession.class));
+  private UserSession userSession = mock(UserSession.class);
+  private ProjectDataLoader underTest = new ProjectDataLoader(dbClient, userSession);
 
   @After
   public void tearDown() throws Exception {
@@ -115,4 +124,43 @@ public class ProjectDataLoaderTest {
       }
     }
   }
+
+  @Test
+  public void version_changes_when_project_is_analyzed() {
+    ComponentDto project = new ComponentDbTester(dbTester).insertComponent(ComponentTesting.newProjectDto());
+    when(userSession.hasComponentUuidPermission(SCAN_EXECUTION, project.uuid())).thenReturn(true);
+    ProjectDataQuery query = ProjectDataQuery.create().setModuleKey(project.key());
+
+    String version = underTest.version(query);
+    assertThat(underTest.version(query)).isEqualTo(version);
+
+    dbClient.snapshotDao().insert(dbSession, newAnalysis(project));
+    dbSession.commit();
+
+    assertThat(underTest.version(query)).isNotEqualTo(version);
+  }
+
+  @Test
+  public void version_changes_when_settings_of_modules_are_updated() {
+    ComponentDto project = ComponentTesting.newProjectDto();
+    ComponentDto module = ComponentTesting.newModuleDto(project);
+    new ComponentDbTester(dbTester).insertComponents(project, module);
+    when(userSession.hasComponentUuidPermission(SCAN_EXECUTION, project.uuid())).thenReturn(true);
+    ProjectDataQuery query = ProjectDataQuery.create().setModuleKey(project.key());
+    String version = underTest.version(query);
+
+    dbClient.propertiesDao().insertProperty(dbSession, new PropertyDto().setKey("sonar.exclusions").setValue("**/*.xml").setResourceId(module.getId()));
+    dbSession.commit();
+
+    assertThat(underTest.version(query)).isNotEqualTo(version);
+  }
+
+  @Test
+  public void version_fails_with_FE_if_user_has_no_permission() {
+    ComponentDto project = new ComponentDbTester(dbTester).insertComponent(ComponentTesting.newProjectDto());
+
+    expectedException.expect(ForbiddenException.class);
+
+    underTest.version(ProjectDataQuery.create().setModuleKey(project.key()));
+  }
 }
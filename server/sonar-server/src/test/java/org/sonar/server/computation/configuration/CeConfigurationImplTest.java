@@ -28,6 +28,7 @@ import org.sonar.api.utils.MessageException;
 
 import static java.lang.Math.abs;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY;
 import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_WORKERS_COUNT_PROPERTY;
 
 public class CeConfigurationImplTest {
@@ -102,6 +103,37 @@ public class CeConfigurationImplTest {
     new CeConfigurationImpl(settings);
   }
 
+  @Test
+  public void getQueuePollingMaxDelay_returns_constant_greater_than_polling_delay() {
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getQueuePollingMaxDelay()).isEqualTo(10_000L);
+    assertThat(underTest.getQueuePollingMaxDelay()).isGreaterThan(underTest.getQueuePollingDelay());
+  }
+
+  @Test
+  public void getMaxInProgressReportSize_returns_0_when_property_is_not_defined() {
+    assertThat(new CeConfigurationImpl(settings).getMaxInProgressReportSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void getMaxInProgressReportSize_converts_property_value_from_MB_to_bytes() {
+    settings.setProperty(CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY, 50);
+
+    assertThat(new CeConfigurationImpl(settings).getMaxInProgressReportSize()).isEqualTo(50L * 1024 * 1024);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_max_report_size_property_is_0() {
+    settings.setProperty(CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY, "0");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '0' of property " + CE_MAX_IN_PROGRESS_REPORT_SIZE_PROPERTY + " is invalid. " +
+      "It must an integer strictly greater than 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
   private void expectMessageException(int value) {
     expectedException.expect(MessageException.class);
     expectedException.expectMessage("value '" + value + "' of property " + CE_WORKERS_COUNT_PROPERTY + " is invalid. " +
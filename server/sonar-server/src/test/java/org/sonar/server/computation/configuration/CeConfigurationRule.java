@@ -29,6 +29,8 @@ import static com.google.common.base.Preconditions.checkArgument;
 public class CeConfigurationRule extends ExternalResource implements CeConfiguration {
   private int workerCount = CeConfigurationImpl.DEFAULT_WORKER_COUNT;
   private long queuePollingDelay = CeConfigurationImpl.DEFAULT_QUEUE_POLLING_DELAY;
+  private long queuePollingMaxDelay = CeConfigurationImpl.DEFAULT_QUEUE_POLLING_MAX_DELAY;
+  private long maxInProgressReportSize = CeConfigurationImpl.DEFAULT_MAX_IN_PROGRESS_REPORT_SIZE;
 
   @Override
   public int getWorkerCount() {
@@ -50,4 +52,25 @@ public class CeConfigurationRule extends ExternalResource implements CeConfigura
     checkArgument(queuePollingDelay > 0, "Queue polling delay must be >= 0");
     this.queuePollingDelay = queuePollingDelay;
   }
+
+  @Override
+  public long getQueuePollingMaxDelay() {
+    return queuePollingMaxDelay;
+  }
+
+  public void setQueuePollingMaxDelay(long queuePollingMaxDelay) {
+    checkArgument(queuePollingMaxDelay > 0, "Queue polling max delay must be >= 0");
+    this.queuePollingMaxDelay = queuePollingMaxDelay;
+  }
+
+  @Override
+  public long getMaxInProgressReportSize() {
+    return maxInProgressReportSize;
+  }
+
+  public CeConfigurationRule setMaxInProgressReportSize(long maxInProgressReportSize) {
+    checkArgument(maxInProgressReportSize >= 0, "max in progress report size must be >= 0");
+    this.maxInProgressReportSize = maxInProgressReportSize;
+    return this;
+  }
 }
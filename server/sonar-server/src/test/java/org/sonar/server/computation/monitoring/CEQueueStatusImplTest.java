@@ -50,6 +50,8 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(0);
     assertThat(underTest.getSuccessCount()).isEqualTo(0);
     assertThat(underTest.getProcessingTime()).isEqualTo(0);
+    assertThat(underTest.getWaitingTime()).isEqualTo(0);
+    assertThat(underTest.getMaxWaitingTime()).isEqualTo(0);
   }
 
   @Test
@@ -73,6 +75,25 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getProcessingTime()).isEqualTo(0);
   }
 
+  @Test
+  public void addWaitingTime_throws_IAE_if_time_is_less_than_0() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Waiting time can not be < 0");
+
+    underTest.addWaitingTime(-1);
+  }
+
+  @Test
+  public void addWaitingTime_sums_waiting_times_and_keeps_the_longest() {
+    assertThat(underTest.addWaitingTime(30)).isEqualTo(30);
+    assertThat(underTest.addWaitingTime(100)).isEqualTo(130);
+    assertThat(underTest.addWaitingTime(10)).isEqualTo(140);
+
+    assertThat(underTest.getWaitingTime()).isEqualTo(140);
+    assertThat(underTest.getMaxWaitingTime()).isEqualTo(100);
+    assertThat(underTest.getInProgressCount()).isEqualTo(0);
+  }
+
   @Test
   public void addError_throws_IAE_if_time_is_less_than_0() {
     expectedException.expect(IllegalArgumentException.class);
@@ -0,0 +1,91 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.Test;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+import org.sonar.server.es.BulkIndexerStats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CeIndexingMBeanImplTest {
+
+  BulkIndexerStats stats = mock(BulkIndexerStats.class);
+  CeIndexingMBeanImpl underTest = new CeIndexingMBeanImpl(stats);
+
+  @Test
+  public void register_and_unregister() throws Exception {
+    assertThat(getMBean()).isNull();
+
+    underTest.start();
+    assertThat(getMBean()).isNotNull();
+
+    underTest.stop();
+    assertThat(getMBean()).isNull();
+  }
+
+  @Test
+  public void get_methods_delegate_to_the_stats() {
+    when(stats.getIndexedDocs()).thenReturn(10L);
+    when(stats.getIndexedBytes()).thenReturn(11L);
+    when(stats.getFailedDocs()).thenReturn(12L);
+    when(stats.getRejectedRequests()).thenReturn(13L);
+    when(stats.getQueueDepth()).thenReturn(14L);
+    when(stats.getFlushByteSize()).thenReturn(15L);
+    when(stats.getDocsPerSecond()).thenReturn(16L);
+    when(stats.getBytesPerSecond()).thenReturn(17L);
+
+    assertThat(underTest.getIndexedDocs()).isEqualTo(10L);
+    assertThat(underTest.getIndexedBytes()).isEqualTo(11L);
+    assertThat(underTest.getFailedDocs()).isEqualTo(12L);
+    assertThat(underTest.getRejectedRequests()).isEqualTo(13L);
+    assertThat(underTest.getQueueDepth()).isEqualTo(14L);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(15L);
+    assertThat(underTest.getDocsPerSecond()).isEqualTo(16L);
+    assertThat(underTest.getBytesPerSecond()).isEqualTo(17L);
+  }
+
+  @Test
+  public void export_system_info() {
+    when(stats.getIndexedDocs()).thenReturn(10L);
+
+    ProtobufSystemInfo.Section section = underTest.toProtobuf();
+    assertThat(section.getName()).isEqualTo("Compute Engine Indexing");
+    assertThat(section.getAttributesCount()).isEqualTo(8);
+    assertThat(section.getAttributes(0).getKey()).isEqualTo("Indexed Docs");
+    assertThat(section.getAttributes(0).getLongValue()).isEqualTo(10L);
+  }
+
+  @CheckForNull
+  private ObjectInstance getMBean() throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(CeIndexingMBean.OBJECT_NAME));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
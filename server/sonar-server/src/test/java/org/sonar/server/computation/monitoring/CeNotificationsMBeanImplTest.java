@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.monitoring;
+
+import com.google.common.collect.ImmutableMap;
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.Test;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+import org.sonar.server.notification.NotificationDeliveryStats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CeNotificationsMBeanImplTest {
+
+  NotificationDeliveryStats stats = mock(NotificationDeliveryStats.class);
+  CeNotificationsMBeanImpl underTest = new CeNotificationsMBeanImpl(stats);
+
+  @Test
+  public void register_and_unregister() throws Exception {
+    assertThat(getMBean()).isNull();
+
+    underTest.start();
+    assertThat(getMBean()).isNotNull();
+
+    underTest.stop();
+    assertThat(getMBean()).isNull();
+  }
+
+  @Test
+  public void get_methods_delegate_to_the_stats() {
+    when(stats.getDelivered()).thenReturn(10L);
+    when(stats.getFailed()).thenReturn(11L);
+    when(stats.getPendingDeliveries()).thenReturn(12L);
+
+    assertThat(underTest.getDelivered()).isEqualTo(10L);
+    assertThat(underTest.getFailed()).isEqualTo(11L);
+    assertThat(underTest.getPendingDeliveries()).isEqualTo(12L);
+  }
+
+  @Test
+  public void export_system_info() {
+    when(stats.getDelivered()).thenReturn(10L);
+    when(stats.getDeliveredByChannel()).thenReturn(ImmutableMap.of("EmailNotificationChannel", 10L));
+    when(stats.getFailedByChannel()).thenReturn(ImmutableMap.of("EmailNotificationChannel", 0L));
+
+    ProtobufSystemInfo.Section section = underTest.toProtobuf();
+    assertThat(section.getName()).isEqualTo("Compute Engine Notifications");
+    assertThat(section.getAttributesCount()).isEqualTo(5);
+    assertThat(section.getAttributes(0).getKey()).isEqualTo("Delivered");
+    assertThat(section.getAttributes(0).getLongValue()).isEqualTo(10L);
+    assertThat(section.getAttributes(3).getKey()).isEqualTo("Delivered by EmailNotificationChannel");
+    assertThat(section.getAttributes(3).getLongValue()).isEqualTo(10L);
+  }
+
+  @CheckForNull
+  private ObjectInstance getMBean() throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(CeNotificationsMBean.OBJECT_NAME));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
@@ -28,8 +28,11 @@ import org.junit.Test;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
 import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.queue.CeTaskAdmissionController;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class CeTasksMBeanImplTest {
   private static final long PENDING_COUNT = 2;
@@ -37,9 +40,12 @@ public class CeTasksMBeanImplTest {
   private static final long ERROR_COUNT = 10;
   private static final long SUCCESS_COUNT = 13;
   private static final long PROCESSING_TIME = 987;
+  private static final long WAITING_TIME = 1_456;
+  private static final long MAX_WAITING_TIME = 650;
   private static final int WORKER_COUNT = 56;
 
-  private CeTasksMBeanImpl underTest = new CeTasksMBeanImpl(new DumbCEQueueStatus(), new DumbCeConfiguration());
+  private CeTaskAdmissionController admissionController = mock(CeTaskAdmissionController.class);
+  private CeTasksMBeanImpl underTest = new CeTasksMBeanImpl(new DumbCEQueueStatus(), new DumbCeConfiguration(), admissionController);
 
   @Test
   public void register_and_unregister() throws Exception {
@@ -59,6 +65,19 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(ERROR_COUNT);
     assertThat(underTest.getSuccessCount()).isEqualTo(SUCCESS_COUNT);
     assertThat(underTest.getProcessingTime()).isEqualTo(PROCESSING_TIME);
+    assertThat(underTest.getWaitingTime()).isEqualTo(WAITING_TIME);
+    assertThat(underTest.getMaxWaitingTime()).isEqualTo(MAX_WAITING_TIME);
+  }
+
+  @Test
+  public void admission_methods_delegate_to_the_CeTaskAdmissionController_instance() {
+    when(admissionController.getAdmittedCount()).thenReturn(12L);
+    when(admissionController.getDeferredCount()).thenReturn(3L);
+    when(admissionController.getInProgressReportSize()).thenReturn(1_024L);
+
+    assertThat(underTest.getAdmittedCount()).isEqualTo(12);
+    assertThat(underTest.getDeferredCount()).isEqualTo(3);
+    assertThat(underTest.getInProgressReportSize()).isEqualTo(1_024);
   }
 
   @Test
@@ -70,7 +89,7 @@ public class CeTasksMBeanImplTest {
   public void export_system_info() {
     ProtobufSystemInfo.Section section = underTest.toProtobuf();
     assertThat(section.getName()).isEqualTo("Compute Engine Tasks");
-    assertThat(section.getAttributesCount()).isEqualTo(6);
+    assertThat(section.getAttributesCount()).isEqualTo(11);
   }
 
   /**
@@ -89,6 +108,11 @@ public class CeTasksMBeanImplTest {
       return methodNotImplemented();
     }
 
+    @Override
+    public long addWaitingTime(long waitingTime) {
+      return methodNotImplemented();
+    }
+
     @Override
     public long getInProgressCount() {
       return IN_PROGRESS_COUNT;
@@ -119,6 +143,16 @@ public class CeTasksMBeanImplTest {
       return PROCESSING_TIME;
     }
 
+    @Override
+    public long getWaitingTime() {
+      return WAITING_TIME;
+    }
+
+    @Override
+    public long getMaxWaitingTime() {
+      return MAX_WAITING_TIME;
+    }
+
     private long methodNotImplemented() {
       throw new UnsupportedOperationException("Not Implemented");
     }
@@ -134,6 +168,16 @@ public class CeTasksMBeanImplTest {
     public long getQueuePollingDelay() {
       throw new UnsupportedOperationException("getQueuePollingDelay is not implemented");
     }
+
+    @Override
+    public long getQueuePollingMaxDelay() {
+      throw new UnsupportedOperationException("getQueuePollingMaxDelay is not implemented");
+    }
+
+    @Override
+    public long getMaxInProgressReportSize() {
+      throw new UnsupportedOperationException("getMaxInProgressReportSize is not implemented");
+    }
   }
 
   @CheckForNull
@@ -0,0 +1,187 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.ce.queue.report.ReportFiles;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CeTaskAdmissionControllerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
+
+  private ReportFiles reportFiles = mock(ReportFiles.class);
+  private CeTaskAdmissionController underTest = new CeTaskAdmissionController(ceConfiguration, reportFiles);
+
+  @Before
+  public void setUp() throws Exception {
+    when(reportFiles.fileForUuid(anyString())).thenReturn(new File(temp.getRoot(), "does_not_exist.zip"));
+  }
+
+  @Test
+  public void admit_oldest_task_when_budget_is_not_limited() throws Exception {
+    setReportSize("BIG_1", 1_000);
+    setReportSize("BIG_2", 1_000);
+
+    assertThat(underTest.admit(asList("BIG_1", "BIG_2")).get()).isEqualTo("BIG_1");
+    assertThat(underTest.admit(singletonList("BIG_2")).get()).isEqualTo("BIG_2");
+    underTest.confirm("BIG_1");
+    underTest.confirm("BIG_2");
+    assertThat(underTest.getInProgressReportSize()).isEqualTo(2_000);
+    assertThat(underTest.getAdmittedCount()).isEqualTo(2);
+    assertThat(underTest.getDeferredCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void admission_is_counted_only_when_task_is_started() throws Exception {
+    setReportSize("TASK_1", 10);
+
+    underTest.admit(singletonList("TASK_1"));
+    assertThat(underTest.getAdmittedCount()).isEqualTo(0);
+
+    // task could not be peeked
+    underTest.release("TASK_1");
+    underTest.confirm("TASK_1");
+    assertThat(underTest.getAdmittedCount()).isEqualTo(0);
+    assertThat(underTest.getInProgressReportSize()).isEqualTo(0);
+
+    underTest.admit(singletonList("TASK_1"));
+    underTest.confirm("TASK_1");
+    assertThat(underTest.getAdmittedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void admit_nothing_when_there_is_no_candidate() {
+    assertThat(underTest.admit(Collections.<String>emptyList()).isPresent()).isFalse();
+  }
+
+  @Test
+  public void task_exceeding_budget_is_admitted_when_nothing_else_is_in_progress() throws Exception {
+    ceConfiguration.setMaxInProgressReportSize(100);
+    setReportSize("BIG", 1_000);
+
+    assertThat(underTest.admit(singletonList("BIG")).get()).isEqualTo("BIG");
+    assertThat(underTest.getInProgressReportSize()).isEqualTo(1_000);
+  }
+
+  @Test
+  public void task_without_report_always_fits() throws Exception {
+    ceConfiguration.setMaxInProgressReportSize(100);
+    setReportSize("BIG", 1_000);
+
+    underTest.admit(singletonList("BIG"));
+
+    assertThat(underTest.admit(singletonList("NO_REPORT")).get()).isEqualTo("NO_REPORT");
+  }
+
+  @Test
+  public void release_frees_budget() throws Exception {
+    ceConfiguration.setMaxInProgressReportSize(100);
+    setReportSize("A", 60);
+    setReportSize("B", 60);
+
+    underTest.admit(asList("A", "B"));
+    assertThat(underTest.admit(singletonList("B")).isPresent()).isFalse();
+    assertThat(underTest.getDeferredCount()).isEqualTo(1);
+
+    underTest.release("A");
+    // releasing twice or releasing a task never admitted has no effect
+    underTest.release("A");
+    underTest.release("UNKNOWN");
+    assertThat(underTest.getInProgressReportSize()).isEqualTo(0);
+    assertThat(underTest.admit(singletonList("B")).get()).isEqualTo("B");
+  }
+
+  @Test
+  public void task_deferred_too_many_times_blocks_admission_of_other_tasks() throws Exception {
+    ceConfiguration.setMaxInProgressReportSize(100);
+    setReportSize("RUNNING", 50);
+    setReportSize("BIG", 80);
+    setReportSize("SMALL", 10);
+    underTest.admit(singletonList("RUNNING"));
+
+    List<String> candidates = asList("BIG", "SMALL");
+    for (int i = 0; i < CeTaskAdmissionController.MAX_DEFERRALS - 1; i++) {
+      assertThat(underTest.admit(candidates).get()).isEqualTo("SMALL");
+      underTest.release("SMALL");
+    }
+    // BIG is deferred for the last time and is now reserved
+    assertThat(underTest.admit(candidates).isPresent()).isFalse();
+    assertThat(underTest.admit(candidates).isPresent()).isFalse();
+
+    underTest.release("RUNNING");
+    assertThat(underTest.admit(candidates).get()).isEqualTo("BIG");
+    assertThat(underTest.admit(singletonList("SMALL")).get()).isEqualTo("SMALL");
+  }
+
+  @Test
+  public void reservation_is_dropped_when_reserved_task_is_not_a_candidate_anymore() throws Exception {
+    ceConfiguration.setMaxInProgressReportSize(100);
+    setReportSize("RUNNING", 50);
+    setReportSize("BIG", 80);
+    underTest.admit(singletonList("RUNNING"));
+    for (int i = 0; i < CeTaskAdmissionController.MAX_DEFERRALS; i++) {
+      underTest.admit(singletonList("BIG"));
+    }
+
+    // BIG has been canceled
+    assertThat(underTest.admit(singletonList("SMALL")).get()).isEqualTo("SMALL");
+  }
+
+  @Test
+  public void releaseAll_resets_budget_and_reservation() throws Exception {
+    ceConfiguration.setMaxInProgressReportSize(100);
+    setReportSize("RUNNING", 50);
+    setReportSize("BIG", 80);
+    underTest.admit(singletonList("RUNNING"));
+    for (int i = 0; i < CeTaskAdmissionController.MAX_DEFERRALS; i++) {
+      underTest.admit(asList("BIG", "SMALL"));
+    }
+
+    underTest.releaseAll();
+
+    assertThat(underTest.getInProgressReportSize()).isEqualTo(0);
+    assertThat(underTest.admit(asList("SMALL", "BIG")).get()).isEqualTo("SMALL");
+  }
+
+  private void setReportSize(String taskUuid, int size) throws IOException {
+    File report = temp.newFile();
+    FileUtils.writeByteArrayToFile(report, new byte[size]);
+    when(reportFiles.fileForUuid(taskUuid)).thenReturn(report);
+  }
+}
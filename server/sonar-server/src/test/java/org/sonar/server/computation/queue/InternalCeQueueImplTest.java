@@ -20,11 +20,17 @@
 package org.sonar.server.computation.queue;
 
 import com.google.common.base.Optional;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.ce.monitoring.CEQueueStatus;
@@ -32,6 +38,7 @@ import org.sonar.ce.queue.CeQueueListener;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.CeTaskResult;
 import org.sonar.ce.queue.CeTaskSubmit;
+import org.sonar.ce.queue.report.ReportFiles;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.core.util.UuidFactoryImpl;
 import org.sonar.db.DbSession;
@@ -41,15 +48,18 @@ import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -60,6 +70,10 @@ public class InternalCeQueueImplTest {
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   System2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
 
@@ -70,7 +84,18 @@ public class InternalCeQueueImplTest {
   UuidFactory uuidFactory = UuidFactoryImpl.INSTANCE;
   CEQueueStatus queueStatus = new CEQueueStatusImpl(dbTester.getDbClient());
   CeQueueListener listener = mock(CeQueueListener.class);
-  InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, new CeQueueListener[] {listener});
+  ReportFiles reportFiles = mock(ReportFiles.class);
+  CeTaskAdmissionController admissionController = new CeTaskAdmissionController(ceConfiguration, reportFiles);
+  CeTaskAvailabilitySignal availabilitySignal = new CeTaskAvailabilitySignal();
+  Runnable availabilityListener = mock(Runnable.class);
+  InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, admissionController, availabilitySignal,
+    new CeQueueListener[] {listener});
+
+  @Before
+  public void setUp() throws Exception {
+    when(reportFiles.fileForUuid(anyString())).thenReturn(new File(temp.getRoot(), "does_not_exist.zip"));
+    availabilitySignal.addListener(availabilityListener);
+  }
 
   @Test
   public void submit_returns_task_populated_from_CeTaskSubmit_and_creates_CeQueue_row() {
@@ -209,6 +234,84 @@ public class InternalCeQueueImplTest {
     verify(listener, never()).onRemoved(eq(task), any(CeActivityDto.Status.class));
   }
 
+  @Test
+  public void submit_and_massSubmit_signal_task_availability() {
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    verify(availabilityListener).run();
+
+    underTest.massSubmit(asList(createTaskSubmit("type1"), createTaskSubmit("type2")));
+    verify(availabilityListener, times(2)).run();
+  }
+
+  @Test
+  public void remove_signals_task_availability() {
+    CeTask task = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    underTest.remove(underTest.peek().get(), CeActivityDto.Status.SUCCESS, null);
+
+    verify(availabilityListener, times(2)).run();
+    verify(listener).onRemoved(task, CeActivityDto.Status.SUCCESS);
+  }
+
+  @Test
+  public void peek_records_time_spent_by_task_in_queue() {
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    ((TestSystem2) system2).setNow(1_450_000_000_000L + 3_000L);
+
+    underTest.peek();
+
+    assertThat(queueStatus.getWaitingTime()).isEqualTo(3_000L);
+    assertThat(queueStatus.getMaxWaitingTime()).isEqualTo(3_000L);
+  }
+
+  @Test
+  public void peek_defers_task_which_report_exceeds_budget_and_admits_smaller_ones() throws Exception {
+    ceConfiguration.setMaxInProgressReportSize(100);
+    CeTask bigTask = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask mediumTask = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask smallTask = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    setReportSize(bigTask, 80);
+    setReportSize(mediumTask, 50);
+    setReportSize(smallTask, 10);
+
+    Optional<CeTask> peek = underTest.peek();
+    assertThat(peek.get().getUuid()).isEqualTo(bigTask.getUuid());
+    // medium task does not fit in the budget, small one does
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(smallTask.getUuid());
+    assertThat(underTest.peek().isPresent()).isFalse();
+    assertThat(admissionController.getInProgressReportSize()).isEqualTo(90);
+
+    underTest.remove(peek.get(), CeActivityDto.Status.SUCCESS, null);
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(mediumTask.getUuid());
+    assertThat(admissionController.getInProgressReportSize()).isEqualTo(60);
+    assertThat(admissionController.getAdmittedCount()).isEqualTo(3);
+    assertThat(admissionController.getDeferredCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void peek_does_not_start_two_tasks_of_same_component_when_workers_race() {
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    File noReport = new File(temp.getRoot(), "does_not_exist.zip");
+    ReportFiles otherReportFiles = mock(ReportFiles.class);
+    AtomicBoolean raced = new AtomicBoolean(false);
+    // the other worker admits task1, but this worker peeks it first
+    when(otherReportFiles.fileForUuid(anyString())).thenAnswer(invocation -> {
+      if (!raced.getAndSet(true)) {
+        assertThat(underTest.peek().get().getUuid()).isEqualTo(task1.getUuid());
+      }
+      return noReport;
+    });
+    CeTaskAdmissionController otherAdmissionController = new CeTaskAdmissionController(ceConfiguration, otherReportFiles);
+    InternalCeQueue otherWorker = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, otherAdmissionController,
+      availabilitySignal, new CeQueueListener[] {listener});
+
+    assertThat(otherWorker.peek().isPresent()).isFalse();
+
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task2.getUuid()).get().getStatus()).isEqualTo(CeQueueDto.Status.PENDING);
+    assertThat(otherAdmissionController.getAdmittedCount()).isEqualTo(0);
+    assertThat(otherAdmissionController.getInProgressReportSize()).isEqualTo(0);
+  }
+
   @Test
   public void peek_nothing_if_paused() throws Exception {
     submit(CeTaskTypes.REPORT, "PROJECT_1");
@@ -328,6 +431,12 @@ public class InternalCeQueueImplTest {
     return submission.build();
   }
 
+  private void setReportSize(CeTask task, int size) throws IOException {
+    File report = temp.newFile();
+    FileUtils.writeByteArrayToFile(report, new byte[size]);
+    when(reportFiles.fileForUuid(task.getUuid())).thenReturn(report);
+  }
+
   private CeTaskResult newTaskResult(@Nullable String analysisUuid) {
     CeTaskResult taskResult = mock(CeTaskResult.class);
     when(taskResult.getAnalysisUuid()).thenReturn(java.util.Optional.ofNullable(analysisUuid));
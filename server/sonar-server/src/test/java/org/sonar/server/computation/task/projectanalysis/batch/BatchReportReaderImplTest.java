@@ -315,4 +315,21 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_data_of_components_packed_in_container() throws IOException {
+    writer.writeComponent(COMPONENT);
+    writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    writer.packComponentData();
+
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    assertThat(underTest.readComponentIssues(COMPONENT_REF)).containsExactly(ISSUE);
+    assertThat(underTest.readTests(COMPONENT_REF)).containsExactly(TEST_1, TEST_2);
+    assertThat(underTest.readFileSource(COMPONENT_REF).get()).containsExactly("1", "2", "3");
+    assertThat(underTest.readComponentMeasures(COMPONENT_REF)).isEmpty();
+    assertThat(underTest.readCoverageDetails(COMPONENT_REF)).isEmpty();
+    assertThat(underTest.readFileSource(COMPONENT_REF + 1)).isAbsent();
+  }
 }
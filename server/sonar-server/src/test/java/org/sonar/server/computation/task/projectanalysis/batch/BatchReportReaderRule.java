@@ -40,6 +40,7 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
   private List<ScannerReport.ActiveRule> activeRules = new ArrayList<>();
   private Map<Integer, List<ScannerReport.Measure>> measures = new HashMap<>();
   private Map<Integer, ScannerReport.Changesets> changesets = new HashMap<>();
+  private Map<Integer, ScannerReport.LineDataHashes> lineDataHashes = new HashMap<>();
   private Map<Integer, ScannerReport.Component> components = new HashMap<>();
   private Map<Integer, List<ScannerReport.Issue>> issues = new HashMap<>();
   private Map<Integer, List<ScannerReport.Duplication>> duplications = new HashMap<>();
@@ -70,6 +71,7 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
     this.scannerLogs = null;
     this.measures.clear();
     this.changesets.clear();
+    this.lineDataHashes.clear();
     this.components.clear();
     this.issues.clear();
     this.duplications.clear();
@@ -146,6 +148,17 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
     return this;
   }
 
+  @Override
+  @CheckForNull
+  public ScannerReport.LineDataHashes readLineDataHashes(int fileRef) {
+    return lineDataHashes.get(fileRef);
+  }
+
+  public BatchReportReaderRule putLineDataHashes(ScannerReport.LineDataHashes hashes) {
+    this.lineDataHashes.put(hashes.getComponentRef(), hashes);
+    return this;
+  }
+
   @Override
   public ScannerReport.Component readComponent(int componentRef) {
     return components.get(componentRef);
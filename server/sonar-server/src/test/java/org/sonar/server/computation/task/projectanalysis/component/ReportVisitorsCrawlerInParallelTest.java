@@ -0,0 +1,191 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.MODULE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
+
+public class ReportVisitorsCrawlerInParallelTest {
+  private static final int FILE_COUNT = 200;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+  private final List<Component> files = createFiles();
+  private final Component directory = ReportComponent.builder(DIRECTORY, 3).setKey("dir").addChildren(files.toArray(new Component[FILE_COUNT])).build();
+  private final Component tree = ReportComponent.builder(PROJECT, 1).setKey("project")
+    .addChildren(ReportComponent.builder(MODULE, 2).setKey("module").addChildren(directory).build())
+    .build();
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+
+  @After
+  public void tearDown() {
+    forkJoinPool.shutdown();
+  }
+
+  @Test
+  public void thread_safe_visitor_visits_each_file_once_and_directory_after_its_files() {
+    RecordingThreadSafeVisitor visitor = new RecordingThreadSafeVisitor("A", POST_ORDER);
+
+    new VisitorsCrawler(Arrays.<ComponentVisitor>asList(visitor), forkJoinPool).visit(tree);
+
+    assertThat(calls).hasSize(FILE_COUNT + 3);
+    assertThat(calls.subList(0, FILE_COUNT)).containsOnlyElementsOf(expectedFileCalls("A"));
+    assertThat(calls.subList(FILE_COUNT, FILE_COUNT + 3)).containsExactly("A:dir", "A:module", "A:project");
+  }
+
+  @Test
+  public void each_file_is_visited_in_the_order_of_the_visitors() {
+    RecordingThreadSafeVisitor first = new RecordingThreadSafeVisitor("A", PRE_ORDER);
+    RecordingVisitor second = new RecordingVisitor("B", POST_ORDER);
+    RecordingThreadSafeVisitor third = new RecordingThreadSafeVisitor("C", POST_ORDER);
+
+    new VisitorsCrawler(Arrays.<ComponentVisitor>asList(first, second, third), forkJoinPool).visit(tree);
+
+    for (Component file : files) {
+      int a = calls.indexOf("A:" + file.getKey());
+      int b = calls.indexOf("B:" + file.getKey());
+      int c = calls.indexOf("C:" + file.getKey());
+      assertThat(a).isLessThan(b);
+      assertThat(b).isLessThan(c);
+    }
+    // non thread-safe visitor visits files in the order of the tree
+    List<String> secondFileCalls = new ArrayList<>();
+    for (String call : calls) {
+      if (call.startsWith("B:file")) {
+        secondFileCalls.add(call);
+      }
+    }
+    assertThat(secondFileCalls).containsExactlyElementsOf(expectedFileCalls("B"));
+    assertThat(calls.indexOf("A:dir")).isLessThan(calls.indexOf("A:" + files.get(0).getKey()));
+    assertThat(calls.indexOf("C:dir")).isGreaterThan(calls.indexOf("C:" + files.get(FILE_COUNT - 1).getKey()));
+  }
+
+  @Test
+  public void parallel_speedups_are_reported_for_thread_safe_visitors_only() {
+    RecordingThreadSafeVisitor threadSafe = new RecordingThreadSafeVisitor("A", POST_ORDER);
+    RecordingVisitor notThreadSafe = new RecordingVisitor("B", POST_ORDER);
+
+    VisitorsCrawler underTest = new VisitorsCrawler(Arrays.<ComponentVisitor>asList(threadSafe, notThreadSafe), forkJoinPool);
+    underTest.visit(tree);
+
+    assertThat(underTest.getParallelSpeedups().keySet()).containsOnly(threadSafe);
+    assertThat(underTest.getParallelSpeedups().get(threadSafe)).isGreaterThan(0d);
+    assertThat(underTest.getCumulativeDurations().keySet()).containsOnly(threadSafe, notThreadSafe);
+  }
+
+  @Test
+  public void no_parallel_speedup_when_crawler_has_no_ForkJoinPool() {
+    RecordingThreadSafeVisitor threadSafe = new RecordingThreadSafeVisitor("A", POST_ORDER);
+
+    VisitorsCrawler underTest = new VisitorsCrawler(Arrays.<ComponentVisitor>asList(threadSafe));
+    underTest.visit(tree);
+
+    assertThat(underTest.getParallelSpeedups()).isEmpty();
+    assertThat(calls).containsSubsequence(expectedFileCalls("A").toArray(new String[FILE_COUNT]));
+  }
+
+  @Test
+  public void failure_on_a_file_visited_in_parallel_is_wrapped_with_the_file_key() {
+    final RuntimeException failure = new IllegalArgumentException("faulty visitor");
+    RecordingThreadSafeVisitor visitor = new RecordingThreadSafeVisitor("A", POST_ORDER) {
+      @Override
+      public void visitFile(Component file) {
+        if (file.getKey().equals("file42")) {
+          throw failure;
+        }
+      }
+    };
+
+    thrown.expect(VisitException.class);
+    thrown.expectMessage("Visit of Component {key=file42,type=FILE} failed");
+    thrown.expectCause(sameInstance(failure));
+
+    new VisitorsCrawler(Arrays.<ComponentVisitor>asList(visitor), forkJoinPool).visit(tree);
+  }
+
+  @Test
+  public void visitors_not_reaching_files_do_not_visit_files() {
+    RecordingThreadSafeVisitor fileVisitor = new RecordingThreadSafeVisitor("A", POST_ORDER);
+    RecordingVisitor directoryVisitor = new RecordingVisitor("B", POST_ORDER, CrawlerDepthLimit.DIRECTORY);
+
+    new VisitorsCrawler(Arrays.<ComponentVisitor>asList(fileVisitor, directoryVisitor), forkJoinPool).visit(tree);
+
+    assertThat(calls).doesNotContain("B:file0");
+    assertThat(calls).contains("A:file0", "B:dir", "B:module", "B:project");
+  }
+
+  private List<String> expectedFileCalls(String visitorName) {
+    List<String> res = new ArrayList<>();
+    for (Component file : files) {
+      res.add(visitorName + ":" + file.getKey());
+    }
+    return res;
+  }
+
+  private static List<Component> createFiles() {
+    List<Component> res = new ArrayList<>();
+    for (int i = 0; i < FILE_COUNT; i++) {
+      res.add(ReportComponent.builder(FILE, 100 + i).setKey("file" + i).build());
+    }
+    return res;
+  }
+
+  private class RecordingVisitor extends TypeAwareVisitorAdapter {
+    private final String name;
+
+    RecordingVisitor(String name, ComponentVisitor.Order order) {
+      this(name, order, CrawlerDepthLimit.FILE);
+    }
+
+    RecordingVisitor(String name, ComponentVisitor.Order order, CrawlerDepthLimit maxDepth) {
+      super(maxDepth, order);
+      this.name = name;
+    }
+
+    @Override
+    public void visitAny(Component any) {
+      calls.add(name + ":" + any.getKey());
+    }
+  }
+
+  private class RecordingThreadSafeVisitor extends RecordingVisitor implements ThreadSafeFileVisitor {
+    RecordingThreadSafeVisitor(String name, ComponentVisitor.Order order) {
+      super(name, order);
+    }
+  }
+}
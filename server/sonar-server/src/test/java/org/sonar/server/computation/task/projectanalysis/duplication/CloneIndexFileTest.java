@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.db.duplication.DuplicationUnitDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class CloneIndexFileTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void lookup_units_of_sorted_hashes() throws Exception {
+    CloneIndexFile.Writer writer = new CloneIndexFile.Writer(temp.newFile());
+    writer.add(1L, "A1", "F1", 0, 1, 10);
+    writer.add(3L, "A1", "F1", 1, 5, 15);
+    writer.add(3L, "A2", "F2", 4, 20, 30);
+    writer.add(0x8000000000000000L, "A2", "F2", 5, 40, 50);
+    writer.add(-1L, "A2", "F3", 0, 1, 2);
+    CloneIndexFile underTest = writer.finish();
+
+    assertThat(underTest.size()).isEqualTo(5);
+    assertThat(lookup(underTest, 0L, 2L)).isEmpty();
+    assertThat(lookup(underTest, 3L)).extracting("hash", "analysisUuid", "componentUuid", "indexInFile", "startLine", "endLine")
+      .containsExactly(
+        tuple("0000000000000003", "A1", "F1", 1, 5, 15),
+        tuple("0000000000000003", "A2", "F2", 4, 20, 30));
+    assertThat(lookup(underTest, 1L, 3L, 0x8000000000000000L, -1L)).extracting(DuplicationUnitDto::getHash)
+      .containsExactly("0000000000000001", "0000000000000003", "0000000000000003", "8000000000000000", "ffffffffffffffff");
+  }
+
+  @Test
+  public void lookup_in_empty_file() throws Exception {
+    CloneIndexFile underTest = new CloneIndexFile.Writer(temp.newFile()).finish();
+
+    assertThat(underTest.size()).isEqualTo(0);
+    assertThat(lookup(underTest, 1L)).isEmpty();
+  }
+
+  @Test
+  public void reopen_file() throws Exception {
+    File file = temp.newFile();
+    CloneIndexFile.Writer writer = new CloneIndexFile.Writer(file);
+    writer.add(7L, "A1", "F1", 0, 1, 10);
+    writer.finish();
+
+    assertThat(lookup(CloneIndexFile.open(file), 7L)).extracting(DuplicationUnitDto::getComponentUuid).containsExactly("F1");
+  }
+
+  @Test
+  public void close_deletes_file() throws Exception {
+    File file = temp.newFile();
+    CloneIndexFile underTest = new CloneIndexFile.Writer(file).finish();
+
+    underTest.close();
+
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void lookup_nothing_once_closed() throws Exception {
+    CloneIndexFile.Writer writer = new CloneIndexFile.Writer(temp.newFile());
+    writer.add(7L, "A1", "F1", 0, 1, 10);
+    CloneIndexFile underTest = writer.finish();
+
+    underTest.close();
+
+    List<DuplicationUnitDto> units = new ArrayList<>();
+    assertThat(underTest.lookup(new long[] {7L}, units::add)).isFalse();
+    assertThat(units).isEmpty();
+  }
+
+  @Test
+  public void fail_to_add_unsorted_hashes() throws Exception {
+    CloneIndexFile.Writer writer = new CloneIndexFile.Writer(temp.newFile());
+    writer.add(-1L, "A1", "F1", 0, 1, 10);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Units must be added by ascending hash");
+
+    writer.add(1L, "A1", "F1", 1, 1, 10);
+  }
+
+  @Test
+  public void fail_to_open_file_which_is_not_a_clone_index() throws Exception {
+    File file = temp.newFile();
+    org.apache.commons.io.FileUtils.write(file, "this is not a clone index file");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Clone index file is corrupted");
+
+    CloneIndexFile.open(file);
+  }
+
+  private static List<DuplicationUnitDto> lookup(CloneIndexFile file, long... sortedHashes) {
+    List<DuplicationUnitDto> units = new ArrayList<>();
+    file.lookup(sortedHashes, units::add);
+    return units;
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import com.google.common.collect.ListMultimap;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.component.SnapshotTesting;
+import org.sonar.db.duplication.DuplicationUnitDto;
+import org.sonar.process.ProcessProperties;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class CrossProjectCloneIndexTest {
+
+  private static final String HASH_1 = "a8998353e96320ec";
+  private static final String HASH_2 = "b1234353e96320ff";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+
+  DbClient dbClient = dbTester.getDbClient();
+  DbSession dbSession = dbTester.getSession();
+  Settings settings = new Settings();
+  File indexDir;
+
+  ComponentDto project;
+  SnapshotDto analysis;
+  ComponentDto file;
+
+  CrossProjectCloneIndex underTest = new CrossProjectCloneIndex(settings, dbClient);
+
+  @Before
+  public void setUp() throws Exception {
+    File dataDir = temp.newFolder();
+    indexDir = new File(dataDir, "ce/clone_index");
+    settings.setProperty(ProcessProperties.PATH_DATA, dataDir.getAbsolutePath());
+
+    project = ComponentTesting.newProjectDto().setKey("PROJECT_KEY");
+    dbClient.componentDao().insert(dbSession, project);
+    analysis = SnapshotTesting.newAnalysis(project);
+    dbClient.snapshotDao().insert(dbSession, analysis);
+    file = ComponentTesting.newFileDto(project).setKey("FILE_KEY").setLanguage("java");
+    dbClient.componentDao().insert(dbSession, file);
+    dbSession.commit();
+  }
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void select_candidates_loaded_from_database() {
+    insertUnit(analysis, file, HASH_1, 0);
+    insertUnit(analysis, file, HASH_2, 1);
+    insertUnit(analysis, file, HASH_2, 2);
+    underTest.start();
+
+    ListMultimap<String, DuplicationUnitDto> candidates = underTest.selectCandidates(dbSession, null, "java", asList(HASH_2, HASH_1, "0000000000000000"));
+
+    assertThat(candidates.keySet()).containsOnly(HASH_1, HASH_2);
+    assertThat(candidates.get(HASH_2)).extracting("hash", "analysisUuid", "componentUuid", "componentKey", "indexInFile", "startLine", "endLine")
+      .containsExactly(
+        tuple(HASH_2, analysis.getUuid(), file.uuid(), "FILE_KEY", 1, 10, 20),
+        tuple(HASH_2, analysis.getUuid(), file.uuid(), "FILE_KEY", 2, 10, 20));
+    assertThat(indexDir.listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void ignore_units_of_excluded_analysis_and_of_other_languages() {
+    insertUnit(analysis, file, HASH_1, 0);
+    underTest.start();
+
+    assertThat(underTest.selectCandidates(dbSession, analysis.getUuid(), "java", singletonList(HASH_1)).isEmpty()).isTrue();
+    assertThat(underTest.selectCandidates(dbSession, null, "xoo", singletonList(HASH_1)).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void ignore_units_which_are_not_live_anymore() {
+    insertUnit(analysis, file, HASH_1, 0);
+    underTest.start();
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).size()).isEqualTo(1);
+
+    SnapshotDto newAnalysis = SnapshotTesting.newAnalysis(project).setLast(false);
+    dbClient.snapshotDao().insert(dbSession, newAnalysis);
+    dbClient.snapshotDao().switchIsLastFlagAndSetProcessedStatus(dbSession, project.uuid(), newAnalysis.getUuid());
+    dbSession.commit();
+
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void select_candidates_appended_after_load() {
+    underTest.start();
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).isEmpty()).isTrue();
+
+    underTest.newAppender(analysis.getUuid())
+      .add("java", file.uuid(), HASH_2, 1, 10, 20)
+      .add("java", file.uuid(), HASH_1, 0, 10, 20)
+      .add("xoo", file.uuid(), HASH_1, 0, 10, 20)
+      .commit();
+
+    assertThat(underTest.selectCandidates(dbSession, null, "java", asList(HASH_1, HASH_2)).values())
+      .extracting(DuplicationUnitDto::getHash, DuplicationUnitDto::getIndexInFile)
+      .containsExactly(tuple(HASH_1, 0), tuple(HASH_2, 1));
+    // no unit loaded from database, and index of language "xoo" is not loaded yet so its units are not appended
+    assertThat(indexDir.listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void units_loaded_from_database_and_appended_are_returned_once() {
+    underTest.start();
+    underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1));
+    CrossProjectCloneIndex.Appender appender = underTest.newAppender(analysis.getUuid()).add("java", file.uuid(), HASH_1, 0, 10, 20);
+    insertUnit(analysis, file, HASH_1, 0);
+    underTest.stop();
+    underTest.start();
+    underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1));
+
+    appender.commit();
+
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).size()).isEqualTo(1);
+  }
+
+  @Test
+  public void reload_index_from_database_when_too_many_files_are_appended() {
+    underTest.start();
+    underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1));
+
+    for (int i = 0; i < CrossProjectCloneIndex.MAX_FILES_PER_LANGUAGE; i++) {
+      underTest.newAppender(analysis.getUuid()).add("java", file.uuid(), HASH_1, i, 10, 20).commit();
+    }
+    assertThat(indexDir.listFiles()).hasSize(CrossProjectCloneIndex.MAX_FILES_PER_LANGUAGE);
+
+    insertUnit(analysis, file, HASH_2, 0);
+    underTest.newAppender(analysis.getUuid()).add("java", file.uuid(), HASH_2, 0, 10, 20).commit();
+    assertThat(indexDir.listFiles()).isEmpty();
+
+    assertThat(underTest.selectCandidates(dbSession, null, "java", asList(HASH_1, HASH_2)).keySet()).containsOnly(HASH_2);
+    assertThat(indexDir.listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void load_index_again_after_failure() throws Exception {
+    insertUnit(analysis, file, HASH_1, 0);
+    underTest.start();
+    org.apache.commons.io.FileUtils.deleteDirectory(indexDir);
+
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).size()).isEqualTo(1);
+
+    org.apache.commons.io.FileUtils.forceMkdir(indexDir);
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).size()).isEqualTo(1);
+    assertThat(indexDir.listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void reload_index_from_database_when_appended_units_can_not_be_written() throws Exception {
+    underTest.start();
+    underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1));
+    insertUnit(analysis, file, HASH_1, 0);
+    org.apache.commons.io.FileUtils.deleteDirectory(indexDir);
+
+    underTest.newAppender(analysis.getUuid()).add("java", file.uuid(), HASH_1, 0, 10, 20).commit();
+
+    org.apache.commons.io.FileUtils.forceMkdir(indexDir);
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).size()).isEqualTo(1);
+    assertThat(indexDir.listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void select_candidates_of_hashes_not_generated_by_scanner_from_database() {
+    insertUnit(analysis, file, "ABC", 0);
+    underTest.start();
+
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList("ABC")).get("ABC"))
+      .extracting(DuplicationUnitDto::getComponentKey)
+      .containsExactly("FILE_KEY");
+  }
+
+  @Test
+  public void select_candidates_from_database_when_disabled() {
+    settings.setProperty(CrossProjectCloneIndex.ENABLED_PROPERTY, false);
+    insertUnit(analysis, file, HASH_1, 0);
+    underTest.start();
+
+    assertThat(underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1)).get(HASH_1))
+      .extracting(DuplicationUnitDto::getComponentKey)
+      .containsExactly("FILE_KEY");
+    assertThat(indexDir).doesNotExist();
+  }
+
+  @Test
+  public void stop_deletes_index_directory() {
+    insertUnit(analysis, file, HASH_1, 0);
+    underTest.start();
+    underTest.selectCandidates(dbSession, null, "java", singletonList(HASH_1));
+
+    underTest.stop();
+
+    assertThat(indexDir).doesNotExist();
+  }
+
+  private void insertUnit(SnapshotDto analysis, ComponentDto file, String hash, int indexInFile) {
+    dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setAnalysisUuid(analysis.getUuid())
+      .setComponentUuid(file.uuid())
+      .setHash(hash)
+      .setIndexInFile(indexInFile)
+      .setStartLine(10)
+      .setEndLine(20));
+    dbSession.commit();
+  }
+}
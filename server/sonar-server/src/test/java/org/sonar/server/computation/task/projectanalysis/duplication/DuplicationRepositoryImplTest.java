@@ -22,13 +22,20 @@ package org.sonar.server.computation.task.projectanalysis.duplication;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.memory.MemoryBudget;
 import org.sonar.server.util.WrapInSingleElementArray;
 
 import static com.google.common.base.Predicates.equalTo;
@@ -46,6 +53,11 @@ public class DuplicationRepositoryImplTest {
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(
+    ReportComponent.builder(Component.Type.PROJECT, 100).addChildren(FILE_COMPONENT_1, FILE_COMPONENT_2).build());
 
   private DuplicationRepository underTest = new DuplicationRepositoryImpl();
 
@@ -131,6 +143,66 @@ public class DuplicationRepositoryImplTest {
     assertThat(underTest.getDuplications(FILE_COMPONENT_2)).containsOnly(createDuplication(1, 2), createDuplication(2, 3));
   }
 
+  @Test
+  public void never_spill_without_temp_folder() {
+    DuplicationRepositoryImpl underTest = new DuplicationRepositoryImpl();
+    underTest.add(FILE_COMPONENT_1, SOME_DUPLICATION);
+    underTest.add(FILE_COMPONENT_2, SOME_DUPLICATION);
+
+    assertThat(underTest.spill(Long.MAX_VALUE)).isEqualTo(0L);
+  }
+
+  @Test
+  public void spilled_duplications_are_loaded_back_when_requested() throws Exception {
+    DuplicationRepositoryImpl underTest = newSpillableRepository(MemoryBudget.unlimited());
+    Duplication inner = createDuplication(1, 2);
+    Duplication inProject = new Duplication(new TextBlock(1, 5), Arrays.<Duplicate>asList(new InProjectDuplicate(FILE_COMPONENT_2, new TextBlock(3, 7))));
+    Duplication crossProject = new Duplication(new DetailedTextBlock(3, 10, 20),
+      Arrays.<Duplicate>asList(new CrossProjectDuplicate("other_file_key", new DetailedTextBlock(4, 11, 21)), new InnerDuplicate(new TextBlock(30, 40))));
+    underTest.add(FILE_COMPONENT_1, inner);
+    underTest.add(FILE_COMPONENT_1, inProject);
+    underTest.add(FILE_COMPONENT_1, crossProject);
+    underTest.add(FILE_COMPONENT_2, createDuplication(3, 7));
+
+    // duplications of the most recently used file are kept in memory
+    assertThat(underTest.spill(Long.MAX_VALUE)).isGreaterThan(0L);
+    assertThat(underTest.spill(Long.MAX_VALUE)).isEqualTo(0L);
+
+    assertThat(underTest.getDuplications(FILE_COMPONENT_1)).containsOnly(inner, inProject, crossProject);
+    assertThat(underTest.getDuplications(FILE_COMPONENT_2)).containsOnly(createDuplication(3, 7));
+
+    // file 1 can be spilled again, then extended
+    underTest.spill(Long.MAX_VALUE);
+    underTest.add(FILE_COMPONENT_1, createDuplication(50, 60));
+    assertThat(underTest.getDuplications(FILE_COMPONENT_1)).containsOnly(inner, inProject, crossProject, createDuplication(50, 60));
+  }
+
+  @Test
+  public void duplications_are_spilled_when_memory_budget_is_exceeded() throws Exception {
+    MemoryBudget memoryBudget = new MemoryBudget(new Settings().setProperty(MemoryBudget.BUDGET_PROPERTY, 1));
+    DuplicationRepositoryImpl underTest = newSpillableRepository(memoryBudget);
+
+    List<Component> files = new ArrayList<>();
+    for (int ref = 1; ref <= 20; ref++) {
+      Component file = ReportComponent.builder(Component.Type.FILE, ref).build();
+      files.add(file);
+      for (int line = 1; line <= 1_000; line++) {
+        underTest.add(file, createDuplication(line, line + ref));
+      }
+    }
+
+    assertThat(memoryBudget.getSpillCount()).isGreaterThan(0);
+    assertThat(memoryBudget.getUsedBytes()).isLessThanOrEqualTo(memoryBudget.getBudgetBytes());
+    for (Component file : files) {
+      int ref = file.getReportAttributes().getRef();
+      assertThat(underTest.getDuplications(file)).hasSize(1_000).contains(createDuplication(42, 42 + ref));
+    }
+  }
+
+  private DuplicationRepositoryImpl newSpillableRepository(MemoryBudget memoryBudget) throws Exception {
+    return new DuplicationRepositoryImpl(treeRootHolder, new DefaultTempFolder(temp.newFolder()), memoryBudget);
+  }
+
   private static Duplication createDuplication(int originalLine, int duplicateLine) {
     return new Duplication(new TextBlock(originalLine, originalLine), Arrays.<Duplicate>asList(new InnerDuplicate(new TextBlock(duplicateLine, duplicateLine))));
   }
@@ -34,6 +34,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.Settings;
 import org.sonar.core.hash.SourceHashComputer;
 import org.sonar.core.hash.SourceLinesHashesComputer;
 import org.sonar.db.DbClient;
@@ -231,8 +232,10 @@ public class FileMoveDetectionStepTest {
   private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
   private long dbIdGenerator = 0;
 
+  private Settings settings = new Settings();
+
   private FileMoveDetectionStep underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
-    sourceLinesRepository, fileSimilarity, movedFilesRepository);
+    sourceLinesRepository, fileSimilarity, movedFilesRepository, settings);
 
   @Before
   public void setUp() throws Exception {
@@ -400,6 +403,17 @@ public class FileMoveDetectionStepTest {
 
   @Test
   public void execute_detects_several_moves() {
+    detectsSeveralMoves();
+  }
+
+  @Test
+  public void execute_detects_several_moves_with_a_single_thread() {
+    settings.setProperty(FileMoveDetectionStep.THREADS_PROPERTY, 1);
+
+    detectsSeveralMoves();
+  }
+
+  private void detectsSeveralMoves() {
     // testing:
     // - file1 renamed to file3
     // - file2 deleted
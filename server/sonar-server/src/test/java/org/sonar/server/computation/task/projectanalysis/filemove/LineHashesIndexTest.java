@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+public class LineHashesIndexTest {
+
+  private static final List<String> CONTENT = asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j");
+
+  @Test
+  public void candidates_are_files_with_enough_lines_in_common() {
+    LineHashesIndex underTest = new LineHashesIndex(asList(
+      file(CONTENT),
+      file(asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "x")),
+      file(asList("a", "b", "c", "d", "e", "x", "y", "z", "i", "j")),
+      file(asList("k", "l", "m")),
+      file(null),
+      file(emptyList())), MIN_REQUIRED_SCORE);
+
+    assertThat(underTest.candidates(CONTENT)).containsExactly(0, 1);
+    assertThat(underTest.candidates(asList("k", "l", "m"))).containsExactly(3);
+    assertThat(underTest.candidates(asList("n", "o"))).isEmpty();
+    assertThat(underTest.candidates(emptyList())).isEmpty();
+    assertThat(underTest.candidates(null)).isEmpty();
+  }
+
+  @Test
+  public void candidates_are_files_of_similar_size() {
+    LineHashesIndex underTest = new LineHashesIndex(asList(
+      file(CONTENT),
+      file(CONTENT.subList(0, 9)),
+      file(CONTENT.subList(0, 8))), MIN_REQUIRED_SCORE);
+
+    assertThat(underTest.candidates(CONTENT)).containsExactly(0, 1);
+  }
+
+  @Test
+  public void files_having_only_frequent_lines_in_common_are_candidates() {
+    // more than 100 files contain the lines of CONTENT, so they have no posting list
+    List<FileSimilarity.File> files = new ArrayList<>();
+    for (int i = 0; i < 150; i++) {
+      files.add(file(CONTENT));
+    }
+    files.add(file(asList("k", "l", "m")));
+    LineHashesIndex underTest = new LineHashesIndex(files, MIN_REQUIRED_SCORE);
+
+    assertThat(underTest.candidates(CONTENT)).hasSize(150).doesNotContain(150);
+    assertThat(underTest.candidates(asList("k", "l", "m"))).containsExactly(150);
+  }
+
+  private static FileSimilarity.File file(List<String> lineHashes) {
+    return new FileSimilarity.File("path", null, lineHashes);
+  }
+}
@@ -53,4 +53,46 @@ public class SourceSimilarityImplTest {
     assertThat(underTest.score(asList("a"), asList("a", "b", "c"))).isEqualTo(33);
     assertThat(underTest.score(asList("a", "b", "c"), asList("a"))).isEqualTo(33);
   }
+
+  @Test
+  public void score_with_min_score_is_exact_when_higher_than_min_score() {
+    assertThat(underTest.score(asList("a", "b", "c"), asList("a", "b", "c"), 85)).isEqualTo(100);
+    assertThat(underTest.score(asList("a", "b", "c", "d"), asList("a", "b", "e", "f"), 50)).isEqualTo(50);
+    assertThat(underTest.score(asList(""), asList(""), 85)).isEqualTo(100);
+  }
+
+  @Test
+  public void score_with_min_score_is_lower_than_min_score_when_not_similar_enough() {
+    assertThat(underTest.score(asList("a", "b", "c", "d"), asList("a", "b", "e", "f"), 85)).isLessThan(85);
+    assertThat(underTest.score(asList("a"), asList("a", "b", "c"), 34)).isLessThan(34);
+    assertThat(underTest.score(asList("a", "b", "c"), asList("d", "e"), 1)).isEqualTo(0);
+  }
+
+  @Test
+  public void bounded_levenshteinDistance_is_exact_up_to_max_distance() {
+    List<String> left = asList("a", "b", "c", "d", "e", "f", "g", "h");
+    List<String> right = asList("a", "x", "c", "d", "f", "g", "h", "i", "j");
+    int distance = underTest.levenshteinDistance(left, right);
+
+    assertThat(distance).isEqualTo(4);
+    for (int maxDistance = distance; maxDistance <= right.size(); maxDistance++) {
+      assertThat(underTest.levenshteinDistance(left, right, maxDistance)).isEqualTo(distance);
+    }
+    for (int maxDistance = 0; maxDistance < distance; maxDistance++) {
+      assertThat(underTest.levenshteinDistance(left, right, maxDistance)).isEqualTo(maxDistance + 1);
+    }
+  }
+
+  @Test
+  public void maxDistance_is_highest_distance_reaching_min_score() {
+    assertThat(SourceSimilarityImpl.maxDistance(100, 85)).isEqualTo(15);
+    assertThat(SourceSimilarityImpl.maxDistance(20, 85)).isEqualTo(3);
+    assertThat(SourceSimilarityImpl.maxDistance(6, 85)).isEqualTo(0);
+    assertThat(SourceSimilarityImpl.maxDistance(1, 100)).isEqualTo(0);
+    for (int size = 1; size < 200; size++) {
+      int maxDistance = SourceSimilarityImpl.maxDistance(size, 85);
+      assertThat(SourceSimilarityImpl.score(maxDistance, size)).isGreaterThanOrEqualTo(85);
+      assertThat(SourceSimilarityImpl.score(maxDistance + 1, size)).isLessThan(85);
+    }
+  }
 }
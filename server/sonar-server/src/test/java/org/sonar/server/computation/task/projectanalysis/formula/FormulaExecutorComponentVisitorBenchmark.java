@@ -0,0 +1,162 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.formula;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawler;
+import org.sonar.server.computation.task.projectanalysis.measure.ColumnarRawMeasureRepository;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository;
+import org.sonar.server.computation.task.projectanalysis.measure.Measure;
+import org.sonar.server.computation.task.projectanalysis.measure.RawMeasureRepository;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricRepositoryRule;
+
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+
+/**
+ * Compares the throughput of {@link FormulaExecutorComponentVisitor} on a synthetic tree when raw measures are stored
+ * by {@link MapBasedRawMeasureRepository} and by {@link ColumnarRawMeasureRepository}. The heap retained by each
+ * repository is printed by {@link #main(String[])} before running the benchmark. Allocation rates can be obtained with
+ * the JMH GC profiler ({@code -prof gc}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FormulaExecutorComponentVisitorBenchmark {
+
+  private static final int METRICS = 60;
+
+  @Param({"map", "columnar"})
+  public String store;
+
+  @Param({"200000"})
+  public int files;
+
+  private final MetricRepositoryRule metricRepository = new MetricRepositoryRule();
+  private final List<Metric> metrics = new ArrayList<>();
+  private final List<Formula> formulas = new ArrayList<>();
+  private Component root;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < METRICS; i++) {
+      Metric metric = new MetricImpl(i, "metric" + i, "Metric " + i, Metric.MetricType.INT);
+      metricRepository.add(metric);
+      metrics.add(metric);
+      formulas.add(SumFormula.createIntSumFormula(metric.getKey()));
+    }
+    root = createTree(files);
+  }
+
+  @Benchmark
+  public RawMeasureRepository aggregate() {
+    RawMeasureRepository measureRepository = populate();
+    ComponentVisitor visitor = FormulaExecutorComponentVisitor.newBuilder(metricRepository, measureRepository).buildFor(formulas);
+    new VisitorsCrawler(Collections.singletonList(visitor)).visit(root);
+    return measureRepository;
+  }
+
+  /**
+   * Adds the measures of all the metrics on all the files
+   */
+  private RawMeasureRepository populate() {
+    RawMeasureRepository measureRepository = "columnar".equals(store)
+      ? new ColumnarRawMeasureRepository(component -> component.getReportAttributes().getRef())
+      : new MapBasedRawMeasureRepository<>(toReportRef());
+    populate(root, measureRepository);
+    return measureRepository;
+  }
+
+  private void populate(Component component, RawMeasureRepository measureRepository) {
+    if (component.getType() == Component.Type.FILE) {
+      int ref = component.getReportAttributes().getRef();
+      for (Metric metric : metrics) {
+        measureRepository.add(component, metric, Measure.newMeasureBuilder().create(ref % (metric.getId() + 10)));
+      }
+    }
+    for (Component child : component.getChildren()) {
+      populate(child, measureRepository);
+    }
+  }
+
+  private static Component createTree(int files) {
+    int ref = 1;
+    ReportComponent.Builder project = ReportComponent.builder(Component.Type.PROJECT, ref++).setKey("project");
+    int filesPerDirectory = 100;
+    for (int d = 0; d * filesPerDirectory < files; d++) {
+      ReportComponent.Builder directory = ReportComponent.builder(Component.Type.DIRECTORY, ref++).setKey("project:dir" + d);
+      for (int f = 0; f < filesPerDirectory && d * filesPerDirectory + f < files; f++) {
+        directory.addChildren(ReportComponent.builder(Component.Type.FILE, ref++).setKey("project:dir" + d + "/file" + f).build());
+      }
+      project.addChildren(directory.build());
+    }
+    return project.build();
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (String store : new String[] {"map", "columnar"}) {
+      FormulaExecutorComponentVisitorBenchmark benchmark = new FormulaExecutorComponentVisitorBenchmark();
+      benchmark.store = store;
+      benchmark.files = 200_000;
+      benchmark.setUp();
+      long before = usedHeap();
+      RawMeasureRepository repository = benchmark.aggregate();
+      long retained = usedHeap() - before;
+      System.out.println(String.format("Heap retained by %s store: %d MB (%s)", store, retained / 1024 / 1024, repository.getClass().getSimpleName()));
+    }
+
+    new Runner(new OptionsBuilder()
+      .include(FormulaExecutorComponentVisitorBenchmark.class.getSimpleName())
+      .jvmArgs("-Xmx4g")
+      .build()).run();
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.Uuids;
+import org.sonar.server.util.cache.DiskCache;
+import org.sonar.server.util.cache.IndexedDiskCache;
+
+/**
+ * Compares {@link IssueCache} to the Java serialization of {@link DiskCache}. This is not a unit test,
+ * run it with {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IssueCacheBenchmark {
+
+  private static final int FILES = 1_000;
+
+  @Param({"100000"})
+  public int issues;
+
+  private List<DefaultIssue> sample;
+  private File diskCacheFile;
+  private File issueCacheFile;
+  private DiskCache<DefaultIssue> diskCache;
+  private IssueCache issueCache;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    sample = new ArrayList<>(issues);
+    for (int i = 0; i < issues; i++) {
+      sample.add(newIssue("FILE_" + (i * FILES / issues), i));
+    }
+    diskCacheFile = Files.createTempFile("diskcache", ".dat").toFile();
+    issueCacheFile = Files.createTempFile("issuecache", ".dat").toFile();
+    diskCache = new DiskCache<>(diskCacheFile, System2.INSTANCE);
+    write(diskCache);
+    issueCache = new IssueCache(issueCacheFile, System2.INSTANCE);
+    write(issueCache);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    diskCacheFile.delete();
+    issueCacheFile.delete();
+  }
+
+  @Benchmark
+  public void write_java_serialization() throws IOException {
+    File file = Files.createTempFile("diskcache", ".dat").toFile();
+    try {
+      write(new DiskCache<>(file, System2.INSTANCE));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Benchmark
+  public void write_indexed_cache() throws IOException {
+    File file = Files.createTempFile("issuecache", ".dat").toFile();
+    try {
+      write(new IssueCache(file, System2.INSTANCE));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Benchmark
+  public void traverse_java_serialization(Blackhole blackhole) {
+    consume(diskCache.traverse(), blackhole);
+  }
+
+  @Benchmark
+  public void traverse_indexed_cache(Blackhole blackhole) {
+    consume(issueCache.traverse(), blackhole);
+  }
+
+  @Benchmark
+  public void traverse_single_component_indexed_cache(Blackhole blackhole) {
+    consume(issueCache.traverse("FILE_" + (FILES / 2)), blackhole);
+  }
+
+  private void write(DiskCache<DefaultIssue> cache) {
+    DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender();
+    for (DefaultIssue issue : sample) {
+      appender.append(issue);
+    }
+    appender.close();
+  }
+
+  private void write(IssueCache cache) {
+    IndexedDiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender();
+    for (DefaultIssue issue : sample) {
+      appender.append(issue);
+    }
+    appender.close();
+  }
+
+  private static void consume(CloseableIterator<DefaultIssue> issues, Blackhole blackhole) {
+    try {
+      while (issues.hasNext()) {
+        blackhole.consume(issues.next());
+      }
+    } finally {
+      issues.close();
+    }
+  }
+
+  private static DefaultIssue newIssue(String componentUuid, int index) {
+    Date now = new Date();
+    return new DefaultIssue()
+      .setKey(Uuids.create())
+      .setType(RuleType.CODE_SMELL)
+      .setComponentUuid(componentUuid)
+      .setComponentKey("project:src/main/java/" + componentUuid + ".java")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("project")
+      .setRuleKey(RuleKey.of("squid", "S" + (index % 200)))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setMessage("Refactor this method to reduce its complexity from " + index % 50 + " to the 10 allowed.")
+      .setLine(1 + index % 500)
+      .setGap(1.0)
+      .setEffort(Duration.create(10L))
+      .setStatus(Issue.STATUS_OPEN)
+      .setChecksum("5b7c1e3f0d2a8e6c4f9b1a3d5e7c9b2a")
+      .setCreationDate(now)
+      .setUpdateDate(now);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(IssueCacheBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+
+public class ColumnarRawMeasureRepositoryTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey("file cpt key").build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1_000).setKey("some other key").build();
+  private static final Metric INT_METRIC = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private static final Metric DOUBLE_METRIC = new MetricImpl(2, "double", "double", Metric.MetricType.FLOAT);
+  private static final Metric STRING_METRIC = new MetricImpl(3, "string", "string", Metric.MetricType.STRING);
+  private static final Metric BOOLEAN_METRIC = new MetricImpl(4, "bool", "bool", Metric.MetricType.BOOL);
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository(component -> component.getReportAttributes().getRef());
+
+  @Test
+  public void getBaseMeasure_is_not_supported() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.getBaseMeasure(FILE_COMPONENT, INT_METRIC);
+  }
+
+  @Test
+  public void getRawMeasure_returns_numeric_measures() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(12));
+    underTest.add(OTHER_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(5));
+    underTest.add(FILE_COMPONENT, DOUBLE_METRIC, Measure.newMeasureBuilder().create(1.234d, 2));
+    underTest.add(FILE_COMPONENT, BOOLEAN_METRIC, Measure.newMeasureBuilder().create(true));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(12);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(5);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, DOUBLE_METRIC).get().getDoubleValue()).isEqualTo(1.23d);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, BOOLEAN_METRIC).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, DOUBLE_METRIC)).isAbsent();
+  }
+
+  @Test
+  public void getRawMeasure_returns_same_instance_for_non_numeric_measures() {
+    Measure stringMeasure = Measure.newMeasureBuilder().create("some value");
+    Measure measureWithData = Measure.newMeasureBuilder().create(3, "data");
+    underTest.add(FILE_COMPONENT, STRING_METRIC, stringMeasure);
+    underTest.add(FILE_COMPONENT, INT_METRIC, measureWithData);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, STRING_METRIC).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isSameAs(measureWithData);
+  }
+
+  @Test
+  public void add_throws_UOE_if_numeric_measure_already_exists() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be set only once for a specific Component (key=file cpt key), Metric (key=int). Use update method");
+
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void update_replaces_numeric_value_by_measure_stored_as_object_and_back() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(1));
+    underTest.update(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().createNoValue());
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, INT_METRIC)).hasSize(1);
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(2));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(2);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT)).hasSize(1);
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_policy_keeps_existing_measure() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(1);
+
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(3), OverridePolicy.OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void getRawMeasures_returns_numeric_and_developer_measures() {
+    Measure devMeasure = Measure.newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(7);
+    underTest.add(FILE_COMPONENT, INT_METRIC, Measure.newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, INT_METRIC, devMeasure);
+    underTest.add(FILE_COMPONENT, STRING_METRIC, Measure.newMeasureBuilder().create("foo"));
+
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, INT_METRIC)).hasSize(2).contains(devMeasure);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).keySet()).containsOnly("int", "string");
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).get("int")).hasSize(2);
+    assertThat(underTest.getRawMeasures(OTHER_COMPONENT).isEmpty()).isTrue();
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(1);
+  }
+
+  @Test
+  public void fail_if_index_of_component_is_negative() {
+    ColumnarRawMeasureRepository repository = new ColumnarRawMeasureRepository(component -> -1);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Index of component file cpt key must be positive (got -1)");
+
+    repository.getRawMeasure(FILE_COMPONENT, INT_METRIC);
+  }
+
+  @Test
+  public void measures_with_variations_or_quality_gate_status_are_kept_as_is() {
+    Measure measure = Measure.newMeasureBuilder()
+      .setVariations(new MeasureVariations(1d))
+      .setQualityGateStatus(new QualityGateStatus(Measure.Level.OK))
+      .create(1);
+    underTest.add(FILE_COMPONENT, INT_METRIC, measure);
+
+    Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC);
+    assertThat(res.get()).isSameAs(measure);
+  }
+}
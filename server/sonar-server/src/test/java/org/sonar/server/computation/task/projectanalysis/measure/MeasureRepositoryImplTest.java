@@ -28,6 +28,7 @@ import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
 import java.util.List;
+import java.util.stream.IntStream;
 import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Rule;
@@ -322,6 +323,17 @@ public class MeasureRepositoryImplTest {
     assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric2)).isAbsent();
   }
 
+  @Test
+  public void getRawMeasure_returns_measures_added_concurrently() {
+    int nbOfFiles = 1_000;
+    IntStream.rangeClosed(1, nbOfFiles).parallel()
+      .forEach(ref -> underTestWithMock.add(ReportComponent.builder(Component.Type.FILE, ref).build(), metric1, SOME_MEASURE));
+
+    for (int ref = 1; ref <= nbOfFiles; ref++) {
+      assertThat(underTestWithMock.getRawMeasure(ReportComponent.builder(Component.Type.FILE, ref).build(), metric1)).contains(SOME_MEASURE);
+    }
+  }
+
   @Test
   public void getRawMeasure_returns_measure_from_batch_if_not_added_through_add_method() {
     String value = "trololo";
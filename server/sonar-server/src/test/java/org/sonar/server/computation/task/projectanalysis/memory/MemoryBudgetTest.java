@@ -0,0 +1,187 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MemoryBudgetTest {
+
+  private static final long MB = 1024L * 1024L;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private MemoryBudget underTest = new MemoryBudget(1000L);
+
+  @Test
+  public void budget_is_read_from_settings() {
+    Settings settings = new Settings().setProperty(MemoryBudget.BUDGET_PROPERTY, 12);
+
+    assertThat(new MemoryBudget(settings).getBudgetBytes()).isEqualTo(12 * MB);
+  }
+
+  @Test
+  public void budget_defaults_to_half_of_max_heap() {
+    assertThat(new MemoryBudget(new Settings()).getBudgetBytes()).isEqualTo(Runtime.getRuntime().maxMemory() / 2);
+  }
+
+  @Test
+  public void fail_if_budget_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Memory budget must be strictly positive, got 0");
+
+    new MemoryBudget(0L);
+  }
+
+  @Test
+  public void fail_to_allocate_negative_bytes() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of bytes must be positive, got -1");
+
+    underTest.newAccount("foo").allocate(-1L);
+  }
+
+  @Test
+  public void allocations_and_releases_are_accounted() {
+    MemoryAccount foo = underTest.newAccount("foo");
+    MemoryAccount bar = underTest.newAccount("bar");
+
+    foo.allocate(300L);
+    bar.allocate(200L);
+    foo.release(100L);
+    // releasing more than allocated is ignored
+    bar.release(500L);
+
+    assertThat(foo.getUsedBytes()).isEqualTo(200L);
+    assertThat(foo.getPeakBytes()).isEqualTo(300L);
+    assertThat(bar.getUsedBytes()).isEqualTo(0L);
+    assertThat(underTest.getUsedBytes()).isEqualTo(200L);
+    assertThat(underTest.getPeakBytes()).isEqualTo(500L);
+    assertThat(underTest.getSpillCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void largest_spillable_accounts_are_spilled_first_down_to_low_watermark() {
+    FakeSpillable small = new FakeSpillable();
+    FakeSpillable large = new FakeSpillable();
+    MemoryAccount smallAccount = underTest.newAccount("small", small);
+    MemoryAccount largeAccount = underTest.newAccount("large", large);
+    MemoryAccount notSpillable = underTest.newAccount("not spillable");
+
+    smallAccount.allocate(200L);
+    notSpillable.allocate(300L);
+    largeAccount.allocate(400L);
+    assertThat(large.requests).isEmpty();
+
+    // 1100 bytes are used, 350 must be released to reach 750
+    largeAccount.allocate(200L);
+
+    assertThat(large.requests).containsExactly(350L);
+    assertThat(small.requests).isEmpty();
+    assertThat(largeAccount.getUsedBytes()).isEqualTo(250L);
+    assertThat(largeAccount.getSpillCount()).isEqualTo(1);
+    assertThat(largeAccount.getSpilledBytes()).isEqualTo(350L);
+    assertThat(underTest.getUsedBytes()).isEqualTo(750L);
+    assertThat(underTest.getSpillCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void next_spillable_account_is_spilled_if_largest_one_does_not_release_enough() {
+    FakeSpillable small = new FakeSpillable();
+    FakeSpillable large = new FakeSpillable();
+    large.maxReleasedBytes = 100L;
+    MemoryAccount smallAccount = underTest.newAccount("small", small);
+    MemoryAccount largeAccount = underTest.newAccount("large", large);
+
+    smallAccount.allocate(400L);
+    largeAccount.allocate(700L);
+
+    assertThat(large.requests).containsExactly(350L);
+    assertThat(small.requests).containsExactly(250L);
+    assertThat(underTest.getUsedBytes()).isEqualTo(750L);
+    assertThat(underTest.getSpillCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void log_warning_once_if_budget_is_exceeded_by_data_which_can_not_be_spilled() {
+    MemoryAccount notSpillable = underTest.newAccount("not spillable");
+
+    notSpillable.allocate(1500L);
+    notSpillable.allocate(1500L);
+
+    assertThat(logTester.logs(LoggerLevel.WARN)).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.WARN).get(0)).contains("Memory budget of 1000 bytes is exceeded", MemoryBudget.BUDGET_PROPERTY);
+    assertThat(underTest.getUsedBytes()).isEqualTo(3000L);
+  }
+
+  @Test
+  public void usage_is_logged_on_stop() {
+    FakeSpillable spillable = new FakeSpillable();
+    underTest.newAccount("foo", spillable).allocate(1200L);
+    underTest.newAccount("unused");
+
+    underTest.stop();
+
+    assertThat(logTester.logs(LoggerLevel.INFO)).containsExactly(
+      "Memory budget | budget=1000 bytes | peak=1 KB | spills=1",
+      "  foo | peak=1 KB | spills=1 | spilled=450 bytes");
+  }
+
+  @Test
+  public void nothing_is_logged_on_stop_if_nothing_was_allocated() {
+    underTest.newAccount("foo");
+
+    underTest.stop();
+
+    assertThat(logTester.logs()).isEmpty();
+  }
+
+  @Test
+  public void unlimited_budget_never_spills() {
+    FakeSpillable spillable = new FakeSpillable();
+    MemoryBudget unlimited = MemoryBudget.unlimited();
+
+    unlimited.newAccount("foo", spillable).allocate(Long.MAX_VALUE / 2);
+
+    assertThat(spillable.requests).isEmpty();
+  }
+
+  private static class FakeSpillable implements Spillable {
+    private final List<Long> requests = new ArrayList<>();
+    private long maxReleasedBytes = Long.MAX_VALUE;
+
+    @Override
+    public long spill(long bytesToRelease) {
+      requests.add(bytesToRelease);
+      return Math.min(bytesToRelease, maxReleasedBytes);
+    }
+  }
+}
@@ -231,6 +231,30 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).isEmpty();
   }
 
+  @Test
+  public void evicted_scm_info_is_read_again() throws Exception {
+    Component file2 = builder(Component.Type.FILE, 2).setKey("FILE_2_KEY").setUuid("FILE_2_UUID").build();
+    analysisMetadataHolder.setBaseProjectSnapshot(baseProjectAnalysis);
+    addChangesetInReport("john", DATE_1, "rev-1");
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(2)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder().setAuthor("henry").setDate(DATE_2).setRevision("rev-2").build())
+      .addChangesetIndexByLine(0)
+      .build());
+    underTest.getScmInfo(FILE);
+    underTest.getScmInfo(file2);
+    logTester.clear();
+
+    // scm info of the most recently used file is never evicted
+    assertThat(underTest.spill(Long.MAX_VALUE)).isGreaterThan(0L);
+    assertThat(underTest.spill(Long.MAX_VALUE)).isEqualTo(0L);
+
+    underTest.getScmInfo(file2);
+    assertThat(logTester.logs(TRACE)).isEmpty();
+    assertThat(underTest.getScmInfo(FILE).get().getLatestChangeset().getAuthor()).isEqualTo("john");
+    assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from report for file 'FILE_KEY'");
+  }
+
   @Test
   public void not_read_in_db_on_first_analysis_when_CopyFromPrevious_is_true() throws Exception {
     analysisMetadataHolder.setBaseProjectSnapshot(null);
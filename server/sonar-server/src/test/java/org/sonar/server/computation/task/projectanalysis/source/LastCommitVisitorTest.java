@@ -21,11 +21,11 @@ package org.sonar.server.computation.task.projectanalysis.source;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
-import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
@@ -80,27 +80,9 @@ public class LastCommitVisitorTest {
     // FILE_3 is the most recent file in the project
     final long FILE_3_DATE = 1_300_000_000_000L;
 
-    // simulate the output of visitFile()
-    LastCommitVisitor visitor = new LastCommitVisitor(metricRepository, measureRepository, scmInfoRepository) {
-      @Override
-      public void visitFile(Component file, Path<LastCommit> path) {
-        long fileDate;
-        switch (file.getReportAttributes().getRef()) {
-          case FILE_1_REF:
-            fileDate = FILE_1_DATE;
-            break;
-          case FILE_2_REF:
-            fileDate = FILE_2_DATE;
-            break;
-          case FILE_3_REF:
-            fileDate = FILE_3_DATE;
-            break;
-          default:
-            throw new IllegalArgumentException();
-        }
-        path.parent().addDate(fileDate);
-      }
-    };
+    scmInfoRepository.setScmInfo(FILE_1_REF, newChangeset(FILE_1_DATE));
+    scmInfoRepository.setScmInfo(FILE_2_REF, newChangeset(FILE_2_DATE));
+    scmInfoRepository.setScmInfo(FILE_3_REF, newChangeset(FILE_3_DATE));
 
     // project with 1 module, 2 directories and 3 files
     ReportComponent project = ReportComponent.builder(PROJECT, PROJECT_REF)
@@ -120,9 +102,12 @@ public class LastCommitVisitorTest {
       .build();
     treeRootHolder.setRoot(project);
 
-    VisitorsCrawler underTest = new VisitorsCrawler(Lists.<ComponentVisitor>newArrayList(visitor));
+    VisitorsCrawler underTest = new VisitorsCrawler(Lists.<ComponentVisitor>newArrayList(new LastCommitVisitor(metricRepository, measureRepository, scmInfoRepository)));
     underTest.visit(project);
 
+    assertDate(FILE_1_REF, FILE_1_DATE);
+    assertDate(FILE_2_REF, FILE_2_DATE);
+    assertDate(FILE_3_REF, FILE_3_DATE);
     assertDate(DIR_1_REF, FILE_2_DATE);
     assertDate(DIR_2_REF, FILE_3_DATE);
 
@@ -133,6 +118,48 @@ public class LastCommitVisitorTest {
     assertDate(PROJECT_REF, FILE_3_DATE);
   }
 
+  @Test
+  public void aggregate_date_of_last_commit_of_files_visited_in_parallel() {
+    int nbOfFiles = 100;
+    ReportComponent.Builder dir1 = ReportComponent.builder(DIRECTORY, DIR_1_REF);
+    ReportComponent.Builder dir2 = ReportComponent.builder(DIRECTORY, DIR_2_REF);
+    for (int i = 1; i <= nbOfFiles; i++) {
+      int fileRef = 10_000 + i;
+      scmInfoRepository.setScmInfo(fileRef, newChangeset(1_000_000_000_000L + i));
+      if (i % 2 == 0) {
+        dir1.addChildren(createFileComponent(fileRef));
+      } else {
+        dir2.addChildren(createFileComponent(fileRef));
+      }
+    }
+    ReportComponent project = ReportComponent.builder(PROJECT, PROJECT_REF)
+      .addChildren(
+        ReportComponent.builder(MODULE, MODULE_REF)
+          .addChildren(dir1.build(), dir2.build())
+          .build())
+      .build();
+    treeRootHolder.setRoot(project);
+
+    LastCommitVisitor visitor = new LastCommitVisitor(metricRepository, measureRepository, scmInfoRepository);
+    ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+    try {
+      VisitorsCrawler underTest = new VisitorsCrawler(Lists.<ComponentVisitor>newArrayList(visitor), forkJoinPool);
+      underTest.visit(project);
+
+      assertThat(underTest.getParallelSpeedups()).containsKey(visitor);
+    } finally {
+      forkJoinPool.shutdown();
+    }
+
+    for (int i = 1; i <= nbOfFiles; i++) {
+      assertDate(10_000 + i, 1_000_000_000_000L + i);
+    }
+    assertDate(DIR_1_REF, 1_000_000_000_000L + nbOfFiles);
+    assertDate(DIR_2_REF, 1_000_000_000_000L + nbOfFiles - 1);
+    assertDate(MODULE_REF, 1_000_000_000_000L + nbOfFiles);
+    assertDate(PROJECT_REF, 1_000_000_000_000L + nbOfFiles);
+  }
+
   @Test
   public void aggregate_date_of_last_commit_to_views() {
     final int VIEW_REF = 1;
@@ -231,6 +258,14 @@ public class LastCommitVisitorTest {
     assertThat(measure.get().getLongValue()).isEqualTo(expectedDate);
   }
 
+  private static Changeset newChangeset(long date) {
+    return Changeset.newChangesetBuilder()
+      .setAuthor("john")
+      .setDate(date)
+      .setRevision("rev-" + date)
+      .build();
+  }
+
   private ReportComponent createFileComponent(int fileRef) {
     return ReportComponent.builder(FILE, fileRef).setFileAttributes(new FileAttributes(false, "js")).build();
   }
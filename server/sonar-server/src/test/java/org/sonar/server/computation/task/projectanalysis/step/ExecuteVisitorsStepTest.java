@@ -20,14 +20,18 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.Settings;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.component.ThreadSafeFileVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryRule;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
@@ -35,6 +39,7 @@ import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepositoryRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.sonar.api.measures.CoreMetrics.NCLOC;
 import static org.sonar.api.measures.CoreMetrics.NCLOC_KEY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
@@ -65,6 +70,8 @@ public class ExecuteVisitorsStepTest {
   @Rule
   public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
 
+  private Settings settings = new Settings();
+
   @Before
   public void setUp() throws Exception {
     treeRootHolder.setRoot(
@@ -83,7 +90,7 @@ public class ExecuteVisitorsStepTest {
 
   @Test
   public void execute_with_type_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, Arrays.<ComponentVisitor>asList(new TestTypeAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, Arrays.<ComponentVisitor>asList(new TestTypeAwareVisitor()), settings);
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(2));
@@ -102,7 +109,7 @@ public class ExecuteVisitorsStepTest {
 
   @Test
   public void execute_with_path_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, Arrays.<ComponentVisitor>asList(new TestPathAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, Arrays.<ComponentVisitor>asList(new TestPathAwareVisitor()), settings);
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(1));
@@ -116,6 +123,50 @@ public class ExecuteVisitorsStepTest {
     assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(2);
   }
 
+  @Test
+  public void execute_with_thread_safe_visitor_and_file_parallelism() throws Exception {
+    settings.setProperty(ExecuteVisitorsStep.FILE_VISIT_PARALLELISM_PROPERTY, 4);
+    TestThreadSafeVisitor threadSafeVisitor = new TestThreadSafeVisitor();
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, Arrays.<ComponentVisitor>asList(threadSafeVisitor, new TestPathAwareVisitor()),
+      settings);
+
+    measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
+    measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(2));
+
+    underStep.execute();
+
+    assertThat(threadSafeVisitor.nclocByRef).containsOnly(
+      entry(FILE_1_REF, 1), entry(FILE_2_REF, 2), entry(DIRECTORY_REF, 3), entry(MODULE_REF, 3), entry(ROOT_REF, 3));
+    assertThat(measureRepository.getAddedRawMeasure(DIRECTORY_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(3);
+    assertThat(measureRepository.getAddedRawMeasure(ROOT_REF, TEST_METRIC_KEY).get().getIntValue()).isEqualTo(3);
+  }
+
+  private class TestThreadSafeVisitor extends TypeAwareVisitorAdapter implements ThreadSafeFileVisitor {
+    private final Map<Integer, Integer> nclocByRef = new ConcurrentHashMap<>();
+
+    public TestThreadSafeVisitor() {
+      super(CrawlerDepthLimit.FILE, ComponentVisitor.Order.POST_ORDER);
+    }
+
+    @Override
+    public void visitAny(Component any) {
+      if (any.getType() == FILE) {
+        return;
+      }
+      int sum = 0;
+      for (Component child : any.getChildren()) {
+        sum += nclocByRef.get(child.getReportAttributes().getRef());
+      }
+      nclocByRef.put(any.getReportAttributes().getRef(), sum);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      int ncloc = measureRepository.getRawMeasure(file, metricRepository.getByKey(NCLOC_KEY)).get().getIntValue();
+      nclocByRef.put(file.getReportAttributes().getRef(), ncloc);
+    }
+  }
+
   private class TestTypeAwareVisitor extends TypeAwareVisitorAdapter {
 
     public TestTypeAwareVisitor() {
@@ -26,6 +26,7 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
@@ -35,12 +36,15 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectCloneIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class PersistCrossProjectDuplicationIndexStepTest {
@@ -72,11 +76,16 @@ public class PersistCrossProjectDuplicationIndexStepTest {
 
   DbClient dbClient = dbTester.getDbClient();
 
-  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(crossProjectDuplicationStatusHolder, dbClient, treeRootHolder, analysisMetadataHolder, reportReader);
+  CrossProjectCloneIndex cloneIndex = mock(CrossProjectCloneIndex.class);
+  CrossProjectCloneIndex.Appender cloneIndexAppender = mock(CrossProjectCloneIndex.Appender.class);
+
+  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(crossProjectDuplicationStatusHolder, dbClient, treeRootHolder, analysisMetadataHolder, reportReader,
+    cloneIndex);
 
   @Before
   public void setUp() throws Exception {
     analysisMetadataHolder.setUuid(ANALYSIS_UUID);
+    when(cloneIndex.newAppender(ANALYSIS_UUID)).thenReturn(cloneIndexAppender);
   }
 
   @Test
@@ -95,6 +104,18 @@ public class PersistCrossProjectDuplicationIndexStepTest {
     assertThat(dto.get("ANALYSIS_UUID")).isEqualTo(ANALYSIS_UUID);
   }
 
+  @Test
+  public void append_cpd_text_blocks_to_clone_index_once_persisted() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    reportReader.putDuplicationBlocks(FILE_REF, singletonList(CPD_TEXT_BLOCK));
+
+    underTest.execute();
+
+    InOrder inOrder = inOrder(cloneIndexAppender);
+    inOrder.verify(cloneIndexAppender).add(null, FILE.getUuid(), CPD_TEXT_BLOCK.getHash(), 0, 30, 45);
+    inOrder.verify(cloneIndexAppender).commit();
+  }
+
   @Test
   public void persist_many_cpd_text_blocks() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
@@ -135,6 +156,7 @@ public class PersistCrossProjectDuplicationIndexStepTest {
     underTest.execute();
 
     assertThat(dbTester.countRowsOfTable("duplications_index")).isEqualTo(0);
+    verifyZeroInteractions(cloneIndex);
   }
 
 }
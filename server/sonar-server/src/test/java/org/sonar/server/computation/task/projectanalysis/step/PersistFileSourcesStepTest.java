@@ -321,6 +321,94 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(past);
   }
 
+  @Test
+  public void persist_input_hash_when_scanner_provides_line_data_hashes() {
+    initBasicReport(1);
+    putLineDataHashes("SOURCE_HASH");
+
+    underTest.execute();
+
+    assertThat(selectFileSource().getInputHash()).hasSize(32);
+  }
+
+  @Test
+  public void no_input_hash_when_scanner_does_not_provide_line_data_hashes() {
+    initBasicReport(1);
+
+    underTest.execute();
+
+    assertThat(selectFileSource().getInputHash()).isNull();
+  }
+
+  @Test
+  public void skip_file_when_input_hash_has_not_changed() {
+    initBasicReport(1);
+    putLineDataHashes("SOURCE_HASH");
+    underTest.execute();
+    FileSourceDto previous = selectFileSource();
+
+    // data of report is not read, so coverage is ignored as long as the fingerprints are the same
+    reportReader.putCoverage(FILE_REF, newArrayList(ScannerReport.LineCoverage.newBuilder().setLine(1).setUtHits(true).build()));
+    when(system2.now()).thenReturn(NOW + 1);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = selectFileSource();
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+    assertThat(fileSourceDto.getDataHash()).isEqualTo(previous.getDataHash());
+    assertThat(fileSourceDto.getSourceData().getLines(0).hasUtLineHits()).isFalse();
+  }
+
+  @Test
+  public void rebuild_file_when_line_data_hashes_changed() {
+    initBasicReport(1);
+    putLineDataHashes("SOURCE_HASH");
+    underTest.execute();
+    String previousInputHash = selectFileSource().getInputHash();
+
+    reportReader.putCoverage(FILE_REF, newArrayList(ScannerReport.LineCoverage.newBuilder().setLine(1).setUtHits(true).build()));
+    reportReader.putLineDataHashes(ScannerReport.LineDataHashes.newBuilder()
+      .setComponentRef(FILE_REF)
+      .setSource("SOURCE_HASH")
+      .setCoverages("COVERAGE_HASH")
+      .build());
+    when(system2.now()).thenReturn(NOW + 1);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = selectFileSource();
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1);
+    assertThat(fileSourceDto.getInputHash()).isNotEqualTo(previousInputHash);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getUtLineHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void rebuild_file_when_duplications_changed() {
+    initBasicReport(2);
+    putLineDataHashes("SOURCE_HASH");
+    underTest.execute();
+
+    duplicationRepository.add(FILE_REF, new Duplication(new TextBlock(1, 1), Arrays.<Duplicate>asList(new InnerDuplicate(new TextBlock(2, 2)))));
+    when(system2.now()).thenReturn(NOW + 1);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = selectFileSource();
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getDuplicationList()).hasSize(1);
+  }
+
+  @Test
+  public void update_sources_when_input_hash_is_missing() {
+    initBasicReport(1);
+    underTest.execute();
+
+    putLineDataHashes("SOURCE_HASH");
+    when(system2.now()).thenReturn(NOW + 1);
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = selectFileSource();
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1);
+    assertThat(fileSourceDto.getInputHash()).isNotNull();
+  }
+
   @Test
   public void update_sources_when_source_updated() {
     // Existing sources
@@ -464,6 +552,22 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  /**
+   * Selects in a new session, as the test session caches results of previous selects
+   */
+  private FileSourceDto selectFileSource() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, FILE_UUID);
+    }
+  }
+
+  private void putLineDataHashes(String sourceHash) {
+    reportReader.putLineDataHashes(ScannerReport.LineDataHashes.newBuilder()
+      .setComponentRef(FILE_REF)
+      .setSource(sourceHash)
+      .build());
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -78,6 +79,8 @@ public class ReportComputeMeasureVariationsStepTest {
   @Rule
   public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
 
+  Settings settings = new Settings();
+
   DbSession session = dbTester.getSession();
 
   DbClient dbClient = dbTester.getDbClient();
@@ -89,7 +92,7 @@ public class ReportComputeMeasureVariationsStepTest {
     dbClient.componentDao().insert(session, PROJECT_DTO);
     session.commit();
 
-    underTest = new ComputeMeasureVariationsStep(dbClient, treeRootHolder, periodsHolder, metricRepository, measureRepository);
+    underTest = new ComputeMeasureVariationsStep(dbClient, treeRootHolder, periodsHolder, metricRepository, measureRepository, settings);
   }
 
   @Test
@@ -312,6 +315,86 @@ public class ReportComputeMeasureVariationsStepTest {
     assertThat(measureRepository.getRawMeasure(PROJECT, NEW_DEBT).get().getVariations().getVariation1()).isEqualTo(10d);
   }
 
+  @Test
+  public void set_variation_when_bulk_loading_is_disabled() {
+    settings.setProperty(ComputeMeasureVariationsStep.BULK_LOADING_PROPERTY, false);
+    underTest = new ComputeMeasureVariationsStep(dbClient, treeRootHolder, periodsHolder, metricRepository, measureRepository, settings);
+
+    SnapshotDto period1Snapshot = newAnalysis(PROJECT_DTO);
+    SnapshotDto period2Snapshot = newAnalysis(PROJECT_DTO);
+    dbClient.snapshotDao().insert(session, period1Snapshot, period2Snapshot);
+    ComponentDto directoryDto = ComponentTesting.newDirectory(PROJECT_DTO, "dir");
+    dbClient.componentDao().insert(session, directoryDto);
+    dbClient.measureDao().insert(session,
+      newMeasureDto(ISSUES_METRIC.getId(), PROJECT_DTO.uuid(), period1Snapshot.getUuid(), 60d),
+      newMeasureDto(ISSUES_METRIC.getId(), PROJECT_DTO.uuid(), period2Snapshot.getUuid(), 50d),
+      newMeasureDto(ISSUES_METRIC.getId(), directoryDto.uuid(), period1Snapshot.getUuid(), 10d));
+    session.commit();
+
+    periodsHolder.setPeriods(newPeriod(1, period1Snapshot), newPeriod(2, period2Snapshot));
+
+    Component directory = ReportComponent.builder(Component.Type.DIRECTORY, 2).setUuid(directoryDto.uuid()).build();
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_DTO.uuid()).addChildren(directory).build();
+    treeRootHolder.setRoot(project);
+
+    addRawMeasure(project, ISSUES_METRIC, newMeasureBuilder().create(80, null));
+    addRawMeasure(directory, ISSUES_METRIC, newMeasureBuilder().create(20, null));
+
+    underTest.execute();
+
+    assertThat(measureRepository.getRawMeasure(project, ISSUES_METRIC).get().getVariations().getVariation1()).isEqualTo(20d);
+    assertThat(measureRepository.getRawMeasure(project, ISSUES_METRIC).get().getVariations().getVariation2()).isEqualTo(30d);
+    assertThat(measureRepository.getRawMeasure(directory, ISSUES_METRIC).get().getVariations().getVariation1()).isEqualTo(10d);
+    assertThat(measureRepository.getRawMeasure(directory, ISSUES_METRIC).get().getVariations().getVariation2()).isEqualTo(20d);
+  }
+
+  @Test
+  public void set_variations_of_periods_sharing_the_same_analysis() {
+    SnapshotDto period1Snapshot = newAnalysis(PROJECT_DTO);
+    dbClient.snapshotDao().insert(session, period1Snapshot);
+    dbClient.measureDao().insert(session, newMeasureDto(ISSUES_METRIC.getId(), PROJECT_DTO.uuid(), period1Snapshot.getUuid(), 60d));
+    session.commit();
+
+    periodsHolder.setPeriods(newPeriod(1, period1Snapshot), newPeriod(3, period1Snapshot));
+    treeRootHolder.setRoot(PROJECT);
+    addRawMeasure(PROJECT, ISSUES_METRIC, newMeasureBuilder().create(80, null));
+
+    underTest.execute();
+
+    MeasureVariations variations = measureRepository.getRawMeasure(PROJECT, ISSUES_METRIC).get().getVariations();
+    assertThat(variations.getVariation1()).isEqualTo(20d);
+    assertThat(variations.hasVariation2()).isFalse();
+    assertThat(variations.getVariation3()).isEqualTo(20d);
+  }
+
+  @Test
+  public void ignore_past_measures_of_components_which_are_not_in_tree() {
+    SnapshotDto period1Snapshot = newAnalysis(PROJECT_DTO);
+    dbClient.snapshotDao().insert(session, period1Snapshot);
+    ComponentDto removedDirectoryDto = ComponentTesting.newDirectory(PROJECT_DTO, "removed");
+    ComponentDto directoryDto = ComponentTesting.newDirectory(PROJECT_DTO, "dir");
+    dbClient.componentDao().insert(session, removedDirectoryDto, directoryDto);
+    dbClient.measureDao().insert(session,
+      newMeasureDto(ISSUES_METRIC.getId(), PROJECT_DTO.uuid(), period1Snapshot.getUuid(), 60d),
+      newMeasureDto(ISSUES_METRIC.getId(), removedDirectoryDto.uuid(), period1Snapshot.getUuid(), 50d),
+      newMeasureDto(ISSUES_METRIC.getId(), directoryDto.uuid(), period1Snapshot.getUuid(), 10d));
+    session.commit();
+
+    periodsHolder.setPeriods(newPeriod(1, period1Snapshot));
+
+    Component directory = ReportComponent.builder(Component.Type.DIRECTORY, 2).setUuid(directoryDto.uuid()).build();
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_DTO.uuid()).addChildren(directory).build();
+    treeRootHolder.setRoot(project);
+
+    addRawMeasure(project, ISSUES_METRIC, newMeasureBuilder().create(80, null));
+    addRawMeasure(directory, ISSUES_METRIC, newMeasureBuilder().create(20, null));
+
+    underTest.execute();
+
+    assertThat(measureRepository.getRawMeasure(project, ISSUES_METRIC).get().getVariations().getVariation1()).isEqualTo(20d);
+    assertThat(measureRepository.getRawMeasure(directory, ISSUES_METRIC).get().getVariations().getVariation1()).isEqualTo(10d);
+  }
+
   private static MeasureDto newMeasureDto(int metricId, String componentUuid, String analysisUuid, double value) {
     return new MeasureDto()
       .setMetricId(metricId)
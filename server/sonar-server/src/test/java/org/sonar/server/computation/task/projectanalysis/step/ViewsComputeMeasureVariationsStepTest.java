@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -76,6 +77,8 @@ public class ViewsComputeMeasureVariationsStepTest {
   @Rule
   public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
 
+  Settings settings = new Settings();
+
   DbSession session = dbTester.getSession();
 
   DbClient dbClient = dbTester.getDbClient();
@@ -87,7 +90,7 @@ public class ViewsComputeMeasureVariationsStepTest {
     dbClient.componentDao().insert(session, VIEW_DTO);
     session.commit();
 
-    underTest = new ComputeMeasureVariationsStep(dbClient, treeRootHolder, periodsHolder, metricRepository, measureRepository);
+    underTest = new ComputeMeasureVariationsStep(dbClient, treeRootHolder, periodsHolder, metricRepository, measureRepository, settings);
   }
 
   @Test
@@ -83,6 +83,58 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void increase_flush_size_when_bulk_requests_are_fast() {
+    BulkIndexerStats stats = new BulkIndexerStats();
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500)
+      .setAdaptiveFlushSize(true)
+      .setStats(stats);
+    indexer.start();
+    for (int i = 0; i < 100; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(100);
+    assertThat(indexer.getFlushByteSize()).isGreaterThan(500L).isLessThanOrEqualTo(4_000L);
+    assertThat(stats.getFlushByteSize()).isEqualTo(indexer.getFlushByteSize());
+  }
+
+  @Test
+  public void flush_size_does_not_change_by_default() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 100; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(100);
+    assertThat(indexer.getFlushByteSize()).isEqualTo(500L);
+  }
+
+  @Test
+  public void update_stats() {
+    BulkIndexerStats stats = new BulkIndexerStats();
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500)
+      .setStats(stats);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(stats.getIndexedDocs()).isEqualTo(10L);
+    assertThat(stats.getFailedDocs()).isZero();
+    assertThat(stats.getRejectedRequests()).isZero();
+    assertThat(stats.getIndexedBytes()).isPositive();
+    assertThat(stats.getDocsPerSecond()).isPositive();
+    assertThat(stats.getBytesPerSecond()).isPositive();
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
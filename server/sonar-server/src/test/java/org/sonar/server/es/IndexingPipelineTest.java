@@ -0,0 +1,156 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexingPipelineTest {
+
+  @Rule
+  public EsTester esTester = new EsTester(new FakeIndexDefinition());
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  BulkIndexerStats stats = new BulkIndexerStats();
+  BulkIndexer bulk = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX).setStats(stats);
+
+  @Test
+  public void index_nothing() {
+    bulk.start();
+    newPipeline().run(IntStream.range(0, 0).iterator(), bulk);
+    bulk.stop();
+
+    assertThat(count()).isEqualTo(0);
+    assertThat(stats.getQueueDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void index_documents_with_multiple_workers() {
+    bulk.setFlushByteSize(500);
+    bulk.start();
+    newPipeline().setWorkers(3).run(IntStream.range(0, 1_234).iterator(), bulk);
+    bulk.stop();
+
+    assertThat(count()).isEqualTo(1_234);
+    assertThat(stats.getIndexedDocs()).isEqualTo(1_234);
+    assertThat(stats.getIndexedBytes()).isPositive();
+    assertThat(stats.getQueueDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void propagate_failure_of_conversion_to_requests() {
+    IndexingPipeline<Integer> underTest = new IndexingPipeline<>("test", stats, i -> {
+      if (i == 150) {
+        throw new IllegalArgumentException("Bad document " + i);
+      }
+      return newIndexRequest(i);
+    });
+    bulk.start();
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Bad document 150");
+
+    underTest.run(IntStream.range(0, 1_000).iterator(), bulk);
+  }
+
+  @Test
+  public void propagate_failure_of_source_iterator() {
+    Iterator<Integer> docs = new Iterator<Integer>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public Integer next() {
+        i++;
+        if (i == 250) {
+          throw new IllegalStateException("Fail to read row " + i);
+        }
+        return i;
+      }
+    };
+    bulk.start();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to read row 250");
+
+    newPipeline().run(docs, bulk);
+  }
+
+  @Test
+  public void propagate_error_of_source_iterator() {
+    Iterator<Integer> docs = new Iterator<Integer>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public Integer next() {
+        i++;
+        if (i == 250) {
+          throw new OutOfMemoryError("Fail to read row " + i);
+        }
+        return i;
+      }
+    };
+    bulk.start();
+
+    expectedException.expect(OutOfMemoryError.class);
+    expectedException.expectMessage("Fail to read row 250");
+
+    newPipeline().run(docs, bulk);
+  }
+
+  @Test
+  public void fail_if_workers_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of workers must be strictly positive");
+
+    newPipeline().setWorkers(0);
+  }
+
+  private IndexingPipeline<Integer> newPipeline() {
+    return new IndexingPipeline<>("test", stats, IndexingPipelineTest::newIndexRequest);
+  }
+
+  private long count() {
+    return esTester.countDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE);
+  }
+
+  private static IndexRequest newIndexRequest(int intField) {
+    return new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)
+      .source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, intField));
+  }
+}
@@ -81,6 +81,13 @@ public class ActionServiceTest {
     assertThat(underTest.listAvailableActions(issue.toDefaultIssue())).containsOnly("comment", "assign", "set_tags", "set_type", "assign_to_me", "set_severity");
   }
 
+  @Test
+  public void return_set_severity_when_issue_admin_according_to_loaded_permissions() {
+    assertThat(underTest.listAvailableActions(issue.toDefaultIssue(), (permission, projectUuid) -> ISSUE_ADMIN.equals(permission) && PROJECT_UUID.equals(projectUuid)))
+      .contains("set_severity");
+    assertThat(underTest.listAvailableActions(issue.toDefaultIssue(), (permission, projectUuid) -> false)).doesNotContain("set_severity");
+  }
+
   @Test
   public void return_no_actions_when_not_logged() {
     userSession.anonymous();
@@ -0,0 +1,175 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.security.DefaultGroups;
+import org.sonar.api.utils.System2;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.server.es.BulkIndexerStats;
+import org.sonar.server.es.EsTester;
+import org.sonar.server.es.SearchOptions;
+import org.sonar.server.es.SearchResult;
+import org.sonar.server.issue.IssueQuery;
+import org.sonar.server.issue.IssueTesting;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.view.index.ViewIndexDefinition;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueFacetCacheTest {
+
+  @Rule
+  public EsTester tester = new EsTester(new IssueIndexDefinition(new Settings()), new ViewIndexDefinition(new Settings()));
+
+  @Rule
+  public UserSessionRule userSessionRule = UserSessionRule.standalone();
+
+  System2 system = mock(System2.class);
+  IssueIndexer issueIndexer;
+  IssueAuthorizationIndexer issueAuthorizationIndexer;
+  ComponentDto file = ComponentTesting.newFileDto(ComponentTesting.newProjectDto());
+
+  @Before
+  public void setUp() {
+    issueIndexer = new IssueIndexer(null, tester.client(), new BulkIndexerStats());
+    issueAuthorizationIndexer = new IssueAuthorizationIndexer(null, tester.client());
+    when(system.getDefaultTimeZone()).thenReturn(TimeZone.getTimeZone("GMT"));
+    when(system.now()).thenReturn(System.currentTimeMillis());
+  }
+
+  @Test
+  public void facets_are_served_from_cache_until_index_is_refreshed() {
+    IssueFacetCache underTest = new IssueFacetCache(tester.client(), new Settings());
+    IssueIndex index = newIndex(underTest);
+    indexIssues(
+      IssueTesting.newDoc("ISSUE1", file).setSeverity(Severity.INFO),
+      IssueTesting.newDoc("ISSUE2", file).setSeverity(Severity.MAJOR));
+
+    assertThat(searchSeverities(index)).containsOnly(entry("INFO", 1L), entry("MAJOR", 1L));
+    assertThat(searchSeverities(index)).containsOnly(entry("INFO", 1L), entry("MAJOR", 1L));
+    assertThat(underTest.getMisses()).isEqualTo(1L);
+    assertThat(underTest.getHits()).isEqualTo(1L);
+    assertThat(underTest.getHitRatio()).isEqualTo(0.5d);
+    assertThat(underTest.size()).isEqualTo(1L);
+
+    indexIssues(IssueTesting.newDoc("ISSUE3", file).setSeverity(Severity.MAJOR));
+
+    assertThat(searchSeverities(index)).containsOnly(entry("INFO", 1L), entry("MAJOR", 2L));
+    assertThat(underTest.getMisses()).isEqualTo(2L);
+    assertThat(underTest.getHits()).isEqualTo(1L);
+    assertThat(underTest.getInvalidations()).isEqualTo(1L);
+  }
+
+  @Test
+  public void only_missing_facets_are_computed() {
+    IssueFacetCache underTest = new IssueFacetCache(tester.client(), new Settings());
+    IssueIndex index = newIndex(underTest);
+    indexIssues(IssueTesting.newDoc("ISSUE1", file).setSeverity(Severity.INFO).setStatus("OPEN"));
+
+    index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions().addFacets(newArrayList("severities")));
+    SearchResult<IssueDoc> result = index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions().addFacets(newArrayList("statuses", "severities")));
+
+    assertThat(result.getFacets().getNames()).containsExactly("severities", "statuses");
+    assertThat(result.getFacets().get("severities")).containsOnly(entry("INFO", 1L));
+    assertThat(result.getFacets().get("statuses")).containsOnly(entry("OPEN", 1L));
+    assertThat(underTest.getStatsByFacet().get("severities").getHits()).isEqualTo(1L);
+    assertThat(underTest.getStatsByFacet().get("severities").getMisses()).isEqualTo(1L);
+    assertThat(underTest.getStatsByFacet().get("statuses").getHits()).isEqualTo(0L);
+    assertThat(underTest.getStatsByFacet().get("statuses").getMisses()).isEqualTo(1L);
+  }
+
+  @Test
+  public void cached_facets_are_not_modified_by_callers() {
+    IssueFacetCache underTest = new IssueFacetCache(tester.client(), new Settings());
+    IssueIndex index = newIndex(underTest);
+    indexIssues(IssueTesting.newDoc("ISSUE1", file).setSeverity(Severity.INFO));
+
+    searchSeverities(index).put("BLOCKER", 0L);
+    searchSeverities(index).put("CRITICAL", 0L);
+
+    assertThat(searchSeverities(index)).containsOnly(entry("INFO", 1L));
+    assertThat(underTest.getHits()).isEqualTo(2L);
+  }
+
+  @Test
+  public void cache_is_disabled_when_max_entries_is_zero() {
+    Settings settings = new Settings();
+    settings.setProperty(IssueFacetCache.PROPERTY_MAX_ENTRIES, 0);
+    IssueFacetCache underTest = new IssueFacetCache(tester.client(), settings);
+    IssueIndex index = newIndex(underTest);
+    indexIssues(IssueTesting.newDoc("ISSUE1", file).setSeverity(Severity.INFO));
+
+    assertThat(searchSeverities(index)).containsOnly(entry("INFO", 1L));
+    assertThat(searchSeverities(index)).containsOnly(entry("INFO", 1L));
+    assertThat(underTest.getHits()).isZero();
+    assertThat(underTest.getMisses()).isZero();
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  public void query_key_does_not_depend_on_order_of_values() {
+    IssueQuery query = IssueQuery.builder(userSessionRule).severities(newArrayList("INFO", "MAJOR")).statuses(newArrayList("OPEN")).build();
+    IssueQuery sameQuery = IssueQuery.builder(userSessionRule).severities(newArrayList("MAJOR", "INFO")).statuses(newArrayList("OPEN")).build();
+    IssueQuery otherQuery = IssueQuery.builder(userSessionRule).severities(newArrayList("INFO")).statuses(newArrayList("MAJOR", "OPEN")).build();
+
+    assertThat(IssueFacetCache.queryKey(query, null)).isEqualTo(IssueFacetCache.queryKey(sameQuery, null));
+    assertThat(IssueFacetCache.queryKey(query, null)).isNotEqualTo(IssueFacetCache.queryKey(otherQuery, null));
+    assertThat(IssueFacetCache.queryKey(query, null)).isNotEqualTo(IssueFacetCache.queryKey(query, "john"));
+  }
+
+  @Test
+  public void query_key_depends_on_groups_of_user() {
+    userSessionRule.login("john").setUserGroups("sonar-users");
+    IssueQuery query = IssueQuery.builder(userSessionRule).build();
+    userSessionRule.login("john").setUserGroups("sonar-users", "sonar-administrators");
+    IssueQuery adminQuery = IssueQuery.builder(userSessionRule).build();
+
+    assertThat(IssueFacetCache.queryKey(query, "john")).isNotEqualTo(IssueFacetCache.queryKey(adminQuery, "john"));
+  }
+
+  private IssueIndex newIndex(IssueFacetCache cache) {
+    return new IssueIndex(tester.client(), system, userSessionRule, cache);
+  }
+
+  private Map<String, Long> searchSeverities(IssueIndex index) {
+    SearchResult<IssueDoc> result = index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions().addFacets(newArrayList("severities")));
+    return result.getFacets().get("severities");
+  }
+
+  private void indexIssues(IssueDoc... issues) {
+    issueIndexer.index(Arrays.asList(issues).iterator());
+    for (IssueDoc issue : issues) {
+      issueAuthorizationIndexer.index(newArrayList(new IssueAuthorizationDao.Dto(issue.projectUuid(), 1).addGroup(DefaultGroups.ANYONE)));
+    }
+  }
+}
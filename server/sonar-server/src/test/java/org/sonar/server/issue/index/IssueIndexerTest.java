@@ -34,6 +34,7 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
+import org.sonar.server.es.BulkIndexerStats;
 import org.sonar.server.es.EsTester;
 
 import static java.util.Arrays.asList;
@@ -165,7 +166,7 @@ public class IssueIndexerTest {
   }
 
   private IssueIndexer createIndexer() {
-    IssueIndexer indexer = new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client());
+    IssueIndexer indexer = new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client(), new BulkIndexerStats());
     indexer.setEnabled(true);
     return indexer;
   }
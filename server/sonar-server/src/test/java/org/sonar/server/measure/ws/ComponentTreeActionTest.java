@@ -282,6 +282,72 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(4);
   }
 
+  @Test
+  public void sort_by_metric_value_with_best_value_and_paginated() {
+    ComponentDto project = newProjectDto("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(project);
+    ComponentDto directory = componentDb.insertComponent(newDirectory(project, "directory-uuid", "path/to/directory"));
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(directory, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(directory, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(directory, "file-uuid-3"));
+    MetricDto violations = newMetricDtoWithoutOptimization().setKey("violations").setValueType(ValueType.INT.name())
+      .setOptimizedBestValue(true).setBestValue(0d);
+    dbClient.metricDao().insert(dbSession, violations);
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(violations, file1, projectSnapshot).setValue(5.0d),
+      newMeasureDto(violations, file3, projectSnapshot).setValue(3.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, project.uuid())
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(PARAM_METRIC_SORT, "violations")
+      .setParam(PARAM_METRIC_KEYS, "violations")
+      .setParam(Param.PAGE, "1")
+      .setParam(Param.PAGE_SIZE, "3"));
+
+    // file 2 has the best value, directory has no measure
+    assertThat(response.getComponentsList()).extracting("id").containsExactly(file2.uuid(), file3.uuid(), file1.uuid());
+    assertThat(response.getComponentsList().get(0).getMeasures(0).getValue()).isEqualTo("0");
+    assertThat(response.getPaging().getTotal()).isEqualTo(4);
+
+    response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, project.uuid())
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(PARAM_METRIC_SORT, "violations")
+      .setParam(PARAM_METRIC_KEYS, "violations")
+      .setParam(Param.PAGE, "2")
+      .setParam(Param.PAGE_SIZE, "3"));
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly(directory.uuid());
+  }
+
+  @Test
+  public void sort_by_textual_metric_value() {
+    ComponentDto project = newProjectDto("project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(project);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(project, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(project, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(project, "file-uuid-3"));
+    MetricDto language = newMetricDtoWithoutOptimization().setKey("language").setValueType(ValueType.STRING.name());
+    dbClient.metricDao().insert(dbSession, language);
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(language, file1, projectSnapshot).setData("xoo"),
+      newMeasureDto(language, file2, projectSnapshot).setData("java"),
+      newMeasureDto(language, file3, projectSnapshot).setData("js"));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, project.uuid())
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(PARAM_METRIC_SORT, "language")
+      .setParam(PARAM_METRIC_KEYS, "language")
+      .setParam(Param.PAGE_SIZE, "2"));
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly(file2.uuid(), file3.uuid());
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+  }
+
   @Test
   public void remove_components_without_measure_on_the_metric_sort() {
     ComponentDto project = newProjectDto("project-uuid");
@@ -0,0 +1,148 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notification;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.notifications.NotificationChannel;
+import org.sonar.server.notification.BatchNotificationChannel.Delivery;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChannelDeliveryQueueTest {
+
+  private Notification notification = new Notification("foo");
+  private NotificationDeliveryStats stats = new NotificationDeliveryStats();
+
+  @Test
+  public void queued_deliveries_are_delivered_in_batches() throws Exception {
+    FakeBatchChannel channel = new FakeBatchChannel();
+    ChannelDeliveryQueue underTest = new ChannelDeliveryQueue(channel, stats, 2, 0d, 10);
+    AtomicInteger callbacks = new AtomicInteger();
+    for (int i = 0; i < 5; i++) {
+      underTest.enqueue(new Delivery(notification, "user" + i), callbacks::incrementAndGet);
+    }
+    assertThat(stats.getPendingDeliveries()).isEqualTo(5L);
+
+    underTest.start("test-channel");
+    assertThat(underTest.stop(10_000L)).isEqualTo(0);
+
+    assertThat(channel.batchSizes).containsExactly(2, 2, 1);
+    assertThat(callbacks.get()).isEqualTo(5);
+    assertThat(stats.getDelivered()).isEqualTo(5L);
+    assertThat(stats.getFailed()).isEqualTo(0L);
+    assertThat(stats.getPendingDeliveries()).isEqualTo(0L);
+    assertThat(stats.getDeliveredByChannel()).containsEntry("FakeBatchChannel", 5L);
+  }
+
+  @Test
+  public void failures_of_batch_channel_are_counted() {
+    FakeBatchChannel channel = new FakeBatchChannel();
+    channel.failures = 1;
+    ChannelDeliveryQueue underTest = new ChannelDeliveryQueue(channel, stats, 10, 0d, 10);
+
+    underTest.deliver(Arrays.asList(new Delivery(notification, "user1"), new Delivery(notification, "user2")));
+
+    assertThat(stats.getDelivered()).isEqualTo(1L);
+    assertThat(stats.getFailed()).isEqualTo(1L);
+  }
+
+  @Test
+  public void exception_of_batch_channel_fails_all_the_deliveries_of_the_batch() {
+    FakeBatchChannel channel = new FakeBatchChannel();
+    channel.exception = new IllegalStateException("SMTP server is down");
+    ChannelDeliveryQueue underTest = new ChannelDeliveryQueue(channel, stats, 10, 0d, 10);
+
+    underTest.deliver(Arrays.asList(new Delivery(notification, "user1"), new Delivery(notification, "user2")));
+
+    assertThat(stats.getDelivered()).isEqualTo(0L);
+    assertThat(stats.getFailed()).isEqualTo(2L);
+  }
+
+  @Test
+  public void channel_which_does_not_support_batches_delivers_one_by_one() {
+    NotificationChannel channel = mock(NotificationChannel.class);
+    when(channel.getKey()).thenReturn("gtalk");
+    doThrow(new IllegalStateException("unreachable")).when(channel).deliver(notification, "user2");
+    ChannelDeliveryQueue underTest = new ChannelDeliveryQueue(channel, stats, 10, 0d, 10);
+
+    underTest.deliver(Arrays.asList(new Delivery(notification, "user1"), new Delivery(notification, "user2"), new Delivery(notification, "user3")));
+
+    verify(channel).deliver(notification, "user1");
+    verify(channel).deliver(notification, "user3");
+    assertThat(stats.getDeliveredByChannel()).containsEntry("gtalk", 2L);
+    assertThat(stats.getFailedByChannel()).containsEntry("gtalk", 1L);
+  }
+
+  @Test
+  public void deliveries_are_rate_limited() {
+    FakeBatchChannel channel = new FakeBatchChannel();
+    ChannelDeliveryQueue underTest = new ChannelDeliveryQueue(channel, stats, 10, 20d, 10);
+
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 4; i++) {
+      underTest.deliver(Arrays.asList(new Delivery(notification, "user" + i)));
+    }
+
+    // 20 deliveries per second: 50ms between each delivery
+    assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(140L);
+    assertThat(stats.getDelivered()).isEqualTo(4L);
+  }
+
+  @Test
+  public void deliveries_which_are_still_queued_when_stopped_are_dropped() throws Exception {
+    ChannelDeliveryQueue underTest = new ChannelDeliveryQueue(new FakeBatchChannel(), stats, 10, 0d, 10);
+    AtomicInteger callbacks = new AtomicInteger();
+    underTest.enqueue(new Delivery(notification, "user1"), callbacks::incrementAndGet);
+    underTest.enqueue(new Delivery(notification, "user2"), callbacks::incrementAndGet);
+
+    assertThat(underTest.stop(10L)).isEqualTo(2);
+    assertThat(callbacks.get()).isEqualTo(0);
+    assertThat(stats.getPendingDeliveries()).isEqualTo(0L);
+  }
+
+  private static class FakeBatchChannel extends NotificationChannel implements BatchNotificationChannel {
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private int failures = 0;
+    private RuntimeException exception = null;
+
+    @Override
+    public void deliver(Notification notification, String userlogin) {
+      throw new UnsupportedOperationException("Deliveries are batched");
+    }
+
+    @Override
+    public int deliver(List<Delivery> deliveries) {
+      if (exception != null) {
+        throw exception;
+      }
+      batchSizes.add(deliveries.size());
+      return deliveries.size() - failures;
+    }
+  }
+}
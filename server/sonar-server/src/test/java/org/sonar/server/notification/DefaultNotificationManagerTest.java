@@ -41,6 +41,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -106,6 +107,21 @@ public class DefaultNotificationManagerTest {
     inOrder.verify(notificationQueueDao).delete(dtos);
   }
 
+  @Test
+  public void notifications_are_removed_from_queue_only_when_requested() {
+    Notification notification = new Notification("test");
+    NotificationQueueDto dto = NotificationQueueDto.toNotificationQueueDto(notification);
+    List<NotificationQueueDto> dtos = Arrays.asList(dto);
+    when(notificationQueueDao.selectOldest(10)).thenReturn(dtos);
+
+    assertThat(manager.selectOldestFromQueue(10)).containsExactly(dto);
+    assertThat(manager.toNotification(dto).getType()).isEqualTo("test");
+    verify(notificationQueueDao, never()).delete(any(List.class));
+
+    manager.removeFromQueue(dtos);
+    verify(notificationQueueDao).delete(dtos);
+  }
+
   // SONAR-4739
   @Test
   public void shouldNotFailWhenUnableToDeserialize() throws Exception {
@@ -21,19 +21,27 @@ package org.sonar.server.notification;
 
 import com.google.common.collect.Sets;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.Settings;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.db.DbClient;
+import org.sonar.db.notification.NotificationQueueDto;
 import org.sonar.db.property.PropertiesDao;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static java.util.Collections.singletonList;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyListOf;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.same;
@@ -41,6 +49,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 public class NotificationServiceTest {
   private static String CREATOR_SIMON = "simon";
@@ -49,6 +58,7 @@ public class NotificationServiceTest {
 
   DefaultNotificationManager manager = mock(DefaultNotificationManager.class);
   Notification notification = mock(Notification.class);
+  NotificationQueueDto queuedNotification = new NotificationQueueDto().setId(1L);
   NotificationChannel emailChannel = mock(NotificationChannel.class);
   NotificationChannel gtalkChannel = mock(NotificationChannel.class);
   NotificationDispatcher commentOnIssueAssignedToMe = mock(NotificationDispatcher.class);
@@ -67,7 +77,8 @@ public class NotificationServiceTest {
     when(commentOnIssueCreatedByMe.getType()).thenReturn("issue-changes");
     when(qualityGateChange.getKey()).thenReturn("QGateChange");
     when(qualityGateChange.getType()).thenReturn("qgate-changes");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.selectOldestFromQueue(anyInt())).thenReturn(singletonList(queuedNotification)).thenReturn(Collections.emptyList());
+    when(manager.toNotification(queuedNotification)).thenReturn(notification);
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
@@ -175,7 +186,8 @@ public class NotificationServiceTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks();
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.selectOldestFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception"))
+      .thenReturn(singletonList(queuedNotification)).thenReturn(Collections.emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -198,6 +210,120 @@ public class NotificationServiceTest {
     verify(gtalkChannel, never()).deliver(any(Notification.class), anyString());
   }
 
+  @Test
+  public void deliver_in_calling_thread_when_service_is_not_started() {
+    setUpMocks();
+    NotificationDeliveryStats stats = new NotificationDeliveryStats();
+    service = new NotificationService(new Settings(), manager, dbClient,
+      new NotificationDispatcher[] {commentOnIssueAssignedToMe, commentOnIssueCreatedByMe, qualityGateChange}, stats);
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    doAnswer(addUser(CREATOR_EVGENY, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+
+    service.deliver(notification);
+
+    verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel).deliver(notification, CREATOR_EVGENY);
+    assertThat(stats.getDelivered()).isEqualTo(2L);
+    assertThat(stats.getDeliveredByChannel()).containsEntry("email", 2L);
+  }
+
+  @Test
+  public void deliver_in_batches_to_batch_channels_when_service_is_started() {
+    setUpMocks();
+    NotificationChannel batchChannel = mock(NotificationChannel.class, withSettings().extraInterfaces(BatchNotificationChannel.class));
+    when(batchChannel.getKey()).thenReturn("batch");
+    when(((BatchNotificationChannel) batchChannel).deliver(anyListOf(BatchNotificationChannel.Delivery.class))).thenAnswer(
+      invocation -> ((List) invocation.getArguments()[0]).size());
+    when(manager.selectOldestFromQueue(anyInt())).thenReturn(Collections.emptyList());
+    NotificationDeliveryStats stats = new NotificationDeliveryStats();
+    service = new NotificationService(new Settings().setProperty("sonar.notifications.delay", 1L), manager, dbClient,
+      new NotificationDispatcher[] {commentOnIssueAssignedToMe, commentOnIssueCreatedByMe, qualityGateChange}, stats);
+    doAnswer(addUser(ASSIGNEE_SIMON, batchChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    doAnswer(addUser(CREATOR_EVGENY, batchChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    service.deliver(notification);
+    service.stop();
+
+    verify(batchChannel, never()).deliver(any(Notification.class), anyString());
+    assertThat(stats.getDeliveredByChannel()).containsEntry("batch", 2L);
+    assertThat(stats.getPendingDeliveries()).isEqualTo(0L);
+  }
+
+  @Test
+  public void notifications_of_queue_are_removed_from_queue_once_delivered() {
+    setUpMocks();
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    verify(manager, timeout(2000)).removeFromQueue(singletonList(queuedNotification));
+    service.stop();
+
+    InOrder inOrder = inOrder(emailChannel, manager);
+    inOrder.verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    inOrder.verify(manager).removeFromQueue(singletonList(queuedNotification));
+  }
+
+  @Test
+  public void unreadable_notifications_are_removed_from_queue() {
+    setUpMocks();
+    when(manager.toNotification(queuedNotification)).thenThrow(new IllegalStateException("Unable to read notification"));
+
+    service.start();
+    verify(manager, timeout(2000)).removeFromQueue(singletonList(queuedNotification));
+    service.stop();
+
+    verify(emailChannel, never()).deliver(any(Notification.class), anyString());
+  }
+
+  @Test
+  public void deliver_in_calling_thread_when_service_is_stopped() {
+    setUpMocks();
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    when(manager.selectOldestFromQueue(anyInt())).thenReturn(Collections.emptyList());
+
+    service.start();
+    service.stop();
+    service.deliver(notification);
+
+    verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+  }
+
+  @Test
+  public void deliver_in_calling_thread_on_compute_engine() {
+    setUpMocks();
+    service = new NotificationService(new ComputeEngineSettings(), manager, dbClient,
+      new NotificationDispatcher[] {commentOnIssueAssignedToMe, commentOnIssueCreatedByMe, qualityGateChange});
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    service.deliver(notification);
+
+    // delivered before deliver() returns, not when the service stops
+    verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    service.stop();
+    verify(manager, never()).selectOldestFromQueue(anyInt());
+  }
+
+  @Test
+  public void notification_of_queue_is_left_in_queue_when_enqueue_is_interrupted() {
+    setUpMocks();
+    doAnswer(invocation -> {
+      ((NotificationDispatcher.Context) invocation.getArguments()[1]).addUser(ASSIGNEE_SIMON, emailChannel);
+      // the dispatch thread is interrupted before the delivery is enqueued
+      Thread.currentThread().interrupt();
+      return null;
+    }).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    // the processing of the queue does not wait for the abandoned delivery
+    verify(manager, timeout(2000)).removeFromQueue(Collections.emptyList());
+    service.stop();
+
+    verify(manager, never()).removeFromQueue(singletonList(queuedNotification));
+    verify(emailChannel, never()).deliver(any(Notification.class), anyString());
+  }
+
   @Test
   public void getDispatchers() {
     setUpMocks();
@@ -217,7 +343,10 @@ public class NotificationServiceTest {
   public void shouldLogEvery10Minutes() {
     setUpMocks();
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    NotificationQueueDto otherQueuedNotification = new NotificationQueueDto().setId(2L);
+    when(manager.selectOldestFromQueue(anyInt())).thenReturn(singletonList(queuedNotification)).thenReturn(singletonList(otherQueuedNotification))
+      .thenReturn(Collections.emptyList());
+    when(manager.toNotification(otherQueuedNotification)).thenReturn(notification);
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     service = spy(service);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -244,6 +373,12 @@ public class NotificationServiceTest {
     assertThat(service.hasProjectSubscribersForTypes("PROJECT_UUID", Sets.newHashSet("issue-changes"))).isTrue();
   }
 
+  /**
+   * Settings of the Compute Engine are recognized by their class name
+   */
+  private static class ComputeEngineSettings extends Settings {
+  }
+
   private static Answer<Object> addUser(final String user, final NotificationChannel channel) {
     return addUser(user, new NotificationChannel[]{channel});
   }
@@ -28,12 +28,19 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.config.EmailSettings;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.user.UserFinder;
+import org.sonar.core.user.DefaultUser;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
+import org.sonar.plugins.emailnotifications.api.EmailTemplate;
+import org.sonar.server.notification.BatchNotificationChannel.Delivery;
 import org.subethamail.wiser.Wiser;
 import org.subethamail.wiser.WiserMessage;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.fail;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -185,6 +192,50 @@ public class EmailNotificationChannelTest {
     }
   }
 
+  @Test
+  public void deliver_batch_of_notifications() throws Exception {
+    configure();
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("simon")).thenReturn(new DefaultUser().setLogin("simon").setEmail("simon@nowhere"));
+    when(userFinder.findByLogin("evgeny")).thenReturn(new DefaultUser().setLogin("evgeny").setEmail("evgeny@nowhere"));
+    when(userFinder.findByLogin("noemail")).thenReturn(new DefaultUser().setLogin("noemail"));
+    EmailTemplate template = mock(EmailTemplate.class);
+    Notification notification1 = new Notification("foo").setFieldValue("subject", "first");
+    Notification notification2 = new Notification("foo").setFieldValue("subject", "second");
+    when(template.format(any(Notification.class))).thenAnswer(invocation -> {
+      Notification notification = (Notification) invocation.getArguments()[0];
+      return new EmailMessage().setSubject(notification.getFieldValue("subject")).setMessage("Bar");
+    });
+    underTest = new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+
+    int delivered = underTest.deliver(asList(
+      new Delivery(notification1, "simon"),
+      new Delivery(notification1, "evgeny"),
+      new Delivery(notification2, "simon"),
+      new Delivery(notification2, "noemail"),
+      new Delivery(notification2, "unknown")));
+
+    assertThat(delivered).isEqualTo(5);
+    List<WiserMessage> messages = smtpServer.getMessages();
+    assertThat(messages).extracting(WiserMessage::getEnvelopeReceiver).containsExactly("simon@nowhere", "evgeny@nowhere", "simon@nowhere");
+    assertThat(messages.get(2).getMimeMessage().getHeader("Subject", null)).isEqualTo("[SONARQUBE] second");
+  }
+
+  @Test
+  public void deliver_batch_fails_all_notifications_when_smtp_server_is_down() {
+    configure();
+    smtpServer.stop();
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("simon")).thenReturn(new DefaultUser().setLogin("simon").setEmail("simon@nowhere"));
+    EmailTemplate template = mock(EmailTemplate.class);
+    when(template.format(any(Notification.class))).thenReturn(new EmailMessage().setSubject("Foo").setMessage("Bar"));
+    underTest = new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+
+    int delivered = underTest.deliver(asList(new Delivery(new Notification("foo"), "simon"), new Delivery(new Notification("foo"), "simon")));
+
+    assertThat(delivered).isEqualTo(0);
+  }
+
   private void configure() {
     when(configuration.getSmtpHost()).thenReturn("localhost");
     when(configuration.getSmtpPort()).thenReturn(smtpServer.getServer().getPort());
@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.issue.index.IssueFacetCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueFacetCacheMonitorTest {
+
+  IssueFacetCache cache = mock(IssueFacetCache.class);
+  IssueFacetCacheMonitor underTest = new IssueFacetCacheMonitor(cache);
+
+  @Test
+  public void name_is_not_empty() {
+    assertThat(underTest.name()).isEqualTo("Issue Facets Cache");
+  }
+
+  @Test
+  public void attributes() {
+    when(cache.getHits()).thenReturn(60L);
+    when(cache.getMisses()).thenReturn(40L);
+    when(cache.getHitRatio()).thenReturn(0.6d);
+    when(cache.getInvalidations()).thenReturn(3L);
+    when(cache.getEvictions()).thenReturn(2L);
+    when(cache.size()).thenReturn(10L);
+    when(cache.getStatsByFacet()).thenReturn(Collections.emptyMap());
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes).containsExactly(
+      entry("Hits", 60L),
+      entry("Misses", 40L),
+      entry("Hit Ratio (%)", 60L),
+      entry("Invalidations", 3L),
+      entry("Evictions", 2L),
+      entry("Entries", 10L),
+      entry("Facets", Collections.emptyMap()));
+  }
+}
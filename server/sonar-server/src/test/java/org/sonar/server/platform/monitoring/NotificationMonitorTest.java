@@ -0,0 +1,61 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.notification.NotificationDeliveryStats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NotificationMonitorTest {
+
+  NotificationDeliveryStats stats = mock(NotificationDeliveryStats.class);
+  NotificationMonitor underTest = new NotificationMonitor(stats);
+
+  @Test
+  public void name_is_not_empty() {
+    assertThat(underTest.name()).isEqualTo("Notifications");
+  }
+
+  @Test
+  public void attributes() {
+    when(stats.getDelivered()).thenReturn(10L);
+    when(stats.getFailed()).thenReturn(1L);
+    when(stats.getPendingDeliveries()).thenReturn(5L);
+    when(stats.getQueueLagMs()).thenReturn(3_000L);
+    when(stats.getDeliveredByChannel()).thenReturn(ImmutableMap.of("EmailNotificationChannel", 10L));
+    when(stats.getFailedByChannel()).thenReturn(ImmutableMap.of("EmailNotificationChannel", 1L));
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes).containsExactly(
+      entry("Delivered", 10L),
+      entry("Failed", 1L),
+      entry("Pending Deliveries", 5L),
+      entry("Queue Lag (ms)", 3_000L),
+      entry("Delivered by EmailNotificationChannel", 10L),
+      entry("Failed by EmailNotificationChannel", 1L));
+  }
+}
@@ -36,6 +36,7 @@ import org.sonar.server.authentication.TestIdentityProvider;
 import org.sonar.server.platform.ServerId;
 import org.sonar.server.platform.ServerIdLoader;
 import org.sonar.server.platform.ServerLogging;
+import org.sonar.server.user.PermissionCache;
 import org.sonar.server.user.SecurityRealmFactory;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -60,9 +61,10 @@ public class SonarQubeMonitorTest {
   ServerIdLoader serverIdLoader = mock(ServerIdLoader.class, RETURNS_DEEP_STUBS);
   ServerLogging serverLogging = mock(ServerLogging.class);
   SecurityRealmFactory securityRealmFactory = mock(SecurityRealmFactory.class);
+  PermissionCache permissionCache = mock(PermissionCache.class);
 
   SonarQubeMonitor underTest = new SonarQubeMonitor(settings, securityRealmFactory, identityProviderRepository, server,
-    serverLogging, serverIdLoader);
+    serverLogging, serverIdLoader, permissionCache);
 
   @Before
   public void setUp() throws Exception {
@@ -134,6 +136,17 @@ public class SonarQubeMonitorTest {
     assertThat(attributes).containsEntry("Logs Level", "DEBUG");
   }
 
+  @Test
+  public void get_permission_cache_stats() throws Exception {
+    when(permissionCache.getHits()).thenReturn(12L);
+    when(permissionCache.getMisses()).thenReturn(3L);
+
+    assertThat(underTest.getPermissionCacheHits()).isEqualTo(12L);
+    assertThat(underTest.getPermissionCacheMisses()).isEqualTo(3L);
+    Map<String, Object> attributes = underTest.attributes();
+    assertThat(attributes).containsEntry("Permission Cache Hits", 12L).containsEntry("Permission Cache Misses", 3L);
+  }
+
   @Test
   public void get_realm() throws Exception {
     SecurityRealm realm = mock(SecurityRealm.class);
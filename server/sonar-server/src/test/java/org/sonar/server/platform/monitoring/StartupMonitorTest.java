@@ -0,0 +1,66 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.startup.StartupTimeline;
+import org.sonar.server.startup.StartupTimeline.TaskExecution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StartupMonitorTest {
+
+  StartupTimeline timeline = new StartupTimeline();
+  StartupMonitor underTest = new StartupMonitor(timeline);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Startup");
+  }
+
+  @Test
+  public void no_attributes_if_startup_tasks_are_not_executed() {
+    assertThat(underTest.attributes()).isEmpty();
+  }
+
+  @Test
+  public void timeline_of_startup_tasks() {
+    timeline.record(2, 300L, Arrays.asList(
+      new TaskExecution("RegisterRules", "startup-task-0", 0L, 200L),
+      new TaskExecution("RegisterMetrics", "startup-task-1", 0L, 20L),
+      new TaskExecution("RegisterQualityProfiles", "startup-task-0", 200L, 100L)),
+      Arrays.asList("RegisterRules", "RegisterQualityProfiles"));
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes)
+      .containsEntry("Threads", 2)
+      .containsEntry("Duration (ms)", 300L)
+      .containsEntry("Critical Path", "RegisterRules -> RegisterQualityProfiles");
+    Map<String, Object> tasks = (Map<String, Object>) attributes.get("Tasks");
+    assertThat(tasks.keySet()).containsExactly("RegisterRules", "RegisterMetrics", "RegisterQualityProfiles");
+    assertThat((Map) tasks.get("RegisterQualityProfiles"))
+      .containsEntry("Thread", "startup-task-0")
+      .containsEntry("Start (ms)", 200L)
+      .containsEntry("Duration (ms)", 100L);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.ws.WsResponseCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WebServiceCacheMonitorTest {
+
+  WsResponseCache cache = mock(WsResponseCache.class);
+  WebServiceCacheMonitor underTest = new WebServiceCacheMonitor(cache);
+
+  @Test
+  public void name_is_not_empty() {
+    assertThat(underTest.name()).isEqualTo("Web Services Cache");
+  }
+
+  @Test
+  public void attributes() {
+    when(cache.getHits()).thenReturn(60L);
+    when(cache.getMisses()).thenReturn(25L);
+    when(cache.getNotModified()).thenReturn(15L);
+    when(cache.getHitRatio()).thenReturn(0.75d);
+    when(cache.getEvictions()).thenReturn(2L);
+    when(cache.size()).thenReturn(10L);
+    when(cache.getSizeInBytes()).thenReturn(4_096L);
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes).containsExactly(
+      entry("Hits", 60L),
+      entry("Misses", 25L),
+      entry("Not Modified", 15L),
+      entry("Hit Ratio (%)", 75L),
+      entry("Evictions", 2L),
+      entry("Entries", 10L),
+      entry("Size (bytes)", 4_096L));
+  }
+}
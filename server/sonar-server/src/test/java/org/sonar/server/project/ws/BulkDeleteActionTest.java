@@ -44,6 +44,7 @@ import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
 import org.sonar.server.component.ComponentCleanerService;
 import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.es.BulkIndexerStats;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.issue.IssueTesting;
@@ -99,7 +100,7 @@ public class BulkDeleteActionTest {
       new BulkDeleteAction(
         new ComponentCleanerService(dbClient,
           new IssueAuthorizationIndexer(dbClient, es.client()),
-          new IssueIndexer(dbClient, es.client()),
+          new IssueIndexer(dbClient, es.client(), new BulkIndexerStats()),
           new TestIndexer(dbClient, es.client()), mockResourceTypes, new ComponentFinder(dbClient)),
         dbClient,
         userSessionRule)));
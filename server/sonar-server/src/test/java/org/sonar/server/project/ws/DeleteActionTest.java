@@ -42,6 +42,7 @@ import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
 import org.sonar.server.component.ComponentCleanerService;
 import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.es.BulkIndexerStats;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.issue.IssueTesting;
@@ -100,7 +101,7 @@ public class DeleteActionTest {
         new ComponentCleanerService(
           dbClient,
           new IssueAuthorizationIndexer(dbClient, es.client()),
-          new IssueIndexer(dbClient, es.client()),
+          new IssueIndexer(dbClient, es.client(), new BulkIndexerStats()),
           new TestIndexer(dbClient, es.client()),
           mockResourceTypes,
           new ComponentFinder(dbClient)),
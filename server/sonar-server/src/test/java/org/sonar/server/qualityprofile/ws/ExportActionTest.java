@@ -30,6 +30,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.profiles.ProfileExporter;
 import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.server.ws.internal.SimpleGetRequest;
 import org.sonar.api.server.ws.WebService.Action;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
@@ -51,6 +52,7 @@ import org.sonar.server.ws.WsTester.Result;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ExportActionTest {
 
@@ -81,7 +83,7 @@ public class ExportActionTest {
     wsTester = new WsTester(new QProfilesWs(mock(RuleActivationActions.class),
       mock(BulkRuleActivationActions.class),
       mock(ProjectAssociationActions.class),
-      new ExportAction(dbClient, new QProfileFactory(dbClient), backuper, exporters, LanguageTesting.newLanguages("xoo"))));
+      new ExportAction(dbClient, new QProfileFactory(dbClient), backuper, exporters, LanguageTesting.newLanguages("xoo"), mock(RuleIndex.class))));
   }
 
   private ProfileExporter newExporter(final String key) {
@@ -146,6 +148,28 @@ public class ExportActionTest {
     assertThat(result.outputAsString()).isEqualTo("Profile " + profile2.getName() + " exported by polop");
   }
 
+  @Test
+  public void response_version_changes_when_indexed_active_rules_change() throws Exception {
+    QualityProfileDto profile = QProfileTesting.newXooP1();
+    qualityProfileDao.insert(session, profile);
+    session.commit();
+    RuleIndex ruleIndex = mock(RuleIndex.class);
+    when(ruleIndex.activeRulesDataVersion(profile.getKey())).thenReturn("10:1000", "10:1000", "11:1001");
+    ExportAction underTest = new ExportAction(dbClient, new QProfileFactory(dbClient), backuper, exporters, LanguageTesting.newLanguages("xoo"), ruleIndex);
+    SimpleGetRequest request = new SimpleGetRequest().setParam("language", "xoo").setParam("name", profile.getName());
+
+    String version = underTest.responseVersion(request);
+
+    assertThat(underTest.responseVersion(request)).isEqualTo(version);
+    assertThat(underTest.responseVersion(request)).isNotEqualTo(version);
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void response_version_fails_on_unknown_profile() throws Exception {
+    new ExportAction(dbClient, new QProfileFactory(dbClient), backuper, exporters, LanguageTesting.newLanguages("xoo"), mock(RuleIndex.class))
+      .responseVersion(new SimpleGetRequest().setParam("language", "xoo").setParam("name", "unknown"));
+  }
+
   @Test(expected = NotFoundException.class)
   public void fail_on_unknown_profile() throws Exception {
     wsTester.newGetRequest("api/qualityprofiles", "export")
@@ -168,7 +192,7 @@ public class ExportActionTest {
     WsTester myWsTester = new WsTester(new QProfilesWs(mock(RuleActivationActions.class),
       mock(BulkRuleActivationActions.class),
       mock(ProjectAssociationActions.class),
-      new ExportAction(dbClient, new QProfileFactory(dbClient), backuper, myExporters, LanguageTesting.newLanguages("xoo"))));
+      new ExportAction(dbClient, new QProfileFactory(dbClient), backuper, myExporters, LanguageTesting.newLanguages("xoo"), mock(RuleIndex.class))));
 
     Action export = myWsTester.controller("api/qualityprofiles").action("export");
     assertThat(export.params()).hasSize(2);
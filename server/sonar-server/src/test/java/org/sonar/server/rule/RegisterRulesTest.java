@@ -23,6 +23,9 @@ import java.util.Date;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.internal.SonarRuntimeImpl;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Languages;
@@ -33,6 +36,7 @@ import org.sonar.api.server.debt.DebtRemediationFunction;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.Version;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
 import org.sonar.db.rule.RuleDto;
@@ -72,6 +76,7 @@ public class RegisterRulesTest {
   public EsTester esTester = new EsTester(new RuleIndexDefinition(new Settings()));
 
   RuleActivator ruleActivator = mock(RuleActivator.class);
+  SonarRuntime sonarRuntime = SonarRuntimeImpl.forSonarQube(Version.create(6, 1), SonarQubeSide.SERVER);
 
   DbClient dbClient = dbTester.getDbClient();
 
@@ -387,12 +392,62 @@ public class RegisterRulesTest {
     assertThat(result.getSystemTags()).isEmpty();
   }
 
+  @Test
+  public void do_not_merge_unchanged_repositories() {
+    execute(new FakeRepositoryV1(), new FindbugsRepository());
+
+    // changes in database are not reverted as definitions did not change
+    RuleDto rule1 = dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RULE_KEY1);
+    rule1.setName("changed");
+    dbClient.ruleDao().update(dbTester.getSession(), rule1);
+    dbTester.getSession().commit();
+
+    when(system.now()).thenReturn(DATE2.getTime());
+    execute(new FakeRepositoryV1(), new FindbugsRepository());
+
+    assertThat(dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RULE_KEY1).getName()).isEqualTo("changed");
+    assertThat(dbTester.countRowsOfTable("loaded_templates")).isEqualTo(2);
+
+    // only the changed repository is merged
+    execute(new FakeRepositoryV2(), new FindbugsRepository());
+
+    assertThat(dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RULE_KEY1).getName()).isEqualTo("One v2");
+    assertThat(dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RULE_KEY2).getStatus()).isEqualTo(RuleStatus.REMOVED);
+    assertThat(dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RuleKey.of("findbugs", "rule1")).getStatus()).isEqualTo(RuleStatus.READY);
+    assertThat(dbTester.countRowsOfTable("loaded_templates")).isEqualTo(2);
+  }
+
+  @Test
+  public void merge_all_repositories_when_sonarqube_is_upgraded() {
+    execute(new FakeRepositoryV1());
+    RuleDto rule1 = dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RULE_KEY1);
+    rule1.setName("changed");
+    dbClient.ruleDao().update(dbTester.getSession(), rule1);
+    dbTester.getSession().commit();
+
+    sonarRuntime = SonarRuntimeImpl.forSonarQube(Version.create(6, 2), SonarQubeSide.SERVER);
+    execute(new FakeRepositoryV1());
+
+    assertThat(dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RULE_KEY1).getName()).isEqualTo("One");
+  }
+
+  @Test
+  public void remove_fingerprint_of_uninstalled_repository() {
+    execute(new FakeRepositoryV1(), new FindbugsRepository());
+    assertThat(dbTester.countRowsOfTable("loaded_templates")).isEqualTo(2);
+
+    execute(new FindbugsRepository());
+
+    assertThat(dbTester.countRowsOfTable("loaded_templates")).isEqualTo(1);
+    assertThat(dbClient.ruleDao().selectOrFailByKey(dbTester.getSession(), RULE_KEY1).getStatus()).isEqualTo(RuleStatus.REMOVED);
+  }
+
   private void execute(RulesDefinition... defs) {
     RuleDefinitionsLoader loader = new RuleDefinitionsLoader(mock(DeprecatedRulesDefinitionLoader.class), new RuleRepositories(), mock(CommonRuleDefinitionsImpl.class), defs);
     Languages languages = mock(Languages.class);
     when(languages.get("java")).thenReturn(mock(Language.class));
 
-    RegisterRules task = new RegisterRules(loader, ruleActivator, dbClient, ruleIndexer, activeRuleIndexer, languages, system);
+    RegisterRules task = new RegisterRules(loader, ruleActivator, dbClient, ruleIndexer, activeRuleIndexer, languages, system, sonarRuntime);
     task.start();
     // Execute a commit to refresh session state as the task is using its own session
     dbTester.getSession().commit();
@@ -0,0 +1,69 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.rule;
+
+import org.junit.Test;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.api.server.rule.RulesDefinition.NewRepository;
+import org.sonar.api.server.rule.RulesDefinition.NewRule;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RuleRepositoryFingerprintTest {
+
+  @Test
+  public void same_definitions_have_same_fingerprint() {
+    assertThat(fingerprint("6.1", "rule1", "rule2", "default")).isEqualTo(fingerprint("6.1", "rule1", "rule2", "default"));
+  }
+
+  @Test
+  public void fingerprint_does_not_depend_on_order_of_rules() {
+    assertThat(fingerprint("6.1", "rule1", "rule2", "default")).isEqualTo(fingerprint("6.1", "rule2", "rule1", "default"));
+  }
+
+  @Test
+  public void fingerprint_changes_with_definitions() {
+    String fingerprint = fingerprint("6.1", "rule1", "rule2", "default");
+
+    assertThat(fingerprint("6.1", "rule1", "rule3", "default")).isNotEqualTo(fingerprint);
+    assertThat(fingerprint("6.1", "rule1", "rule2", "other default")).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void fingerprint_changes_with_version() {
+    assertThat(fingerprint("6.2", "rule1", "rule2", "default")).isNotEqualTo(fingerprint("6.1", "rule1", "rule2", "default"));
+  }
+
+  private static String fingerprint(String version, String firstRuleKey, String secondRuleKey, String defaultValue) {
+    RulesDefinition.Context context = new RulesDefinition.Context();
+    NewRepository repo = context.createRepository("squid", "java");
+    for (String ruleKey : new String[] {firstRuleKey, secondRuleKey}) {
+      NewRule rule = repo.createRule(ruleKey)
+        .setName("Name of " + ruleKey)
+        .setHtmlDescription("Description of " + ruleKey)
+        .setTags("tag1", "tag2");
+      rule.setDebtRemediationFunction(rule.debtRemediationFunctions().linearWithOffset("5d", "10h"));
+      rule.createParam("param").setDefaultValue(defaultValue);
+    }
+    repo.done();
+    return RuleRepositoryFingerprint.compute(version, singletonList(context.repository("squid")));
+  }
+}
@@ -774,6 +774,37 @@ public class RuleIndexTest {
     assertThat(index.searchAll(new RuleQuery().setActivation(true).setQProfileKey(QUALITY_PROFILE_KEY2))).containsOnly(RULE_KEY_1);
   }
 
+  @Test
+  public void data_version_changes_when_rules_or_active_rules_are_indexed() {
+    String emptyVersion = index.dataVersion();
+
+    indexRules(newDoc(RULE_KEY_1).setUpdatedAt(1_000L));
+    String version = index.dataVersion();
+    assertThat(version).isNotEqualTo(emptyVersion);
+    assertThat(index.dataVersion()).isEqualTo(version);
+
+    indexRules(newDoc(RULE_KEY_1).setUpdatedAt(2_000L));
+    assertThat(index.dataVersion()).isNotEqualTo(version);
+    version = index.dataVersion();
+
+    indexActiveRules(ActiveRuleDocTesting.newDoc(ActiveRuleKey.of(QUALITY_PROFILE_KEY1, RULE_KEY_1)));
+    assertThat(index.dataVersion()).isNotEqualTo(version);
+  }
+
+  @Test
+  public void active_rules_data_version_depends_only_on_active_rules_of_profile() {
+    indexRules(newDoc(RULE_KEY_1), newDoc(RULE_KEY_2));
+    indexActiveRules(ActiveRuleDocTesting.newDoc(ActiveRuleKey.of(QUALITY_PROFILE_KEY1, RULE_KEY_1)).setUpdatedAt(1_000L));
+    String version = index.activeRulesDataVersion(QUALITY_PROFILE_KEY1);
+
+    indexActiveRules(ActiveRuleDocTesting.newDoc(ActiveRuleKey.of(QUALITY_PROFILE_KEY2, RULE_KEY_1)).setUpdatedAt(2_000L));
+    assertThat(index.activeRulesDataVersion(QUALITY_PROFILE_KEY1)).isEqualTo(version);
+
+    // more active rules, with an older date
+    indexActiveRules(ActiveRuleDocTesting.newDoc(ActiveRuleKey.of(QUALITY_PROFILE_KEY1, RULE_KEY_2)).setUpdatedAt(500L));
+    assertThat(index.activeRulesDataVersion(QUALITY_PROFILE_KEY1)).isNotEqualTo(version);
+  }
+
   private void indexRules(RuleDoc... rules) {
     ruleIndexer.index(asList(rules).iterator());
   }
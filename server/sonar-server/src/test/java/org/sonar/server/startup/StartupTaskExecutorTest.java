@@ -0,0 +1,251 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.startup;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.core.permission.GlobalPermissions;
+import org.sonar.core.platform.ComponentContainer;
+import org.sonar.db.Database;
+import org.sonar.db.dialect.H2;
+import org.sonar.db.dialect.PostgreSql;
+import org.sonar.server.user.ThreadLocalUserSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StartupTaskExecutorTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  Recorder recorder = new Recorder();
+  Settings settings = new Settings();
+  Database database = mock(Database.class);
+  ThreadLocalUserSession userSession = new ThreadLocalUserSession();
+  StartupTimeline timeline = new StartupTimeline();
+  ComponentContainer container = new ComponentContainer();
+
+  @Before
+  public void setUp() {
+    when(database.getDialect()).thenReturn(new PostgreSql());
+  }
+
+  @Test
+  public void tasks_are_executed_after_their_dependencies() {
+    execute(StartupTaskGraph.builder()
+      .add(First.class)
+      .add(Second.class, First.class)
+      .add(Third.class, Second.class)
+      .build());
+
+    assertThat(recorder.events).containsExactly("start First", "start Second", "start Third", "stop Third", "stop Second", "stop First");
+  }
+
+  @Test
+  public void independent_tasks_are_executed_concurrently() {
+    settings.setProperty(StartupTaskExecutor.PROPERTY_THREADS, 2);
+
+    // each task waits for the other one to be started
+    execute(StartupTaskGraph.builder()
+      .add(Left.class)
+      .add(Right.class)
+      .add(Third.class, Left.class, Right.class)
+      .build());
+
+    assertThat(recorder.events).containsSubsequence("start Third", "stop Third");
+    assertThat(recorder.events).containsOnlyOnce("start Left", "start Right");
+    assertThat(recorder.events.indexOf("start Third")).isEqualTo(2);
+    assertThat(timeline.getThreads()).isEqualTo(2);
+  }
+
+  @Test
+  public void tasks_are_executed_sequentially_on_h2() {
+    settings.setProperty(StartupTaskExecutor.PROPERTY_THREADS, 2);
+    when(database.getDialect()).thenReturn(new H2());
+
+    execute(StartupTaskGraph.builder()
+      .add(First.class)
+      .add(Second.class)
+      .build());
+
+    assertThat(recorder.events).containsExactly("start First", "start Second", "stop Second", "stop First");
+    assertThat(timeline.getThreads()).isEqualTo(1);
+    assertThat(logTester.logs()).contains("Startup tasks are executed sequentially on H2 database");
+  }
+
+  @Test
+  public void tasks_are_executed_with_privileges() {
+    execute(StartupTaskGraph.builder().add(Privileged.class).build());
+
+    assertThat(recorder.events).containsExactly("privileged");
+  }
+
+  @Test
+  public void failure_of_task_is_propagated_and_dependent_tasks_are_not_executed() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Failing task");
+
+    try {
+      execute(StartupTaskGraph.builder()
+        .add(Failing.class)
+        .add(Third.class, Failing.class)
+        .build());
+    } finally {
+      assertThat(recorder.events).isEmpty();
+      assertThat(timeline.isRecorded()).isFalse();
+      assertThat(container.getChildren()).isEmpty();
+    }
+  }
+
+  @Test
+  public void timeline_is_recorded_and_logged() {
+    execute(StartupTaskGraph.builder()
+      .add(First.class)
+      .add(Second.class, First.class)
+      .add(Third.class)
+      .build());
+
+    assertThat(timeline.isRecorded()).isTrue();
+    assertThat(timeline.getThreads()).isEqualTo(StartupTaskExecutor.DEFAULT_THREADS);
+    assertThat(timeline.getTasks()).extracting("name").containsOnly("First", "Second", "Third");
+    assertThat(timeline.getTasks().stream().allMatch(task -> task.getThread().startsWith("startup-task-"))).isTrue();
+    assertThat(timeline.getCriticalPath()).isNotEmpty();
+    assertThat(logTester.logs().stream().anyMatch(log -> log.startsWith("Startup tasks critical path: "))).isTrue();
+    assertThat(logTester.logs().stream().anyMatch(log -> log.startsWith("Execute startup tasks (done) | time="))).isTrue();
+  }
+
+  @Test
+  public void tasks_container_is_removed_after_execution() {
+    execute(StartupTaskGraph.builder().add(First.class).build());
+
+    assertThat(container.getChildren()).isEmpty();
+  }
+
+  private void execute(StartupTaskGraph graph) {
+    container.add(recorder, userSession);
+    new StartupTaskExecutor(container, graph, timeline, userSession, database, settings, System2.INSTANCE).execute();
+  }
+
+  public static class Recorder {
+    final List<String> events = new CopyOnWriteArrayList<>();
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+
+    void awaitOtherTask() {
+      try {
+        barrier.await(10, TimeUnit.SECONDS);
+      } catch (Exception e) {
+        throw new IllegalStateException("Tasks are not executed concurrently", e);
+      }
+    }
+  }
+
+  public static class Task {
+    final Recorder recorder;
+
+    Task(Recorder recorder) {
+      this.recorder = recorder;
+    }
+
+    public void start() {
+      recorder.events.add("start " + getClass().getSimpleName());
+    }
+
+    public void stop() {
+      recorder.events.add("stop " + getClass().getSimpleName());
+    }
+  }
+
+  public static class First extends Task {
+    public First(Recorder recorder) {
+      super(recorder);
+    }
+  }
+
+  public static class Second extends Task {
+    public Second(Recorder recorder) {
+      super(recorder);
+    }
+  }
+
+  public static class Third extends Task {
+    public Third(Recorder recorder) {
+      super(recorder);
+    }
+  }
+
+  public static class Left extends Task {
+    public Left(Recorder recorder) {
+      super(recorder);
+    }
+
+    @Override
+    public void start() {
+      recorder.awaitOtherTask();
+      super.start();
+    }
+  }
+
+  public static class Right extends Task {
+    public Right(Recorder recorder) {
+      super(recorder);
+    }
+
+    @Override
+    public void start() {
+      recorder.awaitOtherTask();
+      super.start();
+    }
+  }
+
+  public static class Privileged {
+    private final Recorder recorder;
+    private final ThreadLocalUserSession userSession;
+
+    public Privileged(Recorder recorder, ThreadLocalUserSession userSession) {
+      this.recorder = recorder;
+      this.userSession = userSession;
+    }
+
+    public void start() {
+      if (userSession.hasPermission(GlobalPermissions.SYSTEM_ADMIN)) {
+        recorder.events.add("privileged");
+      }
+    }
+  }
+
+  public static class Failing {
+    public void start() {
+      throw new IllegalStateException("Failing task");
+    }
+  }
+}
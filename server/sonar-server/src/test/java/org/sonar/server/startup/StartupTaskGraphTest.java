@@ -0,0 +1,109 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.startup;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StartupTaskGraphTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void tasks_are_kept_in_declaration_order() {
+    StartupTaskGraph underTest = StartupTaskGraph.builder()
+      .add(A.class)
+      .add(C.class)
+      .add(B.class, A.class, C.class)
+      .build();
+
+    assertThat(underTest.tasks()).containsExactly(A.class, C.class, B.class);
+    assertThat(underTest.dependenciesOf(A.class)).isEmpty();
+    assertThat(underTest.dependenciesOf(B.class)).containsOnly(A.class, C.class);
+  }
+
+  @Test
+  public void fail_if_dependency_is_declared_after_task() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Startup task " + A.class.getName() + " must be declared before " + B.class.getName() + ", which depends on it");
+
+    StartupTaskGraph.builder().add(B.class, A.class);
+  }
+
+  @Test
+  public void fail_if_task_is_declared_twice() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Startup task " + A.class.getName() + " is declared twice");
+
+    StartupTaskGraph.builder().add(A.class).add(A.class);
+  }
+
+  @Test
+  public void fail_to_get_dependencies_of_unknown_task() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Startup task " + B.class.getName() + " is not declared");
+
+    StartupTaskGraph.builder().add(A.class).build().dependenciesOf(B.class);
+  }
+
+  @Test
+  public void critical_path_is_the_longest_chain_of_dependent_tasks() {
+    StartupTaskGraph underTest = StartupTaskGraph.builder()
+      .add(A.class)
+      .add(B.class, A.class)
+      .add(C.class)
+      .add(D.class, B.class, C.class)
+      .build();
+
+    // A + B + D = 60, C + D = 110
+    assertThat(underTest.criticalPath(ImmutableMap.of(A.class, 10L, B.class, 20L, C.class, 80L, D.class, 30L))).containsExactly(C.class, D.class);
+    // A + B + D = 120, C + D = 90
+    assertThat(underTest.criticalPath(ImmutableMap.of(A.class, 40L, B.class, 50L, C.class, 60L, D.class, 30L))).containsExactly(A.class, B.class, D.class);
+  }
+
+  @Test
+  public void critical_path_of_independent_tasks_is_the_longest_task() {
+    StartupTaskGraph underTest = StartupTaskGraph.builder().add(A.class).add(B.class).add(C.class).build();
+
+    assertThat(underTest.criticalPath(ImmutableMap.of(A.class, 10L, B.class, 30L, C.class, 20L))).containsExactly(B.class);
+  }
+
+  @Test
+  public void critical_path_of_empty_graph_is_empty() {
+    assertThat(StartupTaskGraph.builder().build().criticalPath(ImmutableMap.of())).isEmpty();
+  }
+
+  private static class A {
+  }
+
+  private static class B {
+  }
+
+  private static class C {
+  }
+
+  private static class D {
+  }
+}
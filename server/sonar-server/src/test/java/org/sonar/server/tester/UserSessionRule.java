@@ -231,6 +231,11 @@ public class UserSessionRule implements TestRule, UserSession {
     return currentUserSession.hasComponentUuidPermission(permission, componentUuid);
   }
 
+  @Override
+  public Set<String> filterAuthorizedComponentUuids(String permission, Collection<String> componentUuids) {
+    return currentUserSession.filterAuthorizedComponentUuids(permission, componentUuids);
+  }
+
   @Override
   @CheckForNull
   public String getLogin() {
@@ -0,0 +1,160 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PermissionCacheTest {
+
+  System2 system2 = mock(System2.class);
+  CountingLoader loader = new CountingLoader();
+
+  PermissionCache underTest = new PermissionCache(2, 1000L, system2);
+
+  @Test
+  public void load_data_once() {
+    assertThat(underTest.globalPermissions("john", loader)).containsOnly("value");
+    assertThat(underTest.globalPermissions("john", loader)).containsOnly("value");
+
+    assertThat(loader.calls.get()).isEqualTo(1);
+    assertThat(underTest.getMisses()).isEqualTo(1L);
+    assertThat(underTest.getHits()).isEqualTo(1L);
+  }
+
+  @Test
+  public void data_are_cached_by_user_and_by_permission() {
+    underTest = new PermissionCache(10, 1000L, system2);
+    underTest.authorizedProjectUuids("john", "user", loader);
+    underTest.authorizedProjectUuids("john", "admin", loader);
+    underTest.authorizedProjectKeys("john", "user", loader);
+    underTest.authorizedProjectUuids("jane", "user", loader);
+    underTest.authorizedProjectUuids(null, "user", loader);
+
+    underTest.authorizedProjectUuids("john", "admin", loader);
+    assertThat(loader.calls.get()).isEqualTo(5);
+    assertThat(underTest.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void evict_least_recently_used_user() {
+    underTest.groups("john", loader);
+    underTest.groups("jane", loader);
+    underTest.groups("john", loader);
+    underTest.groups("paul", loader);
+    assertThat(underTest.getEvictions()).isEqualTo(1L);
+
+    underTest.groups("john", loader);
+    assertThat(loader.calls.get()).isEqualTo(3);
+    underTest.groups("jane", loader);
+    assertThat(loader.calls.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void expire_data_after_ttl() {
+    when(system2.now()).thenReturn(10_000L);
+    underTest.groups("john", loader);
+    when(system2.now()).thenReturn(10_999L);
+    underTest.groups("john", loader);
+    assertThat(loader.calls.get()).isEqualTo(1);
+
+    when(system2.now()).thenReturn(11_000L);
+    underTest.groups("john", loader);
+    assertThat(loader.calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void invalidate_user() {
+    underTest.groups("john", loader);
+    underTest.groups("jane", loader);
+
+    underTest.invalidate("john");
+
+    underTest.groups("john", loader);
+    underTest.groups("jane", loader);
+    assertThat(loader.calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void invalidate_all() {
+    underTest.groups("john", loader);
+    underTest.groups("jane", loader);
+
+    underTest.invalidateAll();
+
+    assertThat(underTest.size()).isEqualTo(0);
+    underTest.groups("john", loader);
+    underTest.groups("jane", loader);
+    assertThat(loader.calls.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void data_loaded_during_invalidation_are_not_cached() {
+    Supplier<Collection<String>> invalidatingLoader = () -> {
+      underTest.invalidate("john");
+      return loader.get();
+    };
+
+    underTest.groups("john", invalidatingLoader);
+    underTest.groups("john", loader);
+
+    assertThat(loader.calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void disabled_cache_always_loads_data() {
+    PermissionCache disabled = PermissionCache.disabled();
+    disabled.groups("john", loader);
+    disabled.groups("john", loader);
+
+    assertThat(disabled.isEnabled()).isFalse();
+    assertThat(loader.calls.get()).isEqualTo(2);
+    assertThat(disabled.getHits()).isEqualTo(0L);
+    assertThat(disabled.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void cache_is_disabled_by_settings() {
+    Settings settings = new Settings();
+    assertThat(new PermissionCache(settings, system2).isEnabled()).isTrue();
+
+    settings.setProperty(PermissionCache.PROPERTY_MAX_USERS, 0);
+    assertThat(new PermissionCache(settings, system2).isEnabled()).isFalse();
+  }
+
+  private static class CountingLoader implements Supplier<Collection<String>> {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public Collection<String> get() {
+      calls.incrementAndGet();
+      return singletonList("value");
+    }
+  }
+}
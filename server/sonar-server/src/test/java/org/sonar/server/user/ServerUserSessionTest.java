@@ -19,6 +19,7 @@
  */
 package org.sonar.server.user;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.core.permission.GlobalPermissions.DASHBOARD_SHARING;
 import static org.sonar.core.permission.GlobalPermissions.QUALITY_PROFILE_ADMIN;
@@ -32,6 +33,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.core.permission.GlobalPermissions;
@@ -264,6 +266,43 @@ public class ServerUserSessionTest {
     assertThat(session.hasComponentPermission(UserRole.ADMIN, FILE_KEY)).isFalse();
   }
 
+  @Test
+  public void filter_authorized_component_uuids() throws Exception {
+    ComponentDto project2 = componentDbTester.insertComponent(ComponentTesting.newProjectDto());
+    ComponentDto file2 = componentDbTester.insertComponent(ComponentTesting.newFileDto(project2));
+    addProjectPermissions(project, UserRole.USER);
+    UserSession session = newUserSession(userDto);
+
+    assertThat(session.filterAuthorizedComponentUuids(UserRole.USER, asList(PROJECT_UUID, FILE_UUID, file2.uuid(), "unknown")))
+      .containsOnly(PROJECT_UUID, FILE_UUID);
+    assertThat(session.filterAuthorizedComponentUuids(UserRole.ADMIN, asList(PROJECT_UUID, FILE_UUID, file2.uuid()))).isEmpty();
+  }
+
+  @Test
+  public void filter_authorized_component_uuids_with_only_global_permission() throws Exception {
+    addGlobalPermissions(UserRole.USER);
+    UserSession session = newUserSession(userDto);
+
+    assertThat(session.filterAuthorizedComponentUuids(UserRole.USER, asList(PROJECT_UUID, FILE_UUID))).containsOnly(PROJECT_UUID, FILE_UUID);
+  }
+
+  @Test
+  public void permissions_are_shared_by_sessions_through_cache() throws Exception {
+    PermissionCache permissionCache = new PermissionCache(new Settings(), System2.INSTANCE);
+    addProjectPermissions(project, UserRole.USER);
+    assertThat(createForUser(dbClient, permissionCache, userDto).hasComponentUuidPermission(UserRole.USER, FILE_UUID)).isTrue();
+    assertThat(createForUser(dbClient, permissionCache, userDto).hasComponentUuidPermission(UserRole.ADMIN, FILE_UUID)).isFalse();
+
+    addProjectPermissions(project, UserRole.ADMIN);
+    ServerUserSession cachedSession = createForUser(dbClient, permissionCache, userDto);
+    assertThat(cachedSession.hasComponentUuidPermission(UserRole.USER, FILE_UUID)).isTrue();
+    assertThat(cachedSession.hasComponentUuidPermission(UserRole.ADMIN, FILE_UUID)).isFalse();
+    assertThat(permissionCache.getHits()).isGreaterThan(0L);
+
+    permissionCache.invalidate(LOGIN);
+    assertThat(createForUser(dbClient, permissionCache, userDto).hasComponentUuidPermission(UserRole.ADMIN, FILE_UUID)).isTrue();
+  }
+
   private ServerUserSession newUserSession(UserDto userDto) {
     return createForUser(dbClient, userDto);
   }
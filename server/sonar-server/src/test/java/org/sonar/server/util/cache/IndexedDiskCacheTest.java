@@ -0,0 +1,170 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.CloseableIterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexedDiskCacheTest {
+
+  private static final Codec<String> CODEC = new Codec<String>() {
+    @Override
+    public void write(String object, DataOutput output) throws IOException {
+      output.writeUTF(object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return input.readUTF();
+    }
+  };
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void write_and_read() throws Exception {
+    IndexedDiskCache<String> cache = newCache(IndexedDiskCache.DEFAULT_BLOCK_SIZE);
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("a:foo")
+      .append("a:bar")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("a:foo", "a:bar");
+    }
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void traverse_single_partition() throws Exception {
+    IndexedDiskCache<String> cache = newCache(IndexedDiskCache.DEFAULT_BLOCK_SIZE);
+    cache.newAppender()
+      .append("a:1")
+      .append("b:1")
+      .append("a:2")
+      .close();
+    cache.newAppender()
+      .append("c:1")
+      .append("b:2")
+      .close();
+
+    assertThat(cache.partitions()).containsExactly("a", "b", "c");
+    try (CloseableIterator<String> traverse = cache.traverse("b")) {
+      assertThat(traverse).containsExactly("b:1", "b:2");
+    }
+    try (CloseableIterator<String> traverse = cache.traverse("unknown")) {
+      assertThat(traverse).isEmpty();
+    }
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("a:1", "b:1", "a:2", "c:1", "b:2");
+    }
+  }
+
+  @Test
+  public void dropped_partition_is_not_traversed_anymore() throws Exception {
+    IndexedDiskCache<String> cache = newCache(IndexedDiskCache.DEFAULT_BLOCK_SIZE);
+    cache.newAppender()
+      .append("a:1")
+      .append("b:1")
+      .close();
+
+    cache.drop("a");
+
+    assertThat(cache.partitions()).containsExactly("b");
+    try (CloseableIterator<String> traverse = cache.traverse("a")) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender().append("a:2").close();
+    try (CloseableIterator<String> traverse = cache.traverse("a")) {
+      assertThat(traverse).containsExactly("a:2");
+    }
+  }
+
+  @Test
+  public void split_partition_in_blocks_of_configured_size() throws Exception {
+    IndexedDiskCache<String> cache = newCache(10);
+    IndexedDiskCache<String>.DiskAppender appender = cache.newAppender();
+    for (int i = 0; i < 100; i++) {
+      appender.append("a:" + i);
+    }
+    appender.close();
+
+    try (CloseableIterator<String> traverse = cache.traverse("a")) {
+      assertThat(traverse).hasSize(100);
+    }
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse.next()).isEqualTo("a:0");
+    }
+  }
+
+  @Test
+  public void objects_are_readable_only_when_appender_is_closed() throws Exception {
+    IndexedDiskCache<String> cache = newCache(IndexedDiskCache.DEFAULT_BLOCK_SIZE);
+    IndexedDiskCache<String>.DiskAppender appender = cache.newAppender().append("a:foo");
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    appender.close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("a:foo");
+    }
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to write into file");
+
+    new IndexedDiskCache<>(temp.newFolder(), CODEC, IndexedDiskCacheTest::partitionOf, System2.INSTANCE);
+  }
+
+  @Test
+  public void fail_if_block_size_is_not_positive() throws Exception {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Block size must be positive (got 0)");
+
+    newCache(0);
+  }
+
+  private IndexedDiskCache<String> newCache(int blockSize) throws IOException {
+    return new IndexedDiskCache<>(temp.newFile(), CODEC, IndexedDiskCacheTest::partitionOf, System2.INSTANCE, blockSize);
+  }
+
+  private static String partitionOf(String s) {
+    return s.substring(0, s.indexOf(':'));
+  }
+}
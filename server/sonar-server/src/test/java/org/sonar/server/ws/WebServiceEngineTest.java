@@ -55,7 +55,9 @@ public class WebServiceEngineTest {
 
   I18n i18n = mock(I18n.class);
 
-  WebServiceEngine underTest = new WebServiceEngine(new WebService[] {new SystemWs()}, i18n, userSessionRule);
+  WsResponseCache responseCache = new WsResponseCache(1024L * 1024L, userSessionRule);
+
+  WebServiceEngine underTest = new WebServiceEngine(new WebService[] {new SystemWs()}, i18n, userSessionRule, responseCache);
 
   @Before
   public void start() {
@@ -298,6 +300,20 @@ public class WebServiceEngineTest {
     assertThat(logTester.logs(LoggerLevel.WARN)).isNotEmpty();
   }
 
+  @Test
+  public void cacheable_response_is_served_from_cache() {
+    DumbResponse response1 = new DumbResponse();
+    underTest.execute(new TestRequest().setMethod("GET").setPath("/api/system/cached"), response1);
+    DumbResponse response2 = new DumbResponse();
+    underTest.execute(new TestRequest().setMethod("GET").setPath("/api/system/cached"), response2);
+
+    assertThat(response1.stream().outputAsString()).isEqualTo("cached");
+    assertThat(response2.stream().outputAsString()).isEqualTo("cached");
+    assertThat(response2.getHeader("ETag")).isEqualTo(response1.getHeader("ETag")).isNotNull();
+    assertThat(responseCache.getMisses()).isEqualTo(1);
+    assertThat(responseCache.getHits()).isEqualTo(1);
+  }
+
   static class SystemWs implements WebService {
     @Override
     public void define(Context context) {
@@ -397,6 +413,23 @@ public class WebServiceEngineTest {
         }
       });
 
+      createNewDefaultAction(newController, "cached")
+        .setHandler(new CacheableRequestHandler() {
+          @Override
+          public String responseVersion(Request request) {
+            return "1";
+          }
+
+          @Override
+          public void handle(Request request, Response response) {
+            try {
+              response.stream().output().write("cached".getBytes());
+            } catch (IOException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+        });
+
       createNewDefaultAction(newController, "fail_with_client_abort_exception")
         .setHandler((request, response) -> {
           throw new IllegalStateException("fail!", new ClientAbortException());
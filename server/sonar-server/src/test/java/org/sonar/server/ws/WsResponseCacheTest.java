@@ -0,0 +1,271 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HttpHeaders;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonarqube.ws.MediaTypes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WsResponseCacheTest {
+
+  @Rule
+  public UserSessionRule userSession = UserSessionRule.standalone();
+
+  private FakeHandler handler = new FakeHandler();
+  private WebService.Action action;
+
+  private WsResponseCache underTest = new WsResponseCache(1024L * 1024L, userSession);
+
+  @Before
+  public void setUp() {
+    WebService.Context context = new WebService.Context();
+    WebService.NewController controller = context.createController("api/foo");
+    WebService.NewAction newAction = controller.createAction("bar")
+      .setDescription("Dummy Description")
+      .setSince("6.1")
+      .setHandler(handler);
+    newAction.createParam("size").setDescription("Size of response");
+    newAction.createParam("f").setDescription("Fields").setPossibleValues("a", "b");
+    controller.done();
+    action = context.controller("api/foo").action("bar");
+  }
+
+  @Test
+  public void response_is_built_once_as_long_as_version_does_not_change() throws Exception {
+    DumbResponse response1 = execute(newRequest("3", null, null));
+    DumbResponse response2 = execute(newRequest("3", null, null));
+
+    assertThat(handler.calls).isEqualTo(1);
+    assertThat(response1.stream().outputAsString()).isEqualTo("aaa");
+    assertThat(response2.stream().outputAsString()).isEqualTo("aaa");
+    assertThat(response2.stream().status()).isEqualTo(200);
+    assertThat(response2.stream().mediaType()).isEqualTo(MediaTypes.TXT);
+    assertThat(response2.getHeader(HttpHeaders.ETAG)).isEqualTo(response1.getHeader(HttpHeaders.ETAG)).startsWith("\"");
+    assertThat(response2.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("private, no-cache");
+    assertThat(underTest.getMisses()).isEqualTo(1);
+    assertThat(underTest.getHits()).isEqualTo(1);
+    assertThat(underTest.getHitRatio()).isEqualTo(0.5d);
+    assertThat(underTest.size()).isEqualTo(1);
+    assertThat(underTest.getSizeInBytes()).isEqualTo(3);
+  }
+
+  @Test
+  public void response_is_built_again_when_version_changes() throws Exception {
+    DumbResponse response1 = execute(newRequest("3", null, null));
+    handler.version = "2";
+    DumbResponse response2 = execute(newRequest("3", null, null));
+
+    assertThat(handler.calls).isEqualTo(2);
+    assertThat(response2.getHeader(HttpHeaders.ETAG)).isNotEqualTo(response1.getHeader(HttpHeaders.ETAG));
+    assertThat(underTest.size()).isEqualTo(1);
+    assertThat(underTest.getSizeInBytes()).isEqualTo(3);
+  }
+
+  @Test
+  public void responses_depend_on_parameters() throws Exception {
+    DumbResponse response1 = execute(newRequest("3", null, null));
+    DumbResponse response2 = execute(newRequest("4", null, null));
+    DumbResponse response3 = execute(newRequest(null, null, null));
+
+    assertThat(handler.calls).isEqualTo(3);
+    assertThat(response1.stream().outputAsString()).isEqualTo("aaa");
+    assertThat(response2.stream().outputAsString()).isEqualTo("aaaa");
+    assertThat(response3.stream().outputAsString()).isEqualTo("a");
+  }
+
+  @Test
+  public void responses_depend_on_user() throws Exception {
+    DumbResponse anonymousResponse = execute(newRequest("3", null, null));
+    userSession.login("john");
+    DumbResponse johnResponse = execute(newRequest("3", null, null));
+
+    assertThat(handler.calls).isEqualTo(2);
+    assertThat(johnResponse.getHeader(HttpHeaders.ETAG)).isNotEqualTo(anonymousResponse.getHeader(HttpHeaders.ETAG));
+  }
+
+  @Test
+  public void not_modified_if_client_sends_back_etag() throws Exception {
+    String etag = execute(newRequest("3", null, null)).getHeader(HttpHeaders.ETAG);
+
+    DumbResponse response = execute(newRequest("3", "\"other\", " + etag, null));
+
+    assertThat(handler.calls).isEqualTo(1);
+    assertThat(response.stream().status()).isEqualTo(304);
+    assertThat(response.stream().outputAsString()).isEmpty();
+    assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+    assertThat(underTest.getNotModified()).isEqualTo(1);
+  }
+
+  @Test
+  public void response_is_sent_if_client_sends_back_old_etag() throws Exception {
+    String etag = execute(newRequest("3", null, null)).getHeader(HttpHeaders.ETAG);
+    handler.version = "2";
+
+    DumbResponse response = execute(newRequest("3", etag, null));
+
+    assertThat(handler.calls).isEqualTo(2);
+    assertThat(response.stream().status()).isEqualTo(200);
+    assertThat(response.stream().outputAsString()).isEqualTo("aaa");
+    assertThat(underTest.getNotModified()).isEqualTo(0);
+  }
+
+  @Test
+  public void compressed_response_is_sent_to_clients_accepting_gzip() throws Exception {
+    DumbResponse plainResponse = execute(newRequest("2000", null, null));
+    DumbResponse compressedResponse = execute(newRequest("2000", null, "deflate, gzip"));
+
+    assertThat(handler.calls).isEqualTo(1);
+    assertThat(plainResponse.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+    assertThat(plainResponse.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+    assertThat(plainResponse.stream().outputAsString()).isEqualTo(StringUtils.repeat("a", 2000));
+    assertThat(compressedResponse.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    assertThat(gunzip(compressedResponse.getFlushedOutput())).isEqualTo(StringUtils.repeat("a", 2000));
+  }
+
+  @Test
+  public void small_responses_are_not_compressed() throws Exception {
+    DumbResponse response = execute(newRequest("3", null, "gzip"));
+
+    assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+    assertThat(response.stream().outputAsString()).isEqualTo("aaa");
+  }
+
+  @Test
+  public void response_is_not_cached_if_version_is_null() throws Exception {
+    handler.version = null;
+
+    DumbResponse response = execute(newRequest("3", null, null));
+    execute(newRequest("3", null, null));
+
+    assertThat(handler.calls).isEqualTo(2);
+    assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+    assertThat(response.stream().outputAsString()).isEqualTo("aaa");
+    assertThat(underTest.getMisses()).isEqualTo(0);
+  }
+
+  @Test
+  public void error_response_is_not_cached() throws Exception {
+    handler.status = 404;
+
+    DumbResponse response = execute(newRequest("3", null, null));
+    execute(newRequest("3", null, null));
+
+    assertThat(handler.calls).isEqualTo(2);
+    assertThat(response.stream().status()).isEqualTo(404);
+    assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void etag_is_used_when_cache_is_disabled() throws Exception {
+    underTest = new WsResponseCache(0L, userSession);
+
+    String etag = execute(newRequest("3", null, null)).getHeader(HttpHeaders.ETAG);
+    execute(newRequest("3", null, null));
+    DumbResponse response = execute(newRequest("3", etag, null));
+
+    assertThat(handler.calls).isEqualTo(2);
+    assertThat(response.stream().status()).isEqualTo(304);
+    assertThat(underTest.size()).isEqualTo(0);
+    assertThat(underTest.getSizeInBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void values_of_parameters_with_possible_values_are_validated_one_by_one() throws Exception {
+    HttpServletRequest source = mockRequest("3", null, null);
+    when(source.getParameter("f")).thenReturn("a,b");
+    ServletRequest request = new ServletRequest(source);
+    request.setAction(action);
+
+    DumbResponse response = execute(request);
+
+    assertThat(response.stream().outputAsString()).isEqualTo("aaa");
+  }
+
+  private DumbResponse execute(Request request) throws Exception {
+    DumbResponse response = new DumbResponse();
+    underTest.execute(action, handler, request, response);
+    return response;
+  }
+
+  private ServletRequest newRequest(@Nullable String size, @Nullable String ifNoneMatch, @Nullable String acceptEncoding) {
+    ServletRequest request = new ServletRequest(mockRequest(size, ifNoneMatch, acceptEncoding));
+    request.setAction(action);
+    return request;
+  }
+
+  private static HttpServletRequest mockRequest(@Nullable String size, @Nullable String ifNoneMatch, @Nullable String acceptEncoding) {
+    HttpServletRequest source = mock(HttpServletRequest.class);
+    when(source.getMethod()).thenReturn("GET");
+    when(source.getRequestURI()).thenReturn("/api/foo/bar");
+    when(source.getContextPath()).thenReturn("");
+    when(source.getParameterMap()).thenReturn(size == null ? Collections.<String, String[]>emptyMap() : ImmutableMap.of("size", new String[] {size}));
+    when(source.getParameter("size")).thenReturn(size);
+    when(source.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(ifNoneMatch);
+    when(source.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn(acceptEncoding);
+    return source;
+  }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+
+  private static class FakeHandler implements CacheableRequestHandler {
+    private String version = "1";
+    private int status = 200;
+    private int calls = 0;
+
+    @Override
+    public String responseVersion(Request request) {
+      return version;
+    }
+
+    @Override
+    public void handle(Request request, Response response) throws Exception {
+      calls++;
+      int size = Integer.parseInt(request.param("size", "1"));
+      response.stream().setStatus(status);
+      response.stream().setMediaType(MediaTypes.TXT);
+      response.stream().output().write(StringUtils.repeat("a", size).getBytes(UTF_8));
+    }
+  }
+}
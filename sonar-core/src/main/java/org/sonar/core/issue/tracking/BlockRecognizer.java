@@ -20,13 +20,11 @@
 package org.sonar.core.issue.tracking;
 
 import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
@@ -35,7 +33,7 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
    * If base source code is available, then detect code moves through block hashes.
    * Only the issues associated to a line can be matched here.
    */
-  void match(Input<RAW> rawInput, Input<BASE> baseInput, Tracking<RAW, BASE> tracking) {
+  void match(Input<RAW> rawInput, Input<BASE> baseInput, Tracking<RAW, BASE> tracking, TrackingIndex index) {
     BlockHashSequence rawHashSequence = rawInput.getBlockHashSequence();
     BlockHashSequence baseHashSequence = baseInput.getBlockHashSequence();
 
@@ -76,43 +74,135 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     }
 
     // Check if remaining number of lines exceeds threshold. It avoids processing too many combinations.
-    if (basesByLine.keySet().size() * rawsByLine.keySet().size() >= 250_000) {
+    if (basesByLine.keySet().size() * rawsByLine.keySet().size() >= 250_000 || basesByLine.isEmpty() || rawsByLine.isEmpty()) {
       return;
     }
 
-    List<LinePair> possibleLinePairs = Lists.newArrayList();
-    for (Integer baseLine : basesByLine.keySet()) {
-      for (Integer rawLine : rawsByLine.keySet()) {
-        int weight = lengthOfMaximalBlock(baseInput.getLineHashSequence(), baseLine, rawInput.getLineHashSequence(), rawLine);
-        possibleLinePairs.add(new LinePair(baseLine, rawLine, weight));
+    // line hashes are compared as int ids
+    TrackingIndex.LineHashes baseLineHashes = index.baseLineHashes(baseInput.getLineHashSequence());
+    TrackingIndex.LineHashes rawLineHashes = index.rawLineHashes(rawInput.getLineHashSequence());
+    int[] baseLines = toArray(basesByLine.keySet());
+    int[] rawLines = toArray(rawsByLine.keySet());
+    int[] weights = new int[baseLines.length * rawLines.length];
+    int[] distances = new int[weights.length];
+    for (int b = 0; b < baseLines.length; b++) {
+      for (int r = 0; r < rawLines.length; r++) {
+        int pair = b * rawLines.length + r;
+        weights[pair] = lengthOfMaximalBlock(baseLineHashes, baseLines[b], rawLineHashes, rawLines[r]);
+        distances[pair] = Math.abs(baseLines[b] - rawLines[r]);
       }
     }
-    Collections.sort(possibleLinePairs, LinePairComparator.INSTANCE);
-    for (LinePair linePair : possibleLinePairs) {
-      // High probability that baseLine has been moved to rawLine, so we can map all issues on baseLine to all issues on rawLine
-      map(rawsByLine.get(linePair.rawLine), basesByLine.get(linePair.baseLine), tracking);
+
+    // pairs of lines are skipped once all the issues of one of the lines are matched
+    int[] unmatchedBasesByLine = countByLine(basesByLine);
+    int[] unmatchedRawsByLine = countByLine(rawsByLine);
+    int unmatchedBases = basesByLine.size();
+    int unmatchedRaws = rawsByLine.size();
+    for (int pair : sortPairs(weights, distances)) {
+      if (unmatchedBases == 0 || unmatchedRaws == 0) {
+        break;
+      }
+      int baseLine = baseLines[pair / rawLines.length];
+      int rawLine = rawLines[pair % rawLines.length];
+      if (unmatchedBasesByLine[baseLine] > 0 && unmatchedRawsByLine[rawLine] > 0) {
+        // High probability that baseLine has been moved to rawLine, so we can map all issues on baseLine to all issues on rawLine
+        int matches = map(rawsByLine.get(rawLine), basesByLine.get(baseLine), tracking);
+        unmatchedBasesByLine[baseLine] -= matches;
+        unmatchedRawsByLine[rawLine] -= matches;
+        unmatchedBases -= matches;
+        unmatchedRaws -= matches;
+      }
+    }
+  }
+
+  /**
+   * Indexes of the pairs of lines, by decreasing weight then by increasing distance between lines. Pairs having
+   * the same weight and distance stay in the same order.
+   */
+  private static int[] sortPairs(int[] weights, int[] distances) {
+    int maxWeight = 0;
+    int maxDistance = 0;
+    for (int pair = 0; pair < weights.length; pair++) {
+      maxWeight = Math.max(maxWeight, weights[pair]);
+      maxDistance = Math.max(maxDistance, distances[pair]);
+    }
+    int indexBits = bitLength(weights.length);
+    int distanceBits = bitLength(maxDistance);
+    int[] sortedPairs = new int[weights.length];
+
+    if (bitLength(maxWeight) + distanceBits + indexBits < Long.SIZE) {
+      // weight, distance and index of each pair are packed in a positive long, so that pairs are sorted as primitives
+      long[] keys = new long[weights.length];
+      for (int pair = 0; pair < weights.length; pair++) {
+        keys[pair] = ((long) (maxWeight - weights[pair]) << (distanceBits + indexBits)) | ((long) distances[pair] << indexBits) | pair;
+      }
+      Arrays.sort(keys);
+      long indexMask = (1L << indexBits) - 1;
+      for (int i = 0; i < keys.length; i++) {
+        sortedPairs[i] = (int) (keys[i] & indexMask);
+      }
+    } else {
+      // files having millions of lines
+      Integer[] pairs = new Integer[weights.length];
+      for (int pair = 0; pair < weights.length; pair++) {
+        pairs[pair] = pair;
+      }
+      Arrays.sort(pairs, Comparator.<Integer>comparingInt(pair -> -weights[pair]).thenComparingInt(pair -> distances[pair]));
+      for (int i = 0; i < pairs.length; i++) {
+        sortedPairs[i] = pairs[i];
+      }
+    }
+    return sortedPairs;
+  }
+
+  private static int bitLength(int value) {
+    return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+  }
+
+  private static int[] toArray(Collection<Integer> lines) {
+    int[] result = new int[lines.size()];
+    int i = 0;
+    for (Integer line : lines) {
+      result[i] = line;
+      i++;
+    }
+    return result;
+  }
+
+  /**
+   * Number of issues of each line, indexed by line
+   */
+  private static int[] countByLine(Multimap<Integer, ?> issuesByLine) {
+    int maxLine = 0;
+    for (Integer line : issuesByLine.keySet()) {
+      maxLine = Math.max(maxLine, line);
+    }
+    int[] counts = new int[maxLine + 1];
+    for (Integer line : issuesByLine.keySet()) {
+      counts[line] = issuesByLine.get(line).size();
     }
+    return counts;
   }
 
   /**
    * @param startLineA number of line from first version of text (numbering starts from 1)
    * @param startLineB number of line from second version of text (numbering starts from 1)
    */
-  static int lengthOfMaximalBlock(LineHashSequence hashesA, int startLineA, LineHashSequence hashesB, int startLineB) {
-    if (!hashesA.getHashForLine(startLineA).equals(hashesB.getHashForLine(startLineB))) {
+  static int lengthOfMaximalBlock(TrackingIndex.LineHashes hashesA, int startLineA, TrackingIndex.LineHashes hashesB, int startLineB) {
+    if (hashesA.idForLine(startLineA) != hashesB.idForLine(startLineB)) {
       return 0;
     }
     int length = 0;
     int ai = startLineA;
     int bi = startLineB;
-    while (ai <= hashesA.length() && bi <= hashesB.length() && hashesA.getHashForLine(ai).equals(hashesB.getHashForLine(bi))) {
+    while (ai <= hashesA.length() && bi <= hashesB.length() && hashesA.idForLine(ai) == hashesB.idForLine(bi)) {
       ai++;
       bi++;
       length++;
     }
     ai = startLineA;
     bi = startLineB;
-    while (ai > 0 && bi > 0 && hashesA.getHashForLine(ai).equals(hashesB.getHashForLine(bi))) {
+    while (ai > 0 && bi > 0 && hashesA.idForLine(ai) == hashesB.idForLine(bi)) {
       ai--;
       bi--;
       length++;
@@ -121,15 +211,24 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     return length - 1;
   }
 
-  private void map(Collection<RAW> raws, Collection<BASE> bases, Tracking<RAW, BASE> result) {
+  /**
+   * @return number of issues matched
+   */
+  private int map(Collection<RAW> raws, Collection<BASE> bases, Tracking<RAW, BASE> result) {
+    int matches = 0;
     for (RAW raw : raws) {
+      if (result.baseFor(raw) != null) {
+        continue;
+      }
       for (BASE base : bases) {
         if (result.containsUnmatchedBase(base) && base.getRuleKey().equals(raw.getRuleKey())) {
           result.match(raw, base);
+          matches++;
           break;
         }
       }
     }
+    return matches;
   }
 
   private static <T extends Trackable> Multimap<Integer, T> groupByLine(Iterable<T> trackables, BlockHashSequence hashSequence) {
@@ -143,36 +242,10 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     return result;
   }
 
-  private static class LinePair {
-    int baseLine;
-    int rawLine;
-    int weight;
-
-    public LinePair(int baseLine, int rawLine, int weight) {
-      this.baseLine = baseLine;
-      this.rawLine = rawLine;
-      this.weight = weight;
-    }
-  }
-
   private static class HashOccurrence {
     int baseLine;
     int rawLine;
     int baseCount;
     int rawCount;
   }
-
-  private enum LinePairComparator implements Comparator<LinePair> {
-    INSTANCE;
-
-    @Override
-    public int compare(LinePair o1, LinePair o2) {
-      int weightDiff = o2.weight - o1.weight;
-      if (weightDiff != 0) {
-        return weightDiff;
-      } else {
-        return Math.abs(o1.baseLine - o1.rawLine) - Math.abs(o2.baseLine - o2.rawLine);
-      }
-    }
-  }
 }
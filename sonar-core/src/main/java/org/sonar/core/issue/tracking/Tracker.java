@@ -19,231 +19,91 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
-import java.util.Objects;
-import javax.annotation.Nonnull;
-import org.apache.commons.lang.StringUtils;
-import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.core.issue.tracking.TrackingIndex.SearchKey;
 
+/**
+ * Matches the raw issues of a file with its base issues. Search keys of issues are made of int ids of rule keys,
+ * line hashes and messages, see {@link TrackingIndex}. Indexes are reused by all the files tracked by a thread.
+ */
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
 public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
+  private static final ThreadLocal<TrackingIndex> INDEXES = new ThreadLocal<TrackingIndex>() {
+    @Override
+    protected TrackingIndex initialValue() {
+      return new TrackingIndex();
+    }
+  };
+
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    TrackingIndex index = INDEXES.get();
+    try {
+      index.load(rawInput.getIssues(), baseInput.getIssues());
 
-    // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+      // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
+      match(tracking, index, SearchKey.LINE_AND_LINE_HASH);
 
-    // 2. detect code moves by comparing blocks of codes
-    detectCodeMoves(rawInput, baseInput, tracking);
+      // 2. detect code moves by comparing blocks of codes
+      detectCodeMoves(rawInput, baseInput, tracking, index);
 
-    // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+      // 3. match issues with same rule, same message and same line hash
+      match(tracking, index, SearchKey.LINE_HASH_AND_MESSAGE);
 
-    // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+      // 4. match issues with same rule, same line and same message
+      match(tracking, index, SearchKey.LINE_AND_MESSAGE);
 
-    // 5. match issues with same rule and same line hash but different line and different message.
-    // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+      // 5. match issues with same rule and same line hash but different line and different message.
+      // See SONAR-2812
+      match(tracking, index, SearchKey.LINE_HASH);
+    } finally {
+      index.clear();
+    }
 
     return tracking;
   }
 
-  private void detectCodeMoves(Input<RAW> rawInput, Input<BASE> baseInput, Tracking<RAW, BASE> tracking) {
-    if (!tracking.isComplete()) {
-      new BlockRecognizer<RAW, BASE>().match(rawInput, baseInput, tracking);
-    }
-  }
-
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
+  @SuppressWarnings("unchecked")
+  private void detectCodeMoves(Input<RAW> rawInput, Input<BASE> baseInput, Tracking<RAW, BASE> tracking, TrackingIndex index) {
     if (tracking.isComplete()) {
       return;
     }
+    new BlockRecognizer<RAW, BASE>().match(rawInput, baseInput, tracking, index);
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
-    }
-
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
-        // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
-        // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
+    // issues matched by blocks are not indexed by the next passes
+    for (int i = 0; i < index.rawCount(); i++) {
+      if (!index.isRawMatched(i) && tracking.baseFor((RAW) index.raw(i)) != null) {
+        index.setRawMatched(i);
       }
     }
-  }
-
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+    for (int i = 0; i < index.baseCount(); i++) {
+      if (!index.isBaseMatched(i) && !tracking.containsUnmatchedBase((BASE) index.base(i))) {
+        index.setBaseMatched(i);
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
     }
   }
 
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
-
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
-      }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
-    }
-  }
-
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
-
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
+  @SuppressWarnings("unchecked")
+  private void match(Tracking<RAW, BASE> tracking, TrackingIndex index, SearchKey searchKey) {
+    if (tracking.isComplete()) {
+      return;
     }
 
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+    index.indexUnmatchedBases(searchKey);
+    for (int rawIndex = 0; rawIndex < index.rawCount(); rawIndex++) {
+      if (index.isRawMatched(rawIndex)) {
+        continue;
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
-    }
-  }
-
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
+      // Message could be checked to take the best one.
+      int baseIndex = index.pollBase(searchKey, rawIndex);
+      if (baseIndex >= 0) {
+        tracking.match((RAW) index.raw(rawIndex), (BASE) index.base(baseIndex));
+        index.setMatched(rawIndex, baseIndex);
       }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
     }
   }
 }
@@ -0,0 +1,501 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.Arrays;
+import java.util.Collection;
+import javax.annotation.Nullable;
+
+/**
+ * Primitive indexes of the raw and base issues of a file, used by {@link Tracker} to match issues without allocating
+ * a search key per issue and per pass.
+ * <p>
+ * Rule keys, line hashes and messages are interned into int ids, so that a search key is made of three ints.
+ * Before each pass, the unmatched base issues are indexed in an open-addressing table of search keys. The base
+ * issues having the same key are chained in iteration order, the first one of the chain being matched first.
+ * <p>
+ * Not thread-safe. An instance is reused by a thread for all the files it tracks, so arrays are allocated only when
+ * a file has more issues than the previous ones.
+ */
+final class TrackingIndex {
+
+  /**
+   * Id of the empty line hash, which is also the hash of lines that do not exist
+   */
+  static final int EMPTY_LINE_HASH = 0;
+
+  private static final int NULL_MESSAGE = -1;
+  private static final int NOT_INTERNED = -1;
+  private static final int NO_ISSUE = -1;
+  private static final int MIN_CAPACITY = 16;
+  /**
+   * Arrays bigger than this number of elements are shrunk when much larger than needed by a file
+   */
+  private static final int MAX_RETAINED_CAPACITY = 4096;
+  /**
+   * Interned rule keys are kept across files, unless there are more than this number of rules
+   */
+  private static final int MAX_RULE_KEYS = 64 * 1024;
+
+  private final Interner ruleKeys = new Interner();
+  private final Interner strings = new Interner();
+  private final Issues raws = new Issues();
+  private final Issues bases = new Issues();
+  private final LineHashes rawLineHashes = new LineHashes();
+  private final LineHashes baseLineHashes = new LineHashes();
+
+  /**
+   * Search keys of unmatched base issues, indexed by slot
+   */
+  private int[] keys1 = new int[MIN_CAPACITY];
+  private int[] keys2 = new int[MIN_CAPACITY];
+  private int[] keys3 = new int[MIN_CAPACITY];
+  /**
+   * First and last base issues having the key of each slot. A slot is empty if it has no last issue.
+   */
+  private int[] firstBases = new int[MIN_CAPACITY];
+  private int[] lastBases = new int[MIN_CAPACITY];
+  private int mask;
+  /**
+   * Next base issue having the same search key, indexed by base issue
+   */
+  private int[] nextBases = new int[MIN_CAPACITY];
+
+  TrackingIndex() {
+    clearStrings();
+  }
+
+  enum SearchKey {
+    /**
+     * Same rule, same line and same line hash
+     */
+    LINE_AND_LINE_HASH {
+      @Override
+      int key1(Issues issues, int index) {
+        return issues.ruleAndLines[index];
+      }
+
+      @Override
+      int key2(Issues issues, int index) {
+        return issues.lines[index];
+      }
+
+      @Override
+      int key3(Issues issues, int index) {
+        return issues.lineHashes[index];
+      }
+    },
+
+    /**
+     * Same rule, same message and same line hash
+     */
+    LINE_HASH_AND_MESSAGE {
+      @Override
+      int key1(Issues issues, int index) {
+        return issues.rules[index];
+      }
+
+      @Override
+      int key2(Issues issues, int index) {
+        return issues.messages[index];
+      }
+
+      @Override
+      int key3(Issues issues, int index) {
+        return issues.lineHashes[index];
+      }
+    },
+
+    /**
+     * Same rule, same line and same message
+     */
+    LINE_AND_MESSAGE {
+      @Override
+      int key1(Issues issues, int index) {
+        return issues.ruleAndLines[index];
+      }
+
+      @Override
+      int key2(Issues issues, int index) {
+        return issues.lines[index];
+      }
+
+      @Override
+      int key3(Issues issues, int index) {
+        return issues.messages[index];
+      }
+    },
+
+    /**
+     * Same rule and same line hash
+     */
+    LINE_HASH {
+      @Override
+      int key1(Issues issues, int index) {
+        return issues.rules[index];
+      }
+
+      @Override
+      int key2(Issues issues, int index) {
+        return issues.lineHashes[index];
+      }
+
+      @Override
+      int key3(Issues issues, int index) {
+        return 0;
+      }
+    };
+
+    abstract int key1(Issues issues, int index);
+
+    abstract int key2(Issues issues, int index);
+
+    abstract int key3(Issues issues, int index);
+  }
+
+  void load(Collection<? extends Trackable> rawIssues, Collection<? extends Trackable> baseIssues) {
+    if (ruleKeys.size() > MAX_RULE_KEYS) {
+      ruleKeys.clear();
+    }
+    raws.load(rawIssues);
+    bases.load(baseIssues);
+    if (shouldReallocate(nextBases.length, bases.size)) {
+      nextBases = new int[Math.max(MIN_CAPACITY, bases.size)];
+    }
+  }
+
+  /**
+   * Releases the references to the issues and line hashes of the file
+   */
+  void clear() {
+    raws.clear();
+    bases.clear();
+    rawLineHashes.clear();
+    baseLineHashes.clear();
+    clearStrings();
+  }
+
+  private void clearStrings() {
+    strings.clear();
+    strings.intern("");
+  }
+
+  int rawCount() {
+    return raws.size;
+  }
+
+  Trackable raw(int index) {
+    return raws.issues[index];
+  }
+
+  boolean isRawMatched(int index) {
+    return raws.matched[index];
+  }
+
+  int baseCount() {
+    return bases.size;
+  }
+
+  Trackable base(int index) {
+    return bases.issues[index];
+  }
+
+  boolean isBaseMatched(int index) {
+    return bases.matched[index];
+  }
+
+  void setMatched(int rawIndex, int baseIndex) {
+    raws.matched[rawIndex] = true;
+    bases.matched[baseIndex] = true;
+  }
+
+  void setRawMatched(int index) {
+    raws.matched[index] = true;
+  }
+
+  void setBaseMatched(int index) {
+    bases.matched[index] = true;
+  }
+
+  /**
+   * Hashes of the lines of the raw input, interned when compared. Valid until {@link #clear()}.
+   */
+  LineHashes rawLineHashes(LineHashSequence lineHashSequence) {
+    rawLineHashes.reset(lineHashSequence);
+    return rawLineHashes;
+  }
+
+  /**
+   * Hashes of the lines of the base input, interned when compared. Valid until {@link #clear()}.
+   */
+  LineHashes baseLineHashes(LineHashSequence lineHashSequence) {
+    baseLineHashes.reset(lineHashSequence);
+    return baseLineHashes;
+  }
+
+  /**
+   * Indexes the unmatched base issues by the given search key. Replaces the previous index.
+   */
+  void indexUnmatchedBases(SearchKey searchKey) {
+    int capacity = tableCapacity(bases.size);
+    if (shouldReallocate(lastBases.length, capacity)) {
+      keys1 = new int[capacity];
+      keys2 = new int[capacity];
+      keys3 = new int[capacity];
+      firstBases = new int[capacity];
+      lastBases = new int[capacity];
+    }
+    Arrays.fill(lastBases, 0, capacity, NO_ISSUE);
+    mask = capacity - 1;
+
+    for (int i = 0; i < bases.size; i++) {
+      if (bases.matched[i]) {
+        continue;
+      }
+      int key1 = searchKey.key1(bases, i);
+      int key2 = searchKey.key2(bases, i);
+      int key3 = searchKey.key3(bases, i);
+      int slot = slot(key1, key2, key3);
+      if (lastBases[slot] == NO_ISSUE) {
+        keys1[slot] = key1;
+        keys2[slot] = key2;
+        keys3[slot] = key3;
+        firstBases[slot] = i;
+      } else {
+        nextBases[lastBases[slot]] = i;
+      }
+      lastBases[slot] = i;
+      nextBases[i] = NO_ISSUE;
+    }
+  }
+
+  /**
+   * Removes from the index the first unmatched base issue having the search key of the given raw issue.
+   *
+   * @return index of this base issue, or -1 if there is none
+   */
+  int pollBase(SearchKey searchKey, int rawIndex) {
+    int slot = slot(searchKey.key1(raws, rawIndex), searchKey.key2(raws, rawIndex), searchKey.key3(raws, rawIndex));
+    if (lastBases[slot] == NO_ISSUE) {
+      return NO_ISSUE;
+    }
+    int base = firstBases[slot];
+    if (base != NO_ISSUE) {
+      firstBases[slot] = nextBases[base];
+    }
+    return base;
+  }
+
+  /**
+   * Slot having the given key, or the empty slot where it should be added
+   */
+  private int slot(int key1, int key2, int key3) {
+    int slot = hash(key1, key2, key3) & mask;
+    while (lastBases[slot] != NO_ISSUE && (keys1[slot] != key1 || keys2[slot] != key2 || keys3[slot] != key3)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(int key1, int key2, int key3) {
+    int h = key1;
+    h = 31 * h + key2;
+    h = 31 * h + key3;
+    return mix(h);
+  }
+
+  private static int mix(int hashCode) {
+    int h = hashCode * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Power of two bigger than twice the number of elements, so that the load factor is lower than 0.5
+   */
+  private static int tableCapacity(int size) {
+    return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size)) << 2);
+  }
+
+  private static boolean shouldReallocate(int length, int required) {
+    return length < required || length > MAX_RETAINED_CAPACITY && length > 4 * required;
+  }
+
+  /**
+   * Issues of an input, and their interned fields
+   */
+  final class Issues {
+    private Trackable[] issues = new Trackable[MIN_CAPACITY];
+    private int[] rules = new int[MIN_CAPACITY];
+    /**
+     * Rule id shifted left, the lowest bit being set if the issue has no line
+     */
+    private int[] ruleAndLines = new int[MIN_CAPACITY];
+    /**
+     * Line, or 0 if the issue has no line
+     */
+    private int[] lines = new int[MIN_CAPACITY];
+    private int[] lineHashes = new int[MIN_CAPACITY];
+    private int[] messages = new int[MIN_CAPACITY];
+    private boolean[] matched = new boolean[MIN_CAPACITY];
+    private int size;
+
+    private void load(Collection<? extends Trackable> trackables) {
+      ensureCapacity(trackables.size());
+      size = 0;
+      for (Trackable trackable : trackables) {
+        int rule = ruleKeys.intern(trackable.getRuleKey());
+        Integer line = trackable.getLine();
+        String lineHash = trackable.getLineHash();
+        String message = trackable.getMessage();
+        issues[size] = trackable;
+        rules[size] = rule;
+        ruleAndLines[size] = line == null ? ((rule << 1) | 1) : (rule << 1);
+        lines[size] = line == null ? 0 : line;
+        lineHashes[size] = lineHash == null ? EMPTY_LINE_HASH : strings.intern(lineHash);
+        messages[size] = message == null ? NULL_MESSAGE : strings.intern(message);
+        matched[size] = false;
+        size++;
+      }
+    }
+
+    private void ensureCapacity(int required) {
+      if (shouldReallocate(issues.length, required)) {
+        int capacity = Math.max(MIN_CAPACITY, required);
+        issues = new Trackable[capacity];
+        rules = new int[capacity];
+        ruleAndLines = new int[capacity];
+        lines = new int[capacity];
+        lineHashes = new int[capacity];
+        messages = new int[capacity];
+        matched = new boolean[capacity];
+      }
+    }
+
+    private void clear() {
+      Arrays.fill(issues, 0, size, null);
+      size = 0;
+    }
+  }
+
+  /**
+   * Ids of the hashes of the lines of a {@link LineHashSequence}. A line hash is interned the first time its id is
+   * requested, as blocks are usually compared on a few lines only.
+   */
+  final class LineHashes {
+    @Nullable
+    private LineHashSequence sequence;
+    private int[] ids = new int[MIN_CAPACITY];
+    private int length;
+
+    private void reset(LineHashSequence lineHashSequence) {
+      this.sequence = lineHashSequence;
+      this.length = lineHashSequence.length();
+      if (shouldReallocate(ids.length, length)) {
+        ids = new int[Math.max(MIN_CAPACITY, length)];
+      }
+      Arrays.fill(ids, 0, length, NOT_INTERNED);
+    }
+
+    int length() {
+      return length;
+    }
+
+    /**
+     * Id of the hash of the given line, starting with 1. It is {@link #EMPTY_LINE_HASH} if the line does not exist.
+     */
+    int idForLine(int line) {
+      if (line <= 0 || line > length) {
+        return EMPTY_LINE_HASH;
+      }
+      int id = ids[line - 1];
+      if (id == NOT_INTERNED) {
+        id = strings.intern(sequence.getHashForLine(line));
+        ids[line - 1] = id;
+      }
+      return id;
+    }
+
+    private void clear() {
+      sequence = null;
+      length = 0;
+    }
+  }
+
+  /**
+   * Open-addressing table giving sequential int ids to objects
+   */
+  static final class Interner {
+    private Object[] keys = new Object[MIN_CAPACITY];
+    private int[] ids = new int[MIN_CAPACITY];
+    private int size;
+
+    int intern(Object key) {
+      int slot = mix(key.hashCode()) & (keys.length - 1);
+      Object existing = keys[slot];
+      while (existing != null) {
+        if (existing == key || existing.equals(key)) {
+          return ids[slot];
+        }
+        slot = (slot + 1) & (keys.length - 1);
+        existing = keys[slot];
+      }
+      int id = size;
+      keys[slot] = key;
+      ids[slot] = id;
+      size++;
+      if (2 * size > keys.length) {
+        rehash(keys.length * 2);
+      }
+      return id;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void clear() {
+      if (keys.length > MAX_RETAINED_CAPACITY && keys.length > 4 * tableCapacity(size)) {
+        keys = new Object[tableCapacity(size)];
+        ids = new int[keys.length];
+      } else {
+        Arrays.fill(keys, null);
+      }
+      size = 0;
+    }
+
+    private void rehash(int capacity) {
+      Object[] oldKeys = keys;
+      int[] oldIds = ids;
+      keys = new Object[capacity];
+      ids = new int[capacity];
+      for (int i = 0; i < oldKeys.length; i++) {
+        Object key = oldKeys[i];
+        if (key != null) {
+          int slot = mix(key.hashCode()) & (capacity - 1);
+          while (keys[slot] != null) {
+            slot = (slot + 1) & (capacity - 1);
+          }
+          keys[slot] = key;
+          ids[slot] = oldIds[i];
+        }
+      }
+    }
+  }
+}
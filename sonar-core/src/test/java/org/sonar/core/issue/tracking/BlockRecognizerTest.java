@@ -42,7 +42,8 @@ public class BlockRecognizerTest {
   }
 
   private int compute(LineHashSequence seqA, LineHashSequence seqB, int ai, int bi) {
-    return BlockRecognizer.lengthOfMaximalBlock(seqA, ai, seqB, bi);
+    TrackingIndex index = new TrackingIndex();
+    return BlockRecognizer.lengthOfMaximalBlock(index.baseLineHashes(seqA), ai, index.rawLineHashes(seqB), bi);
   }
 
   private static LineHashSequence seq(String text) {
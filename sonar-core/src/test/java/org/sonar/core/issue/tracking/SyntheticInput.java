@@ -0,0 +1,165 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Random issues on a file having random lines. {@link #nextVersion(Random)} gives the issues of the next version of
+ * the file, in which some lines are added, removed or modified, some messages change, some issues are fixed and some
+ * are new.
+ */
+class SyntheticInput implements Input<SyntheticInput.Issue> {
+
+  private final int ruleCount;
+  private final List<String> lineHashes;
+  private final List<Issue> issues;
+  private final LineHashSequence lineHashSequence;
+  private final BlockHashSequence blockHashSequence;
+
+  private SyntheticInput(int ruleCount, List<String> lineHashes, List<Issue> issues) {
+    this.ruleCount = ruleCount;
+    this.lineHashes = lineHashes;
+    this.issues = issues;
+    this.lineHashSequence = new LineHashSequence(lineHashes);
+    this.blockHashSequence = BlockHashSequence.create(lineHashSequence);
+  }
+
+  static SyntheticInput create(Random random, int lineCount, int issueCount, int ruleCount) {
+    List<String> lineHashes = new ArrayList<>(lineCount);
+    for (int i = 0; i < lineCount; i++) {
+      lineHashes.add(randomLineHash(random, lineCount));
+    }
+    List<Issue> issues = new ArrayList<>(issueCount);
+    for (int i = 0; i < issueCount; i++) {
+      issues.add(randomIssue(random, lineHashes, ruleCount));
+    }
+    return new SyntheticInput(ruleCount, lineHashes, issues);
+  }
+
+  SyntheticInput nextVersion(Random random) {
+    List<String> newLineHashes = new ArrayList<>(lineHashes.size());
+    // line of next version of each line, 0 if removed
+    int[] newLines = new int[lineHashes.size() + 1];
+    for (int line = 1; line <= lineHashes.size(); line++) {
+      int change = random.nextInt(100);
+      if (change < 2) {
+        newLines[line] = 0;
+        continue;
+      }
+      if (change < 4) {
+        newLineHashes.add(randomLineHash(random, lineHashes.size()));
+      }
+      newLineHashes.add(change < 5 ? randomLineHash(random, lineHashes.size()) : lineHashes.get(line - 1));
+      newLines[line] = newLineHashes.size();
+    }
+
+    List<Issue> newIssues = new ArrayList<>(issues.size());
+    for (Issue issue : issues) {
+      int change = random.nextInt(100);
+      Integer line = issue.line;
+      if (change < 5 || (line != null && newLines[line] == 0)) {
+        // fixed
+        continue;
+      }
+      Integer newLine = line == null ? null : newLines[line];
+      String message = change < 15 ? randomMessage(random) : issue.message;
+      newIssues.add(new Issue(newLine, lineHashFor(newLineHashes, newLine), issue.ruleKey, message));
+    }
+    for (int i = 0; i < issues.size() / 20; i++) {
+      newIssues.add(randomIssue(random, newLineHashes, ruleCount));
+    }
+    return new SyntheticInput(ruleCount, newLineHashes, newIssues);
+  }
+
+  private static String randomLineHash(Random random, int lineCount) {
+    // some lines have the same hash, like empty lines or closing braces
+    return "h" + random.nextInt(Math.max(1, lineCount / 4));
+  }
+
+  private static String randomMessage(Random random) {
+    return "Message " + random.nextInt(5);
+  }
+
+  private static Issue randomIssue(Random random, List<String> lineHashes, int ruleCount) {
+    Integer line = lineHashes.isEmpty() || random.nextInt(20) == 0 ? null : (1 + random.nextInt(lineHashes.size()));
+    RuleKey ruleKey = RuleKey.of("repo", "rule" + random.nextInt(ruleCount));
+    return new Issue(line, lineHashFor(lineHashes, line), ruleKey, randomMessage(random));
+  }
+
+  @CheckForNull
+  private static String lineHashFor(List<String> lineHashes, @Nullable Integer line) {
+    return line == null ? null : lineHashes.get(line - 1);
+  }
+
+  @Override
+  public LineHashSequence getLineHashSequence() {
+    return lineHashSequence;
+  }
+
+  @Override
+  public BlockHashSequence getBlockHashSequence() {
+    return blockHashSequence;
+  }
+
+  @Override
+  public List<Issue> getIssues() {
+    return issues;
+  }
+
+  static class Issue implements Trackable {
+    private final Integer line;
+    private final String lineHash;
+    private final RuleKey ruleKey;
+    private final String message;
+
+    Issue(@Nullable Integer line, @Nullable String lineHash, RuleKey ruleKey, String message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.ruleKey = ruleKey;
+      this.message = message;
+    }
+
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String getLineHash() {
+      return lineHash;
+    }
+
+    @Override
+    public RuleKey getRuleKey() {
+      return ruleKey;
+    }
+  }
+}
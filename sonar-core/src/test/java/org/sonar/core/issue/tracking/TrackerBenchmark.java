@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Tracks 100k synthetic issues, spread over files of different sizes, with {@link Tracker} and with the
+ * multimap implementation it replaced.
+ * This is not a unit test, run it with {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TrackerBenchmark {
+
+  private static final int ISSUES = 100_000;
+
+  /**
+   * Number of issues per file
+   */
+  @Param({"10", "100", "5000"})
+  public int issuesPerFile;
+
+  private final Tracker<SyntheticInput.Issue, SyntheticInput.Issue> tracker = new Tracker<>();
+  private final MultimapTracker<SyntheticInput.Issue, SyntheticInput.Issue> multimapTracker = new MultimapTracker<>();
+  private final List<SyntheticInput> baseInputs = new ArrayList<>();
+  private final List<SyntheticInput> rawInputs = new ArrayList<>();
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    for (int i = 0; i < ISSUES / issuesPerFile; i++) {
+      SyntheticInput baseInput = SyntheticInput.create(random, 10 * issuesPerFile, issuesPerFile, 20);
+      baseInputs.add(baseInput);
+      rawInputs.add(baseInput.nextVersion(random));
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void tracker(Blackhole blackhole) {
+    for (int i = 0; i < rawInputs.size(); i++) {
+      blackhole.consume(tracker.track(rawInputs.get(i), baseInputs.get(i)));
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void tracker_concurrently(Blackhole blackhole) {
+    tracker(blackhole);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void multimap_tracker(Blackhole blackhole) {
+    for (int i = 0; i < rawInputs.size(); i++) {
+      blackhole.consume(multimapTracker.track(rawInputs.get(i), baseInputs.get(i)));
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TrackerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -22,6 +22,7 @@ package org.sonar.core.issue.tracking;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Rule;
@@ -381,6 +382,28 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw1)).isEqualTo(base1);
   }
 
+  /**
+   * Files of different sizes are tracked by the same thread, so indexes are reused
+   */
+  @Test
+  public void match_same_issues_as_multimap_tracker() {
+    MultimapTracker<SyntheticInput.Issue, SyntheticInput.Issue> multimapTracker = new MultimapTracker<>();
+    Tracker<SyntheticInput.Issue, SyntheticInput.Issue> indexedTracker = new Tracker<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      SyntheticInput baseInput = SyntheticInput.create(random, 1 + random.nextInt(300), random.nextInt(150), 1 + random.nextInt(5));
+      SyntheticInput rawInput = baseInput.nextVersion(random);
+
+      Tracking<SyntheticInput.Issue, SyntheticInput.Issue> expected = multimapTracker.track(rawInput, baseInput);
+      Tracking<SyntheticInput.Issue, SyntheticInput.Issue> tracking = indexedTracker.track(rawInput, baseInput);
+
+      for (SyntheticInput.Issue raw : rawInput.getIssues()) {
+        assertThat(tracking.baseFor(raw)).isSameAs(expected.baseFor(raw));
+      }
+      assertThat(tracking.getUnmatchedBases()).containsExactlyElementsOf(expected.getUnmatchedBases());
+    }
+  }
+
   private static class Issue implements Trackable {
     private final RuleKey ruleKey;
     private final Integer line;
@@ -0,0 +1,118 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.Collections;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.core.issue.tracking.TrackingIndex.SearchKey;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrackingIndexTest {
+
+  private static final RuleKey RULE_1 = RuleKey.of("java", "S1");
+  private static final RuleKey RULE_2 = RuleKey.of("java", "S2");
+
+  private TrackingIndex underTest = new TrackingIndex();
+
+  @Test
+  public void poll_bases_having_same_key_in_iteration_order() {
+    underTest.load(
+      asList(issue(1, "h1", RULE_1), issue(1, "h1", RULE_1), issue(1, "h1", RULE_1)),
+      asList(issue(1, "h1", RULE_2), issue(1, "h1", RuleKey.of("java", "S1")), issue(2, "h1", RULE_1), issue(1, "h1", RULE_1)));
+
+    underTest.indexUnmatchedBases(SearchKey.LINE_AND_LINE_HASH);
+
+    assertThat(underTest.pollBase(SearchKey.LINE_AND_LINE_HASH, 0)).isEqualTo(1);
+    assertThat(underTest.pollBase(SearchKey.LINE_AND_LINE_HASH, 1)).isEqualTo(3);
+    assertThat(underTest.pollBase(SearchKey.LINE_AND_LINE_HASH, 2)).isEqualTo(-1);
+  }
+
+  @Test
+  public void matched_bases_are_not_indexed() {
+    underTest.load(
+      asList(issue(1, "h1", RULE_1)),
+      asList(issue(3, "h1", RULE_1), issue(4, "h1", RULE_1)));
+    underTest.setBaseMatched(0);
+
+    underTest.indexUnmatchedBases(SearchKey.LINE_HASH);
+
+    assertThat(underTest.pollBase(SearchKey.LINE_HASH, 0)).isEqualTo(1);
+  }
+
+  @Test
+  public void issue_without_line_does_not_match_issue_on_line_0() {
+    underTest.load(
+      asList(issue(null, "h1", RULE_1)),
+      asList(issue(0, "h1", RULE_1), issue(null, "h1", RULE_1)));
+
+    underTest.indexUnmatchedBases(SearchKey.LINE_AND_LINE_HASH);
+
+    assertThat(underTest.pollBase(SearchKey.LINE_AND_LINE_HASH, 0)).isEqualTo(1);
+  }
+
+  @Test
+  public void null_line_hash_is_empty_line_hash() {
+    underTest.load(
+      asList(issue(1, null, RULE_1)),
+      asList(issue(2, "", RULE_1)));
+
+    underTest.indexUnmatchedBases(SearchKey.LINE_HASH);
+
+    assertThat(underTest.pollBase(SearchKey.LINE_HASH, 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void intern_line_hashes() {
+    TrackingIndex.LineHashes lineHashes = underTest.rawLineHashes(new LineHashSequence(asList("a", "b", "", "a")));
+
+    assertThat(lineHashes.length()).isEqualTo(4);
+    assertThat(lineHashes.idForLine(1)).isEqualTo(lineHashes.idForLine(4)).isNotEqualTo(lineHashes.idForLine(2));
+    assertThat(lineHashes.idForLine(3)).isEqualTo(TrackingIndex.EMPTY_LINE_HASH);
+    assertThat(lineHashes.idForLine(0)).isEqualTo(TrackingIndex.EMPTY_LINE_HASH);
+    assertThat(lineHashes.idForLine(5)).isEqualTo(TrackingIndex.EMPTY_LINE_HASH);
+  }
+
+  @Test
+  public void raw_and_base_line_hashes_share_ids() {
+    TrackingIndex.LineHashes rawLineHashes = underTest.rawLineHashes(new LineHashSequence(asList("a", "b")));
+    TrackingIndex.LineHashes baseLineHashes = underTest.baseLineHashes(new LineHashSequence(asList("b", "a")));
+
+    assertThat(rawLineHashes.idForLine(1)).isEqualTo(baseLineHashes.idForLine(2));
+    assertThat(rawLineHashes.idForLine(2)).isEqualTo(baseLineHashes.idForLine(1));
+  }
+
+  @Test
+  public void clear_releases_issues() {
+    underTest.load(asList(issue(1, "h1", RULE_1)), Collections.emptyList());
+
+    underTest.clear();
+
+    assertThat(underTest.rawCount()).isEqualTo(0);
+    assertThat(underTest.rawLineHashes(new LineHashSequence(asList("h1"))).idForLine(1)).isEqualTo(1);
+  }
+
+  private static SyntheticInput.Issue issue(@Nullable Integer line, @Nullable String lineHash, RuleKey ruleKey) {
+    return new SyntheticInput.Issue(line, lineHash, ruleKey, "msg");
+  }
+}
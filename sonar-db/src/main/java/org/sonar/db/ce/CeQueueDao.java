@@ -118,7 +118,19 @@ public class CeQueueDao implements Dao {
     return tryToPeek(session, taskUuid);
   }
 
-  private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
+  /**
+   * Uuids of the pending tasks which could be peeked, oldest first: only the oldest pending task of each component
+   * with no task in progress is returned. At most {@code maxCount} uuids are returned.
+   */
+  public List<String> selectEligibleForPeek(DbSession session, int maxCount) {
+    return mapper(session).selectEligibleForPeek(new RowBounds(0, maxCount));
+  }
+
+  /**
+   * Moves the specified task to status {@link CeQueueDto.Status#IN_PROGRESS} if it is still pending.
+   * Returns {@link Optional#absent()} if it has been peeked concurrently or does not exist anymore.
+   */
+  public Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
     int touchedRows = mapper(session).updateIfStatus(taskUuid, IN_PROGRESS, system2.now(), system2.now(), PENDING);
     if (touchedRows != 1) {
       return Optional.absent();
@@ -0,0 +1,157 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sorts the components of a {@link ComponentTreeQuery} by the value, or by a variation, of a numerical measure
+ * of the last analysis. Components without measure are returned last, whatever the direction of the sort.
+ * <p>
+ * Measures which are not persisted because they are equal to the best value of the metric can be restored by
+ * {@link Builder#setBestValue(Double, Collection)}, so that they are sorted as if they were present.
+ * </p>
+ */
+public class ComponentTreeMeasureSort {
+
+  private final int metricId;
+  @CheckForNull
+  private final Integer variationIndex;
+  @CheckForNull
+  private final Long personId;
+  @CheckForNull
+  private final Double bestValue;
+  // SONAR-7681 a public implementation of List must be used in MyBatis - potential concurrency exceptions otherwise
+  @CheckForNull
+  private final ArrayList<String> bestValueQualifiers;
+  private final boolean withMeasuresOnly;
+
+  private ComponentTreeMeasureSort(Builder builder) {
+    this.metricId = builder.metricId;
+    this.variationIndex = builder.variationIndex;
+    this.personId = builder.personId;
+    this.bestValue = builder.bestValue;
+    this.bestValueQualifiers = builder.bestValue == null ? null : new ArrayList<>(builder.bestValueQualifiers);
+    this.withMeasuresOnly = builder.withMeasuresOnly;
+  }
+
+  public int getMetricId() {
+    return metricId;
+  }
+
+  @CheckForNull
+  public Integer getVariationIndex() {
+    return variationIndex;
+  }
+
+  @CheckForNull
+  public Long getPersonId() {
+    return personId;
+  }
+
+  @CheckForNull
+  public Double getBestValue() {
+    return bestValue;
+  }
+
+  @CheckForNull
+  public Collection<String> getBestValueQualifiers() {
+    return bestValueQualifiers;
+  }
+
+  public boolean isWithMeasuresOnly() {
+    return withMeasuresOnly;
+  }
+
+  /**
+   * Column of PROJECT_MEASURES holding the value to sort on
+   */
+  public String getSqlColumn() {
+    return variationIndex == null ? "value" : ("variation_value_" + variationIndex);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private Integer metricId;
+    private Integer variationIndex;
+    private Long personId;
+    private Double bestValue;
+    private Collection<String> bestValueQualifiers;
+    private boolean withMeasuresOnly = false;
+
+    private Builder() {
+      // private constructor
+    }
+
+    public Builder setMetricId(int metricId) {
+      this.metricId = metricId;
+      return this;
+    }
+
+    /**
+     * Sort on the variation of the given period (from 1 to 5) instead of the value
+     */
+    public Builder setVariationIndex(@Nullable Integer variationIndex) {
+      checkArgument(variationIndex == null || (variationIndex >= 1 && variationIndex <= 5), "Variation index must be between 1 and 5, got %s", variationIndex);
+      this.variationIndex = variationIndex;
+      return this;
+    }
+
+    /**
+     * Sort on the measures of a developer. By default, measures which are not associated to any developer are used.
+     */
+    public Builder setPersonId(@Nullable Long personId) {
+      this.personId = personId;
+      return this;
+    }
+
+    /**
+     * Value of the components of the given qualifiers which have no measure. Ignored if {@code bestValue} is null.
+     */
+    public Builder setBestValue(@Nullable Double bestValue, Collection<String> qualifiers) {
+      this.bestValue = bestValue;
+      this.bestValueQualifiers = requireNonNull(qualifiers);
+      return this;
+    }
+
+    /**
+     * Exclude the components which have no value to sort on
+     */
+    public Builder setWithMeasuresOnly(boolean withMeasuresOnly) {
+      this.withMeasuresOnly = withMeasuresOnly;
+      return this;
+    }
+
+    public ComponentTreeMeasureSort build() {
+      requireNonNull(metricId, "Metric id must be set");
+      checkArgument(bestValue == null || !bestValueQualifiers.isEmpty(), "Qualifiers of best value must be set");
+      return new ComponentTreeMeasureSort(this);
+    }
+  }
+}
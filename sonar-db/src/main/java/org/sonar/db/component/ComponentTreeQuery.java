@@ -49,6 +49,8 @@ public class ComponentTreeQuery {
   private final String baseUuid;
   private final String sqlSort;
   private final String direction;
+  @CheckForNull
+  private final ComponentTreeMeasureSort measureSort;
 
   private ComponentTreeQuery(Builder builder) {
     this.nameOrKeyQuery = builder.nameOrKeyQuery;
@@ -58,6 +60,7 @@ public class ComponentTreeQuery {
     this.baseUuid = builder.baseUuid;
     this.direction = builder.asc ? "ASC" : "DESC";
     this.sqlSort = sortFieldsToSqlSort(builder.sortFields, direction);
+    this.measureSort = builder.measureSort;
   }
 
   public Collection<String> getQualifiers() {
@@ -94,6 +97,14 @@ public class ComponentTreeQuery {
     return direction;
   }
 
+  /**
+   * When not null, components are sorted by measure first, then by {@link #getSqlSort()}
+   */
+  @CheckForNull
+  public ComponentTreeMeasureSort getMeasureSort() {
+    return measureSort;
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -117,6 +128,8 @@ public class ComponentTreeQuery {
     private String baseUuid;
     private List<String> sortFields;
     private boolean asc = true;
+    @CheckForNull
+    private ComponentTreeMeasureSort measureSort;
 
     private Builder() {
       // private constructor
@@ -163,6 +176,11 @@ public class ComponentTreeQuery {
       this.asc = asc;
       return this;
     }
+
+    public Builder setMeasureSort(@Nullable ComponentTreeMeasureSort measureSort) {
+      this.measureSort = measureSort;
+      return this;
+    }
   }
 
   private static class SortFieldToSqlSortFieldFunction implements Function<String, String> {
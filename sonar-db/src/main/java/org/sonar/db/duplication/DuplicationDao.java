@@ -22,6 +22,7 @@ package org.sonar.db.duplication;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
@@ -38,6 +39,14 @@ public class DuplicationDao implements Dao {
       partition -> session.getMapper(DuplicationMapper.class).selectCandidates(analysisUuid, language, partition));
   }
 
+  /**
+   * Streams to {@code resultHandler} the rows of the last analyses of all projects, on enabled files of the given
+   * language. Rows are {@link DuplicationUnitDto}s ordered by hash, without component key.
+   */
+  public void selectUnitsOfLastAnalyses(DbSession session, String language, ResultHandler resultHandler) {
+    session.getMapper(DuplicationMapper.class).selectUnitsOfLastAnalyses(language, resultHandler);
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
@@ -100,4 +100,9 @@ public final class DuplicationUnitDto {
     return componentKey;
   }
 
+  public DuplicationUnitDto setComponentKey(String componentKey) {
+    this.componentKey = componentKey;
+    return this;
+  }
+
 }
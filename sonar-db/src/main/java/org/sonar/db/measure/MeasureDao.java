@@ -23,12 +23,16 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonar.db.DatabaseUtils.PARTITION_SIZE_FOR_ORACLE;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
@@ -91,6 +95,35 @@ public class MeasureDao implements Dao {
       ids -> mapper(dbSession).selectPastMeasures(componentUuid, analysisUuid, ids));
   }
 
+  /**
+   * Streams to {@code resultHandler} the past measures, not associated to any developer, of the directories, modules,
+   * projects, views and sub-views of the specified analyses. Rows are {@link PastMeasureDto}s, ordered by component UUID
+   * then analysis UUID, so that all the past measures of a component are received consecutively.
+   * <p>
+   * This is the set-based counterpart of {@link #selectPastMeasures(DbSession, String, String, Collection)}, which
+   * requires one query per component and per analysis.
+   * </p>
+   */
+  public void selectPastMeasuresOfNonFileComponents(DbSession dbSession, Collection<String> analysisUuids, Collection<Integer> metricIds,
+    ResultHandler resultHandler) {
+    checkArgument(analysisUuids.size() <= PARTITION_SIZE_FOR_ORACLE, "Can not select past measures of more than %s analyses", PARTITION_SIZE_FOR_ORACLE);
+    if (analysisUuids.isEmpty() || metricIds.isEmpty()) {
+      return;
+    }
+    if (metricIds.size() <= PARTITION_SIZE_FOR_ORACLE) {
+      mapper(dbSession).selectPastMeasuresOfNonFileComponents(analysisUuids, metricIds, resultHandler);
+    } else {
+      // partitioning metrics would break the ordering by component, so they are filtered on the client side
+      Set<Integer> metricIdSet = new HashSet<>(metricIds);
+      mapper(dbSession).selectPastMeasuresOfNonFileComponents(analysisUuids, null, context -> {
+        PastMeasureDto dto = (PastMeasureDto) context.getResultObject();
+        if (metricIdSet.contains(dto.getMetricId())) {
+          resultHandler.handleResult(context);
+        }
+      });
+    }
+  }
+
   /**
    * Used by developer cockpit.
    */
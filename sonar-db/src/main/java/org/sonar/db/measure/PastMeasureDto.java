@@ -28,6 +28,10 @@ public class PastMeasureDto {
 
   private int metricId;
 
+  private String componentUuid;
+
+  private String analysisUuid;
+
   @CheckForNull
   private Double value;
 
@@ -57,6 +61,24 @@ public class PastMeasureDto {
     return this;
   }
 
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  PastMeasureDto setComponentUuid(String s) {
+    this.componentUuid = s;
+    return this;
+  }
+
+  public String getAnalysisUuid() {
+    return analysisUuid;
+  }
+
+  PastMeasureDto setAnalysisUuid(String s) {
+    this.analysisUuid = s;
+    return this;
+  }
+
   @CheckForNull
   public Long getPersonId() {
     return personId;
@@ -52,6 +52,7 @@ public class FileSourceDto {
   private String dataType;
   private String dataHash;
   private String revision;
+  private String inputHash;
 
   public Long getId() {
     return id;
@@ -290,6 +291,20 @@ public class FileSourceDto {
     return this;
   }
 
+  @CheckForNull
+  public String getInputHash() {
+    return inputHash;
+  }
+
+  /**
+   * Hash of the analysis data used to compute {@link #getBinaryData()}. Files which input hash
+   * did not change since previous analysis are not rebuilt.
+   */
+  public FileSourceDto setInputHash(@Nullable String inputHash) {
+    this.inputHash = inputHash;
+    return this;
+  }
+
   public static class Type {
     public static final String SOURCE = "SOURCE";
     public static final String TEST = "TEST";
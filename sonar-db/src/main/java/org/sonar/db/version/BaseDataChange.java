@@ -54,6 +54,13 @@ public abstract class BaseDataChange implements DataChange, MigrationStep {
    * Do not forget to close it !
    */
   protected Connection openConnection() throws SQLException {
+    return openReadConnection(db);
+  }
+
+  /**
+   * Connection used to read rows of data changes, without locking them. Do not forget to close it !
+   */
+  static Connection openReadConnection(Database db) throws SQLException {
     Connection connection = db.getDataSource().getConnection();
     connection.setAutoCommit(false);
     if (connection.getMetaData().supportsTransactionIsolationLevel(Connection.TRANSACTION_READ_UNCOMMITTED)) {
@@ -47,6 +47,13 @@ public interface DataChange {
     public MassUpdate prepareMassUpdate() throws SQLException {
       return new MassUpdate(db, readConnection, writeConnection);
     }
+
+    /**
+     * @see PartitionedMassUpdate
+     */
+    public PartitionedMassUpdate preparePartitionedMassUpdate(String table, String idColumn) {
+      return new PartitionedMassUpdate(db, table, idColumn);
+    }
   }
 
   void execute(Context context) throws SQLException;
@@ -144,6 +144,7 @@ import org.sonar.db.version.v60.PopulateUuidColumnsOfProjects;
 import org.sonar.db.version.v60.PopulateUuidColumnsOfResourceIndex;
 import org.sonar.db.version.v60.PopulateUuidPathColumnOnProjects;
 import org.sonar.db.version.v60.RemoveUsersPasswordWhenNotLocal;
+import org.sonar.db.version.v61.AddInputHashToFileSources;
 import org.sonar.db.version.v61.DeleteProjectDashboards;
 import org.sonar.db.version.v61.DropIsGlobalFromDashboards;
 
@@ -310,7 +311,8 @@ public class MigrationStepModule extends Module {
 
       // 6.1
       DeleteProjectDashboards.class,
-      DropIsGlobalFromDashboards.class
+      DropIsGlobalFromDashboards.class,
+      AddInputHashToFileSources.class
     );
   }
 }
@@ -0,0 +1,315 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.version;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.dbutils.DbUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.ProgressLogger;
+import org.sonar.db.Database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Variant of {@link MassUpdate} for big tables. Rows are selected by ranges of values of a numeric primary key, named
+ * partitions. Partitions are processed concurrently, each thread using its own connections and committing its own
+ * batches.
+ * <p>
+ * The only parameters of the SELECT request are the bounds of the partition, lower bound inclusive then upper bound
+ * exclusive. For example {@code "select id from project_measures where analysis_uuid is null and id >= ? and id < ?"}.
+ * Handlers are called concurrently, so they must be thread-safe.
+ * <p>
+ * Each processed partition is recorded in table LOADED_TEMPLATES, in the same transaction as its last updates. If the
+ * migration fails, the partitions which were done are skipped when it is executed again. Records are deleted once
+ * all the partitions are done.
+ */
+public class PartitionedMassUpdate {
+
+  static final int DEFAULT_PARTITION_SIZE = 100_000;
+  static final int DEFAULT_THREADS = 4;
+  static final String CHECKPOINT_TEMPLATE_TYPE = "MASS_UPDATE";
+
+  private static final Logger LOG = Loggers.get(PartitionedMassUpdate.class);
+
+  private final Database db;
+  private final String table;
+  private final String idColumn;
+  private final AtomicLong counter = new AtomicLong(0L);
+  private final ProgressLogger progress = ProgressLogger.create(getClass(), counter);
+
+  private String selectSql;
+  private final List<String> updateSqls = new ArrayList<>(1);
+  private String rowPluralName = "rows";
+  private int partitionSize = DEFAULT_PARTITION_SIZE;
+  private int threads = DEFAULT_THREADS;
+
+  PartitionedMassUpdate(Database db, String table, String idColumn) {
+    this.db = db;
+    this.table = table;
+    this.idColumn = idColumn;
+  }
+
+  public PartitionedMassUpdate select(String sql) {
+    this.selectSql = sql;
+    return this;
+  }
+
+  public PartitionedMassUpdate update(String sql) {
+    this.updateSqls.add(sql);
+    return this;
+  }
+
+  public PartitionedMassUpdate rowPluralName(String s) {
+    this.rowPluralName = s;
+    this.progress.setPluralLabel(s);
+    return this;
+  }
+
+  /**
+   * Number of values of primary key in each partition. Default is {@link #DEFAULT_PARTITION_SIZE}.
+   */
+  public PartitionedMassUpdate partitionSize(int i) {
+    checkArgument(i > 0, "Partition size must be positive");
+    this.partitionSize = i;
+    return this;
+  }
+
+  /**
+   * Number of partitions processed concurrently. Default is {@link #DEFAULT_THREADS}.
+   */
+  public PartitionedMassUpdate threads(int i) {
+    checkArgument(i > 0, "Number of threads must be positive");
+    this.threads = i;
+    return this;
+  }
+
+  public void execute(MassUpdate.Handler handler) throws SQLException {
+    checkState(selectSql != null && !updateSqls.isEmpty(), "SELECT or UPDATE requests are not defined");
+    checkState(updateSqls.size() == 1, "There should be only one update when using a " + MassUpdate.Handler.class.getName());
+
+    execute((row, update, updateIndex) -> handler.handle(row, update));
+  }
+
+  public void execute(MassUpdate.MultiHandler handler) throws SQLException {
+    checkState(selectSql != null && !updateSqls.isEmpty(), "SELECT or UPDATE(s) requests are not defined");
+
+    String checkpointPrefix = DigestUtils.md5Hex(selectSql + updateSqls + partitionSize) + ":";
+    Queue<Long> partitions = selectPartitionsToProcess(checkpointPrefix);
+    if (partitions.isEmpty()) {
+      deleteCheckpoints(checkpointPrefix);
+      return;
+    }
+
+    progress.start();
+    try {
+      processPartitions(partitions, handler, checkpointPrefix);
+      deleteCheckpoints(checkpointPrefix);
+
+      // log the total number of processed rows
+      progress.log();
+    } finally {
+      progress.stop();
+    }
+  }
+
+  private Queue<Long> selectPartitionsToProcess(String checkpointPrefix) throws SQLException {
+    Queue<Long> partitions = new ConcurrentLinkedQueue<>();
+    Connection connection = db.getDataSource().getConnection();
+    try {
+      Set<Long> donePartitions = selectDonePartitions(connection, checkpointPrefix);
+      try (PreparedStatement stmt = connection.prepareStatement("select min(" + idColumn + "), max(" + idColumn + ") from " + table);
+        ResultSet rs = stmt.executeQuery()) {
+        rs.next();
+        long minId = rs.getLong(1);
+        if (rs.wasNull()) {
+          return partitions;
+        }
+        long maxId = rs.getLong(2);
+        // partitions are aligned on multiples of their size, so that they are the same when migration is executed again
+        for (long partition = Math.floorDiv(minId, partitionSize); partition <= Math.floorDiv(maxId, partitionSize); partition++) {
+          if (!donePartitions.contains(partition)) {
+            partitions.add(partition);
+          }
+        }
+      }
+      LOG.info("{} partitions of {} to process with {} threads, {} already done", partitions.size(), table, threads, donePartitions.size());
+      return partitions;
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private static Set<Long> selectDonePartitions(Connection connection, String checkpointPrefix) throws SQLException {
+    Set<Long> res = new HashSet<>();
+    try (PreparedStatement stmt = connection.prepareStatement("select kee from loaded_templates where template_type=? and kee like ?")) {
+      stmt.setString(1, CHECKPOINT_TEMPLATE_TYPE);
+      stmt.setString(2, checkpointPrefix + "%");
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          res.add(Long.parseLong(rs.getString(1).substring(checkpointPrefix.length())));
+        }
+      }
+    }
+    return res;
+  }
+
+  private void deleteCheckpoints(String checkpointPrefix) throws SQLException {
+    Connection connection = db.getDataSource().getConnection();
+    try {
+      connection.setAutoCommit(false);
+      try (PreparedStatement stmt = connection.prepareStatement("delete from loaded_templates where template_type=? and kee like ?")) {
+        stmt.setString(1, CHECKPOINT_TEMPLATE_TYPE);
+        stmt.setString(2, checkpointPrefix + "%");
+        stmt.executeUpdate();
+      }
+      connection.commit();
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private void processPartitions(Queue<Long> partitions, MassUpdate.MultiHandler handler, String checkpointPrefix) throws SQLException {
+    int poolSize = Math.min(threads, partitions.size());
+    ExecutorService executorService = Executors.newFixedThreadPool(poolSize, new ThreadFactoryBuilder()
+      .setNameFormat("PartitionedMassUpdate-%d")
+      .setDaemon(true)
+      .build());
+    AtomicBoolean failed = new AtomicBoolean(false);
+    try {
+      List<Future<Void>> workers = new ArrayList<>(poolSize);
+      for (int i = 0; i < poolSize; i++) {
+        workers.add(executorService.submit(() -> {
+          try {
+            processPartitions(partitions, handler, checkpointPrefix, failed);
+          } catch (Exception e) {
+            // stop the other workers after their current partition
+            failed.set(true);
+            throw e;
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> worker : workers) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while processing partitions of " + table, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to process partitions of " + table, cause);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private void processPartitions(Queue<Long> partitions, MassUpdate.MultiHandler handler, String checkpointPrefix, AtomicBoolean failed)
+    throws SQLException {
+    Connection readConnection = null;
+    Connection writeConnection = null;
+    try {
+      readConnection = BaseDataChange.openReadConnection(db);
+      writeConnection = db.getDataSource().getConnection();
+      writeConnection.setAutoCommit(false);
+
+      Long partition = partitions.poll();
+      while (partition != null && !failed.get()) {
+        processPartition(readConnection, writeConnection, partition, handler, checkpointPrefix);
+        partition = partitions.poll();
+      }
+    } finally {
+      DbUtils.closeQuietly(readConnection);
+      DbUtils.closeQuietly(writeConnection);
+    }
+  }
+
+  private void processPartition(Connection readConnection, Connection writeConnection, long partition, MassUpdate.MultiHandler handler,
+    String checkpointPrefix) throws SQLException {
+    long start = System.currentTimeMillis();
+    long lowerBound = partition * partitionSize;
+    AtomicLong partitionCounter = new AtomicLong(0L);
+    List<UpsertImpl> updates = new ArrayList<>(updateSqls.size());
+    try {
+      for (String updateSql : updateSqls) {
+        updates.add(UpsertImpl.create(writeConnection, updateSql));
+      }
+      Select select = SelectImpl.create(db, readConnection, selectSql)
+        .setLong(1, lowerBound)
+        .setLong(2, lowerBound + partitionSize);
+      select.scroll(row -> {
+        int i = 0;
+        for (UpsertImpl update : updates) {
+          if (handler.handle(row, update, i)) {
+            update.addBatch();
+          }
+          i++;
+        }
+        partitionCounter.getAndIncrement();
+        counter.getAndIncrement();
+      });
+      for (UpsertImpl update : updates) {
+        if (update.getBatchCount() > 0L) {
+          update.execute();
+        }
+      }
+      // partition is recorded as done in the same transaction as its last updates
+      try (PreparedStatement checkpoint = writeConnection.prepareStatement("insert into loaded_templates (kee, template_type) values (?, ?)")) {
+        checkpoint.setString(1, checkpointPrefix + partition);
+        checkpoint.setString(2, CHECKPOINT_TEMPLATE_TYPE);
+        checkpoint.executeUpdate();
+      }
+      writeConnection.commit();
+    } finally {
+      for (UpsertImpl update : updates) {
+        update.close();
+      }
+    }
+
+    long duration = Math.max(1L, System.currentTimeMillis() - start);
+    long rows = partitionCounter.get();
+    LOG.info("Partition [{}, {}[ of {}: {} {} processed in {}ms ({} items/sec)", lowerBound, lowerBound + partitionSize, table, rows, rowPluralName,
+      duration, 1000 * rows / duration);
+  }
+}
@@ -25,6 +25,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.Database;
 import org.sonar.db.version.BaseDataChange;
 import org.sonar.db.version.MassUpdate;
+import org.sonar.db.version.PartitionedMassUpdate;
 import org.sonar.db.version.Select;
 import org.sonar.db.version.SqlStatement;
 
@@ -40,9 +41,10 @@ public class FeedIssuesLongDates extends BaseDataChange {
   @Override
   public void execute(Context context) throws SQLException {
     final long now = system2.now();
-    MassUpdate massUpdate = context.prepareMassUpdate();
+    PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("issues", "id");
     massUpdate
-      .select("SELECT i.issue_creation_date, i.issue_update_date, i.issue_close_date, i.id FROM issues i WHERE issue_creation_date_ms IS NULL");
+      .select("SELECT i.issue_creation_date, i.issue_update_date, i.issue_close_date, i.id FROM issues i " +
+        "WHERE issue_creation_date_ms IS NULL AND i.id >= ? AND i.id < ?");
     massUpdate
       .update("UPDATE issues SET issue_creation_date_ms=?, issue_update_date_ms=?, issue_close_date_ms=? WHERE id=?");
     massUpdate.rowPluralName("issues");
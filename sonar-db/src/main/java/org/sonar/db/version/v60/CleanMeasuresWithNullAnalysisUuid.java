@@ -22,7 +22,7 @@ package org.sonar.db.version.v60;
 import java.sql.SQLException;
 import org.sonar.db.Database;
 import org.sonar.db.version.BaseDataChange;
-import org.sonar.db.version.MassUpdate;
+import org.sonar.db.version.PartitionedMassUpdate;
 
 public class CleanMeasuresWithNullAnalysisUuid extends BaseDataChange {
 
@@ -32,8 +32,8 @@ public class CleanMeasuresWithNullAnalysisUuid extends BaseDataChange {
 
   @Override
   public void execute(Context context) throws SQLException {
-    MassUpdate massUpdate = context.prepareMassUpdate();
-    massUpdate.select("select id from project_measures where analysis_uuid is null");
+    PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("project_measures", "id");
+    massUpdate.select("select id from project_measures where analysis_uuid is null and id >= ? and id < ?");
     massUpdate.update("delete from project_measures where id=?");
     massUpdate.rowPluralName("measures");
     massUpdate.execute((row, update) -> {
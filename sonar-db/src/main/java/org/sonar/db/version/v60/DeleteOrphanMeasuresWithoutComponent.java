@@ -22,7 +22,7 @@ package org.sonar.db.version.v60;
 import java.sql.SQLException;
 import org.sonar.db.Database;
 import org.sonar.db.version.BaseDataChange;
-import org.sonar.db.version.MassUpdate;
+import org.sonar.db.version.PartitionedMassUpdate;
 
 public class DeleteOrphanMeasuresWithoutComponent extends BaseDataChange {
 
@@ -32,8 +32,8 @@ public class DeleteOrphanMeasuresWithoutComponent extends BaseDataChange {
 
   @Override
   public void execute(Context context) throws SQLException {
-    MassUpdate massUpdate = context.prepareMassUpdate();
-    massUpdate.select("SELECT id from project_measures where component_uuid is null");
+    PartitionedMassUpdate massUpdate = context.preparePartitionedMassUpdate("project_measures", "id");
+    massUpdate.select("SELECT id from project_measures where component_uuid is null and id >= ? and id < ?");
     massUpdate.update("DELETE from project_measures WHERE id=?");
     massUpdate.rowPluralName("measures");
     massUpdate.execute((row, update) -> {
@@ -182,6 +182,43 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
   }
 
+  @Test
+  public void selectEligibleForPeek_returns_pending_tasks_of_idle_projects_oldest_first() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+    system2.setNow(INIT_TIME + 1_000_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+    system2.setNow(INIT_TIME + 3_000_000);
+    insert("TASK_4", "PROJECT_3", PENDING);
+
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), 10)).containsExactly(TASK_UUID_3, "TASK_4");
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), 1)).containsExactly(TASK_UUID_3);
+  }
+
+  @Test
+  public void selectEligibleForPeek_returns_only_oldest_pending_task_of_each_project() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), 10)).containsExactly(TASK_UUID_1, TASK_UUID_3);
+  }
+
+  @Test
+  public void tryToPeek_moves_pending_task_to_in_progress_only_once() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+
+    Optional<CeQueueDto> peek = underTest.tryToPeek(db.getSession(), TASK_UUID_1);
+    assertThat(peek.get().getStatus()).isEqualTo(IN_PROGRESS);
+    verifyCeQueueStatuses(new String[] {TASK_UUID_1}, new CeQueueDto.Status[] {IN_PROGRESS});
+
+    assertThat(underTest.tryToPeek(db.getSession(), TASK_UUID_1).isPresent()).isFalse();
+    assertThat(underTest.tryToPeek(db.getSession(), "missing").isPresent()).isFalse();
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
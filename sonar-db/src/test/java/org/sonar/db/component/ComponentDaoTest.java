@@ -23,6 +23,7 @@ import com.google.common.base.Optional;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -32,6 +33,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.RowNotFoundException;
+import org.sonar.db.measure.MeasureDto;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
@@ -56,6 +58,7 @@ public class ComponentDaoTest {
   private static final String FILE_2_UUID = "file-2-uuid";
   private static final String FILE_3_UUID = "file-3-uuid";
   private static final String A_VIEW_UUID = "view-uuid";
+  private static final int METRIC_ID = 10;
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
@@ -1091,6 +1094,107 @@ public class ComponentDaoTest {
     assertThat(result).extracting("uuid").containsExactly("file-uuid-6", "file-uuid-5", "file-uuid-4");
   }
 
+  @Test
+  public void selectDescendants_sorted_by_measure_value() {
+    insertProjectWithMeasureSortFixture();
+
+    ComponentTreeQuery ascQuery = newTreeQuery(PROJECT_UUID).setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).build()).build();
+    assertThat(underTest.selectDescendants(dbSession, ascQuery)).extracting("uuid").containsExactly(FILE_1_UUID, MODULE_UUID, FILE_2_UUID, FILE_3_UUID);
+    assertThat(underTest.countDescendants(dbSession, ascQuery)).isEqualTo(4);
+
+    ComponentTreeQuery descQuery = newTreeQuery(PROJECT_UUID).setAsc(false).setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).build()).build();
+    assertThat(underTest.selectDescendants(dbSession, descQuery)).extracting("uuid").containsExactly(FILE_2_UUID, MODULE_UUID, FILE_1_UUID, FILE_3_UUID);
+
+    ComponentTreeQuery childrenQuery = newTreeQuery(PROJECT_UUID).setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).build()).build();
+    assertThat(underTest.selectChildren(dbSession, childrenQuery)).extracting("uuid").containsExactly(FILE_1_UUID, MODULE_UUID, FILE_2_UUID, FILE_3_UUID);
+  }
+
+  @Test
+  public void selectDescendants_sorted_by_measure_value_and_paginated() {
+    insertProjectWithMeasureSortFixture();
+
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID)
+      .setPage(2)
+      .setPageSize(2)
+      .setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).build())
+      .build();
+
+    assertThat(underTest.selectDescendants(dbSession, query)).extracting("uuid").containsExactly(FILE_2_UUID, FILE_3_UUID);
+  }
+
+  @Test
+  public void selectDescendants_sorted_by_measure_value_restores_best_value_of_files() {
+    insertProjectWithMeasureSortFixture();
+
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID)
+      .setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).setBestValue(0d, singletonList(Qualifiers.FILE)).build())
+      .build();
+
+    assertThat(underTest.selectDescendants(dbSession, query)).extracting("uuid").containsExactly(FILE_3_UUID, FILE_1_UUID, MODULE_UUID, FILE_2_UUID);
+  }
+
+  @Test
+  public void selectDescendants_sorted_by_measure_value_with_measures_only() {
+    insertProjectWithMeasureSortFixture();
+
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID)
+      .setQualifiers(singletonList(Qualifiers.FILE))
+      .setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).setWithMeasuresOnly(true).build())
+      .build();
+
+    assertThat(underTest.selectDescendants(dbSession, query)).extracting("uuid").containsExactly(FILE_1_UUID, FILE_2_UUID);
+    assertThat(underTest.countDescendants(dbSession, query)).isEqualTo(2);
+  }
+
+  @Test
+  public void selectDescendants_sorted_by_measure_variation_of_developer() {
+    ComponentDto project = newProjectDto(PROJECT_UUID);
+    SnapshotDto analysis = componentDb.insertProjectAndSnapshot(project);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(project, FILE_1_UUID).setName("a"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(project, FILE_2_UUID).setName("b"));
+    insertMeasure(analysis, file1, null, 10d);
+    insertMeasure(analysis, file2, null, 1d);
+    db.getDbClient().measureDao().insert(dbSession, new MeasureDto().setMetricId(METRIC_ID).setAnalysisUuid(analysis.getUuid()).setComponentUuid(FILE_1_UUID)
+      .setDeveloperId(42L).setVariation(2, 5d));
+    db.getDbClient().measureDao().insert(dbSession, new MeasureDto().setMetricId(METRIC_ID).setAnalysisUuid(analysis.getUuid()).setComponentUuid(FILE_2_UUID)
+      .setDeveloperId(42L).setVariation(2, -5d));
+    db.commit();
+
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID)
+      .setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).setVariationIndex(2).setPersonId(42L).build())
+      .build();
+
+    assertThat(underTest.selectDescendants(dbSession, query)).extracting("uuid").containsExactly(FILE_2_UUID, FILE_1_UUID);
+  }
+
+  /**
+   * module: 2, file 1: 1, file 2: 3, file 3: no measure
+   */
+  private void insertProjectWithMeasureSortFixture() {
+    ComponentDto project = newProjectDto(PROJECT_UUID);
+    SnapshotDto analysis = componentDb.insertProjectAndSnapshot(project);
+    ComponentDto module = componentDb.insertComponent(newModuleDto(MODULE_UUID, project).setName("d"));
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(project, FILE_1_UUID).setName("c"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(project, FILE_2_UUID).setName("b"));
+    componentDb.insertComponent(newFileDto(project, FILE_3_UUID).setName("a"));
+    insertMeasure(analysis, module, null, 2d);
+    insertMeasure(analysis, file1, null, 1d);
+    insertMeasure(analysis, file2, null, 3d);
+    // measure of another metric and measure of a developer are ignored
+    db.getDbClient().measureDao().insert(dbSession, new MeasureDto().setMetricId(METRIC_ID + 1).setAnalysisUuid(analysis.getUuid()).setComponentUuid(FILE_3_UUID).setValue(0d));
+    insertMeasure(analysis, file2, 42L, -1d);
+    db.commit();
+  }
+
+  private void insertMeasure(SnapshotDto analysis, ComponentDto component, @Nullable Long developerId, double value) {
+    db.getDbClient().measureDao().insert(dbSession, new MeasureDto()
+      .setMetricId(METRIC_ID)
+      .setAnalysisUuid(analysis.getUuid())
+      .setComponentUuid(component.uuid())
+      .setDeveloperId(developerId)
+      .setValue(value));
+  }
+
   private static ComponentTreeQuery.Builder newTreeQuery(String baseUuid) {
     return ComponentTreeQuery.builder()
       .setPage(1)
@@ -0,0 +1,162 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
+
+import static java.util.Collections.singletonList;
+import static org.sonar.db.component.SnapshotTesting.newAnalysis;
+
+/**
+ * Compares, on H2, the loading of a page of the files of a large project sorted by measure value
+ * when components and measures are loaded then sorted in memory, and when the page is directly
+ * selected by the database with {@link ComponentTreeQuery.Builder#setMeasureSort(ComponentTreeMeasureSort)}.
+ * This is not a unit test, run it with {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ComponentTreeMeasureSortBenchmark {
+
+  private static final int METRIC_ID = 1;
+  private static final int PAGE_SIZE = 100;
+
+  @Param({"10000", "50000"})
+  public int files;
+
+  private DbTester db;
+  private DbClient dbClient;
+  private ComponentDto project;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    db = DbTester.create(System2.INSTANCE);
+    dbClient = db.getDbClient();
+
+    // components and analyses use generated keys, so they can't be inserted in batch mode
+    DbSession session = db.getSession();
+    project = ComponentTesting.newProjectDto();
+    dbClient.componentDao().insert(session, project);
+    SnapshotDto analysis = dbClient.snapshotDao().insert(session, newAnalysis(project));
+    DbSession batchSession = dbClient.openSession(true);
+    try {
+      for (int i = 0; i < files; i++) {
+        ComponentDto file = ComponentTesting.newFileDto(project);
+        dbClient.componentDao().insert(session, file);
+        // one file out of ten has no measure
+        if (i % 10 != 0) {
+          dbClient.measureDao().insert(batchSession, new MeasureDto()
+            .setComponentUuid(file.uuid())
+            .setAnalysisUuid(analysis.getUuid())
+            .setMetricId(METRIC_ID)
+            .setValue((double) ((i * 7919) % files)));
+        }
+      }
+      session.commit();
+      batchSession.commit();
+    } finally {
+      dbClient.closeSession(batchSession);
+    }
+  }
+
+  @Benchmark
+  public List<ComponentDto> sort_in_memory() {
+    // a new session is used by each call so that results are not served by the local cache of MyBatis
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return sortInMemory(dbSession);
+    }
+  }
+
+  @Benchmark
+  public List<ComponentDto> sort_in_database() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return sortInDatabase(dbSession);
+    }
+  }
+
+  private List<ComponentDto> sortInMemory(DbSession dbSession) {
+    ComponentTreeQuery query = newTreeQuery()
+      .setPage(1)
+      .setPageSize(Integer.MAX_VALUE)
+      .build();
+    List<ComponentDto> components = dbClient.componentDao().selectDescendants(dbSession, query);
+    List<MeasureDto> measures = dbClient.measureDao().selectByQuery(dbSession, MeasureQuery.builder()
+      .setComponentUuids(components.stream().map(ComponentDto::uuid).collect(Collectors.toList()))
+      .setMetricIds(singletonList(METRIC_ID))
+      .build());
+    Map<String, Double> valuesByComponentUuid = new HashMap<>();
+    measures.forEach(measure -> valuesByComponentUuid.put(measure.getComponentUuid(), measure.getValue()));
+    return components.stream()
+      .sorted(Comparator.comparing((ComponentDto component) -> valuesByComponentUuid.get(component.uuid()), Comparator.nullsLast(Comparator.naturalOrder())))
+      .limit(PAGE_SIZE)
+      .collect(Collectors.toList());
+  }
+
+  private List<ComponentDto> sortInDatabase(DbSession dbSession) {
+    ComponentTreeQuery query = newTreeQuery()
+      .setPage(1)
+      .setPageSize(PAGE_SIZE)
+      .setMeasureSort(ComponentTreeMeasureSort.builder().setMetricId(METRIC_ID).build())
+      .build();
+    return dbClient.componentDao().selectDescendants(dbSession, query);
+  }
+
+  private ComponentTreeQuery.Builder newTreeQuery() {
+    return ComponentTreeQuery.builder()
+      .setBaseUuid(project.uuid())
+      .setSortFields(singletonList("name"))
+      .setAsc(true);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(ComponentTreeMeasureSortBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.component;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ComponentTreeMeasureSortTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void sort_on_value_by_default() {
+    ComponentTreeMeasureSort underTest = ComponentTreeMeasureSort.builder().setMetricId(1).build();
+
+    assertThat(underTest.getSqlColumn()).isEqualTo("value");
+    assertThat(underTest.getBestValue()).isNull();
+    assertThat(underTest.getBestValueQualifiers()).isNull();
+    assertThat(underTest.isWithMeasuresOnly()).isFalse();
+  }
+
+  @Test
+  public void sort_on_variation() {
+    ComponentTreeMeasureSort underTest = ComponentTreeMeasureSort.builder().setMetricId(1).setVariationIndex(3).build();
+
+    assertThat(underTest.getSqlColumn()).isEqualTo("variation_value_3");
+  }
+
+  @Test
+  public void best_value_is_ignored_if_null() {
+    ComponentTreeMeasureSort underTest = ComponentTreeMeasureSort.builder().setMetricId(1).setBestValue(null, emptyList()).build();
+
+    assertThat(underTest.getBestValueQualifiers()).isNull();
+  }
+
+  @Test
+  public void best_value_of_qualifiers() {
+    ComponentTreeMeasureSort underTest = ComponentTreeMeasureSort.builder().setMetricId(1).setBestValue(0d, singletonList("FIL")).build();
+
+    assertThat(underTest.getBestValue()).isEqualTo(0d);
+    assertThat(underTest.getBestValueQualifiers()).containsOnly("FIL");
+  }
+
+  @Test
+  public void fail_if_variation_index_is_out_of_range() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Variation index must be between 1 and 5, got 6");
+
+    ComponentTreeMeasureSort.builder().setVariationIndex(6);
+  }
+
+  @Test
+  public void fail_if_best_value_has_no_qualifiers() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Qualifiers of best value must be set");
+
+    ComponentTreeMeasureSort.builder().setMetricId(1).setBestValue(0d, emptyList()).build();
+  }
+
+  @Test
+  public void fail_if_no_metric() {
+    expectedException.expect(NullPointerException.class);
+
+    ComponentTreeMeasureSort.builder().build();
+  }
+}
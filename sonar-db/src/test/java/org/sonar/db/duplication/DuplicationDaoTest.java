@@ -25,6 +25,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Collections.singletonList;
@@ -61,6 +62,34 @@ public class DuplicationDaoTest {
     assertThat(blocks).hasSize(2);
   }
 
+  @Test
+  public void select_units_of_last_analyses() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    db.getDbClient().duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setAnalysisUuid("u3")
+      .setComponentUuid("uuid_2")
+      .setHash("ab")
+      .setIndexInFile(1)
+      .setStartLine(3)
+      .setEndLine(4));
+    dbSession.commit();
+
+    List<DuplicationUnitDto> units = new ArrayList<>();
+    dao.selectUnitsOfLastAnalyses(dbSession, "java", context -> units.add((DuplicationUnitDto) context.getResultObject()));
+
+    assertThat(units).extracting(DuplicationUnitDto::getHash).containsExactly("aa", "aa", "ab");
+    assertThat(units).extracting(DuplicationUnitDto::getAnalysisUuid).containsOnly("u3", "u7");
+    DuplicationUnitDto unit = units.get(2);
+    assertThat(unit.getComponentUuid()).isEqualTo("uuid_2");
+    assertThat(unit.getIndexInFile()).isEqualTo(1);
+    assertThat(unit.getStartLine()).isEqualTo(3);
+    assertThat(unit.getEndLine()).isEqualTo(4);
+
+    units.clear();
+    dao.selectUnitsOfLastAnalyses(dbSession, "grvy", context -> units.add((DuplicationUnitDto) context.getResultObject()));
+    assertThat(units).isEmpty();
+  }
+
   @Test
   public void insert() {
     db.prepareDbUnit(getClass(), "insert.xml");
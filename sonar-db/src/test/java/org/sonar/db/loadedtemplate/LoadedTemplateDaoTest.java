@@ -19,6 +19,7 @@
  */
 package org.sonar.db.loadedtemplate;
 
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.System2;
@@ -43,6 +44,16 @@ public class LoadedTemplateDaoTest {
     assertThat(dao.countByTypeAndKey("PROFILE", "HOTSPOTS"), is(0));
   }
 
+  @Test
+  public void shouldSelectByType() {
+    dbTester.prepareDbUnit(getClass(), "shouldCountByTypeAndKey.xml");
+
+    List<LoadedTemplateDto> templates = dao.selectByType(dbTester.getSession(), "DASHBOARD");
+    assertThat(templates.size(), is(1));
+    assertThat(templates.get(0).getKey(), is("HOTSPOTS"));
+    assertThat(dao.selectByType(dbTester.getSession(), "UNKNOWN").isEmpty(), is(true));
+  }
+
   @Test
   public void shouldInsert() {
     dbTester.prepareDbUnit(getClass(), "shouldInsert.xml");
@@ -368,6 +368,99 @@ public class MeasureDaoTest {
       .setLast(isLast));
   }
 
-  // TODO test selectPastMeasures
+  @Test
+  public void selectPastMeasures() {
+    insertAnalysis(LAST_ANALYSIS_UUID, true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, false);
+    insertMeasure("M1", OTHER_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID);
+    insertMeasure("M2", LAST_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID);
+    insertMeasure("M3", LAST_ANALYSIS_UUID, "C1", COVERAGE_METRIC_ID);
+    insertMeasure("M4", LAST_ANALYSIS_UUID, "C1", COMPLEXITY_METRIC_ID);
+    insertMeasureOnPerson("M5", LAST_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID, A_PERSON_ID);
+    insertMeasure("M6", LAST_ANALYSIS_UUID, "C2", NCLOC_METRIC_ID);
+    db.commit();
+
+    List<PastMeasureDto> pastMeasures = underTest.selectPastMeasures(db.getSession(), "C1", LAST_ANALYSIS_UUID, asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID));
+
+    assertThat(pastMeasures).extracting(PastMeasureDto::getMetricId).containsOnly(NCLOC_METRIC_ID, COVERAGE_METRIC_ID);
+    assertThat(pastMeasures).extracting(PastMeasureDto::getComponentUuid).containsOnly("C1");
+    assertThat(pastMeasures).extracting(PastMeasureDto::getAnalysisUuid).containsOnly(LAST_ANALYSIS_UUID);
+  }
+
+  @Test
+  public void selectPastMeasuresOfNonFileComponents_streams_measures_ordered_by_component() {
+    insertAnalysis(LAST_ANALYSIS_UUID, true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, false);
+    insertAnalysis(PREVIOUS_ANALYSIS_UUID, false);
+    String project = insertComponent(Scopes.PROJECT, Qualifiers.PROJECT, true);
+    String dir = insertComponent(Scopes.DIRECTORY, Qualifiers.DIRECTORY, true);
+    String file = insertComponent(Scopes.FILE, Qualifiers.FILE, true);
+    insertMeasure("M1", LAST_ANALYSIS_UUID, dir, NCLOC_METRIC_ID);
+    insertMeasure("M2", OTHER_ANALYSIS_UUID, project, NCLOC_METRIC_ID);
+    insertMeasure("M3", LAST_ANALYSIS_UUID, project, NCLOC_METRIC_ID);
+    insertMeasure("M4", LAST_ANALYSIS_UUID, project, COVERAGE_METRIC_ID);
+    insertMeasure("M5", OTHER_ANALYSIS_UUID, dir, COVERAGE_METRIC_ID);
+    // excluded: file, developer, metric and analysis
+    insertMeasure("M6", LAST_ANALYSIS_UUID, file, NCLOC_METRIC_ID);
+    insertMeasureOnPerson("M7", LAST_ANALYSIS_UUID, project, NCLOC_METRIC_ID, A_PERSON_ID);
+    insertMeasure("M8", LAST_ANALYSIS_UUID, project, COMPLEXITY_METRIC_ID);
+    insertMeasure("M9", PREVIOUS_ANALYSIS_UUID, project, NCLOC_METRIC_ID);
+    db.commit();
+
+    List<PastMeasureDto> pastMeasures = selectPastMeasuresOfNonFileComponents(asList(LAST_ANALYSIS_UUID, OTHER_ANALYSIS_UUID), asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID));
+
+    assertThat(pastMeasures).hasSize(5);
+    assertThat(pastMeasures).extracting(PastMeasureDto::getComponentUuid).isSorted().containsOnly(project, dir);
+    assertThat(pastMeasures).extracting(PastMeasureDto::getMetricId).containsOnly(NCLOC_METRIC_ID, COVERAGE_METRIC_ID);
+    assertThat(pastMeasures).extracting(PastMeasureDto::getAnalysisUuid).containsOnly(LAST_ANALYSIS_UUID, OTHER_ANALYSIS_UUID);
+  }
+
+  @Test
+  public void selectPastMeasuresOfNonFileComponents_filters_metrics_when_there_are_too_many_to_be_queried() {
+    insertAnalysis(LAST_ANALYSIS_UUID, true);
+    String project = insertComponent(Scopes.PROJECT, Qualifiers.PROJECT, true);
+    insertMeasure("M1", LAST_ANALYSIS_UUID, project, NCLOC_METRIC_ID);
+    insertMeasure("M2", LAST_ANALYSIS_UUID, project, 5_000);
+    db.commit();
+    List<Integer> metricIds = new ArrayList<>();
+    for (int i = 0; i < 2_000; i++) {
+      metricIds.add(i);
+    }
+
+    List<PastMeasureDto> pastMeasures = selectPastMeasuresOfNonFileComponents(singletonList(LAST_ANALYSIS_UUID), metricIds);
+
+    assertThat(pastMeasures).extracting(PastMeasureDto::getMetricId).containsExactly(NCLOC_METRIC_ID);
+  }
+
+  @Test
+  public void selectPastMeasuresOfNonFileComponents_returns_nothing_when_no_analysis_nor_metric() {
+    insertAnalysis(LAST_ANALYSIS_UUID, true);
+    String project = insertComponent(Scopes.PROJECT, Qualifiers.PROJECT, true);
+    insertMeasure("M1", LAST_ANALYSIS_UUID, project, NCLOC_METRIC_ID);
+    db.commit();
+
+    assertThat(selectPastMeasuresOfNonFileComponents(emptyList(), singletonList(NCLOC_METRIC_ID))).isEmpty();
+    assertThat(selectPastMeasuresOfNonFileComponents(singletonList(LAST_ANALYSIS_UUID), emptyList())).isEmpty();
+  }
+
+  @Test
+  public void selectPastMeasuresOfNonFileComponents_fails_when_too_many_analyses() {
+    List<String> analysisUuids = new ArrayList<>();
+    for (int i = 0; i < 1_001; i++) {
+      analysisUuids.add("A" + i);
+    }
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Can not select past measures of more than 1000 analyses");
+
+    selectPastMeasuresOfNonFileComponents(analysisUuids, singletonList(NCLOC_METRIC_ID));
+  }
+
+  private List<PastMeasureDto> selectPastMeasuresOfNonFileComponents(List<String> analysisUuids, List<Integer> metricIds) {
+    List<PastMeasureDto> pastMeasures = new ArrayList<>();
+    underTest.selectPastMeasuresOfNonFileComponents(db.getSession(), analysisUuids, metricIds,
+      resultContext -> pastMeasures.add((PastMeasureDto) resultContext.getResultObject()));
+    return pastMeasures;
+  }
 
 }
@@ -0,0 +1,166 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.measure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotDto;
+
+import static org.sonar.db.component.SnapshotTesting.newAnalysis;
+
+/**
+ * Compares, on H2, the loading of past measures with one query per component and per analysis
+ * ({@link MeasureDao#selectPastMeasures(DbSession, String, String, java.util.Collection)}) to the streaming
+ * of the past measures of all the components at once
+ * ({@link MeasureDao#selectPastMeasuresOfNonFileComponents(DbSession, java.util.Collection, java.util.Collection, org.apache.ibatis.session.ResultHandler)}).
+ * This is not a unit test, run it with {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PastMeasuresBenchmark {
+
+  private static final int METRICS = 50;
+
+  @Param({"1000", "5000"})
+  public int directories;
+
+  @Param({"3"})
+  public int periods;
+
+  private DbTester db;
+  private DbClient dbClient;
+  private DbSession dbSession;
+  private final List<String> componentUuids = new ArrayList<>();
+  private final List<String> analysisUuids = new ArrayList<>();
+  private final List<Integer> metricIds = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    db = DbTester.create(System2.INSTANCE);
+    dbClient = db.getDbClient();
+    for (int i = 1; i <= METRICS; i++) {
+      metricIds.add(i);
+    }
+
+    // components and analyses use generated keys, so they can't be inserted in batch mode
+    DbSession session = db.getSession();
+    ComponentDto project = ComponentTesting.newProjectDto();
+    dbClient.componentDao().insert(session, project);
+    for (int i = 0; i < periods; i++) {
+      SnapshotDto analysis = newAnalysis(project);
+      dbClient.snapshotDao().insert(session, analysis);
+      analysisUuids.add(analysis.getUuid());
+    }
+    componentUuids.add(project.uuid());
+    for (int i = 0; i < directories; i++) {
+      ComponentDto directory = ComponentTesting.newDirectory(project, "src/dir" + i);
+      dbClient.componentDao().insert(session, directory);
+      componentUuids.add(directory.uuid());
+    }
+    // measures of files are stored too, but past measures of files are never loaded
+    List<String> fileUuids = new ArrayList<>();
+    for (int i = 0; i < directories; i++) {
+      ComponentDto file = ComponentTesting.newFileDto(project);
+      dbClient.componentDao().insert(session, file);
+      fileUuids.add(file.uuid());
+    }
+    session.commit();
+
+    DbSession batchSession = dbClient.openSession(true);
+    try {
+      for (String componentUuid : componentUuids) {
+        insertMeasures(batchSession, componentUuid);
+      }
+      for (String fileUuid : fileUuids) {
+        insertMeasures(batchSession, fileUuid);
+      }
+      batchSession.commit();
+    } finally {
+      dbClient.closeSession(batchSession);
+    }
+    dbSession = dbClient.openSession(false);
+  }
+
+  private void insertMeasures(DbSession batchSession, String componentUuid) {
+    for (String analysisUuid : analysisUuids) {
+      for (Integer metricId : metricIds) {
+        dbClient.measureDao().insert(batchSession, new MeasureDto()
+          .setComponentUuid(componentUuid)
+          .setAnalysisUuid(analysisUuid)
+          .setMetricId(metricId)
+          .setValue((double) metricId));
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    dbClient.closeSession(dbSession);
+  }
+
+  @Benchmark
+  public void one_query_per_component_and_period(Blackhole blackhole) {
+    for (String componentUuid : componentUuids) {
+      for (String analysisUuid : analysisUuids) {
+        blackhole.consume(dbClient.measureDao().selectPastMeasures(dbSession, componentUuid, analysisUuid, metricIds));
+      }
+    }
+  }
+
+  @Benchmark
+  public void stream_all_components(Blackhole blackhole) {
+    dbClient.measureDao().selectPastMeasuresOfNonFileComponents(dbSession, analysisUuids, metricIds,
+      context -> blackhole.consume(context.getResultObject()));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(PastMeasuresBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
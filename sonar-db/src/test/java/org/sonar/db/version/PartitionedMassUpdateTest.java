@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.version;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+
+import static java.lang.String.valueOf;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PartitionedMassUpdateTest {
+
+  @Rule
+  public DbTester db = DbTester.createForSchema(System2.INSTANCE, PartitionedMassUpdateTest.class, "schema.sql");
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private Set<Long> handledIds = ConcurrentHashMap.newKeySet();
+
+  @Test
+  public void execute_does_nothing_on_empty_table() throws SQLException {
+    newMassUpdate().execute(this::increment);
+
+    assertThat(handledIds).isEmpty();
+    assertThat(db.countRowsOfTable("loaded_templates")).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_processes_all_partitions_concurrently() throws SQLException {
+    insertItems(1, 25);
+
+    newMassUpdate().threads(3).execute(this::increment);
+
+    assertThat(handledIds).hasSize(25);
+    assertThat(values()).hasSize(25).containsOnly(1L);
+    assertThat(db.countRowsOfTable("loaded_templates")).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_resumes_from_partitions_which_are_not_done() throws SQLException {
+    insertItems(1, 25);
+    try {
+      newMassUpdate().threads(1).execute((row, update) -> {
+        if (row.getLong(1) == 13L) {
+          throw new IllegalStateException("Failure on row 13");
+        }
+        return increment(row, update);
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      // partitions [0, 5[, [5, 10[ are done, [10, 15[ is rolled back
+      assertThat(db.countRowsOfTable("loaded_templates")).isEqualTo(2);
+    }
+
+    handledIds.clear();
+    newMassUpdate().threads(2).execute(this::increment);
+
+    assertThat(handledIds).hasSize(16);
+    assertThat(Collections.min(handledIds)).isEqualTo(10L);
+    assertThat(values()).hasSize(25).containsOnly(1L);
+    assertThat(db.countRowsOfTable("loaded_templates")).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_if_select_is_not_defined() throws SQLException {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("SELECT or UPDATE requests are not defined");
+
+    new DataChange.Context(db.database(), null, null).preparePartitionedMassUpdate("items", "id")
+      .update("update items set val=val+1 where id=?")
+      .execute(this::increment);
+  }
+
+  private PartitionedMassUpdate newMassUpdate() {
+    return new DataChange.Context(db.database(), null, null).preparePartitionedMassUpdate("items", "id")
+      .select("select id from items where val=0 and id >= ? and id < ?")
+      .update("update items set val=val+1 where id=?")
+      .partitionSize(5);
+  }
+
+  private boolean increment(Select.Row row, SqlStatement update) throws SQLException {
+    long id = row.getLong(1);
+    handledIds.add(id);
+    update.setLong(1, id);
+    return true;
+  }
+
+  private void insertItems(int firstId, int lastId) {
+    for (int id = firstId; id <= lastId; id++) {
+      db.executeInsert("items", "ID", valueOf(id), "VAL", "0");
+    }
+    db.commit();
+  }
+
+  private List<Long> values() {
+    List<Map<String, Object>> rows = db.select("select val as \"VAL\" from items");
+    return rows.stream().map(row -> (Long) row.get("VAL")).collect(Collectors.toList());
+  }
+}
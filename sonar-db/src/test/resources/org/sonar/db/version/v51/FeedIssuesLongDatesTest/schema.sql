@@ -7,3 +7,9 @@ CREATE TABLE "ISSUES" (
   "ISSUE_UPDATE_DATE" TIMESTAMP,
   "ISSUE_UPDATE_DATE_MS" BIGINT,
 );
+
+CREATE TABLE "LOADED_TEMPLATES" (
+  "ID" INTEGER NOT NULL GENERATED BY DEFAULT AS IDENTITY (START WITH 1, INCREMENT BY 1),
+  "KEE" VARCHAR(200),
+  "TEMPLATE_TYPE" VARCHAR(15)
+);
@@ -18,3 +18,9 @@ CREATE TABLE "PROJECT_MEASURES" (
   "VARIATION_VALUE_5" DOUBLE,
   "MEASURE_DATA" BINARY(167772150)
   );
+
+CREATE TABLE "LOADED_TEMPLATES" (
+  "ID" INTEGER NOT NULL GENERATED BY DEFAULT AS IDENTITY (START WITH 1, INCREMENT BY 1),
+  "KEE" VARCHAR(200),
+  "TEMPLATE_TYPE" VARCHAR(15)
+);
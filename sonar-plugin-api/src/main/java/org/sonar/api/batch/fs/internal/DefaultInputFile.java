@@ -50,6 +50,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   private String hash;
   private int nonBlankLines;
   private int[] originalLineOffsets;
+  private byte[][] lineHashes;
 
   public DefaultInputFile(String moduleKey, String relativePath) {
     this.moduleKey = moduleKey;
@@ -281,9 +282,18 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     this.setNonBlankLines(metadata.nonBlankLines);
     this.setHash(metadata.hash);
     this.setOriginalLineOffsets(metadata.originalLineOffsets);
+    this.lineHashes = metadata.lineHashes;
     return this;
   }
 
+  /**
+   * Hashes of lines for issue tracking, if computed with metadata
+   */
+  @CheckForNull
+  byte[][] lineHashes() {
+    return lineHashes;
+  }
+
   /**
    * For testing purpose
    */
@@ -19,29 +19,26 @@
  */
 package org.sonar.api.batch.fs.internal;
 
-import com.google.common.primitives.Ints;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.ByteOrderMark;
-import org.apache.commons.io.input.BOMInputStream;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.log.Logger;
@@ -50,6 +47,10 @@ import org.sonar.api.utils.log.Loggers;
 /**
  * Computes hash of files. Ends of Lines are ignored, so files with
  * same content but different EOL encoding have the same hash.
+ * <p>
+ * Each file is read once: bytes are loaded through NIO by chunks in a buffer of the thread, decoded and all
+ * the metadata is computed in the same pass. Buffers, decoders and digests are reused by the
+ * thread, so that metadata of files can be computed concurrently without allocating them for each file.
  */
 @ScannerSide
 public class FileMetadata {
@@ -59,6 +60,32 @@ public class FileMetadata {
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
 
+  /**
+   * Files bigger than this size are read by chunks. They are not memory-mapped: mapped files stay locked on Windows
+   * until the mapping is garbage collected, and files bigger than 2GB can't be mapped at once.
+   */
+  private static final int READ_CHUNK_SIZE = 1024 * 1024;
+  private static final int CHAR_BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * Byte order marks skipped at the beginning of files whatever the encoding, longest first as
+   * {@link org.apache.commons.io.input.BOMInputStream} does.
+   */
+  private static final byte[][] BOMS = {
+    {(byte) 0xFF, (byte) 0xFE, 0x00, 0x00},
+    {0x00, 0x00, (byte) 0xFE, (byte) 0xFF},
+    {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+    {(byte) 0xFF, (byte) 0xFE},
+    {(byte) 0xFE, (byte) 0xFF}
+  };
+
+  private static final ThreadLocal<ThreadBuffers> BUFFERS = new ThreadLocal<ThreadBuffers>() {
+    @Override
+    protected ThreadBuffers initialValue() {
+      return new ThreadBuffers();
+    }
+  };
+
   public abstract static class CharHandler {
 
     protected void handleAll(char c) {
@@ -74,17 +101,115 @@ public class FileMetadata {
     }
   }
 
-  private static class LineCounter extends CharHandler {
+  /**
+   * State reused by all the files read by a thread
+   */
+  private static class ThreadBuffers {
+    private ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private CharsetDecoder decoder;
+    private final CharsetEncoder utf8Encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer encoded = ByteBuffer.allocate(1024);
+    private final MessageDigest fileDigest = DigestUtils.getMd5Digest();
+    private final MessageDigest lineDigest = DigestUtils.getMd5Digest();
+    private final LineBuffer fileLine = new LineBuffer();
+    private final LineBuffer hashedLine = new LineBuffer();
+
+    CharsetDecoder decoder(Charset charset) {
+      if (decoder == null || !decoder.charset().equals(charset)) {
+        decoder = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      }
+      return decoder.reset();
+    }
+
+    ByteBuffer bytes(int size) {
+      if (bytes.capacity() < size) {
+        bytes = ByteBuffer.allocate(size);
+      }
+      bytes.clear();
+      return bytes;
+    }
+
+    /**
+     * Encodes the chars of line in UTF-8 and adds them to the digest
+     */
+    void digest(LineBuffer line, MessageDigest digest) throws CharacterCodingException {
+      int maxSize = (int) (line.length * utf8Encoder.maxBytesPerChar());
+      if (encoded.capacity() < maxSize) {
+        encoded = ByteBuffer.allocate(maxSize);
+      }
+      encoded.clear();
+      CharBuffer in = CharBuffer.wrap(line.chars, 0, line.length);
+      utf8Encoder.reset();
+      CoderResult result = utf8Encoder.encode(in, encoded, true);
+      if (!result.isUnderflow()) {
+        result.throwException();
+      }
+      result = utf8Encoder.flush(encoded);
+      if (!result.isUnderflow()) {
+        result.throwException();
+      }
+      digest.update(encoded.array(), 0, encoded.position());
+    }
+  }
+
+  private static class LineBuffer {
+    private char[] chars = new char[256];
+    private int length = 0;
+
+    void append(char c) {
+      if (length == chars.length) {
+        chars = Arrays.copyOf(chars, length * 2);
+      }
+      chars[length] = c;
+      length++;
+    }
+
+    void clear() {
+      length = 0;
+    }
+  }
+
+  /**
+   * Computes all the metadata in a single pass: lines, non-blank lines, hash of file, offsets of lines and,
+   * optionally, hashes of lines for issue tracking.
+   */
+  private static final class MetadataComputer extends CharHandler {
+    private final File file;
+    private final Charset encoding;
+    private final ThreadBuffers buffers;
+    private final LineBuffer fileLine;
+    @Nullable
+    private final LineBuffer hashedLine;
+
     private int lines = 1;
     private int nonBlankLines = 0;
     private boolean blankLine = true;
-    boolean alreadyLoggedInvalidCharacter = false;
-    private final File file;
-    private final Charset encoding;
+    private boolean alreadyLoggedInvalidCharacter = false;
+    private int currentOriginalOffset = 0;
+    private int[] originalLineOffsets = new int[64];
+    private int lastValidOffset = 0;
+    private byte[][] lineHashes;
 
-    LineCounter(File file, Charset encoding) {
+    MetadataComputer(File file, Charset encoding, boolean computeLineHashes) {
       this.file = file;
       this.encoding = encoding;
+      this.buffers = BUFFERS.get();
+      this.fileLine = buffers.fileLine;
+      this.fileLine.clear();
+      this.buffers.fileDigest.reset();
+      if (computeLineHashes) {
+        this.hashedLine = buffers.hashedLine;
+        this.hashedLine.clear();
+        this.buffers.lineDigest.reset();
+        this.lineHashes = new byte[64][];
+      } else {
+        this.hashedLine = null;
+      }
     }
 
     @Override
@@ -94,257 +219,295 @@ public class FileMetadata {
           lines, encoding, CoreProperties.ENCODING_PROPERTY);
         alreadyLoggedInvalidCharacter = true;
       }
+      currentOriginalOffset++;
+    }
+
+    @Override
+    protected void handleIgnoreEoL(char c) {
+      fileLine.append(c);
+      if (!Character.isWhitespace(c)) {
+        blankLine = false;
+        if (hashedLine != null) {
+          hashedLine.append(c);
+        }
+      }
     }
 
     @Override
     protected void newLine() {
+      fileLine.append(LINE_FEED);
+      digestFileLine();
+      if (hashedLine != null) {
+        digestHashedLine();
+      }
       lines++;
       if (!blankLine) {
         nonBlankLines++;
       }
       blankLine = true;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        blankLine = false;
+      if (lines > originalLineOffsets.length) {
+        originalLineOffsets = Arrays.copyOf(originalLineOffsets, originalLineOffsets.length * 2);
       }
+      originalLineOffsets[lines - 1] = currentOriginalOffset;
     }
 
     @Override
     protected void eof() {
+      digestFileLine();
+      if (hashedLine != null) {
+        digestHashedLine();
+      }
       if (!blankLine) {
         nonBlankLines++;
       }
+      lastValidOffset = currentOriginalOffset;
     }
 
-    public int lines() {
-      return lines;
-    }
-
-    public int nonBlankLines() {
-      return nonBlankLines;
-    }
-
-  }
-
-  private static class FileHashComputer extends CharHandler {
-    private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-    private StringBuilder sb = new StringBuilder();
-    private final CharsetEncoder encoder;
-    private final File file;
-
-    public FileHashComputer(File f) {
-      encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-      file = f;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      sb.append(c);
-    }
-
-    @Override
-    protected void newLine() {
-      sb.append(LINE_FEED);
-      processBuffer();
-      sb.setLength(0);
+    private void digestFileLine() {
+      if (fileLine.length > 0) {
+        digest(fileLine, buffers.fileDigest);
+        fileLine.clear();
+      }
     }
 
-    @Override
-    protected void eof() {
-      if (sb.length() > 0) {
-        processBuffer();
+    private void digestHashedLine() {
+      if (hashedLine.length > 0) {
+        digest(hashedLine, buffers.lineDigest);
+        if (lines > lineHashes.length) {
+          lineHashes = Arrays.copyOf(lineHashes, Math.max(lineHashes.length * 2, lines));
+        }
+        lineHashes[lines - 1] = buffers.lineDigest.digest();
+        hashedLine.clear();
       }
     }
 
-    private void processBuffer() {
+    private void digest(LineBuffer line, MessageDigest digest) {
       try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          globalMd5Digest.update(encoded.array(), 0, encoded.limit());
-        }
+        buffers.digest(line, digest);
       } catch (CharacterCodingException e) {
         throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
       }
     }
 
-    @CheckForNull
-    public String getHash() {
-      return Hex.encodeHexString(globalMd5Digest.digest());
+    Metadata toMetadata() {
+      return new Metadata(lines, nonBlankLines, Hex.encodeHexString(buffers.fileDigest.digest()), Arrays.copyOf(originalLineOffsets, lines),
+        lastValidOffset, lineHashes == null ? null : Arrays.copyOf(lineHashes, lines));
     }
   }
 
-  private static class LineHashComputer extends CharHandler {
-    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-    private final CharsetEncoder encoder;
-    private final StringBuilder sb = new StringBuilder();
-    private final LineHashConsumer consumer;
-    private final File file;
-    private int line = 1;
+  /**
+   * Compute hash of a file ignoring line ends differences.
+   * Maximum performance is needed.
+   */
+  public Metadata readMetadata(File file, Charset encoding) {
+    return readMetadata(file, encoding, false);
+  }
 
-    public LineHashComputer(LineHashConsumer consumer, File f) {
-      this.consumer = consumer;
-      this.file = f;
-      this.encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-    }
+  /**
+   * Same as {@link #readMetadata(File, Charset)}. If {@code computeLineHashes} is true, then the hashes of lines
+   * used by issue tracking are computed in the same pass and kept in metadata.
+   */
+  public Metadata readMetadata(File file, Charset encoding, boolean computeLineHashes) {
+    MetadataComputer computer = new MetadataComputer(file, encoding, computeLineHashes);
+    readFile(file, encoding, computer);
+    return computer.toMetadata();
+  }
 
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        sb.append(c);
-      }
+  /**
+   * For testing purpose
+   */
+  public Metadata readMetadata(Reader reader) {
+    MetadataComputer computer = new MetadataComputer(new File("fromString"), StandardCharsets.UTF_16, false);
+    try {
+      read(reader, computer);
+    } catch (IOException e) {
+      throw new IllegalStateException("Should never occurs", e);
     }
+    return computer.toMetadata();
+  }
 
-    @Override
-    protected void newLine() {
-      processBuffer();
-      sb.setLength(0);
-      line++;
-    }
+  public static void readFile(File file, Charset encoding, CharHandler... handlers) {
+    readFile(file, encoding, handlers.length == 1 ? handlers[0] : new CompositeHandler(handlers));
+  }
 
-    @Override
-    protected void eof() {
-      if (this.line > 0) {
-        processBuffer();
-      }
+  private static void readFile(File file, Charset encoding, CharHandler handler) {
+    ThreadBuffers buffers = BUFFERS.get();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      long size = channel.size();
+      ByteBuffer bytes = buffers.bytes((int) Math.min(size, READ_CHUNK_SIZE));
+      boolean endOfFile = fill(channel, bytes, size);
+      bytes.flip();
+      skipBom(bytes);
+      decode(channel, size, bytes, endOfFile, buffers.decoder(encoding), buffers.chars, handler);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
     }
+  }
 
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          lineMd5Digest.update(encoded.array(), 0, encoded.limit());
-          consumer.consume(line, lineMd5Digest.digest());
-        }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
+  private static void skipBom(ByteBuffer bytes) {
+    for (byte[] bom : BOMS) {
+      if (startsWith(bytes, bom)) {
+        bytes.position(bytes.position() + bom.length);
+        return;
       }
     }
   }
 
-  private static class LineOffsetCounter extends CharHandler {
-    private int currentOriginalOffset = 0;
-    private List<Integer> originalLineOffsets = new ArrayList<>();
-    private int lastValidOffset = 0;
-
-    public LineOffsetCounter() {
-      originalLineOffsets.add(0);
-    }
-
-    @Override
-    protected void handleAll(char c) {
-      currentOriginalOffset++;
-    }
-
-    @Override
-    protected void newLine() {
-      originalLineOffsets.add(currentOriginalOffset);
-    }
-
-    @Override
-    protected void eof() {
-      lastValidOffset = currentOriginalOffset;
+  private static boolean startsWith(ByteBuffer bytes, byte[] prefix) {
+    if (bytes.remaining() < prefix.length) {
+      return false;
     }
-
-    public List<Integer> getOriginalLineOffsets() {
-      return originalLineOffsets;
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes.get(bytes.position() + i) != prefix[i]) {
+        return false;
+      }
     }
+    return true;
+  }
 
-    public int getLastValidOffset() {
-      return lastValidOffset;
+  /**
+   * Reads bytes until the buffer is full or the end of file is reached
+   *
+   * @return true if the end of file is reached
+   */
+  private static boolean fill(FileChannel channel, ByteBuffer bytes, long size) throws IOException {
+    while (bytes.hasRemaining() && channel.position() < size) {
+      if (channel.read(bytes) < 0) {
+        return true;
+      }
     }
-
+    return channel.position() >= size;
   }
 
   /**
-   * Compute hash of a file ignoring line ends differences.
-   * Maximum performance is needed.
+   * Decodes the bytes of the buffer, then the next chunks of the file. The bytes of a char which is split between
+   * two chunks are kept in the buffer until the next chunk is read.
    */
-  public Metadata readMetadata(File file, Charset encoding) {
-    LineCounter lineCounter = new LineCounter(file, encoding);
-    FileHashComputer fileHashComputer = new FileHashComputer(file);
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+  private static void decode(FileChannel channel, long size, ByteBuffer bytes, boolean endOfFile, CharsetDecoder decoder, CharBuffer chars,
+    CharHandler handler) throws IOException {
+    boolean afterCR = false;
+    boolean endOfInput = endOfFile;
+    while (!endOfInput) {
+      afterCR = decode(bytes, false, decoder, chars, afterCR, handler);
+      bytes.compact();
+      endOfInput = fill(channel, bytes, size);
+      bytes.flip();
+    }
+    afterCR = decode(bytes, true, decoder, chars, afterCR, handler);
+    CoderResult result;
+    do {
+      chars.clear();
+      result = decoder.flush(chars);
+      chars.flip();
+      afterCR = read(chars, afterCR, handler);
+    } while (result.isOverflow());
+    end(afterCR, handler);
   }
 
   /**
-   * For testing purpose
+   * @return true if the last read char is a carriage return
    */
-  public Metadata readMetadata(Reader reader) {
-    LineCounter lineCounter = new LineCounter(new File("fromString"), StandardCharsets.UTF_16);
-    FileHashComputer fileHashComputer = new FileHashComputer(new File("fromString"));
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    try {
-      read(reader, lineCounter, fileHashComputer, lineOffsetCounter);
-    } catch (IOException e) {
-      throw new IllegalStateException("Should never occurs", e);
-    }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+  private static boolean decode(ByteBuffer bytes, boolean endOfInput, CharsetDecoder decoder, CharBuffer chars, boolean afterCarriageReturn,
+    CharHandler handler) throws CharacterCodingException {
+    boolean afterCR = afterCarriageReturn;
+    CoderResult result;
+    do {
+      chars.clear();
+      result = decoder.decode(bytes, chars, endOfInput);
+      if (result.isError()) {
+        result.throwException();
+      }
+      chars.flip();
+      afterCR = read(chars, afterCR, handler);
+    } while (result.isOverflow());
+    return afterCR;
   }
 
-  public static void readFile(File file, Charset encoding, CharHandler... handlers) {
-    try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
-      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-      Reader reader = new BufferedReader(new InputStreamReader(bomIn, encoding))) {
-      read(reader, handlers);
-    } catch (IOException e) {
-      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
+  private static void read(Reader reader, CharHandler handler) throws IOException {
+    char[] cbuf = new char[CHAR_BUFFER_SIZE];
+    boolean afterCR = false;
+    int read = reader.read(cbuf);
+    while (read != -1) {
+      afterCR = read(CharBuffer.wrap(cbuf, 0, read), afterCR, handler);
+      read = reader.read(cbuf);
     }
+    end(afterCR, handler);
   }
 
-  private static void read(Reader reader, CharHandler... handlers) throws IOException {
-    char c;
-    int i = reader.read();
-    boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
+  /**
+   * @return true if the last read char is a carriage return
+   */
+  private static boolean read(CharBuffer chars, boolean afterCarriageReturn, CharHandler handler) {
+    boolean afterCR = afterCarriageReturn;
+    while (chars.hasRemaining()) {
+      char c = chars.get();
       if (afterCR) {
-        for (CharHandler handler : handlers) {
-          if (c == CARRIAGE_RETURN) {
-            handler.newLine();
-            handler.handleAll(c);
-          } else if (c == LINE_FEED) {
-            handler.handleAll(c);
-            handler.newLine();
-          } else {
-            handler.newLine();
-            handler.handleIgnoreEoL(c);
-            handler.handleAll(c);
-          }
-        }
-        afterCR = c == CARRIAGE_RETURN;
-      } else if (c == LINE_FEED) {
-        for (CharHandler handler : handlers) {
+        if (c == CARRIAGE_RETURN) {
+          handler.newLine();
+          handler.handleAll(c);
+        } else if (c == LINE_FEED) {
           handler.handleAll(c);
           handler.newLine();
+        } else {
+          handler.newLine();
+          handler.handleIgnoreEoL(c);
+          handler.handleAll(c);
         }
+        afterCR = c == CARRIAGE_RETURN;
+      } else if (c == LINE_FEED) {
+        handler.handleAll(c);
+        handler.newLine();
       } else if (c == CARRIAGE_RETURN) {
         afterCR = true;
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-        }
+        handler.handleAll(c);
       } else {
-        for (CharHandler handler : handlers) {
-          handler.handleIgnoreEoL(c);
-          handler.handleAll(c);
-        }
+        handler.handleIgnoreEoL(c);
+        handler.handleAll(c);
       }
-      i = reader.read();
     }
-    for (CharHandler handler : handlers) {
-      if (afterCR) {
+    return afterCR;
+  }
+
+  private static void end(boolean afterCR, CharHandler handler) {
+    if (afterCR) {
+      handler.newLine();
+    }
+    handler.eof();
+  }
+
+  private static class CompositeHandler extends CharHandler {
+    private final CharHandler[] handlers;
+
+    CompositeHandler(CharHandler[] handlers) {
+      this.handlers = handlers;
+    }
+
+    @Override
+    protected void handleAll(char c) {
+      for (CharHandler handler : handlers) {
+        handler.handleAll(c);
+      }
+    }
+
+    @Override
+    protected void handleIgnoreEoL(char c) {
+      for (CharHandler handler : handlers) {
+        handler.handleIgnoreEoL(c);
+      }
+    }
+
+    @Override
+    protected void newLine() {
+      for (CharHandler handler : handlers) {
         handler.newLine();
       }
-      handler.eof();
+    }
+
+    @Override
+    protected void eof() {
+      for (CharHandler handler : handlers) {
+        handler.eof();
+      }
     }
   }
 
@@ -354,13 +517,16 @@ public class FileMetadata {
     final String hash;
     final int[] originalLineOffsets;
     final int lastValidOffset;
+    @CheckForNull
+    final byte[][] lineHashes;
 
-    private Metadata(int lines, int nonBlankLines, String hash, List<Integer> originalLineOffsets, int lastValidOffset) {
+    private Metadata(int lines, int nonBlankLines, String hash, int[] originalLineOffsets, int lastValidOffset, @Nullable byte[][] lineHashes) {
       this.lines = lines;
       this.nonBlankLines = nonBlankLines;
       this.hash = hash;
-      this.originalLineOffsets = Ints.toArray(originalLineOffsets);
+      this.originalLineOffsets = originalLineOffsets;
       this.lastValidOffset = lastValidOffset;
+      this.lineHashes = lineHashes;
     }
   }
 
@@ -371,9 +537,18 @@ public class FileMetadata {
   }
 
   /**
-   * Compute a MD5 hash of each line of the file after removing of all blank chars
+   * Compute a MD5 hash of each line of the file after removing of all blank chars. Hashes are not read again
+   * if they were computed with the metadata of file (see {@link #readMetadata(File, Charset, boolean)}).
    */
   public static void computeLineHashesForIssueTracking(DefaultInputFile f, LineHashConsumer consumer) {
-    readFile(f.file(), f.charset(), new LineHashComputer(consumer, f.file()));
+    byte[][] lineHashes = f.lineHashes();
+    if (lineHashes == null) {
+      lineHashes = new FileMetadata().readMetadata(f.file(), f.charset(), true).lineHashes;
+    }
+    for (int i = 0; i < lineHashes.length; i++) {
+      if (lineHashes[i] != null) {
+        consumer.consume(i + 1, lineHashes[i]);
+      }
+    }
   }
 }
@@ -79,4 +79,13 @@ public interface SensorDescriptor {
    */
   SensorDescriptor requireProperties(String... propertyKeys);
 
+  /**
+   * Declares that the {@link Sensor} can be executed concurrently with the other concurrent sensors of the same
+   * phase. Such a sensor must not share mutable state with other sensors and must not depend on data saved
+   * by other sensors of the same phase. Data is saved through {@link SensorContext} in a thread-safe way.
+   * Default is to execute sensor alone.
+   * @since 6.1
+   */
+  SensorDescriptor concurrent();
+
 }
@@ -22,6 +22,8 @@ package org.sonar.api.batch.fs.internal;
 import java.io.File;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
@@ -35,6 +37,7 @@ import org.sonar.api.utils.log.LoggerLevel;
 
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 
 public class FileMetadataTest {
@@ -249,6 +252,63 @@ public class FileMetadataTest {
     });
   }
 
+  @Test
+  public void line_hashes_computed_with_metadata_are_not_read_again() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, " foo\n\nbaz \t", StandardCharsets.UTF_8, true);
+
+    DefaultInputFile f = new DefaultInputFile("foo", tempFile.getName());
+    f.setModuleBaseDir(tempFile.getParentFile().toPath());
+    f.setCharset(StandardCharsets.UTF_8);
+    f.initMetadata(new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8, true));
+    FileUtils.deleteQuietly(tempFile);
+
+    final Map<Integer, String> hashes = new HashMap<>();
+    FileMetadata.computeLineHashesForIssueTracking(f, new LineHashConsumer() {
+      @Override
+      public void consume(int lineIdx, @Nullable byte[] hash) {
+        hashes.put(lineIdx, Hex.encodeHexString(hash));
+      }
+    });
+    assertThat(hashes).containsOnly(entry(1, md5Hex("foo")), entry(3, md5Hex("baz")));
+    assertThat(f.lines()).isEqualTo(3);
+    assertThat(f.nonBlankLines()).isEqualTo(2);
+  }
+
+  @Test
+  public void read_large_file() throws Exception {
+    File tempFile = temp.newFile();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      sb.append("line ").append(i).append("\r\n");
+    }
+    FileUtils.write(tempFile, sb.toString(), StandardCharsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(100_001);
+    assertThat(metadata.nonBlankLines).isEqualTo(100_000);
+    assertThat(metadata.hash).isEqualTo(md5Hex(sb.toString().replace("\r\n", "\n")));
+    assertThat(metadata.originalLineOffsets[1]).isEqualTo("line 0\r\n".length());
+    assertThat(metadata.lastValidOffset).isEqualTo(sb.length());
+  }
+
+  @Test
+  public void read_large_file_with_chars_and_line_ends_split_between_chunks() throws Exception {
+    File tempFile = temp.newFile();
+    StringBuilder sb = new StringBuilder("x");
+    // 6 bytes per line in UTF-8, so that chunks of the file end in the middle of chars and of line ends
+    for (int i = 0; i < 500_000; i++) {
+      sb.append("\u00DF\u00E0\r\n");
+    }
+    FileUtils.write(tempFile, sb.toString(), StandardCharsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(500_001);
+    assertThat(metadata.nonBlankLines).isEqualTo(500_000);
+    assertThat(metadata.hash).isEqualTo(md5Hex(sb.toString().replace("\r\n", "\n")));
+    assertThat(metadata.originalLineOffsets[500_000]).isEqualTo(sb.length());
+  }
+
   @Test
   public void dont_fail_on_empty_file() throws Exception {
     File tempFile = temp.newFile();
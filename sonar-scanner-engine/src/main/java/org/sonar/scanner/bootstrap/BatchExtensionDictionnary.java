@@ -78,7 +78,7 @@ public class BatchExtensionDictionnary {
     return result;
   }
 
-  private static Phase.Name evaluatePhase(Object extension) {
+  public static Phase.Name evaluatePhase(Object extension) {
     Object extensionToEvaluate;
     if (extension instanceof SensorWrapper) {
       extensionToEvaluate = ((SensorWrapper) extension).wrappedSensor();
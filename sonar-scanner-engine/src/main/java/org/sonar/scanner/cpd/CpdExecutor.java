@@ -22,14 +22,19 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -37,6 +42,7 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
 import org.sonar.duplications.index.CloneGroup;
+import org.sonar.duplications.index.CloneIndex;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
@@ -54,11 +60,18 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p/>
+ * Detection of the duplications of the different files is executed in parallel (see {@link #THREADS_PROPERTY}), as the
+ * index is read-only at this stage. Results are saved in the order of the index, by a single thread.
  */
 public class CpdExecutor {
+  public static final String THREADS_PROPERTY = "sonar.cpd.threads";
+
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
   // timeout for the computation of duplicates in a file (seconds)
   private static final int TIMEOUT = 5 * 60;
+  // maximum number of files submitted for detection but not saved yet, per thread
+  private static final int MAX_PENDING_FILES_PER_THREAD = 4;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
 
@@ -66,7 +79,6 @@ public class CpdExecutor {
   private final ReportPublisher publisher;
   private final BatchComponentCache batchComponentCache;
   private final Settings settings;
-  private final ExecutorService executorService;
   private final ProgressReport progressReport;
   private int count;
   private int total;
@@ -76,53 +88,72 @@ public class CpdExecutor {
     this.index = index;
     this.publisher = publisher;
     this.batchComponentCache = batchComponentCache;
-    this.executorService = Executors.newSingleThreadExecutor();
     this.progressReport = new ProgressReport("CPD computation", TimeUnit.SECONDS.toMillis(10));
   }
 
   public void execute() {
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CPD-%d").build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      Deque<FileDetection> pendingDetections = new ArrayDeque<>();
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(resourceBlocks.resourceId(), resourceBlocks.blocks());
-        count++;
+        FileDetection detection = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection == null) {
+          count++;
+        } else {
+          pendingDetections.add(detection);
+        }
+        if (pendingDetections.size() >= threads * MAX_PENDING_FILES_PER_THREAD) {
+          saveCpdAnalysis(pendingDetections.poll());
+        }
+      }
+      while (!pendingDetections.isEmpty()) {
+        saveCpdAnalysis(pendingDetections.poll());
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
+    } finally {
+      executorService.shutdownNow();
     }
   }
 
-  private void runCpdAnalysis(String resource, final Collection<Block> fileBlocks) {
-    LOG.debug("Detection of duplications for {}", resource);
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    return threads;
+  }
 
+  @CheckForNull
+  private FileDetection submitCpdAnalysis(ExecutorService executorService, String resource, Collection<Block> fileBlocks) {
     BatchComponent component = batchComponentCache.get(resource);
     if (component == null) {
       LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", resource);
-      return;
+      return null;
     }
+    FileDetection detection = new FileDetection(component, index, fileBlocks);
+    detection.future = executorService.submit(detection);
+    return detection;
+  }
 
+  private void saveCpdAnalysis(FileDetection detection) {
+    BatchComponent component = detection.component;
     InputFile inputFile = (InputFile) component.inputComponent();
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
-    List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = null;
-    try {
-      futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
-      duplications = futureResult.get(TIMEOUT, TimeUnit.SECONDS);
-    } catch (TimeoutException e) {
-      LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      if (futureResult != null) {
-        futureResult.cancel(true);
-      }
+    List<CloneGroup> duplications = waitForDuplications(detection, inputFile);
+    count++;
+    if (duplications == null) {
       return;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
     }
 
     List<CloneGroup> filtered;
@@ -136,6 +167,53 @@ public class CpdExecutor {
     saveDuplications(component, filtered);
   }
 
+  /**
+   * The timeout applies to the detection itself, not to the time the file waited for a free thread.
+   */
+  @CheckForNull
+  private static List<CloneGroup> waitForDuplications(FileDetection detection, InputFile inputFile) {
+    long timeout = TimeUnit.SECONDS.toMillis(TIMEOUT);
+    try {
+      while (true) {
+        long startedAt = detection.startedAt;
+        long remaining = startedAt == 0L ? timeout : (startedAt + timeout - System.currentTimeMillis());
+        if (remaining <= 0L) {
+          LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
+          detection.future.cancel(true);
+          return null;
+        }
+        try {
+          return detection.future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          // the detection may have waited for a thread, check again how long it has been running
+        }
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
+    }
+  }
+
+  private static class FileDetection implements Callable<List<CloneGroup>> {
+    private final BatchComponent component;
+    private final CloneIndex index;
+    private final Collection<Block> fileBlocks;
+    private volatile long startedAt = 0L;
+    private Future<List<CloneGroup>> future;
+
+    FileDetection(BatchComponent component, CloneIndex index, Collection<Block> fileBlocks) {
+      this.component = component;
+      this.index = index;
+      this.fileBlocks = fileBlocks;
+    }
+
+    @Override
+    public List<CloneGroup> call() {
+      startedAt = System.currentTimeMillis();
+      LOG.debug("Detection of duplications for {}", component.key());
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    }
+  }
+
   @VisibleForTesting
   /**
    * Not applicable to Java, as the {@link BlockChunker} that it uses does not record start and end units of each block. 
@@ -21,6 +21,9 @@ package org.sonar.scanner.index;
 
 import com.google.common.collect.Maps;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -38,12 +41,16 @@ import org.sonar.api.batch.ScannerSide;
 @ScannerSide
 public class Caches implements Startable {
   private final Map<String, Exchange> cacheMap = Maps.newHashMap();
+  private final Map<String, Cache<?>> mappedCacheMap = Maps.newHashMap();
+  private final CachesManager.Backend backend;
   private Persistit persistit;
   private Volume volume;
+  private MappedRecords mappedRecords;
 
   public Caches(CachesManager caches) {
     persistit = caches.persistit();
-    doStart();
+    backend = caches.backend();
+    doStart(caches.tempDir());
   }
 
   @Override
@@ -51,7 +58,16 @@ public class Caches implements Startable {
     // done in constructor
   }
 
-  private void doStart() {
+  private void doStart(File tempDir) {
+    if (backend == CachesManager.Backend.MAPPED) {
+      try {
+        File dir = Files.createTempDirectory(tempDir.toPath(), "mapped").toFile();
+        mappedRecords = new MappedRecords(dir, MappedRecords.DEFAULT_SEGMENT_SIZE);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to create a cache directory", e);
+      }
+      return;
+    }
     try {
       persistit.flush();
       volume = persistit.createTemporaryVolume();
@@ -66,12 +82,15 @@ public class Caches implements Startable {
   }
 
   public <V> Cache<V> createCache(String cacheName) {
+    if (backend == CachesManager.Backend.MAPPED) {
+      return createMappedCache(cacheName);
+    }
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
     try {
       Exchange exchange = persistit.getExchange(volume, cacheName, true);
       exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Cache<V> cache = new Cache<>(cacheName, exchange);
+      Cache<V> cache = new PersistitCache<>(cacheName, exchange);
       cacheMap.put(cacheName, exchange);
       return cache;
     } catch (Exception e) {
@@ -79,8 +98,22 @@ public class Caches implements Startable {
     }
   }
 
+  private <V> Cache<V> createMappedCache(String cacheName) {
+    Preconditions.checkState(mappedRecords != null, "Caches are not initialized");
+    Preconditions.checkState(!mappedCacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
+    Cache<V> cache = new MappedCache<>(cacheName, persistit, mappedRecords);
+    mappedCacheMap.put(cacheName, cache);
+    return cache;
+  }
+
   @Override
   public void stop() {
+    mappedCacheMap.clear();
+    if (mappedRecords != null) {
+      mappedRecords.close();
+      mappedRecords = null;
+    }
+
     for (Entry<String, Exchange> e : cacheMap.entrySet()) {
       persistit.releaseExchange(e.getValue());
     }
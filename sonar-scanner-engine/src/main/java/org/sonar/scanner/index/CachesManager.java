@@ -23,30 +23,63 @@ import com.persistit.Persistit;
 import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
+import java.util.Locale;
 import java.util.Properties;
+import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
 /**
- * Factory of caches
+ * Factory of caches. Entries are stored by Persistit, or by memory-mapped files when
+ * {@link #BACKEND_PROPERTY} is {@link Backend#MAPPED}. In both cases Persistit encodes keys and values.
  *
  * @since 3.6
  */
 @ScannerSide
 public class CachesManager implements Startable {
+
+  public static final String BACKEND_PROPERTY = "sonar.scanner.cache.backend";
+
+  public enum Backend {
+    PERSISTIT, MAPPED
+  }
+
   private File tempDir;
   private Persistit persistit;
   private final TempFolder tempFolder;
+  private final Backend backend;
 
   public CachesManager(TempFolder tempFolder) {
+    this(tempFolder, Backend.PERSISTIT);
+  }
+
+  public CachesManager(TempFolder tempFolder, GlobalProperties properties) {
+    this(tempFolder, parseBackend(properties.property(BACKEND_PROPERTY)));
+  }
+
+  CachesManager(TempFolder tempFolder, Backend backend) {
     this.tempFolder = tempFolder;
+    this.backend = backend;
     initPersistit();
   }
 
+  private static Backend parseBackend(@Nullable String value) {
+    if (value == null) {
+      return Backend.PERSISTIT;
+    }
+    try {
+      return Backend.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      throw MessageException.of(String.format("Invalid value of property '%s': '%s'. Supported values are 'persistit' and 'mapped'.", BACKEND_PROPERTY, value));
+    }
+  }
+
   private void initPersistit() {
     try {
       tempDir = tempFolder.newDir("caches");
@@ -95,4 +128,8 @@ public class CachesManager implements Startable {
   Persistit persistit() {
     return persistit;
   }
+
+  Backend backend() {
+    return backend;
+  }
 }
@@ -0,0 +1,593 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.index;
+
+import com.google.common.collect.Sets;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+import static org.sonar.scanner.index.MappedRecords.NO_RECORD;
+import static org.sonar.scanner.index.OffHeapHashTable.NOT_FOUND;
+
+/**
+ * Cache whose entries are appended to {@link MappedRecords} and indexed by two {@link OffHeapHashTable}s:
+ * <ul>
+ *   <li>the full key to the address of the record</li>
+ *   <li>the first part of key to the head and tail of the linked list of records sharing this first part</li>
+ * </ul>
+ * Keys and values are encoded by Persistit, so that the registered {@link com.persistit.encoding.ValueCoder}s
+ * are supported and keys are sorted in the same order than with {@link PersistitCache}.
+ * <p>
+ * Removed and replaced records are not reclaimed until the end of analysis.
+ * </p>
+ * <p>
+ * This cache is not thread-safe.
+ * </p>
+ */
+class MappedCache<V> implements Cache<V> {
+
+  private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+  private final String name;
+  private final MappedRecords records;
+  private final Key key;
+  private final Key recordKey;
+  private final Value value;
+  private final OffHeapHashTable index = new OffHeapHashTable(INITIAL_INDEX_CAPACITY);
+  private final OffHeapHashTable groups = new OffHeapHashTable(INITIAL_INDEX_CAPACITY);
+  private final Comparator<Long> keyOrder;
+  private byte[] valueBuffer = new byte[Value.INITIAL_SIZE];
+
+  MappedCache(String name, Persistit persistit, MappedRecords records) {
+    this.name = name;
+    this.records = records;
+    this.key = new Key(persistit);
+    this.recordKey = new Key(persistit);
+    this.value = new Value(persistit, Value.INITIAL_SIZE, Value.MAXIMUM_SIZE);
+    this.keyOrder = records::compareKeys;
+  }
+
+  @Override
+  public Cache<V> put(Object key, V value) {
+    resetKey(key);
+    return doPut(value);
+  }
+
+  @Override
+  public Cache<V> put(Object firstKey, Object secondKey, V value) {
+    resetKey(firstKey, secondKey);
+    return doPut(value);
+  }
+
+  @Override
+  public Cache<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
+    resetKey(firstKey, secondKey, thirdKey);
+    return doPut(value);
+  }
+
+  @Override
+  public Cache<V> put(Object[] key, V value) {
+    resetKey(key);
+    return doPut(value);
+  }
+
+  private Cache<V> doPut(V v) {
+    try {
+      value.put(v);
+      byte[] keyBytes = key.getEncodedBytes();
+      int keySize = key.getEncodedSize();
+      int firstPartSize = firstPartSize();
+      long address = records.append(keyBytes, keySize, firstPartSize, value.getEncodedBytes(), value.getEncodedSize());
+
+      int hash = MappedRecords.hash(keyBytes, keySize);
+      long slot = findRecord(hash);
+      if (slot == NOT_FOUND) {
+        index.insert(hash, address, 0L);
+      } else {
+        records.markRemoved(index.first(slot));
+        index.setFirst(slot, address);
+      }
+      addToGroup(address, keyBytes, firstPartSize);
+      return this;
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to put element in the cache " + name, e);
+    }
+  }
+
+  private void addToGroup(long address, byte[] keyBytes, int firstPartSize) {
+    int hash = MappedRecords.hash(keyBytes, firstPartSize);
+    long slot = findGroup(hash, firstPartSize);
+    if (slot == NOT_FOUND) {
+      groups.insert(hash, address, address);
+    } else {
+      records.setNext(groups.second(slot), address);
+      groups.setSecond(slot, address);
+    }
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object key) {
+    resetKey(key);
+    return doGet();
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object firstKey, Object secondKey) {
+    resetKey(firstKey, secondKey);
+    return doGet();
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object firstKey, Object secondKey, Object thirdKey) {
+    resetKey(firstKey, secondKey, thirdKey);
+    return doGet();
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object[] key) {
+    resetKey(key);
+    return doGet();
+  }
+
+  @CheckForNull
+  private V doGet() {
+    try {
+      long slot = findRecord(MappedRecords.hash(key.getEncodedBytes(), key.getEncodedSize()));
+      if (slot == NOT_FOUND) {
+        return null;
+      }
+      return readValue(index.first(slot));
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to get element from cache " + name, e);
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    resetKey(key);
+    return doContainsKey();
+  }
+
+  @Override
+  public boolean containsKey(Object firstKey, Object secondKey) {
+    resetKey(firstKey, secondKey);
+    return doContainsKey();
+  }
+
+  @Override
+  public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
+    resetKey(firstKey, secondKey, thirdKey);
+    return doContainsKey();
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    resetKey(key);
+    return doContainsKey();
+  }
+
+  private boolean doContainsKey() {
+    return findRecord(MappedRecords.hash(key.getEncodedBytes(), key.getEncodedSize())) != NOT_FOUND;
+  }
+
+  @Override
+  public boolean remove(Object key) {
+    resetKey(key);
+    return doRemove();
+  }
+
+  @Override
+  public boolean remove(Object firstKey, Object secondKey) {
+    resetKey(firstKey, secondKey);
+    return doRemove();
+  }
+
+  @Override
+  public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
+    resetKey(firstKey, secondKey, thirdKey);
+    return doRemove();
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    resetKey(key);
+    return doRemove();
+  }
+
+  private boolean doRemove() {
+    long slot = findRecord(MappedRecords.hash(key.getEncodedBytes(), key.getEncodedSize()));
+    if (slot == NOT_FOUND) {
+      return false;
+    }
+    // the record is unlinked from its group during the next traversal of the group
+    records.markRemoved(index.first(slot));
+    index.remove(slot);
+    return true;
+  }
+
+  @Override
+  public Cache<V> clear(Object key) {
+    resetKey(key);
+    return doClear();
+  }
+
+  @Override
+  public Cache<V> clear(Object firstKey, Object secondKey) {
+    resetKey(firstKey, secondKey);
+    return doClear();
+  }
+
+  @Override
+  public Cache<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
+    resetKey(firstKey, secondKey, thirdKey);
+    return doClear();
+  }
+
+  @Override
+  public Cache<V> clear(Object[] key) {
+    resetKey(key);
+    return doClear();
+  }
+
+  /**
+   * Removes the entry of current key and the entries of all its descendant keys
+   */
+  private Cache<V> doClear() {
+    byte[] prefix = key.getEncodedBytes();
+    int prefixSize = key.getEncodedSize();
+    for (long address : liveRecords(prefix, firstPartSize())) {
+      if (records.keyStartsWith(address, prefix, prefixSize, false)) {
+        records.markRemoved(address);
+        index.remove(findRecordAt(address));
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public void clear() {
+    index.clear();
+    groups.clear();
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public Set keySet(Object key) {
+    resetKey(key);
+    return childKeys();
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public Set keySet(Object firstKey, Object secondKey) {
+    resetKey(firstKey, secondKey);
+    return childKeys();
+  }
+
+  @Override
+  public Set<Object> keySet() {
+    Set<Object> keys = Sets.newLinkedHashSet();
+    for (long head : sortedGroups()) {
+      if (!liveRecords(head).isEmpty()) {
+        keys.add(decodeKeyPart(head, 0));
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Distinct values of the key part following the current key, in ascending order
+   */
+  private Set<Object> childKeys() {
+    Set<Object> keys = Sets.newLinkedHashSet();
+    for (long address : sortedDescendants(key.getEncodedBytes(), key.getEncodedSize(), firstPartSize())) {
+      keys.add(decodeKeyPart(address, key.getDepth()));
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterable<V> values(Object firstKey, Object secondKey) {
+    return () -> new ValueIterator(new PrefixIterator(firstKey, secondKey));
+  }
+
+  @Override
+  public Iterable<V> values(Object firstKey) {
+    return () -> new ValueIterator(new PrefixIterator(firstKey));
+  }
+
+  @Override
+  public Iterable<V> values() {
+    return () -> new ValueIterator(new GroupsIterator());
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries() {
+    return () -> new EntryIterator(new GroupsIterator());
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries(Object firstKey) {
+    return () -> new EntryIterator(new PrefixIterator(firstKey));
+  }
+
+  private void resetKey(Object key) {
+    this.key.clear();
+    this.key.append(key);
+  }
+
+  private void resetKey(Object first, Object second) {
+    key.clear();
+    key.append(first).append(second);
+  }
+
+  private void resetKey(Object first, Object second, Object third) {
+    key.clear();
+    key.append(first).append(second).append(third);
+  }
+
+  private void resetKey(Object[] keys) {
+    key.clear();
+    for (Object o : keys) {
+      key.append(o);
+    }
+  }
+
+  private int firstPartSize() {
+    int firstPartSize = key.indexTo(1).getIndex();
+    key.indexTo(0);
+    return firstPartSize;
+  }
+
+  private long findRecord(int hash) {
+    byte[] keyBytes = key.getEncodedBytes();
+    int keySize = key.getEncodedSize();
+    return index.find(hash, (address, unused) -> records.keyStartsWith(address, keyBytes, keySize, true));
+  }
+
+  private long findRecordAt(long address) {
+    int hash = records.hashKey(address, records.keySize(address));
+    return index.find(hash, (first, unused) -> first == address);
+  }
+
+  private long findGroup(int hash, int firstPartSize) {
+    byte[] keyBytes = key.getEncodedBytes();
+    return groups.find(hash, (head, tail) -> records.firstPartSize(head) == firstPartSize && records.keyStartsWith(head, keyBytes, firstPartSize, false));
+  }
+
+  /**
+   * Live records of the group of the given first key part
+   */
+  private List<Long> liveRecords(byte[] keyBytes, int firstPartSize) {
+    long slot = findGroup(MappedRecords.hash(keyBytes, firstPartSize), firstPartSize);
+    if (slot == NOT_FOUND) {
+      return Collections.emptyList();
+    }
+    return liveRecords(groups.first(slot));
+  }
+
+  /**
+   * Live records of the group starting at the given record. Removed records are unlinked on the way, and
+   * the group is dropped when it does not have live records anymore.
+   */
+  private List<Long> liveRecords(long head) {
+    List<Long> result = new ArrayList<>();
+    long previous = NO_RECORD;
+    long newHead = NO_RECORD;
+    for (long address = head; address != NO_RECORD; address = records.next(address)) {
+      if (records.isAlive(address)) {
+        result.add(address);
+        if (previous == NO_RECORD) {
+          newHead = address;
+        } else {
+          records.setNext(previous, address);
+        }
+        previous = address;
+      }
+    }
+    if (newHead != head || (previous != NO_RECORD && records.next(previous) != NO_RECORD)) {
+      updateGroup(head, newHead, previous);
+    }
+    return result;
+  }
+
+  private void updateGroup(long oldHead, long newHead, long newTail) {
+    int hash = records.hashKey(oldHead, records.firstPartSize(oldHead));
+    long slot = groups.find(hash, (head, tail) -> head == oldHead);
+    if (slot == NOT_FOUND) {
+      // group already updated since the caller got its head, for example when iterating on a modified cache
+      return;
+    }
+    if (newHead == NO_RECORD) {
+      groups.remove(slot);
+    } else {
+      records.setNext(newTail, NO_RECORD);
+      groups.setFirst(slot, newHead);
+      groups.setSecond(slot, newTail);
+    }
+  }
+
+  /**
+   * Heads of all groups, sorted by first key part
+   */
+  private List<Long> sortedGroups() {
+    List<Long> heads = new ArrayList<>();
+    groups.forEach((head, tail) -> heads.add(head));
+    Collections.sort(heads, keyOrder);
+    return heads;
+  }
+
+  /**
+   * Live records whose key strictly starts with the given prefix, sorted by key
+   */
+  private List<Long> sortedDescendants(byte[] prefix, int prefixSize, int firstPartSize) {
+    List<Long> result = new ArrayList<>();
+    for (long address : liveRecords(prefix, firstPartSize)) {
+      if (records.keySize(address) > prefixSize && records.keyStartsWith(address, prefix, prefixSize, false)) {
+        result.add(address);
+      }
+    }
+    Collections.sort(result, keyOrder);
+    return result;
+  }
+
+  private Object decodeKeyPart(long address, int depth) {
+    readKey(address);
+    return recordKey.indexTo(depth).decode();
+  }
+
+  private Object[] decodeKey(long address) {
+    readKey(address);
+    Object[] array = new Object[recordKey.getDepth()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = recordKey.indexTo(i).decode();
+    }
+    return array;
+  }
+
+  private void readKey(long address) {
+    records.readKey(address, recordKey.getEncodedBytes());
+    recordKey.setEncodedSize(records.keySize(address));
+  }
+
+  @SuppressWarnings("unchecked")
+  private V readValue(long address) {
+    int size = records.valueSize(address);
+    if (valueBuffer.length < size) {
+      valueBuffer = new byte[size];
+    }
+    records.readValue(address, valueBuffer);
+    value.putEncodedBytes(valueBuffer, 0, size);
+    return (V) value.get();
+  }
+
+  //
+  // LAZY ITERATORS
+  //
+
+  /**
+   * Iterates over the addresses of records whose key strictly starts with the given key parts
+   */
+  private class PrefixIterator implements Iterator<Long> {
+    private final Iterator<Long> addresses;
+
+    private PrefixIterator(Object... keys) {
+      resetKey(keys);
+      this.addresses = sortedDescendants(key.getEncodedBytes(), key.getEncodedSize(), firstPartSize()).iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return addresses.hasNext();
+    }
+
+    @Override
+    public Long next() {
+      return addresses.next();
+    }
+  }
+
+  /**
+   * Iterates over the addresses of all records, group after group. Records of a group are sorted only
+   * when the group is reached.
+   */
+  private class GroupsIterator implements Iterator<Long> {
+    private final Iterator<Long> heads = sortedGroups().iterator();
+    private Iterator<Long> addresses = Collections.emptyIterator();
+
+    @Override
+    public boolean hasNext() {
+      while (!addresses.hasNext() && heads.hasNext()) {
+        List<Long> group = liveRecords(heads.next());
+        Collections.sort(group, keyOrder);
+        addresses = group.iterator();
+      }
+      return addresses.hasNext();
+    }
+
+    @Override
+    public Long next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return addresses.next();
+    }
+  }
+
+  private class ValueIterator implements Iterator<V> {
+    private final Iterator<Long> addresses;
+
+    private ValueIterator(Iterator<Long> addresses) {
+      this.addresses = addresses;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return addresses.hasNext();
+    }
+
+    @Override
+    public V next() {
+      return readValue(addresses.next());
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Removing an item is not supported");
+    }
+  }
+
+  private class EntryIterator implements Iterator<Entry<V>> {
+    private final Iterator<Long> addresses;
+
+    private EntryIterator(Iterator<Long> addresses) {
+      this.addresses = addresses;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return addresses.hasNext();
+    }
+
+    @Override
+    public Entry<V> next() {
+      long address = addresses.next();
+      return new Entry<>(decodeKey(address), readValue(address));
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Removing an item is not supported");
+    }
+  }
+}
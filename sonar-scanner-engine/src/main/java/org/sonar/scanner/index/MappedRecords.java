@@ -0,0 +1,241 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Append-only storage of the records of {@link MappedCache}, in memory-mapped files ("segments") of a temporary
+ * directory. Data is paged in and out by the operating system, so it does not use the Java heap. Nothing is
+ * journaled or locked: records are lost when the scanner stops.
+ * <p>
+ * The address of a record is the index of its segment in the high 32 bits and its offset in the low 32 bits.
+ * Layout of a record:
+ * <ul>
+ *   <li>int: size of key</li>
+ *   <li>int: size of value</li>
+ *   <li>int: size of the first part of key</li>
+ *   <li>int: 1 if alive, 0 if removed</li>
+ *   <li>long: address of next record with the same first part of key, or -1</li>
+ *   <li>key and value, as encoded by Persistit</li>
+ * </ul>
+ * </p>
+ */
+class MappedRecords {
+
+  static final long NO_RECORD = -1L;
+  static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final int KEY_SIZE_OFFSET = 0;
+  private static final int VALUE_SIZE_OFFSET = 4;
+  private static final int FIRST_PART_SIZE_OFFSET = 8;
+  private static final int ALIVE_OFFSET = 12;
+  private static final int NEXT_OFFSET = 16;
+  private static final int HEADER_SIZE = 24;
+
+  private final File dir;
+  private final int segmentSize;
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+  private MappedByteBuffer current;
+  private long bytes = 0L;
+
+  MappedRecords(File dir, int segmentSize) {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+  }
+
+  long append(byte[] key, int keySize, int firstPartSize, byte[] value, int valueSize) {
+    int recordSize = HEADER_SIZE + keySize + valueSize;
+    if (current == null || current.remaining() < recordSize) {
+      current = newSegment(Math.max(segmentSize, recordSize));
+    }
+    int offset = current.position();
+    current.putInt(keySize);
+    current.putInt(valueSize);
+    current.putInt(firstPartSize);
+    current.putInt(1);
+    current.putLong(NO_RECORD);
+    current.put(key, 0, keySize);
+    current.put(value, 0, valueSize);
+    bytes += recordSize;
+    return ((long) (segments.size() - 1) << 32) | offset;
+  }
+
+  int keySize(long address) {
+    return segment(address).getInt(offset(address) + KEY_SIZE_OFFSET);
+  }
+
+  int valueSize(long address) {
+    return segment(address).getInt(offset(address) + VALUE_SIZE_OFFSET);
+  }
+
+  int firstPartSize(long address) {
+    return segment(address).getInt(offset(address) + FIRST_PART_SIZE_OFFSET);
+  }
+
+  boolean isAlive(long address) {
+    return segment(address).getInt(offset(address) + ALIVE_OFFSET) == 1;
+  }
+
+  void markRemoved(long address) {
+    segment(address).putInt(offset(address) + ALIVE_OFFSET, 0);
+  }
+
+  long next(long address) {
+    return segment(address).getLong(offset(address) + NEXT_OFFSET);
+  }
+
+  void setNext(long address, long next) {
+    segment(address).putLong(offset(address) + NEXT_OFFSET, next);
+  }
+
+  /**
+   * Whether the key of record starts with the given bytes. If {@code exactSize} is true, then sizes must be equal too.
+   */
+  boolean keyStartsWith(long address, byte[] key, int size, boolean exactSize) {
+    MappedByteBuffer segment = segment(address);
+    int offset = offset(address);
+    int keySize = segment.getInt(offset + KEY_SIZE_OFFSET);
+    if (keySize < size || (exactSize && keySize != size)) {
+      return false;
+    }
+    int keyOffset = offset + HEADER_SIZE;
+    for (int i = 0; i < size; i++) {
+      if (segment.get(keyOffset + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copies the key of record into {@code to}, which must be large enough
+   */
+  void readKey(long address, byte[] to) {
+    readBytes(address, HEADER_SIZE, to, keySize(address));
+  }
+
+  /**
+   * Copies the value of record into {@code to}, which must be large enough
+   */
+  void readValue(long address, byte[] to) {
+    readBytes(address, HEADER_SIZE + keySize(address), to, valueSize(address));
+  }
+
+  /**
+   * Compares keys of records as unsigned bytes, which is the order of Persistit keys
+   */
+  int compareKeys(long address1, long address2) {
+    MappedByteBuffer segment1 = segment(address1);
+    MappedByteBuffer segment2 = segment(address2);
+    int offset1 = offset(address1);
+    int offset2 = offset(address2);
+    int size1 = segment1.getInt(offset1 + KEY_SIZE_OFFSET);
+    int size2 = segment2.getInt(offset2 + KEY_SIZE_OFFSET);
+    for (int i = 0; i < Math.min(size1, size2); i++) {
+      int b1 = segment1.get(offset1 + HEADER_SIZE + i) & 0xFF;
+      int b2 = segment2.get(offset2 + HEADER_SIZE + i) & 0xFF;
+      if (b1 != b2) {
+        return b1 - b2;
+      }
+    }
+    return size1 - size2;
+  }
+
+  /**
+   * Hash of the first {@code size} bytes of key of record
+   */
+  int hashKey(long address, int size) {
+    MappedByteBuffer segment = segment(address);
+    int keyOffset = offset(address) + HEADER_SIZE;
+    int hash = 0x811C9DC5;
+    for (int i = 0; i < size; i++) {
+      hash = (hash ^ segment.get(keyOffset + i)) * 0x01000193;
+    }
+    return mix(hash);
+  }
+
+  static int hash(byte[] key, int size) {
+    int hash = 0x811C9DC5;
+    for (int i = 0; i < size; i++) {
+      hash = (hash ^ key[i]) * 0x01000193;
+    }
+    return mix(hash);
+  }
+
+  /**
+   * Total size of records, including removed ones
+   */
+  long bytes() {
+    return bytes;
+  }
+
+  void close() {
+    segments.clear();
+    current = null;
+    deleteQuietly(dir);
+  }
+
+  private void readBytes(long address, int position, byte[] to, int size) {
+    MappedByteBuffer segment = segment(address);
+    int start = offset(address) + position;
+    for (int i = 0; i < size; i++) {
+      to[i] = segment.get(start + i);
+    }
+  }
+
+  private MappedByteBuffer newSegment(int size) {
+    File file = new File(dir, "segment-" + segments.size());
+    try {
+      if (!dir.exists() && !dir.mkdirs()) {
+        throw new IOException("Can not create directory " + dir);
+      }
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segments.add(segment);
+        return segment;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create cache segment " + file, e);
+    }
+  }
+
+  private MappedByteBuffer segment(long address) {
+    return segments.get((int) (address >>> 32));
+  }
+
+  private static int offset(long address) {
+    return (int) address;
+  }
+
+  private static int mix(int hash) {
+    int h = hash ^ (hash >>> 16);
+    h *= 0x85EBCA6B;
+    return h ^ (h >>> 13);
+  }
+}
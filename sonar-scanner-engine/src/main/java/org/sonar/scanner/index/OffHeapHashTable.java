@@ -0,0 +1,200 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open-addressing hash table stored in a direct buffer, out of the Java heap. Each slot holds the hash of a key and
+ * two longs. Keys themselves are not stored: the caller checks if the slot of a given hash matches the searched
+ * key, usually by reading the key from the address stored in the first long.
+ * <p>
+ * Collisions are resolved by linear probing, and removals shift the next slots backward, so that no tombstone
+ * is needed.
+ * </p>
+ */
+class OffHeapHashTable {
+
+  interface SlotMatcher {
+    boolean matches(long first, long second);
+  }
+
+  interface SlotVisitor {
+    void visit(long first, long second);
+  }
+
+  static final long NOT_FOUND = -1L;
+
+  private static final int SLOT_SIZE = 20;
+  private static final int HASH_OFFSET = 0;
+  private static final int FIRST_OFFSET = 4;
+  private static final int SECOND_OFFSET = 12;
+  private static final long EMPTY = -1L;
+  private static final float MAX_LOAD_FACTOR = 0.6f;
+
+  private ByteBuffer slots;
+  private int capacity;
+  private int size = 0;
+
+  OffHeapHashTable(int initialCapacity) {
+    allocate(Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1);
+  }
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Index of the slot matching the given hash, or {@link #NOT_FOUND}
+   */
+  long find(int hash, SlotMatcher matcher) {
+    int mask = capacity - 1;
+    for (int index = hash & mask; !isEmpty(index); index = (index + 1) & mask) {
+      if (hashAt(index) == hash && matcher.matches(firstAt(index), secondAt(index))) {
+        return index;
+      }
+    }
+    return NOT_FOUND;
+  }
+
+  long first(long slot) {
+    return firstAt((int) slot);
+  }
+
+  long second(long slot) {
+    return secondAt((int) slot);
+  }
+
+  void setFirst(long slot, long value) {
+    slots.putLong((int) slot * SLOT_SIZE + FIRST_OFFSET, value);
+  }
+
+  void setSecond(long slot, long value) {
+    slots.putLong((int) slot * SLOT_SIZE + SECOND_OFFSET, value);
+  }
+
+  /**
+   * Adds an entry. The caller is responsible for checking that no slot already matches the key.
+   */
+  void insert(int hash, long first, long second) {
+    if (size + 1 > capacity * MAX_LOAD_FACTOR) {
+      grow();
+    }
+    doInsert(hash, first, second);
+    size++;
+  }
+
+  void remove(long slot) {
+    int mask = capacity - 1;
+    int hole = (int) slot;
+    int index = hole;
+    while (true) {
+      index = (index + 1) & mask;
+      if (isEmpty(index)) {
+        break;
+      }
+      int home = hashAt(index) & mask;
+      // the entry can fill the hole only if its home slot is not located between the hole and itself
+      boolean movable = hole <= index ? (home <= hole || home > index) : (home <= hole && home > index);
+      if (movable) {
+        write(hole, hashAt(index), firstAt(index), secondAt(index));
+        hole = index;
+      }
+    }
+    write(hole, 0, EMPTY, EMPTY);
+    size--;
+  }
+
+  void clear() {
+    allocate(16);
+    size = 0;
+  }
+
+  /**
+   * Visits all the entries, in no particular order
+   */
+  void forEach(SlotVisitor visitor) {
+    for (int index = 0; index < capacity; index++) {
+      if (!isEmpty(index)) {
+        visitor.visit(firstAt(index), secondAt(index));
+      }
+    }
+  }
+
+  private void grow() {
+    ByteBuffer oldSlots = slots;
+    int oldCapacity = capacity;
+    if ((long) oldCapacity * 2 * SLOT_SIZE > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Cache index is full");
+    }
+    allocate(oldCapacity * 2);
+    for (int index = 0; index < oldCapacity; index++) {
+      int offset = index * SLOT_SIZE;
+      long first = oldSlots.getLong(offset + FIRST_OFFSET);
+      if (first != EMPTY) {
+        doInsert(oldSlots.getInt(offset + HASH_OFFSET), first, oldSlots.getLong(offset + SECOND_OFFSET));
+      }
+    }
+  }
+
+  private void doInsert(int hash, long first, long second) {
+    int mask = capacity - 1;
+    int index = hash & mask;
+    while (!isEmpty(index)) {
+      index = (index + 1) & mask;
+    }
+    write(index, hash, first, second);
+  }
+
+  private void allocate(int newCapacity) {
+    capacity = newCapacity;
+    slots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+    for (int index = 0; index < newCapacity; index++) {
+      slots.putLong(index * SLOT_SIZE + FIRST_OFFSET, EMPTY);
+    }
+  }
+
+  private boolean isEmpty(int index) {
+    return firstAt(index) == EMPTY;
+  }
+
+  private int hashAt(int index) {
+    return slots.getInt(index * SLOT_SIZE + HASH_OFFSET);
+  }
+
+  private long firstAt(int index) {
+    return slots.getLong(index * SLOT_SIZE + FIRST_OFFSET);
+  }
+
+  private long secondAt(int index) {
+    return slots.getLong(index * SLOT_SIZE + SECOND_OFFSET);
+  }
+
+  private void write(int index, int hash, long first, long second) {
+    int offset = index * SLOT_SIZE;
+    slots.putInt(offset + HASH_OFFSET, hash);
+    slots.putLong(offset + FIRST_OFFSET, first);
+    slots.putLong(offset + SECOND_OFFSET, second);
+  }
+}
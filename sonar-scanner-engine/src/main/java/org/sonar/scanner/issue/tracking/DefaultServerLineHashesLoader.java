@@ -19,30 +19,63 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import org.sonarqube.ws.client.GetRequest;
-
-import java.io.IOException;
-import java.io.Reader;
-
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterators;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import javax.annotation.CheckForNull;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonar.scanner.repository.ServerDataCache;
 import org.sonar.scanner.util.BatchUtils;
+import org.sonarqube.ws.client.GetRequest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class DefaultServerLineHashesLoader implements ServerLineHashesLoader {
-  private BatchWsClient wsClient;
+  private final BatchWsClient wsClient;
+  private final ServerDataCache cache;
 
-  public DefaultServerLineHashesLoader(BatchWsClient wsClient) {
+  public DefaultServerLineHashesLoader(BatchWsClient wsClient, ServerDataCache cache) {
     this.wsClient = wsClient;
+    this.cache = cache;
   }
 
   @Override
   public String[] getLineHashes(String fileKey) {
-    String hashesFromWs = loadHashesFromWs(fileKey);
-    return Iterators.toArray(Splitter.on('\n').split(hashesFromWs).iterator(), String.class);
+    String hashes = loadHashesFromCache(fileKey);
+    if (hashes == null) {
+      hashes = loadHashesFromWs(fileKey);
+      putHashesInCache(fileKey, hashes);
+    }
+    return Iterators.toArray(Splitter.on('\n').split(hashes).iterator(), String.class);
+  }
+
+  @CheckForNull
+  private String loadHashesFromCache(String fileKey) {
+    File cachedHashes = cache.getLineHashes(fileKey);
+    if (cachedHashes == null) {
+      return null;
+    }
+    try {
+      return new String(Files.readAllBytes(cachedHashes.toPath()), UTF_8);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read line hashes from " + cachedHashes, e);
+    }
+  }
+
+  private void putHashesInCache(String fileKey, String hashes) {
+    File tempFile = cache.newTempFile();
+    try {
+      Files.write(tempFile.toPath(), hashes.getBytes(UTF_8));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write line hashes to " + tempFile, e);
+    }
+    cache.putLineHashes(fileKey, tempFile);
   }
 
   private String loadHashesFromWs(String fileKey) {
@@ -19,8 +19,10 @@
  */
 package org.sonar.scanner.phases;
 
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.events.SensorExecutionHandler;
 import org.sonar.api.batch.events.SensorsPhaseHandler;
 import org.sonar.api.utils.log.Logger;
@@ -32,7 +34,10 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
 
   private static final Logger LOG = Loggers.get(PhasesTimeProfiler.class);
 
-  private Profiler profiler = Profiler.create(LOG);
+  /**
+   * One profiler per sensor in progress, as concurrent sensors may overlap
+   */
+  private final Map<Sensor, Profiler> profilersBySensor = new ConcurrentHashMap<>();
 
   @Override
   public void onSensorsPhase(SensorsPhaseEvent event) {
@@ -43,10 +48,14 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
 
   @Override
   public void onSensorExecution(SensorExecutionEvent event) {
+    Sensor sensor = event.getSensor();
     if (event.isStart()) {
-      profiler.startInfo("Sensor " + BatchUtils.describe(event.getSensor()));
+      profilersBySensor.put(sensor, Profiler.create(LOG).startInfo("Sensor " + BatchUtils.describe(sensor)));
     } else {
-      profiler.stopInfo();
+      Profiler profiler = profilersBySensor.remove(sensor);
+      if (profiler != null) {
+        profiler.stopInfo();
+      }
     }
   }
 
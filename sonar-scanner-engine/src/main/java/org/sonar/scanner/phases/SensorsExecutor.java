@@ -19,42 +19,133 @@
  */
 package org.sonar.scanner.phases;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sonar.api.batch.Phase;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.BatchExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
-import java.util.Collection;
+import org.sonar.scanner.sensor.SensorWrapper;
 
+/**
+ * Executes the sensors of a module in the order of their dependencies. Consecutive sensors of the same
+ * {@link Phase} that are declared as concurrent (see {@link org.sonar.api.batch.sensor.SensorDescriptor#concurrent()})
+ * are executed in parallel (see {@link #THREADS_PROPERTY}). Other sensors are executed alone.
+ */
 @ScannerSide
 public class SensorsExecutor {
+  public static final String THREADS_PROPERTY = "sonar.sensors.threads";
 
-  private EventBus eventBus;
-  private Project module;
-  private BatchExtensionDictionnary selector;
+  private final EventBus eventBus;
+  private final Project module;
+  private final BatchExtensionDictionnary selector;
+  private final Settings settings;
 
-  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus) {
+  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus, Settings settings) {
     this.selector = selector;
     this.eventBus = eventBus;
     this.module = project;
+    this.settings = settings;
   }
 
   public void execute(SensorContext context) {
     Collection<Sensor> sensors = selector.select(Sensor.class, module, true, null);
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
 
+    int threads = getThreads();
+    List<Sensor> concurrentSensors = new ArrayList<>();
     for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+      if (threads > 1 && isConcurrent(sensor)) {
+        if (!concurrentSensors.isEmpty() && phase(concurrentSensors.get(0)) != phase(sensor)) {
+          executeConcurrently(context, concurrentSensors, threads);
+        }
+        concurrentSensors.add(sensor);
+      } else {
+        executeConcurrently(context, concurrentSensors, threads);
+        executeSensor(context, sensor);
+      }
     }
+    executeConcurrently(context, concurrentSensors, threads);
 
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
   }
 
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    return threads;
+  }
+
+  private static boolean isConcurrent(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).isConcurrent();
+  }
+
+  private static Phase.Name phase(Sensor sensor) {
+    return BatchExtensionDictionnary.evaluatePhase(sensor);
+  }
+
+  /**
+   * Executes the given sensors in parallel, then clears the list
+   */
+  private void executeConcurrently(final SensorContext context, List<Sensor> sensors, int threads) {
+    if (sensors.size() == 1) {
+      executeSensor(context, sensors.get(0));
+    } else if (!sensors.isEmpty()) {
+      ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, sensors.size()),
+        new ThreadFactoryBuilder().setNameFormat("Sensor-%d").build());
+      try {
+        List<Future<?>> tasks = new ArrayList<>();
+        for (final Sensor sensor : sensors) {
+          tasks.add(executorService.submit(() -> executeSensor(context, sensor)));
+        }
+        for (Future<?> task : tasks) {
+          waitFor(task);
+        }
+      } finally {
+        executorService.shutdownNow();
+      }
+    }
+    sensors.clear();
+  }
+
+  private static void waitFor(Future<?> task) {
+    try {
+      task.get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(module, context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  /**
+   * Event handlers, for example profilers, are not thread-safe
+   */
+  private void fireEvent(SensorExecutionEvent event) {
+    synchronized (eventBus) {
+      eventBus.fireEvent(event);
+    }
   }
 }
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TimeUtils;
 
 public class PhaseProfiling extends AbstractTimeProfiling {
 
@@ -62,6 +63,17 @@ public class PhaseProfiling extends AbstractTimeProfiling {
     profilingPerItem.put(itemName, new ItemProfiling(system(), itemName));
   }
 
+  /**
+   * Time saved by the concurrent execution of items: sum of the times of items minus the time of phase
+   */
+  public long overlapTime() {
+    long itemsTime = 0L;
+    for (ItemProfiling itemProfiling : profilingPerItem.values()) {
+      itemsTime += itemProfiling.totalTime();
+    }
+    return Math.max(0L, itemsTime - totalTime());
+  }
+
   public void merge(PhaseProfiling other) {
     super.add(other);
     for (Entry<String, ItemProfiling> entry : other.profilingPerItem.entrySet()) {
@@ -80,6 +92,11 @@ public class PhaseProfiling extends AbstractTimeProfiling {
     for (ItemProfiling itemProfiling : truncate(sortByDescendingTotalTime(profilingPerItem).values())) {
       println("   o " + itemProfiling.itemName() + ": ", percent, itemProfiling);
     }
+    long overlapTime = overlapTime();
+    if (overlapTime > 0L) {
+      props.setProperty(phase + " overlap", Long.toString(overlapTime));
+      println("   Concurrent executions overlapped by " + TimeUtils.formatDuration(overlapTime));
+    }
   }
 
   /**
@@ -62,6 +62,10 @@ public class ReportPublisher implements Startable {
   public static final String KEEP_REPORT_PROP_KEY = "sonar.batch.keepReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
+  /**
+   * Whether data of components is packed in a single container file (format v2 of report). Enabled by default.
+   */
+  public static final String CONTAINER_PROP_KEY = "sonar.scanner.reportContainer";
 
   private final Settings settings;
   private final BatchWsClient wsClient;
@@ -141,9 +145,18 @@ public class ReportPublisher implements Startable {
       for (ReportPublisherStep publisher : publishers) {
         publisher.publish(writer);
       }
+      // lets the Compute Engine skip the files which data did not change since previous analysis
+      writer.writeLineDataHashes();
       long stopTime = System.currentTimeMillis();
       LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
 
+      if (!settings.hasKey(CONTAINER_PROP_KEY) || settings.getBoolean(CONTAINER_PROP_KEY)) {
+        startTime = System.currentTimeMillis();
+        writer.packComponentData();
+        stopTime = System.currentTimeMillis();
+        LOG.debug("Analysis report packed in {}ms", stopTime - startTime);
+      }
+
       startTime = System.currentTimeMillis();
       File reportZip = temp.newFile("batch-report", ".zip");
       ZipUtils.zipDir(reportDir, reportZip);
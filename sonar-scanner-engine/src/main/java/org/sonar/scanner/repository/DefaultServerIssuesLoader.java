@@ -20,9 +20,18 @@
 package org.sonar.scanner.repository;
 
 import com.google.common.base.Function;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.bootstrap.BatchWsClient;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
 import org.sonar.scanner.util.BatchUtils;
@@ -31,16 +40,54 @@ import org.sonarqube.ws.client.GetRequest;
 public class DefaultServerIssuesLoader implements ServerIssuesLoader {
 
   private final BatchWsClient wsClient;
+  private final ServerDataCache cache;
 
-  public DefaultServerIssuesLoader(BatchWsClient wsClient) {
+  public DefaultServerIssuesLoader(BatchWsClient wsClient, ServerDataCache cache) {
     this.wsClient = wsClient;
+    this.cache = cache;
   }
 
   @Override
   public void load(String componentKey, Function<ServerIssue, Void> consumer) {
+    File cachedIssues = cache.getServerIssues(componentKey);
+    if (cachedIssues != null) {
+      Loggers.get(getClass()).debug("Load server issues of {} from cache", componentKey);
+      parseIssues(openFile(cachedIssues), consumer);
+      return;
+    }
+
     GetRequest getRequest = new GetRequest("/batch/issues.protobuf?key=" + BatchUtils.encodeForUrl(componentKey));
     InputStream is = wsClient.call(getRequest).contentStream();
-    parseIssues(is, consumer);
+    // issues are parsed while being downloaded and copied to cache
+    File tempFile = cache.newTempFile();
+    boolean complete = false;
+    try {
+      parseIssues(new TeeInputStream(is, openOutput(tempFile, is), true), consumer);
+      complete = true;
+    } finally {
+      if (complete) {
+        cache.putServerIssues(componentKey, tempFile);
+      } else {
+        FileUtils.deleteQuietly(tempFile);
+      }
+    }
+  }
+
+  private static OutputStream openOutput(File file, InputStream downloadStream) {
+    try {
+      return new BufferedOutputStream(new FileOutputStream(file));
+    } catch (IOException e) {
+      IOUtils.closeQuietly(downloadStream);
+      throw new IllegalStateException("Unable to get previous issues", e);
+    }
+  }
+
+  private static InputStream openFile(File file) {
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to get previous issues", e);
+    }
   }
 
   private static void parseIssues(InputStream is, Function<ServerIssue, Void> consumer) {
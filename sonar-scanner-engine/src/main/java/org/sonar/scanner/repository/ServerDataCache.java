@@ -0,0 +1,169 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.repository;
+
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.home.cache.FileCache;
+import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonar.scanner.scan.ImmutableProjectReactor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Disk cache, in the user home, of the data loaded from server about the last analysis of the project, so that
+ * successive runs in issues mode do not download them again. Entries are grouped by server, project and date of
+ * last analysis: a new analysis on server invalidates all the entries of the project.
+ * <p>
+ * Line hashes can not change without a new analysis, so they never expire. Issues can be updated by users (assignee,
+ * resolution, ...) and expire after {@link #SERVER_ISSUES_TTL_PROPERTY} minutes.
+ * </p>
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+@ScannerSide
+public class ServerDataCache {
+
+  public static final String SERVER_ISSUES_TTL_PROPERTY = "sonar.issuesMode.serverIssuesCacheTtl";
+  static final int DEFAULT_SERVER_ISSUES_TTL_MINUTES = 10;
+  static final String DIR_NAME = "_server_data";
+
+  private static final Logger LOG = Loggers.get(ServerDataCache.class);
+
+  private final File projectDir;
+  private final File analysisDir;
+  private final long serverIssuesTtlMs;
+  private final System2 system2;
+  private boolean initialized = false;
+
+  public ServerDataCache(FileCache fileCache, BatchWsClient wsClient, ImmutableProjectReactor reactor, ProjectRepositories projectRepositories,
+    Settings settings) {
+    this(new File(fileCache.getDir(), DIR_NAME), wsClient.baseUrl(), reactor.getRoot().getKeyWithBranch(), projectRepositories.lastAnalysisDate(),
+      TimeUnit.MINUTES.toMillis(settings.hasKey(SERVER_ISSUES_TTL_PROPERTY) ? settings.getInt(SERVER_ISSUES_TTL_PROPERTY) : DEFAULT_SERVER_ISSUES_TTL_MINUTES),
+      System2.INSTANCE);
+  }
+
+  ServerDataCache(File cacheDir, String serverUrl, String projectKey, @Nullable Date lastAnalysisDate, long serverIssuesTtlMs, System2 system2) {
+    this.projectDir = new File(cacheDir, hash(serverUrl + "|" + projectKey));
+    this.analysisDir = new File(projectDir, lastAnalysisDate == null ? "none" : String.valueOf(lastAnalysisDate.getTime()));
+    this.serverIssuesTtlMs = serverIssuesTtlMs;
+    this.system2 = system2;
+  }
+
+  /**
+   * Cached issues of a component, or {@code null} if missing or expired
+   */
+  @CheckForNull
+  public File getServerIssues(String componentKey) {
+    if (serverIssuesTtlMs <= 0L) {
+      return null;
+    }
+    File file = file("issues", componentKey);
+    if (file.isFile() && system2.now() - file.lastModified() <= serverIssuesTtlMs) {
+      return file;
+    }
+    return null;
+  }
+
+  public void putServerIssues(String componentKey, File tempFile) {
+    put(tempFile, file("issues", componentKey));
+  }
+
+  /**
+   * Cached line hashes of a file, or {@code null} if missing
+   */
+  @CheckForNull
+  public File getLineHashes(String fileKey) {
+    File file = file("hashes", fileKey);
+    return file.isFile() ? file : null;
+  }
+
+  public void putLineHashes(String fileKey, File tempFile) {
+    put(tempFile, file("hashes", fileKey));
+  }
+
+  /**
+   * Temporary file in the same file system as the cache, so that it can be atomically moved into the cache once
+   * completely written.
+   */
+  public File newTempFile() {
+    init();
+    try {
+      return File.createTempFile("download", null, analysisDir);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create temp file in " + analysisDir, e);
+    }
+  }
+
+  private void put(File tempFile, File target) {
+    try {
+      Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // another scanner may be reading the file on Windows, entry will be cached by a next run
+      LOG.debug("Fail to put {} in server data cache", target, e);
+      deleteQuietly(tempFile);
+    }
+  }
+
+  private File file(String type, String key) {
+    return new File(analysisDir, type + "-" + hash(key));
+  }
+
+  /**
+   * Creates the directory of the last analysis and drops the entries of previous analyses
+   */
+  private void init() {
+    if (initialized) {
+      return;
+    }
+    try {
+      Files.createDirectories(analysisDir.toPath());
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(projectDir.toPath())) {
+        for (Path path : stream) {
+          if (!path.equals(analysisDir.toPath())) {
+            deleteQuietly(path.toFile());
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create server data cache " + analysisDir, e);
+    }
+    initialized = true;
+  }
+
+  private static String hash(String key) {
+    return Hashing.sha1().hashString(key, UTF_8).toString();
+  }
+}
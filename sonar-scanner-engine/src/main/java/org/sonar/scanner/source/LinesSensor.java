@@ -35,7 +35,8 @@ public final class LinesSensor implements Sensor {
 
   @Override
   public void describe(SensorDescriptor descriptor) {
-    descriptor.name("Lines Sensor");
+    descriptor.name("Lines Sensor")
+      .concurrent();
   }
 
   @Override
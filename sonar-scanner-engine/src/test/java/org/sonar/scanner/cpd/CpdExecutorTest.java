@@ -29,6 +29,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.config.Settings;
@@ -36,6 +37,8 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.scanner.protocol.output.ScannerReport.Duplicate;
@@ -113,6 +116,47 @@ public class CpdExecutorTest {
     assertThat(executor.getMinimumTokens("php")).isEqualTo(33);
   }
 
+  @Test
+  public void threads_default_to_available_processors() {
+    assertThat(executor.getThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "0");
+    assertThat(executor.getThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  public void threads_can_be_configured() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "3");
+    assertThat(executor.getThreads()).isEqualTo(3);
+  }
+
+  @Test
+  public void detect_duplications_of_all_files_in_parallel() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "4");
+    SonarCpdBlockIndex realIndex = new SonarCpdBlockIndex(publisher, componentCache, settings);
+    List<BatchComponent> components = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      BatchComponent component = createComponent("src/Dup" + i + ".java", 20);
+      ((DefaultInputFile) component.inputComponent()).setLanguage("java").setModuleBaseDir(temp.getRoot().toPath());
+      components.add(component);
+      // each file shares its first block with the previous file and its second block with the next one
+      realIndex.insert((InputFile) component.inputComponent(), Arrays.asList(
+        newBlock(component, i, 0, 1),
+        newBlock(component, i + 1, 1, 10)));
+    }
+    executor = new CpdExecutor(settings, realIndex, publisher, componentCache);
+
+    executor.execute();
+
+    for (int i = 1; i < components.size() - 1; i++) {
+      BatchComponent component = components.get(i);
+      List<Duplication> duplications = readDuplications(component);
+      assertThat(duplications).extracting(d -> d.getOriginPosition().getStartLine()).containsOnly(1, 10);
+      assertThat(duplications).extracting(d -> d.getDuplicate(0).getOtherFileRef())
+        .containsOnly(components.get(i - 1).batchId(), components.get(i + 1).batchId());
+    }
+  }
+
   @Test
   public void testNothingToSave() {
     executor.saveDuplications(batchComponent1, Collections.<CloneGroup>emptyList());
@@ -197,6 +241,26 @@ public class CpdExecutorTest {
     assertDuplication(dups[1], 15, 214, batchComponent3.batchId(), 15, 214);
   }
 
+  private List<Duplication> readDuplications(BatchComponent component) {
+    List<Duplication> duplications = new ArrayList<>();
+    try (CloseableIterator<Duplication> it = reader.readComponentDuplications(component.batchId())) {
+      while (it.hasNext()) {
+        duplications.add(it.next());
+      }
+    }
+    return duplications;
+  }
+
+  private static Block newBlock(BatchComponent component, long hash, int indexInFile, int line) {
+    return Block.builder()
+      .setResourceId(component.key())
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(indexInFile)
+      .setLines(line, line + 5)
+      .setUnit(indexInFile, indexInFile)
+      .build();
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
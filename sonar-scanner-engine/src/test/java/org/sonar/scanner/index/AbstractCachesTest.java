@@ -42,16 +42,16 @@ public abstract class AbstractCachesTest {
   protected static CachesManager cachesManager;
   protected Caches caches;
 
-  private static CachesManager createCacheOnTemp() {
+  protected static CachesManager createCacheOnTemp(CachesManager.Backend backend) {
     Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
       CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath());
 
-    return new CachesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)));
+    return new CachesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)), backend);
   }
 
   @BeforeClass
   public static void startClass() {
-    cachesManager = createCacheOnTemp();
+    cachesManager = createCacheOnTemp(CachesManager.Backend.PERSISTIT);
     cachesManager.start();
   }
 
@@ -0,0 +1,135 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.internal.DefaultTempFolder;
+
+/**
+ * Compares the Persistit and memory-mapped backends of {@link Caches} on the access pattern of measures: entries are
+ * put with keys (component key, metric key), then read one by one and iterated component after component.
+ * This is not a unit test, run it with {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CacheBenchmark {
+
+  private static final int METRICS = 50;
+
+  @Param({"PERSISTIT", "MAPPED"})
+  public CachesManager.Backend backend;
+
+  @Param({"10000"})
+  public int components;
+
+  private File workDir;
+  private CachesManager cachesManager;
+  private Caches caches;
+  private Cache<String> filledCache;
+  private int cacheIndex = 0;
+
+  @Setup
+  public void setUp() throws IOException {
+    workDir = Files.createTempDirectory("cache-benchmark").toFile();
+    cachesManager = new CachesManager(new DefaultTempFolder(workDir), backend);
+    caches = new Caches(cachesManager);
+    filledCache = caches.createCache("filled");
+    fill(filledCache);
+  }
+
+  @TearDown
+  public void tearDown() {
+    caches.stop();
+    cachesManager.stop();
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  private void fill(Cache<String> cache) {
+    for (int component = 0; component < components; component++) {
+      String componentKey = componentKey(component);
+      for (int metric = 0; metric < METRICS; metric++) {
+        cache.put(componentKey, "metric" + metric, componentKey + metric);
+      }
+    }
+  }
+
+  private static String componentKey(int component) {
+    return "org.sonarsource:project:src/main/java/org/sonar/dir" + (component / 100) + "/File" + component + ".java";
+  }
+
+  @Benchmark
+  public void put() {
+    fill(caches.createCache("put" + cacheIndex++));
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) {
+    for (int component = 0; component < components; component++) {
+      String componentKey = componentKey(component);
+      for (int metric = 0; metric < METRICS; metric++) {
+        blackhole.consume(filledCache.get(componentKey, "metric" + metric));
+      }
+    }
+  }
+
+  @Benchmark
+  public void iterate_by_component(Blackhole blackhole) {
+    for (int component = 0; component < components; component++) {
+      for (String value : filledCache.values(componentKey(component))) {
+        blackhole.consume(value);
+      }
+    }
+  }
+
+  @Benchmark
+  public void iterate_all(Blackhole blackhole) {
+    for (Cache.Entry<String> entry : filledCache.entries()) {
+      blackhole.consume(entry);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CacheBenchmark.class.getSimpleName()).build()).run();
+  }
+}
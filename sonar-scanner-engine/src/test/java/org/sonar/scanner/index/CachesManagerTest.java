@@ -19,15 +19,40 @@
  */
 package org.sonar.scanner.index;
 
-import org.junit.Test;
-
+import com.google.common.collect.ImmutableMap;
 import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.internal.DefaultTempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-public class CachesManagerTest extends AbstractCachesTest {
+public class CachesManagerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private CachesManager cachesManager;
+
+  @After
+  public void stop() {
+    if (cachesManager != null) {
+      cachesManager.stop();
+    }
+  }
+
   @Test
-  public void should_stop_and_clean_temp_dir() {
+  public void should_stop_and_clean_temp_dir() throws IOException {
+    cachesManager = new CachesManager(new DefaultTempFolder(temp.newFolder()));
     File tempDir = cachesManager.tempDir();
     assertThat(tempDir).isDirectory().exists();
     assertThat(cachesManager.persistit()).isNotNull();
@@ -39,4 +64,26 @@ public class CachesManagerTest extends AbstractCachesTest {
     assertThat(cachesManager.tempDir()).isNull();
     assertThat(cachesManager.persistit()).isNull();
   }
+
+  @Test
+  public void persistit_is_the_default_backend() throws IOException {
+    cachesManager = new CachesManager(new DefaultTempFolder(temp.newFolder()));
+
+    assertThat(cachesManager.backend()).isEqualTo(CachesManager.Backend.PERSISTIT);
+  }
+
+  @Test
+  public void select_backend_from_property() throws IOException {
+    cachesManager = new CachesManager(new DefaultTempFolder(temp.newFolder()), new GlobalProperties(ImmutableMap.of(CachesManager.BACKEND_PROPERTY, "Mapped")));
+
+    assertThat(cachesManager.backend()).isEqualTo(CachesManager.Backend.MAPPED);
+  }
+
+  @Test
+  public void fail_if_backend_is_not_supported() throws IOException {
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("Invalid value of property 'sonar.scanner.cache.backend': 'redis'");
+
+    new CachesManager(new DefaultTempFolder(temp.newFolder()), new GlobalProperties(ImmutableMap.of(CachesManager.BACKEND_PROPERTY, "redis")));
+  }
 }
@@ -0,0 +1,150 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.index;
+
+import com.google.common.collect.Iterables;
+import com.persistit.Value;
+import com.persistit.encoding.CoderContext;
+import com.persistit.encoding.ValueCoder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the tests of {@link CacheTest} on memory-mapped caches
+ */
+public class MappedCacheTest extends CacheTest {
+
+  @BeforeClass
+  public static void startMappedClass() {
+    cachesManager.stop();
+    cachesManager = createCacheOnTemp(CachesManager.Backend.MAPPED);
+    cachesManager.start();
+  }
+
+  @Test
+  public void create_mapped_caches() {
+    assertThat(caches.<String>createCache("foo")).isInstanceOf(MappedCache.class);
+  }
+
+  @Test
+  public void replace_value() {
+    Cache<String> cache = caches.createCache("capitals");
+    cache.put("europe", "germany", "bonn");
+    cache.put("europe", "germany", "berlin");
+
+    assertThat(cache.get("europe", "germany")).isEqualTo("berlin");
+    assertThat(cache.values("europe")).containsExactly("berlin");
+    assertThat(Iterables.size(cache.entries())).isEqualTo(1);
+  }
+
+  @Test
+  public void put_after_clear() {
+    Cache<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "paris");
+    cache.clear("europe");
+    cache.put("europe", "italy", "rome");
+
+    assertThat(cache.keySet()).containsOnly("europe");
+    assertThat(cache.keySet("europe")).containsOnly("italy");
+    assertThat(cache.values()).containsExactly("rome");
+
+    cache.clear();
+    cache.put("europe", "spain", "madrid");
+    assertThat(cache.values()).containsExactly("madrid");
+  }
+
+  @Test
+  public void keys_are_sorted_as_with_persistit() {
+    Cache<String> cache = caches.createCache("numbers");
+    cache.put(10, "ten");
+    cache.put(-5, "minus five");
+    cache.put(0, "zero");
+    cache.put(3, "three");
+
+    assertThat(cache.values()).containsExactly("minus five", "zero", "three", "ten");
+    assertThat(cache.keySet()).containsExactly(-5, 0, 3, 10);
+  }
+
+  @Test
+  public void caches_share_records_but_not_entries() {
+    Cache<String> first = caches.createCache("first");
+    Cache<String> second = caches.createCache("second");
+    first.put("key", "first value");
+    second.put("key", "second value");
+
+    assertThat(first.get("key")).isEqualTo("first value");
+    assertThat(second.get("key")).isEqualTo("second value");
+  }
+
+  @Test
+  public void support_many_entries() {
+    Cache<Integer> cache = caches.createCache("many");
+    for (int i = 0; i < 100_000; i++) {
+      cache.put("group" + (i % 100), i, i);
+    }
+    for (int i = 0; i < 100_000; i += 2) {
+      cache.remove("group" + (i % 100), i);
+    }
+
+    assertThat(cache.get("group1", 1)).isEqualTo(1);
+    assertThat(cache.get("group2", 2)).isNull();
+    assertThat(cache.keySet()).hasSize(50);
+    assertThat(Iterables.size(cache.values())).isEqualTo(50_000);
+    assertThat(cache.values("group1")).startsWith(1, 101, 201);
+  }
+
+  @Test
+  public void use_registered_value_coders() {
+    caches.registerValueCoder(Point.class, new PointValueCoder());
+    Cache<Point> cache = caches.createCache("points");
+    cache.put("origin", new Point(0, 0));
+    cache.put("other", new Point(3, -4));
+
+    assertThat(cache.get("other").x).isEqualTo(3);
+    assertThat(cache.get("other").y).isEqualTo(-4);
+    assertThat(cache.values()).hasSize(2);
+  }
+
+  private static class Point {
+    private final int x;
+    private final int y;
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  private static class PointValueCoder implements ValueCoder {
+    @Override
+    public void put(Value value, Object object, CoderContext context) {
+      Point point = (Point) object;
+      value.put(point.x);
+      value.put(point.y);
+    }
+
+    @Override
+    public Object get(Value value, Class<?> clazz, CoderContext context) {
+      return new Point(value.getInt(), value.getInt());
+    }
+  }
+}
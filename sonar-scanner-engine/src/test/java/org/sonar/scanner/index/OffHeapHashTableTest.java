@@ -0,0 +1,131 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.sonar.scanner.index.OffHeapHashTable.NOT_FOUND;
+
+public class OffHeapHashTableTest {
+
+  OffHeapHashTable underTest = new OffHeapHashTable(16);
+
+  @Test
+  public void insert_and_find() {
+    underTest.insert(42, 1L, 10L);
+    underTest.insert(43, 2L, 20L);
+
+    long slot = underTest.find(42, (first, second) -> first == 1L);
+    assertThat(slot).isNotEqualTo(NOT_FOUND);
+    assertThat(underTest.first(slot)).isEqualTo(1L);
+    assertThat(underTest.second(slot)).isEqualTo(10L);
+    assertThat(underTest.find(42, (first, second) -> first == 2L)).isEqualTo(NOT_FOUND);
+    assertThat(underTest.find(44, (first, second) -> true)).isEqualTo(NOT_FOUND);
+    assertThat(underTest.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void update_slot() {
+    underTest.insert(42, 1L, 10L);
+    long slot = underTest.find(42, (first, second) -> true);
+
+    underTest.setFirst(slot, 2L);
+    underTest.setSecond(slot, 20L);
+
+    assertThat(underTest.find(42, (first, second) -> first == 2L && second == 20L)).isEqualTo(slot);
+  }
+
+  @Test
+  public void grow_when_load_factor_is_reached() {
+    for (int i = 0; i < 100; i++) {
+      underTest.insert(i, i, i);
+    }
+
+    assertThat(underTest.size()).isEqualTo(100);
+    assertThat(underTest.capacity()).isEqualTo(256);
+    for (long i = 0; i < 100; i++) {
+      long value = i;
+      assertThat(underTest.find((int) i, (first, second) -> first == value)).isNotEqualTo(NOT_FOUND);
+    }
+  }
+
+  @Test
+  public void remove_keeps_colliding_entries_reachable() {
+    // all entries have the same hash
+    for (int i = 0; i < 10; i++) {
+      underTest.insert(7, i, i);
+    }
+    for (int i = 0; i < 10; i += 2) {
+      long value = i;
+      underTest.remove(underTest.find(7, (first, second) -> first == value));
+    }
+
+    assertThat(underTest.size()).isEqualTo(5);
+    for (int i = 0; i < 10; i++) {
+      long value = i;
+      assertThat(underTest.find(7, (first, second) -> first == value) != NOT_FOUND).isEqualTo(i % 2 == 1);
+    }
+  }
+
+  @Test
+  public void remove_with_random_hashes() {
+    Map<Long, Integer> expected = new HashMap<>();
+    Random random = new Random(1);
+    for (long i = 0; i < 5_000; i++) {
+      int hash = random.nextInt(64);
+      underTest.insert(hash, i, 0L);
+      expected.put(i, hash);
+    }
+    for (long i = 0; i < 5_000; i += 3) {
+      long value = i;
+      underTest.remove(underTest.find(expected.remove(i), (first, second) -> first == value));
+    }
+
+    assertThat(underTest.size()).isEqualTo(expected.size());
+    for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+      assertThat(underTest.find(entry.getValue(), (first, second) -> first == entry.getKey())).isNotEqualTo(NOT_FOUND);
+    }
+  }
+
+  @Test
+  public void clear() {
+    underTest.insert(42, 1L, 10L);
+    underTest.clear();
+
+    assertThat(underTest.size()).isZero();
+    assertThat(underTest.find(42, (first, second) -> true)).isEqualTo(NOT_FOUND);
+  }
+
+  @Test
+  public void visit_all_entries() {
+    underTest.insert(1, 10L, 100L);
+    underTest.insert(2, 20L, 200L);
+    Map<Long, Long> visited = new HashMap<>();
+
+    underTest.forEach(visited::put);
+
+    assertThat(visited).containsOnly(entry(10L, 100L), entry(20L, 200L));
+  }
+}
@@ -19,35 +19,51 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonar.scanner.repository.ServerDataCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 public class DefaultServerLineHashesLoaderTest {
   private BatchWsClient wsClient;
+  private ServerDataCache cache;
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Before
-  public void before() {
+  public void before() throws IOException {
     wsClient = mock(BatchWsClient.class);
+    cache = mock(ServerDataCache.class);
+    when(cache.newTempFile()).thenReturn(temp.newFile());
   }
 
   @Test
   public void should_download_source_from_ws_if_preview_mode() {
     WsTestUtil.mockReader(wsClient, new StringReader("ae12\n\n43fb"));
-    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient, cache);
 
     String[] hashes = lastSnapshots.getLineHashes("myproject:org/foo/Bar.c");
     assertThat(hashes).containsOnly("ae12", "", "43fb");
@@ -57,17 +73,38 @@ public class DefaultServerLineHashesLoaderTest {
   @Test
   public void should_download_source_with_space_from_ws_if_preview_mode() {
     WsTestUtil.mockReader(wsClient, new StringReader("ae12\n\n43fb"));
-    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient, cache);
 
     String[] hashes = lastSnapshots.getLineHashes("myproject:org/foo/Foo Bar.c");
     assertThat(hashes).containsOnly("ae12", "", "43fb");
     WsTestUtil.verifyCall(wsClient, "/api/sources/hash?key=myproject%3Aorg%2Ffoo%2FFoo+Bar.c");
   }
 
+  @Test
+  public void downloaded_hashes_are_put_in_cache() {
+    WsTestUtil.mockReader(wsClient, new StringReader("ae12\n\n43fb"));
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient, cache);
+
+    lastSnapshots.getLineHashes("foo");
+
+    verify(cache).putLineHashes(eq("foo"), any(File.class));
+  }
+
+  @Test
+  public void should_load_hashes_from_cache() throws IOException {
+    File cachedHashes = temp.newFile();
+    FileUtils.write(cachedHashes, "ae12\n\n43fb");
+    when(cache.getLineHashes("foo")).thenReturn(cachedHashes);
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient, cache);
+
+    assertThat(lastSnapshots.getLineHashes("foo")).containsExactly("ae12", "", "43fb");
+    verifyZeroInteractions(wsClient);
+  }
+
   @Test
   public void should_fail_to_download_source_from_ws() throws URISyntaxException {
     WsTestUtil.mockException(wsClient, new HttpDownloader.HttpException(new URI(""), 500));
-    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient, cache);
 
     thrown.expect(HttpDownloader.HttpException.class);
     lastSnapshots.getLineHashes("foo");
@@ -0,0 +1,224 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.phases;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.batch.Phase;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.events.EventHandler;
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.scanner.bootstrap.BatchExtensionDictionnary;
+import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SensorsExecutorTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  Project project = new Project("project");
+  BatchExtensionDictionnary selector = mock(BatchExtensionDictionnary.class);
+  SensorContext context = mock(SensorContext.class);
+  Settings settings = new Settings();
+  List<String> executions = new CopyOnWriteArrayList<>();
+  SensorsExecutor underTest = new SensorsExecutor(selector, project, mock(EventBus.class), settings);
+
+  @Test
+  public void execute_sensors_in_order() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 4);
+    selectSensors(new RecordingSensor("first", false), new RecordingSensor("second", false), new RecordingSensor("third", false));
+
+    underTest.execute(context);
+
+    assertThat(executions).containsExactly("first", "second", "third");
+  }
+
+  @Test
+  public void execute_consecutive_concurrent_sensors_in_parallel() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    selectSensors(new RecordingSensor("before", false),
+      new WaitingSensor("concurrent1", bothStarted),
+      new WaitingSensor("concurrent2", bothStarted),
+      new RecordingSensor("after", false));
+
+    underTest.execute(context);
+
+    assertThat(executions).hasSize(4);
+    assertThat(executions.get(0)).isEqualTo("before");
+    assertThat(executions.subList(1, 3)).containsOnly("concurrent1 overlapped", "concurrent2 overlapped");
+    assertThat(executions.get(3)).isEqualTo("after");
+  }
+
+  @Test
+  public void profile_each_of_overlapping_concurrent_sensors() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    EventBus eventBus = new EventBus(new EventHandler[] {new PhasesTimeProfiler()});
+    SensorsExecutor executor = new SensorsExecutor(selector, project, eventBus, settings);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    selectSensors(new WaitingSensor("concurrent1", bothStarted), new WaitingSensor("concurrent2", bothStarted));
+
+    executor.execute(context);
+
+    assertThat(executions).containsOnly("concurrent1 overlapped", "concurrent2 overlapped");
+    List<String> logs = logTester.logs(LoggerLevel.INFO);
+    assertThat(logs).contains("Sensor concurrent1", "Sensor concurrent2");
+    assertThat(logs.stream().filter(log -> log.startsWith("Sensor concurrent1 (done) | time=")).count()).isEqualTo(1L);
+    assertThat(logs.stream().filter(log -> log.startsWith("Sensor concurrent2 (done) | time=")).count()).isEqualTo(1L);
+  }
+
+  @Test
+  public void do_not_execute_concurrent_sensors_of_different_phases_in_parallel() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    selectSensors(new PreWaitingSensor("pre", bothStarted), new WaitingSensor("default", bothStarted));
+
+    underTest.execute(context);
+
+    assertThat(executions).containsExactly("pre", "default overlapped");
+  }
+
+  @Test
+  public void execute_concurrent_sensors_sequentially_if_single_thread() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 1);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    selectSensors(new WaitingSensor("concurrent1", bothStarted), new WaitingSensor("concurrent2", bothStarted));
+
+    underTest.execute(context);
+
+    assertThat(executions).containsExactly("concurrent1", "concurrent2 overlapped");
+  }
+
+  @Test
+  public void propagate_failure_of_concurrent_sensor() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    selectSensors(new RecordingSensor("ok", true), new FailingSensor());
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Invalid report");
+
+    underTest.execute(context);
+  }
+
+  @Test
+  public void default_number_of_threads_is_number_of_processors() {
+    assertThat(underTest.getThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 3);
+    assertThat(underTest.getThreads()).isEqualTo(3);
+  }
+
+  private void selectSensors(Sensor... sensors) {
+    org.sonar.api.batch.Sensor[] wrappers = new org.sonar.api.batch.Sensor[sensors.length];
+    for (int i = 0; i < sensors.length; i++) {
+      wrappers[i] = new SensorWrapper(sensors[i], mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class));
+    }
+    when(selector.select(org.sonar.api.batch.Sensor.class, project, true, null)).thenReturn(Arrays.asList(wrappers));
+  }
+
+  private class RecordingSensor implements Sensor {
+    private final String name;
+    private final boolean concurrent;
+
+    RecordingSensor(String name, boolean concurrent) {
+      this.name = name;
+      this.concurrent = concurrent;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name(name);
+      if (concurrent) {
+        descriptor.concurrent();
+      }
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      executions.add(name);
+    }
+  }
+
+  /**
+   * Concurrent sensor that waits for another sensor to be started
+   */
+  private class WaitingSensor implements Sensor {
+    private final String name;
+    private final CountDownLatch started;
+
+    WaitingSensor(String name, CountDownLatch started) {
+      this.name = name;
+      this.started = started;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name(name).concurrent();
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      started.countDown();
+      try {
+        executions.add(started.await(200, TimeUnit.MILLISECONDS) ? (name + " overlapped") : name);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  @Phase(name = Phase.Name.PRE)
+  private class PreWaitingSensor extends WaitingSensor {
+    PreWaitingSensor(String name, CountDownLatch started) {
+      super(name, started);
+    }
+  }
+
+  private class FailingSensor implements Sensor {
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name("failing").concurrent();
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      throw new IllegalArgumentException("Invalid report");
+    }
+  }
+}
@@ -108,6 +108,41 @@ public class PhasesSumUpTimeProfilerTest {
     assertThat(profiler.totalProfiling.getProfilingPerPhase(Phase.POSTJOB).getProfilingPerItem(new FakePostJob()).totalTime()).isEqualTo(90L);
   }
 
+  @Test
+  public void testConcurrentSensors() {
+    Project project = mockProject("my:project", true);
+    when(project.getModules()).thenReturn(Collections.<Project>emptyList());
+    Sensor sensor1 = new FakeSensor();
+    Sensor sensor2 = new OtherFakeSensor();
+
+    profiler.onProjectAnalysis(projectEvent(project, true));
+    profiler.onSensorsPhase(sensorsEvent(true));
+    profiler.onSensorExecution(sensorEvent(sensor1, true));
+    profiler.onSensorExecution(sensorEvent(sensor2, true));
+    clock.sleep(10);
+    profiler.onSensorExecution(sensorEvent(sensor2, false));
+    clock.sleep(5);
+    profiler.onSensorExecution(sensorEvent(sensor1, false));
+    profiler.onSensorsPhase(sensorsEvent(false));
+    profiler.onProjectAnalysis(projectEvent(project, false));
+
+    PhaseProfiling sensorsProfiling = profiler.currentModuleProfiling.getProfilingPerPhase(Phase.SENSOR);
+    assertThat(sensorsProfiling.getProfilingPerItem(sensor1).totalTime()).isEqualTo(15L);
+    assertThat(sensorsProfiling.getProfilingPerItem(sensor2).totalTime()).isEqualTo(10L);
+    assertThat(sensorsProfiling.totalTime()).isEqualTo(15L);
+    assertThat(sensorsProfiling.overlapTime()).isEqualTo(10L);
+  }
+
+  @Test
+  public void no_overlap_when_sensors_are_sequential() {
+    Project project = mockProject("my:project", true);
+    when(project.getModules()).thenReturn(Collections.<Project>emptyList());
+
+    fakeAnalysis(profiler, project);
+
+    assertThat(profiler.currentModuleProfiling.getProfilingPerPhase(Phase.SENSOR).overlapTime()).isZero();
+  }
+
   @Test
   public void testDisplayTimings() {
     AbstractTimeProfiling profiling = new AbstractTimeProfiling(System2.INSTANCE) {
@@ -394,6 +429,17 @@ public class PhasesSumUpTimeProfilerTest {
     }
   }
 
+  public class OtherFakeSensor implements Sensor {
+    @Override
+    public void analyse(Project project, SensorContext context) {
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
   public class FakeInitializer extends Initializer {
     @Override
     public void execute(Project project) {
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -35,11 +36,16 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.config.CorePropertyDefinitions;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonar.scanner.protocol.output.FileStructure;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
 import org.sonar.scanner.report.AnalysisContextReportPublisher;
 import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.report.ReportPublisherStep;
@@ -140,6 +146,51 @@ public class ReportPublisherTest {
     assertThat(detailsFile).doesNotExist();
   }
 
+  @Test
+  public void pack_data_of_components_in_container() throws IOException {
+    when(mode.isMediumTest()).thenReturn(true);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new DefaultTempFolder(temp.newFolder()),
+      new ReportPublisherStep[] {new ComponentPublisherStep()});
+    underTest.start();
+
+    underTest.execute();
+
+    FileStructure fileStructure = underTest.getWriter().getFileStructure();
+    assertThat(fileStructure.containerFile()).isFile();
+    assertThat(fileStructure.fileFor(FileStructure.Domain.COMPONENT, 1)).doesNotExist();
+    assertThat(new ScannerReportReader(underTest.getReportDir()).readComponent(1).getKey()).isEqualTo("struts");
+  }
+
+  @Test
+  public void write_line_data_hashes_of_files() throws IOException {
+    settings.setProperty(ReportPublisher.CONTAINER_PROP_KEY, false);
+    when(mode.isMediumTest()).thenReturn(true);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new DefaultTempFolder(temp.newFolder()),
+      new ReportPublisherStep[] {new ComponentPublisherStep(), writer -> writeSource(writer, 2)});
+    underTest.start();
+
+    underTest.execute();
+
+    ScannerReportReader reader = new ScannerReportReader(underTest.getReportDir());
+    assertThat(reader.readLineDataHashes(2).getSource()).isNotEmpty();
+    assertThat(reader.readLineDataHashes(1)).isNull();
+  }
+
+  @Test
+  public void do_not_pack_data_of_components_if_container_is_disabled() throws IOException {
+    settings.setProperty(ReportPublisher.CONTAINER_PROP_KEY, false);
+    when(mode.isMediumTest()).thenReturn(true);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new DefaultTempFolder(temp.newFolder()),
+      new ReportPublisherStep[] {new ComponentPublisherStep()});
+    underTest.start();
+
+    underTest.execute();
+
+    FileStructure fileStructure = underTest.getWriter().getFileStructure();
+    assertThat(fileStructure.containerFile()).doesNotExist();
+    assertThat(fileStructure.fileFor(FileStructure.Domain.COMPONENT, 1)).isFile();
+  }
+
   @Test
   public void should_not_delete_report_if_property_is_set() throws IOException {
     settings.setProperty("sonar.batch.keepReport", true);
@@ -163,4 +214,19 @@ public class ReportPublisherTest {
     assertThat(reportDir).doesNotExist();
   }
 
+  private static void writeSource(ScannerReportWriter writer, int fileRef) {
+    try {
+      FileUtils.write(writer.getSourceFile(fileRef), "class Foo {}");
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class ComponentPublisherStep implements ReportPublisherStep {
+    @Override
+    public void publish(ScannerReportWriter writer) {
+      writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setKey("struts").build());
+    }
+  }
+
 }
@@ -19,49 +19,92 @@
  */
 package org.sonar.scanner.repository;
 
-import org.sonar.scanner.WsTestUtil;
-import org.sonar.scanner.bootstrap.BatchWsClient;
-import org.sonar.scanner.protocol.input.ScannerInput;
-import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
-import org.sonar.scanner.repository.DefaultServerIssuesLoader;
 import com.google.common.base.Function;
-import org.junit.Before;
-import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
+import org.sonar.scanner.WsTestUtil;
+import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonar.scanner.protocol.input.ScannerInput;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonarqube.ws.client.WsRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DefaultServerIssuesLoaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DefaultServerIssuesLoader loader;
   private BatchWsClient wsClient;
+  private ServerDataCache cache;
 
   @Before
-  public void prepare() {
+  public void prepare() throws IOException {
     wsClient = mock(BatchWsClient.class);
-    loader = new DefaultServerIssuesLoader(wsClient);
+    cache = new ServerDataCache(temp.newFolder(), "http://foo", "project", new Date(), 60_000L, System2.INSTANCE);
+    loader = new DefaultServerIssuesLoader(wsClient, cache);
   }
 
   @Test
   public void loadFromWs() throws Exception {
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", issues("ab1", "ab2"));
+
+    assertThat(load("foo")).extracting("key").containsExactly("ab1", "ab2");
+  }
+
+  @Test
+  public void issues_are_loaded_from_cache_after_first_download() throws Exception {
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", issues("ab1", "ab2"));
+    load("foo");
+
+    assertThat(cache.getServerIssues("foo")).isFile();
+    assertThat(load("foo")).extracting("key").containsExactly("ab1", "ab2");
+    verify(wsClient).call(any(WsRequest.class));
+  }
 
-    ServerIssue.newBuilder().setKey("ab1").build()
-      .writeDelimitedTo(bos);
-    ServerIssue.newBuilder().setKey("ab2").build()
-      .writeDelimitedTo(bos);
+  @Test
+  public void issues_are_not_cached_if_download_fails() throws IOException {
+    InputStream is = mock(InputStream.class);
+    when(is.read()).thenThrow(IOException.class);
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", is);
+
+    try {
+      load("foo");
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
 
-    InputStream is = new ByteArrayInputStream(bos.toByteArray());
+    assertThat(cache.getServerIssues("foo")).isNull();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testError() throws IOException {
+    InputStream is = mock(InputStream.class);
+    when(is.read()).thenThrow(IOException.class);
     WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", is);
+    loader.load("foo", mock(Function.class));
+  }
 
+  private List<ServerIssue> load(String componentKey) {
     final List<ServerIssue> result = new ArrayList<>();
-    loader.load("foo", new Function<ScannerInput.ServerIssue, Void>() {
+    loader.load(componentKey, new Function<ScannerInput.ServerIssue, Void>() {
 
       @Override
       public Void apply(ServerIssue input) {
@@ -69,15 +112,14 @@ public class DefaultServerIssuesLoaderTest {
         return null;
       }
     });
-
-    assertThat(result).extracting("key").containsExactly("ab1", "ab2");
+    return result;
   }
 
-  @Test(expected = IllegalStateException.class)
-  public void testError() throws IOException {
-    InputStream is = mock(InputStream.class);
-    when(is.read()).thenThrow(IOException.class);
-    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", is);
-    loader.load("foo", mock(Function.class));
+  private static InputStream issues(String... keys) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    for (String key : keys) {
+      ServerIssue.newBuilder().setKey(key).build().writeDelimitedTo(bos);
+    }
+    return new ByteArrayInputStream(bos.toByteArray());
   }
 }
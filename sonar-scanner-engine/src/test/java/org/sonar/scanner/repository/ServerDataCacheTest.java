@@ -0,0 +1,127 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ServerDataCacheTest {
+
+  private static final long TTL = 60_000L;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  System2 system2 = mock(System2.class);
+  File cacheDir;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = temp.newFolder();
+    when(system2.now()).thenReturn(System.currentTimeMillis());
+  }
+
+  @Test
+  public void entries_are_missing_by_default() {
+    ServerDataCache underTest = newCache("project", new Date(1_000L));
+
+    assertThat(underTest.getServerIssues("project")).isNull();
+    assertThat(underTest.getLineHashes("project:Foo.java")).isNull();
+  }
+
+  @Test
+  public void put_and_get_entries() throws IOException {
+    ServerDataCache underTest = newCache("project", new Date(1_000L));
+
+    underTest.putServerIssues("project", tempFile(underTest, "issues"));
+    underTest.putLineHashes("project:Foo.java", tempFile(underTest, "hashes"));
+
+    assertThat(FileUtils.readFileToString(underTest.getServerIssues("project"))).isEqualTo("issues");
+    assertThat(FileUtils.readFileToString(underTest.getLineHashes("project:Foo.java"))).isEqualTo("hashes");
+    assertThat(underTest.getLineHashes("project:Bar.java")).isNull();
+  }
+
+  @Test
+  public void server_issues_expire() throws IOException {
+    ServerDataCache underTest = newCache("project", new Date(1_000L));
+    underTest.putServerIssues("project", tempFile(underTest, "issues"));
+    underTest.putLineHashes("project:Foo.java", tempFile(underTest, "hashes"));
+
+    when(system2.now()).thenReturn(System.currentTimeMillis() + TTL + 10_000L);
+
+    assertThat(underTest.getServerIssues("project")).isNull();
+    assertThat(underTest.getLineHashes("project:Foo.java")).isNotNull();
+  }
+
+  @Test
+  public void server_issues_are_not_cached_if_ttl_is_zero() throws IOException {
+    ServerDataCache underTest = new ServerDataCache(cacheDir, "http://foo", "project", new Date(1_000L), 0L, system2);
+    underTest.putServerIssues("project", tempFile(underTest, "issues"));
+
+    assertThat(underTest.getServerIssues("project")).isNull();
+  }
+
+  @Test
+  public void new_analysis_invalidates_entries_of_previous_analysis() throws IOException {
+    ServerDataCache previous = newCache("project", new Date(1_000L));
+    previous.putLineHashes("project:Foo.java", tempFile(previous, "hashes"));
+    ServerDataCache otherProject = newCache("other", new Date(1_000L));
+    otherProject.putLineHashes("other:Foo.java", tempFile(otherProject, "hashes"));
+
+    ServerDataCache underTest = newCache("project", new Date(2_000L));
+    assertThat(underTest.getLineHashes("project:Foo.java")).isNull();
+    underTest.putLineHashes("project:Foo.java", tempFile(underTest, "new hashes"));
+
+    assertThat(FileUtils.readFileToString(underTest.getLineHashes("project:Foo.java"))).isEqualTo("new hashes");
+    assertThat(previous.getLineHashes("project:Foo.java")).isNull();
+    assertThat(otherProject.getLineHashes("other:Foo.java")).isNotNull();
+  }
+
+  @Test
+  public void entries_are_isolated_by_server() throws IOException {
+    ServerDataCache underTest = newCache("project", new Date(1_000L));
+    underTest.putLineHashes("project:Foo.java", tempFile(underTest, "hashes"));
+
+    ServerDataCache otherServer = new ServerDataCache(cacheDir, "http://bar", "project", new Date(1_000L), TTL, system2);
+
+    assertThat(otherServer.getLineHashes("project:Foo.java")).isNull();
+  }
+
+  private ServerDataCache newCache(String projectKey, Date lastAnalysisDate) {
+    return new ServerDataCache(cacheDir, "http://foo", projectKey, lastAnalysisDate, TTL, system2);
+  }
+
+  private static File tempFile(ServerDataCache cache, String content) throws IOException {
+    File file = cache.newTempFile();
+    FileUtils.write(file, content);
+    return file;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+import org.sonar.api.batch.fs.internal.FileMetadata.LineHashConsumer;
+
+/**
+ * Computes the metadata of the sources of the project tests/perf/projects/huge-file, with and without
+ * the hashes of lines used by issue tracking, then reads the hashes of lines as issue tracking does.
+ * This is not a unit test, run it with {@link #main(String[])} from the directory of module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FileMetadataBenchmark {
+
+  private static final File SOURCES = new File("../tests/perf/projects/huge-file/src");
+
+  private final FileMetadata fileMetadata = new FileMetadata();
+  private List<DefaultInputFile> inputFiles;
+  private List<DefaultInputFile> inputFilesWithLineHashes;
+
+  @Setup
+  public void setUp() {
+    Collection<File> files = FileUtils.listFiles(SOURCES, new String[] {"java"}, true);
+    if (files.isEmpty()) {
+      throw new IllegalStateException("No sources found in " + SOURCES.getAbsolutePath());
+    }
+    inputFiles = new ArrayList<>();
+    inputFilesWithLineHashes = new ArrayList<>();
+    for (File file : files) {
+      inputFiles.add(inputFile(file).initMetadata(fileMetadata.readMetadata(file, StandardCharsets.UTF_8)));
+      inputFilesWithLineHashes.add(inputFile(file).initMetadata(fileMetadata.readMetadata(file, StandardCharsets.UTF_8, true)));
+    }
+  }
+
+  private static DefaultInputFile inputFile(File file) {
+    return new DefaultInputFile("huge-file", file.getName())
+      .setModuleBaseDir(file.getParentFile().toPath())
+      .setCharset(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void metadata(Blackhole blackhole) {
+    for (DefaultInputFile inputFile : inputFiles) {
+      blackhole.consume(fileMetadata.readMetadata(inputFile.file(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void metadata_concurrently(Blackhole blackhole) {
+    metadata(blackhole);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void metadata_with_line_hashes(Blackhole blackhole) {
+    for (DefaultInputFile inputFile : inputFiles) {
+      blackhole.consume(fileMetadata.readMetadata(inputFile.file(), StandardCharsets.UTF_8, true));
+    }
+  }
+
+  /**
+   * Hashes of lines are computed again by reading files
+   */
+  @Benchmark
+  public void line_hashes_read_from_disk(Blackhole blackhole) {
+    for (DefaultInputFile inputFile : inputFiles) {
+      FileMetadata.computeLineHashesForIssueTracking(inputFile, new BlackholeConsumer(blackhole));
+    }
+  }
+
+  /**
+   * Hashes of lines were kept when metadata were computed
+   */
+  @Benchmark
+  public void line_hashes_kept_in_metadata(Blackhole blackhole) {
+    for (DefaultInputFile inputFile : inputFilesWithLineHashes) {
+      FileMetadata.computeLineHashesForIssueTracking(inputFile, new BlackholeConsumer(blackhole));
+    }
+  }
+
+  private static class BlackholeConsumer implements LineHashConsumer {
+    private final Blackhole blackhole;
+
+    BlackholeConsumer(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void consume(int lineIdx, @Nullable byte[] hash) {
+      blackhole.consume(hash);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FileMetadataBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.scanner.protocol.output;
 
 import java.io.File;
+import javax.annotation.CheckForNull;
 
 /**
  * Structure of files in the zipped report
@@ -38,7 +39,8 @@ public class FileStructure {
     COVERAGES("coverages-", Domain.PB),
     TESTS("tests-", Domain.PB),
     COVERAGE_DETAILS("coverage-details-", Domain.PB),
-    SOURCE("source-", ".txt");
+    SOURCE("source-", ".txt"),
+    LINE_DATA_HASHES("line-data-hashes-", Domain.PB);
 
     private static final String PB = ".pb";
     private final String filePrefix;
@@ -48,6 +50,21 @@ public class FileStructure {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
     }
+
+    /**
+     * Reference of the component of the file named {@code fileName}, or {@code null} if the file is not of this domain.
+     */
+    @CheckForNull
+    Integer parseComponentRef(String fileName) {
+      if (fileName.length() <= filePrefix.length() + fileSuffix.length() || !fileName.startsWith(filePrefix) || !fileName.endsWith(fileSuffix)) {
+        return null;
+      }
+      try {
+        return Integer.parseInt(fileName.substring(filePrefix.length(), fileName.length() - fileSuffix.length()));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
   }
 
   private final File dir;
@@ -59,6 +76,10 @@ public class FileStructure {
     this.dir = dir;
   }
 
+  public File getDir() {
+    return dir;
+  }
+
   public File metadataFile() {
     return new File(dir, "metadata.pb");
   }
@@ -71,6 +92,13 @@ public class FileStructure {
     return new File(dir, "activerules.pb");
   }
 
+  /**
+   * Container of the data of all components, see {@link ReportContainer}
+   */
+  public File containerFile() {
+    return new File(dir, "components.bin");
+  }
+
   public File fileFor(Domain domain, int componentRef) {
     return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
   }
@@ -0,0 +1,272 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import org.sonar.core.util.ContextException;
+
+/**
+ * Format v2 of the data of components in the report: a single file containing the content of all the
+ * {@link FileStructure#fileFor(FileStructure.Domain, int)} files, followed by an index of their offsets.
+ * <p>
+ * Layout:
+ * <ul>
+ *   <li>the data of each entry, one after the other, grouped by domain</li>
+ *   <li>the index: for each entry, sorted by (domain, component ref), its key, offset and length</li>
+ *   <li>a footer: offset of the index, number of entries, version and magic number</li>
+ * </ul>
+ * The data is read through memory mappings, so that the report does not have to be extracted to hundreds of
+ * thousands of files. A mapping can not be larger than 2GB: the data is mapped by overlapping regions of 2GB
+ * starting every 1GB, so that any entry smaller than 1GB is fully contained by a region.
+ */
+public final class ReportContainer {
+
+  static final int VERSION = 2;
+  static final long MAX_ENTRY_LENGTH = 1L << 30;
+
+  private static final int MAGIC = 0x53515243;
+  private static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+  private static final int FOOTER_SIZE = 8 + 4 + 4 + 4;
+
+  private final File file;
+  private final long[] keys;
+  private final long[] offsets;
+  private final int[] lengths;
+  private final MappedByteBuffer[] regions;
+
+  private ReportContainer(File file, long[] keys, long[] offsets, int[] lengths, MappedByteBuffer[] regions) {
+    this.file = file;
+    this.keys = keys;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.regions = regions;
+  }
+
+  /**
+   * Moves the files of components of the report to the container file {@link FileStructure#containerFile()}.
+   * Metadata, active rules and logs are kept as separate files.
+   *
+   * @return the container file
+   */
+  public static File pack(FileStructure fileStructure) {
+    File containerFile = fileStructure.containerFile();
+    List<Entry> entries = new ArrayList<>();
+    File[] files = fileStructure.getDir().listFiles();
+    if (files != null) {
+      for (File f : files) {
+        Entry entry = Entry.of(f);
+        if (entry != null) {
+          entries.add(entry);
+        }
+      }
+    }
+    entries.sort(Comparator.comparingLong(e -> e.key));
+
+    long[] offsets = new long[entries.size()];
+    try (FileOutputStream output = new FileOutputStream(containerFile)) {
+      FileChannel channel = output.getChannel();
+      for (int i = 0; i < entries.size(); i++) {
+        Entry entry = entries.get(i);
+        offsets[i] = channel.position();
+        append(channel, entry);
+      }
+      DataOutputStream index = new DataOutputStream(new BufferedOutputStream(output));
+      long indexOffset = channel.position();
+      for (int i = 0; i < entries.size(); i++) {
+        index.writeLong(entries.get(i).key);
+        index.writeLong(offsets[i]);
+        index.writeInt((int) entries.get(i).file.length());
+      }
+      index.writeLong(indexOffset);
+      index.writeInt(entries.size());
+      index.writeInt(VERSION);
+      index.writeInt(MAGIC);
+      index.flush();
+    } catch (IOException e) {
+      throw ContextException.of("Unable to write report container", e).addContext("file", containerFile);
+    }
+    for (Entry entry : entries) {
+      org.sonar.core.util.FileUtils.deleteQuietly(entry.file);
+    }
+    return containerFile;
+  }
+
+  private static void append(FileChannel channel, Entry entry) throws IOException {
+    long length = entry.file.length();
+    if (length >= MAX_ENTRY_LENGTH) {
+      throw ContextException.of("Report file is too big to be added to container").addContext("file", entry.file);
+    }
+    try (FileInputStream input = new FileInputStream(entry.file)) {
+      FileChannel source = input.getChannel();
+      long position = 0;
+      while (position < length) {
+        position += source.transferTo(position, length - position, channel);
+      }
+    }
+  }
+
+  public static ReportContainer open(File file) {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      long length = raf.length();
+      if (length < FOOTER_SIZE) {
+        throw new IllegalStateException("Report container is truncated");
+      }
+      raf.seek(length - FOOTER_SIZE);
+      long indexOffset = raf.readLong();
+      int count = raf.readInt();
+      int version = raf.readInt();
+      if (raf.readInt() != MAGIC || indexOffset + (long) count * INDEX_ENTRY_SIZE + FOOTER_SIZE != length) {
+        throw new IllegalStateException("File is not a report container");
+      }
+      if (version != VERSION) {
+        throw new IllegalStateException("Unsupported version of report container: " + version);
+      }
+
+      FileChannel channel = raf.getChannel();
+      ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) count * INDEX_ENTRY_SIZE);
+      long[] keys = new long[count];
+      long[] offsets = new long[count];
+      int[] lengths = new int[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = index.getLong();
+        offsets[i] = index.getLong();
+        lengths[i] = index.getInt();
+      }
+
+      int regionCount = (int) ((indexOffset + MAX_ENTRY_LENGTH - 1) / MAX_ENTRY_LENGTH);
+      MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+      for (int i = 0; i < regionCount; i++) {
+        long start = i * MAX_ENTRY_LENGTH;
+        regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(Integer.MAX_VALUE, indexOffset - start));
+      }
+      return new ReportContainer(file, keys, offsets, lengths, regions);
+    } catch (IOException | RuntimeException e) {
+      throw ContextException.of("Unable to open report container", e).addContext("file", file);
+    }
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  public boolean has(FileStructure.Domain domain, int componentRef) {
+    return Arrays.binarySearch(keys, key(domain, componentRef)) >= 0;
+  }
+
+  /**
+   * Stream on the data of the given domain and component, or {@code null} if there is none.
+   * The stream reads the memory mapping, it does not have to be closed.
+   */
+  @CheckForNull
+  public InputStream openEntry(FileStructure.Domain domain, int componentRef) {
+    int i = Arrays.binarySearch(keys, key(domain, componentRef));
+    if (i < 0) {
+      return null;
+    }
+    ByteBuffer region = regions[(int) (offsets[i] / MAX_ENTRY_LENGTH)].duplicate();
+    int position = (int) (offsets[i] % MAX_ENTRY_LENGTH);
+    region.position(position);
+    region.limit(position + lengths[i]);
+    return new ByteBufferInputStream(region.slice());
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  private static long key(FileStructure.Domain domain, int componentRef) {
+    return ((long) domain.ordinal() << 32) | (componentRef & 0xFFFFFFFFL);
+  }
+
+  private static final class Entry {
+    private final long key;
+    private final File file;
+
+    private Entry(long key, File file) {
+      this.key = key;
+      this.file = file;
+    }
+
+    @CheckForNull
+    private static Entry of(File file) {
+      String name = file.getName();
+      for (FileStructure.Domain domain : FileStructure.Domain.values()) {
+        Integer ref = domain.parseComponentRef(name);
+        if (ref != null && file.isFile()) {
+          return new Entry(key(domain, ref), file);
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
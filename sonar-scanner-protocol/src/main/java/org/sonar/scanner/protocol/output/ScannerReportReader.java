@@ -19,16 +19,28 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads a report directory. The data of components is read either from files (format v1) or from the
+ * {@link ReportContainer} (format v2) when the report contains one.
+ */
 public class ScannerReportReader {
 
   private final FileStructure fileStructure;
+  private ReportContainer container;
 
   public ScannerReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
@@ -51,117 +63,172 @@ public class ScannerReportReader {
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.MEASURES, componentRef, ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
+    InputStream input = openComponentData(FileStructure.Domain.CHANGESETS, componentRef);
+    if (input != null) {
+      return Protobuf.read(input, ScannerReport.Changesets.parser());
+    }
+    return null;
+  }
+
+  @CheckForNull
+  public ScannerReport.LineDataHashes readLineDataHashes(int fileRef) {
+    InputStream input = openComponentData(FileStructure.Domain.LINE_DATA_HASHES, fileRef);
+    if (input != null) {
+      return Protobuf.read(input, ScannerReport.LineDataHashes.parser());
     }
     return null;
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    InputStream input = openComponentData(FileStructure.Domain.COMPONENT, componentRef);
+    if (input == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return Protobuf.read(input, ScannerReport.Component.parser());
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.ISSUES, componentRef, ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.DUPLICATIONS, componentRef, ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYMBOLS, componentRef, ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef, ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.COVERAGES, componentRef);
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.COVERAGES, fileRef, ScannerReport.LineCoverage.parser());
   }
 
+  /**
+   * When the report is a container, the source is extracted to a file. Prefer
+   * {@link #openComponentData(FileStructure.Domain, int)} with {@link FileStructure.Domain#SOURCE}.
+   */
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return fileOf(FileStructure.Domain.SOURCE, fileRef);
   }
 
+  /**
+   * When the report is a container, the tests are extracted to a file. Prefer
+   * {@link #openComponentData(FileStructure.Domain, int)} with {@link FileStructure.Domain#TESTS}.
+   */
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
-    if (fileExists(file)) {
-      return file;
+    return fileOf(FileStructure.Domain.TESTS, testFileRef);
+  }
+
+  /**
+   * When the report is a container, the coverage details are extracted to a file. Prefer
+   * {@link #openComponentData(FileStructure.Domain, int)} with {@link FileStructure.Domain#COVERAGE_DETAILS}.
+   */
+  @CheckForNull
+  public File readCoverageDetails(int testFileRef) {
+    return fileOf(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  }
+
+  public boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    ReportContainer reportContainer = container();
+    if (reportContainer != null) {
+      return reportContainer.has(domain, componentRef);
     }
+    return fileExists(fileStructure.fileFor(domain, componentRef));
+  }
 
-    return null;
+  /**
+   * Raw data of the given domain and component, or {@code null} if there is none. The stream must be closed
+   * by caller.
+   */
+  @CheckForNull
+  public InputStream openComponentData(FileStructure.Domain domain, int componentRef) {
+    ReportContainer reportContainer = container();
+    if (reportContainer != null) {
+      return reportContainer.openEntry(domain, componentRef);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (!fileExists(file)) {
+      return null;
+    }
+    try {
+      return new FileInputStream(file);
+    } catch (IOException e) {
+      throw ContextException.of("Unable to open file", e).addContext("file", file);
+    }
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readStream(FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    ReportContainer reportContainer = container();
+    if (reportContainer != null) {
+      InputStream input = reportContainer.openEntry(domain, componentRef);
+      return input == null ? CloseableIterator.<MSG>emptyCloseableIterator() : Protobuf.readStream(input, parser);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return Protobuf.readStream(file, parser);
+    }
+    return emptyCloseableIterator();
   }
 
   @CheckForNull
-  public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  private File fileOf(FileStructure.Domain domain, int componentRef) {
+    File file = fileStructure.fileFor(domain, componentRef);
+    ReportContainer reportContainer = container();
+    if (reportContainer != null && !fileExists(file)) {
+      InputStream input = reportContainer.openEntry(domain, componentRef);
+      if (input == null) {
+        return null;
+      }
+      try {
+        FileUtils.copyInputStreamToFile(input, file);
+      } catch (IOException e) {
+        throw ContextException.of("Unable to extract data from report container", e).addContext("file", file);
+      }
+    }
     if (fileExists(file)) {
       return file;
     }
-
     return null;
   }
 
+  /**
+   * The container is looked up lazily, as the reader can be created before the report is written
+   */
+  @CheckForNull
+  private ReportContainer container() {
+    if (container == null) {
+      File file = fileStructure.containerFile();
+      if (fileExists(file)) {
+        container = ReportContainer.open(file);
+      }
+    }
+    return container;
+  }
+
   private static boolean fileExists(File file) {
     return file.exists() && file.isFile();
   }
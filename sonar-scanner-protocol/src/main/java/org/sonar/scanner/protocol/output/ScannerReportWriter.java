@@ -21,8 +21,12 @@ package org.sonar.scanner.protocol.output;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
@@ -138,4 +142,46 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Writes the {@link ScannerReport.LineDataHashes} of all the files which source is in the report. Must be called
+   * once all the data of components is written, and before {@link #packComponentData()}.
+   */
+  public void writeLineDataHashes() {
+    File[] sourceFiles = fileStructure.getDir().listFiles(f -> FileStructure.Domain.SOURCE.parseComponentRef(f.getName()) != null);
+    if (sourceFiles == null) {
+      throw new IllegalStateException("Fail to list files of report: " + fileStructure.getDir());
+    }
+    for (File sourceFile : sourceFiles) {
+      int fileRef = FileStructure.Domain.SOURCE.parseComponentRef(sourceFile.getName());
+      ScannerReport.LineDataHashes hashes = ScannerReport.LineDataHashes.newBuilder()
+        .setComponentRef(fileRef)
+        .setSource(md5Hex(sourceFile))
+        .setCoverages(md5Hex(fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef)))
+        .setSyntaxHighlightings(md5Hex(fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef)))
+        .setSymbols(md5Hex(fileStructure.fileFor(FileStructure.Domain.SYMBOLS, fileRef)))
+        .setChangesets(md5Hex(fileStructure.fileFor(FileStructure.Domain.CHANGESETS, fileRef)))
+        .build();
+      Protobuf.write(hashes, fileStructure.fileFor(FileStructure.Domain.LINE_DATA_HASHES, fileRef));
+    }
+  }
+
+  private static String md5Hex(File file) {
+    if (!file.exists()) {
+      return "";
+    }
+    try (InputStream input = new FileInputStream(file)) {
+      return DigestUtils.md5Hex(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compute hash of " + file, e);
+    }
+  }
+
+  /**
+   * Moves the files of all components to a single {@link ReportContainer} (format v2 of report). Must be called
+   * once all the data of components is written.
+   */
+  public File packComponentData() {
+    return ReportContainer.pack(fileStructure);
+  }
+
 }
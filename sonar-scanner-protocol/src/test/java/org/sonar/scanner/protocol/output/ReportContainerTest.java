@@ -0,0 +1,119 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.core.util.ContextException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportContainerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  File dir;
+  FileStructure fileStructure;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder();
+    fileStructure = new FileStructure(dir);
+  }
+
+  @Test
+  public void pack_files_of_components() throws IOException {
+    write(FileStructure.Domain.ISSUES, 1, "issues of 1");
+    write(FileStructure.Domain.ISSUES, 12, "issues of 12");
+    write(FileStructure.Domain.SOURCE, 1, "source of 1");
+    write(FileStructure.Domain.COVERAGE_DETAILS, 3, "");
+    FileUtils.write(fileStructure.metadataFile(), "metadata");
+    FileUtils.write(fileStructure.analysisLog(), "logs");
+
+    File file = ReportContainer.pack(fileStructure);
+
+    assertThat(file).isEqualTo(fileStructure.containerFile());
+    assertThat(dir.list()).containsOnly(file.getName(), fileStructure.metadataFile().getName(), fileStructure.analysisLog().getName());
+
+    ReportContainer underTest = ReportContainer.open(file);
+    assertThat(underTest.size()).isEqualTo(4);
+    assertThat(read(underTest, FileStructure.Domain.ISSUES, 1)).isEqualTo("issues of 1");
+    assertThat(read(underTest, FileStructure.Domain.ISSUES, 12)).isEqualTo("issues of 12");
+    assertThat(read(underTest, FileStructure.Domain.SOURCE, 1)).isEqualTo("source of 1");
+    assertThat(read(underTest, FileStructure.Domain.COVERAGE_DETAILS, 3)).isEmpty();
+    assertThat(underTest.has(FileStructure.Domain.COVERAGE_DETAILS, 3)).isTrue();
+    assertThat(underTest.has(FileStructure.Domain.COVERAGES, 3)).isFalse();
+    assertThat(underTest.openEntry(FileStructure.Domain.ISSUES, 2)).isNull();
+    assertThat(underTest.openEntry(FileStructure.Domain.MEASURES, 1)).isNull();
+  }
+
+  @Test
+  public void pack_empty_report() {
+    ReportContainer underTest = ReportContainer.open(ReportContainer.pack(fileStructure));
+
+    assertThat(underTest.size()).isEqualTo(0);
+    assertThat(underTest.has(FileStructure.Domain.ISSUES, 1)).isFalse();
+  }
+
+  @Test
+  public void ignore_files_which_are_not_data_of_components() throws IOException {
+    FileUtils.write(new File(dir, "issues-foo.pb"), "not a component");
+    FileUtils.write(new File(dir, "issues-.pb"), "not a component");
+    FileUtils.write(new File(dir, "issues-1.txt"), "not a component");
+
+    ReportContainer underTest = ReportContainer.open(ReportContainer.pack(fileStructure));
+
+    assertThat(underTest.size()).isEqualTo(0);
+    assertThat(dir.list()).contains("issues-foo.pb", "issues-.pb", "issues-1.txt");
+  }
+
+  @Test
+  public void fail_to_open_file_which_is_not_a_container() throws IOException {
+    File file = temp.newFile();
+    FileUtils.write(file, "this is not a report container");
+
+    expectedException.expect(ContextException.class);
+    expectedException.expectMessage("Unable to open report container");
+
+    ReportContainer.open(file);
+  }
+
+  private void write(FileStructure.Domain domain, int ref, String content) throws IOException {
+    FileUtils.write(fileStructure.fileFor(domain, ref), content, UTF_8);
+  }
+
+  private static String read(ReportContainer container, FileStructure.Domain domain, int ref) throws IOException {
+    try (InputStream input = container.openEntry(domain, ref)) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.core.util.CloseableIterator;
+
+/**
+ * Compares the extraction of the zipped report followed by the reading of the data of all its components, when
+ * components are stored in one file per domain (format v1) and in a {@link ReportContainer} (format v2).
+ * The report has the shape of the project of the perf test "ComputationTest": files with 20 lines, one issue per line.
+ * This is not a unit test, run it with {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportFormatBenchmark {
+
+  private static final int LINES = 20;
+
+  @Param({"11110"})
+  public int files;
+
+  private File workDir;
+  private File zipV1;
+  private File zipV2;
+  private File extractDir;
+
+  @Setup
+  public void setUp() throws IOException {
+    workDir = Files.createTempDirectory("report-benchmark").toFile();
+    File reportDir = new File(workDir, "report");
+    ScannerReportWriter writer = new ScannerReportWriter(reportDir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setRootComponentRef(1).build());
+    for (int ref = 1; ref <= files; ref++) {
+      writeFile(writer, ref);
+    }
+    zipV1 = new File(workDir, "v1.zip");
+    zip(reportDir, zipV1);
+    writer.packComponentData();
+    zipV2 = new File(workDir, "v2.zip");
+    zip(reportDir, zipV2);
+  }
+
+  private static void writeFile(ScannerReportWriter writer, int ref) throws IOException {
+    writer.writeComponent(ScannerReport.Component.newBuilder()
+      .setRef(ref)
+      .setType(ScannerReport.Component.ComponentType.FILE)
+      .setPath("src/dir" + (ref / 10) + "/file" + ref + ".xoo")
+      .setLines(LINES)
+      .build());
+    List<ScannerReport.Issue> issues = new ArrayList<>();
+    List<String> lines = new ArrayList<>();
+    for (int line = 1; line <= LINES; line++) {
+      issues.add(ScannerReport.Issue.newBuilder()
+        .setRuleRepository("xoo")
+        .setRuleKey("OneIssuePerLine")
+        .setMsg("This issue is generated on each line")
+        .setTextRange(ScannerReport.TextRange.newBuilder().setStartLine(line).setEndLine(line).build())
+        .build());
+      lines.add("src/dir" + (ref / 10) + "/file" + ref + ".xoo" + line);
+    }
+    writer.writeComponentIssues(ref, issues);
+    List<ScannerReport.Measure> measures = new ArrayList<>();
+    measures.add(ScannerReport.Measure.newBuilder().setMetricKey("lines")
+      .setIntValue(ScannerReport.Measure.IntValue.newBuilder().setValue(LINES)).build());
+    writer.writeComponentMeasures(ref, measures);
+    FileUtils.writeLines(writer.getSourceFile(ref), lines);
+  }
+
+  @Setup(Level.Invocation)
+  public void createExtractDir() throws IOException {
+    extractDir = Files.createTempDirectory(workDir.toPath(), "extract").toFile();
+  }
+
+  @TearDown(Level.Invocation)
+  public void deleteExtractDir() {
+    FileUtils.deleteQuietly(extractDir);
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtils.deleteQuietly(workDir);
+  }
+
+  @Benchmark
+  public void extract_and_read_files_of_components(Blackhole blackhole) throws IOException {
+    extractAndRead(zipV1, blackhole);
+  }
+
+  @Benchmark
+  public void extract_and_read_container(Blackhole blackhole) throws IOException {
+    extractAndRead(zipV2, blackhole);
+  }
+
+  private void extractAndRead(File zip, Blackhole blackhole) throws IOException {
+    unzip(zip, extractDir);
+    ScannerReportReader reader = new ScannerReportReader(extractDir);
+    for (int ref = 1; ref <= files; ref++) {
+      blackhole.consume(reader.readComponent(ref));
+      consume(reader.readComponentIssues(ref), blackhole);
+      consume(reader.readComponentMeasures(ref), blackhole);
+      consume(reader.readComponentCoverage(ref), blackhole);
+      try (InputStream source = reader.openComponentData(FileStructure.Domain.SOURCE, ref)) {
+        blackhole.consume(IOUtils.readLines(source, "UTF-8"));
+      }
+    }
+  }
+
+  private static void consume(CloseableIterator<?> iterator, Blackhole blackhole) {
+    try {
+      while (iterator.hasNext()) {
+        blackhole.consume(iterator.next());
+      }
+    } finally {
+      iterator.close();
+    }
+  }
+
+  private static void zip(File dir, File zip) throws IOException {
+    try (ZipOutputStream output = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zip)))) {
+      for (File file : dir.listFiles()) {
+        output.putNextEntry(new ZipEntry(file.getName()));
+        try (InputStream input = new FileInputStream(file)) {
+          IOUtils.copy(input, output);
+        }
+        output.closeEntry();
+      }
+    }
+  }
+
+  private static void unzip(File zip, File toDir) throws IOException {
+    try (ZipInputStream input = new ZipInputStream(new FileInputStream(zip))) {
+      ZipEntry entry;
+      while ((entry = input.getNextEntry()) != null) {
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(new File(toDir, entry.getName())))) {
+          IOUtils.copy(input, output);
+        }
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ReportFormatBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -141,6 +141,21 @@ public class ScannerReportReaderTest {
     assertThat(underTest.readChangesets(UNKNOWN_COMPONENT_REF)).isNull();
   }
 
+  @Test
+  public void read_line_data_hashes() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    FileUtils.writeLines(writer.getSourceFile(1), Lists.newArrayList("line1", "line2"));
+    writer.writeLineDataHashes();
+
+    assertThat(underTest.readLineDataHashes(1).getComponentRef()).isEqualTo(1);
+    assertThat(underTest.readLineDataHashes(1).getSource()).isNotEmpty();
+  }
+
+  @Test
+  public void null_if_no_line_data_hashes_found() {
+    assertThat(underTest.readLineDataHashes(UNKNOWN_COMPONENT_REF)).isNull();
+  }
+
   @Test
   public void read_duplications() {
     ScannerReportWriter writer = new ScannerReportWriter(dir);
@@ -386,4 +401,39 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_data_of_components_packed_in_container() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/Foo.java").build());
+    writer.writeComponentIssues(1, singletonList(ScannerReport.Issue.newBuilder().setRuleKey("rule").build()));
+    writer.writeComponentChangesets(ScannerReport.Changesets.newBuilder().setComponentRef(1).build());
+    FileUtils.writeLines(writer.getSourceFile(1), Lists.newArrayList("line1", "line2"));
+    writer.packComponentData();
+
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+    assertThat(underTest.readComponentIssues(1)).extracting("ruleKey").containsExactly("rule");
+    assertThat(underTest.readChangesets(1).getComponentRef()).isEqualTo(1);
+    assertThat(underTest.readComponentMeasures(1)).isEmpty();
+    assertThat(underTest.hasCoverage(1)).isFalse();
+    assertThat(underTest.hasComponentData(FileStructure.Domain.SOURCE, 1)).isTrue();
+    try (InputStream inputStream = underTest.openComponentData(FileStructure.Domain.SOURCE, 1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+    }
+    assertThat(underTest.openComponentData(FileStructure.Domain.SOURCE, 2)).isNull();
+  }
+
+  @Test
+  public void extract_file_source_from_container() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    FileUtils.writeLines(writer.getSourceFile(1), Lists.newArrayList("line1", "line2"));
+    writer.packComponentData();
+    assertThat(writer.getSourceFile(1)).doesNotExist();
+
+    File sourceFile = underTest.readFileSource(1);
+
+    assertThat(sourceFile).isEqualTo(writer.getSourceFile(1));
+    assertThat(FileUtils.readLines(sourceFile)).containsExactly("line1", "line2");
+    assertThat(underTest.readFileSource(2)).isNull();
+  }
 }
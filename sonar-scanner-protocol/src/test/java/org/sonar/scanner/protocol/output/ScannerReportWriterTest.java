@@ -21,6 +21,7 @@ package org.sonar.scanner.protocol.output;
 
 import com.google.common.collect.Iterators;
 import java.io.File;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
@@ -302,4 +303,31 @@ public class ScannerReportWriterTest {
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.COVERAGE_DETAILS, 1)).isTrue();
   }
+
+  @Test
+  public void write_line_data_hashes_of_files_with_source() throws Exception {
+    FileUtils.write(underTest.getSourceFile(1), "line1\nline2");
+    underTest.writeComponentCoverage(1, asList(ScannerReport.LineCoverage.newBuilder().setLine(1).setUtHits(true).build()));
+    FileUtils.write(underTest.getSourceFile(2), "line1\nline2");
+    underTest.writeComponentCoverage(3, asList(ScannerReport.LineCoverage.newBuilder().setLine(1).setUtHits(true).build()));
+
+    underTest.writeLineDataHashes();
+
+    ScannerReport.LineDataHashes hashes1 = readLineDataHashes(1);
+    ScannerReport.LineDataHashes hashes2 = readLineDataHashes(2);
+    assertThat(hashes1.getComponentRef()).isEqualTo(1);
+    assertThat(hashes1.getSource()).isEqualTo(DigestUtils.md5Hex("line1\nline2"));
+    assertThat(hashes1.getCoverages()).hasSize(32);
+    assertThat(hashes1.getSyntaxHighlightings()).isEmpty();
+    assertThat(hashes1.getSymbols()).isEmpty();
+    assertThat(hashes1.getChangesets()).isEmpty();
+    assertThat(hashes2.getSource()).isEqualTo(hashes1.getSource());
+    assertThat(hashes2.getCoverages()).isEmpty();
+    // no source
+    assertThat(underTest.hasComponentData(FileStructure.Domain.LINE_DATA_HASHES, 3)).isFalse();
+  }
+
+  private ScannerReport.LineDataHashes readLineDataHashes(int fileRef) {
+    return Protobuf.read(underTest.getFileStructure().fileFor(FileStructure.Domain.LINE_DATA_HASHES, fileRef), ScannerReport.LineDataHashes.parser());
+  }
 }